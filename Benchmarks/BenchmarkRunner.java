@@ -0,0 +1,28 @@
+package Benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the Model benchmarks and writes the results as JSON, so that runs can be compared over time.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs every benchmark in ModelBenchmarks.
+     *
+     * @param args  optionally, the file to write the JSON results to (default "benchmarks.json")
+     * @throws RunnerException  if the benchmarks fail to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ModelBenchmarks.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result(args.length > 0 ? args[0] : "benchmarks.json")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,367 @@
+package Benchmarks;
+
+import Model.GeneralManager;
+import Model.Image;
+import Model.Tag;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates a synthetic library and drives GeneralManager through it headlessly, the same way TagsController
+ * would, then reports latency percentiles of each scenario and the peak heap usage.
+ *
+ * Usage: java Benchmarks.LoadTestDriver [--images=10000] [--per-dir=100] [--fanout=10] [--tags=1000]
+ *        [--tags-per-image=3] [--skew=1.0] [--ops=1000] [--tiny] [--dir=path] [--state=path] [--keep]
+ *        [--seed=42]
+ *
+ * The model saves its state (shards/ with names.dict, tags.ser, undo/ and renameLogs/) in the --state directory,
+ * or in a temporary one, never in the working directory. Unless --keep is given, the library and the saved
+ * state are deleted at the end.
+ */
+public class LoadTestDriver {
+
+    /**
+     * The options given on the command line, e.g. "images" -> "10000".
+     */
+    private HashMap<String, String> options = new HashMap<>();
+
+    /**
+     * The manager being driven.
+     */
+    private GeneralManager generalManager;
+
+    /**
+     * The source of random choices, seeded so that runs are repeatable.
+     */
+    private Random random;
+
+    /**
+     * Creates a driver from the given command line arguments.
+     *
+     * @param args      arguments of the form "--name=value" or "--flag"
+     */
+    private LoadTestDriver(String[] args) {
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int equals = option.indexOf('=');
+            if (equals == -1) {
+                options.put(option, "true");
+            } else {
+                options.put(option.substring(0, equals), option.substring(equals + 1));
+            }
+        }
+        random = new Random(getLong("seed", 42));
+    }
+
+    /**
+     * Generates the library, runs every scenario and prints the report.
+     *
+     * The scenarios run on a thread with a large stack, since serializing the model recurses through
+     * every image and tag.
+     *
+     * @param args      the command line arguments, see the class comment
+     * @throws InterruptedException  if interrupted while waiting for the scenarios to finish
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoadTestDriver driver = new LoadTestDriver(args);
+        Thread thread = new Thread(null, () -> {
+            try {
+                driver.run();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "load-test", 1L << 30);
+        thread.start();
+        thread.join();
+    }
+
+    /**
+     * Helper function.
+     * Generates the library, runs every scenario and prints the report.
+     *
+     * @throws IOException  if the library cannot be created
+     */
+    private void run() throws IOException {
+        int imageCount = (int) getLong("images", 10000);
+        int operations = (int) getLong("ops", 1000);
+        Path root = options.containsKey("dir")
+                ? Files.createDirectories(Paths.get(options.get("dir")))
+                : Files.createTempDirectory("library");
+        Path state = options.containsKey("state")
+                ? Files.createDirectories(Paths.get(options.get("state")))
+                : Files.createTempDirectory("state");
+        generalManager = new GeneralManager(state.toFile());
+
+        long generateStart = System.nanoTime();
+        SyntheticLibrary library = new SyntheticLibrary(root, imageCount, (int) getLong("per-dir", 100),
+                (int) getLong("fanout", 10), (int) getLong("tags", 1000), (int) getLong("tags-per-image", 3),
+                Double.parseDouble(options.getOrDefault("skew", "1.0")), options.containsKey("tiny"),
+                getLong("seed", 42));
+        System.out.printf("Generated %d images in %d directories in %.1f s%n", imageCount,
+                library.getDirectoryPaths().size(), (System.nanoTime() - generateStart) / 1e9);
+
+        resetPeakHeap();
+        ArrayList<Latencies> results = new ArrayList<>();
+        results.add(initialScan(library));
+        results.add(navigation(library, operations));
+        ArrayList<Image> images = generalManager.getAllImages();
+        results.add(bulkTag(images, operations));
+        results.add(move(library, images, operations / 10));
+        results.add(revert(images, operations));
+        results.add(saveAndLoad());
+
+        System.out.printf("%-14s %8s %10s %10s %10s %10s%n", "scenario", "ops", "p50 (ms)", "p90 (ms)",
+                "p99 (ms)", "max (ms)");
+        for (Latencies latencies : results) {
+            latencies.print();
+        }
+        System.out.printf("Peak heap: %.1f MB%n", peakHeapBytes() / (1024.0 * 1024.0));
+
+        if (!options.containsKey("keep")) {
+            library.delete();
+            try (Stream<Path> paths = Files.walk(state)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * Scans the whole library into the model.
+     *
+     * @param library   the library to scan
+     * @return          the latency of the scan
+     */
+    private Latencies initialScan(SyntheticLibrary library) {
+        Latencies latencies = new Latencies("initial scan", 1);
+        long start = System.nanoTime();
+        generalManager.initialize(library.getRootPath());
+        latencies.add(System.nanoTime() - start);
+        return latencies;
+    }
+
+    /**
+     * Navigates to random directories and back up to their parents.
+     *
+     * @param library       the library being navigated
+     * @param operations    the number of directories to visit
+     * @return              the latencies of each navigation
+     */
+    private Latencies navigation(SyntheticLibrary library, int operations) {
+        ArrayList<String> paths = library.getDirectoryPaths();
+        Latencies latencies = new Latencies("navigation", operations * 2);
+        for (int i = 0; i < operations; i++) {
+            long start = System.nanoTime();
+            generalManager.setCurrentDirectory(paths.get(random.nextInt(paths.size())));
+            generalManager.setCurrentDirectory(generalManager.getCurrentDirectory());
+            latencies.add(System.nanoTime() - start);
+
+            start = System.nanoTime();
+            generalManager.goToParentDirectory();
+            latencies.add(System.nanoTime() - start);
+        }
+        generalManager.setCurrentDirectory(library.getRootPath());
+        return latencies;
+    }
+
+    /**
+     * Adds a random existing tag to random images.
+     *
+     * @param images        the images to choose from
+     * @param operations    the number of images to tag
+     * @return              the latencies of each tagging
+     */
+    private Latencies bulkTag(ArrayList<Image> images, int operations) {
+        ArrayList<Tag> allTags = generalManager.getAllTags();
+        Latencies latencies = new Latencies("bulk tag", operations);
+        for (int i = 0; i < operations && !allTags.isEmpty(); i++) {
+            Image image = images.get(random.nextInt(images.size()));
+            ArrayList<Tag> tags = new ArrayList<>();
+            tags.add(allTags.get(random.nextInt(allTags.size())));
+            long start = System.nanoTime();
+            select(image);
+            generalManager.addTagsToImage(tags);
+            latencies.add(System.nanoTime() - start);
+        }
+        return latencies;
+    }
+
+    /**
+     * Moves random images to random directories.
+     *
+     * @param library       the library the images are in
+     * @param images        the images to choose from
+     * @param operations    the number of images to move
+     * @return              the latencies of each move
+     */
+    private Latencies move(SyntheticLibrary library, ArrayList<Image> images, int operations) {
+        ArrayList<String> paths = library.getDirectoryPaths();
+        Latencies latencies = new Latencies("move", operations);
+        for (int i = 0; i < operations; i++) {
+            Image image = images.get(random.nextInt(images.size()));
+            String target = paths.get(random.nextInt(paths.size()));
+            long start = System.nanoTime();
+            select(image);
+            generalManager.moveImage(target);
+            latencies.add(System.nanoTime() - start);
+        }
+        return latencies;
+    }
+
+    /**
+     * Reverts random images to their original names.
+     *
+     * @param images        the images to choose from
+     * @param operations    the number of images to revert
+     * @return              the latencies of each revert
+     */
+    private Latencies revert(ArrayList<Image> images, int operations) {
+        Latencies latencies = new Latencies("revert", operations);
+        for (int i = 0; i < operations; i++) {
+            Image image = images.get(random.nextInt(images.size()));
+            long start = System.nanoTime();
+            select(image);
+            ArrayList<String> pastNames = generalManager.getImageRenameLogs();
+            generalManager.revertImageName(pastNames.get(0));
+            latencies.add(System.nanoTime() - start);
+        }
+        return latencies;
+    }
+
+    /**
+     * Saves the state of the program and loads it back.
+     *
+     * @return      the latencies of the save and of the load
+     */
+    private Latencies saveAndLoad() {
+        Latencies latencies = new Latencies("save/load", 2);
+        long start = System.nanoTime();
+        generalManager.serialize();
+        latencies.add(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        generalManager.deserialize();
+        latencies.add(System.nanoTime() - start);
+        return latencies;
+    }
+
+    /**
+     * Helper function.
+     * Selects the given image the way TagsController does when an image is clicked.
+     *
+     * @param image     the image to select
+     */
+    private void select(Image image) {
+        generalManager.setCurrentImage(image);
+        generalManager.setCurrentDirectory(image.getParentDirectory());
+    }
+
+    /**
+     * @param name          the name of an option
+     * @param defaultValue  the value to use if the option was not given
+     * @return              the value of the option
+     */
+    private long getLong(String name, long defaultValue) {
+        return options.containsKey(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+
+    /**
+     * Resets the peak usage of every heap memory pool.
+     */
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return      the sum of the peak usage of every heap memory pool since the last reset
+     */
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * The latencies recorded for one scenario.
+     */
+    private static class Latencies {
+
+        /**
+         * The name of the scenario.
+         */
+        private String scenario;
+
+        /**
+         * The recorded latencies, in nanoseconds.
+         */
+        private long[] nanos;
+
+        /**
+         * The number of latencies recorded so far.
+         */
+        private int size = 0;
+
+        /**
+         * @param scenario      the name of the scenario
+         * @param capacity      the number of latencies that will be recorded
+         */
+        Latencies(String scenario, int capacity) {
+            this.scenario = scenario;
+            this.nanos = new long[Math.max(1, capacity)];
+        }
+
+        /**
+         * @param latency       the latency of one operation, in nanoseconds
+         */
+        void add(long latency) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = latency;
+        }
+
+        /**
+         * @param sorted        the recorded latencies, in ascending order
+         * @param percentile    the percentile to find, between 0 and 1
+         * @return              the latency at the given percentile, in milliseconds
+         */
+        double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+
+        /**
+         * Prints one line with the percentiles of this scenario.
+         */
+        void print() {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            System.out.printf("%-14s %8d %10.3f %10.3f %10.3f %10.3f%n", scenario, size,
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    percentile(sorted, 1.0));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package Benchmarks;
+
+import Model.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * JMH benchmarks for the hot paths of the Model, run against a synthetic library of configurable size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelBenchmarks {
+
+    /**
+     * The number of images in the synthetic library.
+     */
+    @Param({"1000", "10000", "100000"})
+    public int imageCount;
+
+    /**
+     * The number of distinct tags in the synthetic library.
+     */
+    @Param({"100", "1000"})
+    public int tagCount;
+
+    /**
+     * The number of entries in the tag history of the image used by the revert benchmark.
+     */
+    @Param({"200"})
+    public int historyLength;
+
+    /**
+     * The library every benchmark runs against.
+     */
+    private SyntheticLibrary library;
+
+    /**
+     * A manager showing all images under the root directory.
+     */
+    private GeneralManager generalManager;
+
+    /**
+     * A separate manager used for navigation, so that it does not move the current directory of generalManager.
+     */
+    private GeneralManager navigationManager;
+
+    /**
+     * A tag manager holding every tag of the library.
+     */
+    private TagManager tagManager;
+
+    /**
+     * An image name whose tags are at the end of the list of all tags.
+     */
+    private String taggedName;
+
+    /**
+     * The path of the last directory in the library.
+     */
+    private String deepestPath;
+
+    /**
+     * The directory holding the image used by the revert benchmark.
+     */
+    private Path historyDirectory;
+
+    /**
+     * The directory the managers save their state in, one sub-directory each.
+     */
+    private Path stateDirectory;
+
+    /**
+     * An image with a long tag history.
+     */
+    private Image historyImage;
+
+    /**
+     * A name from the middle of the name history of historyImage.
+     */
+    private String previousName;
+
+    /**
+     * Builds the synthetic library and loads it into the managers.
+     *
+     * @throws IOException  if the library cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        library = new SyntheticLibrary(imageCount, 100, tagCount, 3, 42);
+
+        stateDirectory = Files.createTempDirectory("state");
+        generalManager = new GeneralManager(stateDirectory.resolve("general").toFile());
+        generalManager.initialize(library.getRootPath());
+        generalManager.toggleShowAllImages();
+        generalManager.setCurrentDirectory(generalManager.getCurrentDirectory());
+
+        navigationManager = new GeneralManager(stateDirectory.resolve("navigation").toFile());
+        navigationManager.initialize(library.getRootPath());
+        ArrayList<String> directoryPaths = library.getDirectoryPaths();
+        deepestPath = directoryPaths.get(directoryPaths.size() - 1);
+
+        tagManager = new TagManager();
+        for (String tagName : library.getTagNames()) {
+            tagManager.createTag(tagName);
+        }
+        taggedName = "img0 @tag" + (tagCount - 1) + " @tag" + (tagCount - 2) + " @tag" + (tagCount - 3) + ".jpg";
+
+        setUpHistoryImage();
+    }
+
+    /**
+     * Helper function.
+     * Creates an image whose tags are added and removed historyLength times, cycling through five tags
+     * so that its name stays short.
+     *
+     * @throws IOException  if the image file cannot be created
+     */
+    private void setUpHistoryImage() throws IOException {
+        historyDirectory = Files.createTempDirectory("history");
+        Directory directory = new Directory(historyDirectory.toString(), null);
+        ImageManager imageManager = new ImageManager();
+        historyImage = imageManager.createImage(
+                Files.createFile(historyDirectory.resolve("history.jpg")).toString(), directory);
+        ArrayList<Tag> tags = new ArrayList<>();
+        for (int i = 0; i < historyLength; i++) {
+            tags.clear();
+            tags.add(tagManager.getAllTags().get(i % Math.min(5, tagCount)));
+            if (historyImage.getTags().contains(tags.get(0))) {
+                imageManager.removeTagsFromImage(historyImage, tags);
+            } else {
+                imageManager.addTagsToImage(historyImage, tags);
+            }
+        }
+        ArrayList<String> pastNames = imageManager.getPastNames(historyImage);
+        previousName = pastNames.get(pastNames.size() / 2);
+    }
+
+    /**
+     * Deletes the synthetic library and the saved state of the managers.
+     *
+     * @throws IOException  if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        library.delete();
+        Files.deleteIfExists(historyImage.getFile().toPath());
+        Files.deleteIfExists(historyDirectory);
+        try (Stream<Path> paths = Files.walk(stateDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public ArrayList<Tag> stringToTags() {
+        return tagManager.stringToTags(taggedName);
+    }
+
+    @Benchmark
+    public ArrayList<Tag> stringToNewTags() {
+        return tagManager.stringToNewTags(taggedName);
+    }
+
+    @Benchmark
+    public ArrayList<Image> getAllImages() {
+        return generalManager.getAllImages();
+    }
+
+    @Benchmark
+    public Directory getDirectoryFromPath() {
+        navigationManager.setCurrentDirectory(deepestPath);
+        return navigationManager.getCurrentDirectory();
+    }
+
+    @Benchmark
+    public Directory addMissingTags() {
+        generalManager.setCurrentDirectory(generalManager.getCurrentDirectory());
+        return generalManager.getCurrentDirectory();
+    }
+
+    @Benchmark
+    public ArrayList<Tag> getRevertTags() {
+        return historyImage.getRevertTags(previousName);
+    }
+
+    @Benchmark
+    public ArrayList<Image> searchSubstring() {
+        return generalManager.searchImages("img" + (imageCount / 2), false, 100);
+    }
+
+    @Benchmark
+    public ArrayList<Image> searchFuzzy() {
+        return generalManager.searchImages("~imh" + (imageCount / 2), false, 100);
+    }
+
+    @Benchmark
+    public void serializeRoundTrip() {
+        generalManager.serialize();
+        generalManager.deserialize();
+    }
+}
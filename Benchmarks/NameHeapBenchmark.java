@@ -0,0 +1,113 @@
+package Benchmarks;
+
+import Model.Directory;
+import Model.Image;
+import Model.Tag;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.function.IntFunction;
+
+/**
+ * Measures how much memory the names of images and tags take, now that they are kept in the off-heap
+ * name dictionary, against the heap the same names take as one String per image and tag.
+ * The direct buffers are reported by capacity, which grows by doubling.
+ *
+ * Usage: java Benchmarks.NameHeapBenchmark [images=1000000] [tags=1000]
+ */
+public class NameHeapBenchmark {
+
+    /**
+     * Creates the images and tags, and prints the heap and off-heap memory they retain.
+     *
+     * @param args      optionally, the number of images and the number of tags
+     */
+    public static void main(String[] args) {
+        int imageCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int tagCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Directory directory = new Directory("/library", null);
+
+        // The same images all with one name, to subtract the cost of everything but their names
+        long heapBefore = usedHeap();
+        Image[] images = createImages(imageCount, i -> "IMG.jpg", directory);
+        long baseHeap = usedHeap() - heapBefore;
+        images = null;
+
+        heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        Tag[] tags = new Tag[tagCount];
+        for (int i = 0; i < tagCount; i++) {
+            tags[i] = new Tag("tag" + i);
+        }
+        images = createImages(imageCount, i -> name(i, tagCount), directory);
+        long dictionaryHeap = usedHeap() - heapBefore - baseHeap;
+        long dictionaryDirect = usedDirect() - directBefore;
+
+        heapBefore = usedHeap();
+        String[] names = new String[imageCount + tagCount];
+        for (int i = 0; i < imageCount; i++) {
+            names[i] = name(i, tagCount);
+        }
+        for (int i = 0; i < tagCount; i++) {
+            names[imageCount + i] = "tag" + i;
+        }
+        long stringHeap = usedHeap() - heapBefore;
+
+        System.out.printf("%d images, %d tags%n", imageCount, tagCount);
+        System.out.printf("Name dictionary:   %8.1f MB heap (%5.1f bytes per image), %8.1f MB of direct buffers%n",
+                dictionaryHeap / 1e6, (double) dictionaryHeap / imageCount, dictionaryDirect / 1e6);
+        System.out.printf("Names as Strings:  %8.1f MB heap (%5.1f bytes per image)%n",
+                stringHeap / 1e6, (double) stringHeap / imageCount);
+        // Keep everything reachable until it has been measured
+        System.out.println(images[imageCount - 1].getName() + " " + tags[tagCount - 1].getName()
+                + " " + names[names.length - 1]);
+    }
+
+    /**
+     * @param count     the number of images to create
+     * @param names     the name of each image
+     * @param directory the directory the images are in
+     * @return          the images
+     */
+    private static Image[] createImages(int count, IntFunction<String> names, Directory directory) {
+        Image[] images = new Image[count];
+        for (int i = 0; i < count; i++) {
+            images[i] = new Image("/library/" + names.apply(i), directory);
+        }
+        return images;
+    }
+
+    /**
+     * @param i         the number of an image
+     * @param tagCount  the number of tags
+     * @return          a name for the image, in the form the program gives to tagged images
+     */
+    private static String name(int i, int tagCount) {
+        return String.format("IMG_%07d @tag%d @tag%d.jpg", i, i % tagCount, (i * 7) % tagCount);
+    }
+
+    /**
+     * @return      the bytes of heap in use after a full collection
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * @return      the bytes of direct buffers in use
+     */
+    private static long usedDirect() {
+        long used = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                used += pool.getMemoryUsed();
+            }
+        }
+        return used;
+    }
+}
@@ -0,0 +1,182 @@
+package Benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * A directory tree of empty or tiny image files with tag-encoded names ("base @t1 @t2.jpg"), so that
+ * benchmarks and load tests can run the model against a library of a chosen size and shape.
+ */
+public class SyntheticLibrary {
+
+    /**
+     * The root directory of this library.
+     */
+    private Path root;
+
+    /**
+     * The names of all tags used in this library.
+     */
+    private ArrayList<String> tagNames = new ArrayList<>();
+
+    /**
+     * The paths of all directories in this library, root first.
+     */
+    private ArrayList<String> directoryPaths = new ArrayList<>();
+
+    /**
+     * The cumulative probability of choosing each tag, used to pick tags with a skewed distribution.
+     */
+    private double[] tagWeights;
+
+    /**
+     * The bytes of a 1x1 GIF, written into each image when tiny images are requested.
+     */
+    private static final byte[] TINY_GIF = {
+            'G', 'I', 'F', '8', '9', 'a', 1, 0, 1, 0, (byte) 0x80, 0, 0, 0, 0, 0, (byte) 0xFF, (byte) 0xFF,
+            (byte) 0xFF, '!', (byte) 0xF9, 4, 1, 0, 0, 0, 0, ',', 0, 0, 0, 0, 1, 0, 1, 0, 0, 2, 2, 'D', 1, 0, ';'
+    };
+
+    /**
+     * Creates a library of the given size in a new temporary directory.
+     * Images are spread over directories of at most imagesPerDirectory images, nested ten to a parent,
+     * and tags are chosen uniformly.
+     *
+     * @param imageCount            the number of images to create
+     * @param imagesPerDirectory    the number of images in each directory
+     * @param tagCount              the number of distinct tags
+     * @param tagsPerImage          the number of tags in each image name
+     * @param seed                  the seed for choosing tags, so that runs are repeatable
+     * @throws IOException          if the files cannot be created
+     */
+    public SyntheticLibrary(int imageCount, int imagesPerDirectory, int tagCount, int tagsPerImage, long seed)
+            throws IOException {
+        this(Files.createTempDirectory("library"), imageCount, imagesPerDirectory, 10, tagCount, tagsPerImage,
+                0, false, seed);
+    }
+
+    /**
+     * Creates a library of the given size under the given root directory.
+     * Images are spread over directories of at most imagesPerDirectory images, with each directory holding
+     * at most fanOut sub-directories. Tag i is chosen with probability proportional to 1 / (i + 1)^tagSkew,
+     * so a skew of 0 is uniform and a skew of 1 gives a Zipf distribution with a few very common tags.
+     *
+     * @param root                  the directory to create the library in, which must exist
+     * @param imageCount            the number of images to create
+     * @param imagesPerDirectory    the number of images in each directory
+     * @param fanOut                the number of sub-directories in each directory
+     * @param tagCount              the number of distinct tags
+     * @param tagsPerImage          the number of tags in each image name
+     * @param tagSkew               the exponent of the tag distribution
+     * @param tinyImages            true to write a 1x1 GIF into each file, false to leave it empty
+     * @param seed                  the seed for choosing tags, so that runs are repeatable
+     * @throws IOException          if the files cannot be created
+     */
+    public SyntheticLibrary(Path root, int imageCount, int imagesPerDirectory, int fanOut, int tagCount,
+                            int tagsPerImage, double tagSkew, boolean tinyImages, long seed) throws IOException {
+        this.root = root;
+        this.tagWeights = new double[tagCount];
+        double total = 0;
+        for (int i = 0; i < tagCount; i++) {
+            tagNames.add("tag" + i);
+            total += 1 / Math.pow(i + 1, tagSkew);
+            tagWeights[i] = total;
+        }
+        for (int i = 0; i < tagCount; i++) {
+            tagWeights[i] /= total;
+        }
+        Random random = new Random(seed);
+        ArrayList<Path> directories = new ArrayList<>();
+        directories.add(root);
+        directoryPaths.add(root.toString());
+        int directoryCount = Math.max(1, (imageCount + imagesPerDirectory - 1) / imagesPerDirectory);
+        for (int i = 1; i < directoryCount; i++) {
+            Path directory = Files.createDirectory(directories.get((i - 1) / fanOut).resolve("dir" + i));
+            directories.add(directory);
+            directoryPaths.add(directory.toString());
+        }
+        for (int i = 0; i < imageCount; i++) {
+            Path directory = directories.get(i / imagesPerDirectory);
+            Path image = directory.resolve(imageName(i, random, Math.min(tagsPerImage, tagCount)));
+            if (tinyImages) {
+                Files.write(image, TINY_GIF);
+            } else {
+                Files.createFile(image);
+            }
+        }
+    }
+
+    /**
+     * Helper function.
+     * Returns a name of the form "img42 @tag3 @tag17.jpg" with the given number of distinct tags.
+     *
+     * @param index         the index of the image
+     * @param random        the source of tag choices
+     * @param tagsPerImage  the number of tags to put in the name
+     * @return              the name of the image
+     */
+    private String imageName(int index, Random random, int tagsPerImage) {
+        StringBuilder name = new StringBuilder("img" + index);
+        ArrayList<String> chosen = new ArrayList<>();
+        while (chosen.size() < tagsPerImage) {
+            String tag = tagNames.get(pickTag(random));
+            if (!chosen.contains(tag)) {
+                chosen.add(tag);
+                name.append(" @").append(tag);
+            }
+        }
+        name.append(".jpg");
+        return name.toString();
+    }
+
+    /**
+     * Helper function.
+     * Picks a tag index according to the tag distribution of this library.
+     *
+     * @param random        the source of tag choices
+     * @return              the index of the chosen tag
+     */
+    private int pickTag(Random random) {
+        int index = Arrays.binarySearch(tagWeights, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, tagWeights.length - 1);
+    }
+
+    /**
+     * @return      the absolute path of the root directory of this library
+     */
+    public String getRootPath() {
+        return root.toAbsolutePath().toString();
+    }
+
+    /**
+     * @return      the names of all tags used in this library
+     */
+    public ArrayList<String> getTagNames() {
+        return tagNames;
+    }
+
+    /**
+     * @return      the paths of all directories in this library, root first
+     */
+    public ArrayList<String> getDirectoryPaths() {
+        return directoryPaths;
+    }
+
+    /**
+     * Deletes every file and directory of this library.
+     *
+     * @throws IOException  if the files cannot be deleted
+     */
+    public void delete() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package Controller;
+
+import Model.ProgressMonitor;
+
+import java.util.function.Consumer;
+
+/**
+ * Tracks one command submitted to the ModelCommandBus: its progress, whether it is done,
+ * and whether the user has asked to cancel it.
+ */
+public class CommandHandle implements ProgressMonitor {
+
+    /**
+     * The name of the command, e.g. "deleteTags".
+     */
+    private final String name;
+
+    /**
+     * Called with this handle whenever its progress changes.
+     */
+    private final Consumer<CommandHandle> progressListener;
+
+    /**
+     * The units of work done so far.
+     */
+    private volatile long done = 0;
+
+    /**
+     * The total units of work, or 0 if unknown.
+     */
+    private volatile long total = 0;
+
+    /**
+     * Whether or not the command has been asked to stop.
+     */
+    private volatile boolean cancelled = false;
+
+    /**
+     * Whether or not the command has finished running.
+     */
+    private volatile boolean finished = false;
+
+    /**
+     * Creates a handle for the command with the given name.
+     *
+     * @param name              the name of the command
+     * @param progressListener  called whenever the progress of the command changes
+     */
+    CommandHandle(String name, Consumer<CommandHandle> progressListener) {
+        this.name = name;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * @return      the name of the command
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void worked(long done, long total) {
+        this.done = done;
+        this.total = total;
+        progressListener.accept(this);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Asks the command to stop. Commands that have not started yet are skipped.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * @return      the fraction of the command that is done, or -1 if unknown
+     */
+    public double getProgress() {
+        if (finished) {
+            return 1;
+        }
+        return total == 0 ? -1 : (double) done / total;
+    }
+
+    /**
+     * @return      true iff the command has finished running, or was skipped after being cancelled
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Marks the command as finished.
+     */
+    void finish() {
+        this.finished = true;
+        progressListener.accept(this);
+    }
+}
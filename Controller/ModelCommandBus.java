@@ -0,0 +1,101 @@
+package Controller;
+
+import Model.ProgressMonitor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Runs model mutations off the JavaFX thread.
+ * Commands are queued to a single worker thread and run one at a time in the order they were submitted,
+ * so operations on the same image never overtake each other and GeneralManager is only ever changed by
+ * one thread. Results reach the GUI through the UiUpdateBatcher.
+ */
+class ModelCommandBus {
+
+    /**
+     * A model mutation to run on the worker thread.
+     */
+    interface ModelCommand {
+
+        /**
+         * Runs the command.
+         *
+         * @param monitor       receives progress and tells the command whether to stop early
+         * @throws Exception    if the command fails
+         */
+        void run(ProgressMonitor monitor) throws Exception;
+    }
+
+    /**
+     * The single thread running every command.
+     */
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "model-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Applies GUI updates on the JavaFX thread.
+     */
+    private final UiUpdateBatcher batcher;
+
+    /**
+     * Shows the progress of a command; always called on the JavaFX thread.
+     */
+    private final Consumer<CommandHandle> progressView;
+
+    /**
+     * The command currently running, or null if the worker is idle.
+     */
+    private volatile CommandHandle current;
+
+    /**
+     * Creates a command bus which reports progress through the given batcher.
+     *
+     * @param batcher       applies GUI updates on the JavaFX thread
+     * @param progressView  shows the progress of the running command
+     */
+    ModelCommandBus(UiUpdateBatcher batcher, Consumer<CommandHandle> progressView) {
+        this.batcher = batcher;
+        this.progressView = progressView;
+    }
+
+    /**
+     * Queues the given command to run after every command submitted before it.
+     *
+     * @param name      the name of the command, e.g. "deleteTags"
+     * @param command   the command to run
+     * @return          a handle to follow or cancel the command
+     */
+    CommandHandle submit(String name, ModelCommand command) {
+        CommandHandle handle = new CommandHandle(name,
+                progress -> batcher.post("progress", () -> progressView.accept(progress)));
+        worker.execute(() -> {
+            current = handle;
+            try {
+                if (!handle.isCancelled()) {
+                    command.run(handle);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                current = null;
+                handle.finish();
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * Asks the running command, if any, to stop.
+     */
+    void cancelCurrent() {
+        CommandHandle handle = current;
+        if (handle != null) {
+            handle.cancel();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package Controller;
 
 import Model.*;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
@@ -9,6 +10,7 @@ import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.geometry.Insets;
+import javafx.geometry.Side;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.image.ImageView;
@@ -19,6 +21,7 @@ import javafx.scene.layout.CornerRadii;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
 
@@ -27,8 +30,13 @@ import java.awt.event.MouseEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class bridges the View (TagsView) and the Model (GeneralManager).
@@ -44,6 +52,7 @@ public class TagsController implements Observer {
     @FXML private Label currImagePath;
     @FXML private ImageView currImageVisual;
     @FXML private TextField tagsInput;
+    @FXML private TextField imageSearch;
     @FXML private ComboBox<String> imageNameHistory;
     @FXML private TableView<Tag> tagTable;
     @FXML private TableColumn<Tag, String> tagColumn;
@@ -52,12 +61,73 @@ public class TagsController implements Observer {
     @FXML private CheckBox isAllImages;
     @FXML private TableView<Image> imageTable;
     @FXML private TableColumn<Image, String> imageColumn;
+    @FXML private ComboBox<ImageSort> imageSort;
+    @FXML private CheckBox sortDescending;
+    @FXML private ProgressBar operationProgress;
 
     /**
      * The GeneralManager that the controller will collaborate with to update the Model.
      */
     private GeneralManager generalManager = new GeneralManager();
 
+    /**
+     * Applies GUI updates on the JavaFX thread, coalescing bursts of model notifications.
+     */
+    private UiUpdateBatcher uiUpdates = new UiUpdateBatcher();
+
+    /**
+     * Runs model operations on a worker thread, in the order the user asked for them.
+     */
+    private ModelCommandBus commandBus = new ModelCommandBus(uiUpdates, this::showProgress);
+
+    /**
+     * Fine-grained model changes waiting to be applied to the tables, in the order they happened.
+     */
+    private ConcurrentLinkedQueue<ModelChange> pendingChanges = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Whether or not a save is already queued, so that a burst of actions only saves once.
+     */
+    private AtomicBoolean savePending = new AtomicBoolean(false);
+
+    /**
+     * Whether or not imageTable lists the displayed images of the current directory, rather than search results.
+     * Only read and written on the model worker thread.
+     */
+    private boolean listingShown = true;
+
+    /**
+     * Whether or not a listing of the displayed images is already queued, so that a burst of changes only lists
+     * them once.
+     */
+    private AtomicBoolean listingPending = new AtomicBoolean(false);
+
+    /**
+     * The latest text typed in tagsInput whose completions are not found yet, or null if none are queued, so that
+     * typing behind a long operation only looks up the completions of what was typed last.
+     */
+    private AtomicReference<String> pendingCompletion = new AtomicReference<>();
+
+    /**
+     * The maximum number of tags suggested while the user types a tag name.
+     */
+    private static final int TAG_COMPLETIONS = 10;
+
+    /**
+     * The maximum number of images listed for a search.
+     */
+    private static final int SEARCH_RESULTS = 1000;
+
+    /**
+     * How much having been tagged just now counts when ranking images by tags, relative to carrying one more tag.
+     */
+    private static final double TAG_SEARCH_RECENCY = 0.5;
+
+    /**
+     * The drop-down of tags suggested for the text in tagsInput.
+     */
+    private ContextMenu tagCompletions = new ContextMenu();
+
 
     /**
      * Constructor which prepares Observer/Observable by adding the instance of TagsController to the list of observers
@@ -81,65 +151,89 @@ public class TagsController implements Observer {
 
     /**
      * This method is called by TagsView at startup.
-     * First, retrieves serialized files.
-     * Then, prompts the user to choose a directory
-     * Finally, updates the GUI for the selected directory and lists of images and tags.
+     * First, prompts the user to choose a root directory if no state was saved.
+     * Then, on the worker thread, retrieves the serialized files or scans the chosen directory.
+     * Finally, updates the GUI for the root directory and lists of images and tags.
      */
     @FXML
     private void initialize() {
-        // Opening window for user to select initial "currentDirectory"
         sidePane.setBackground(new Background(new BackgroundFill(Color.LIGHTBLUE, CornerRadii.EMPTY, Insets.EMPTY)));
-        boolean stop = true;
-        File selectedDirectory;
         allOrSomeImages();
+        imageSort.setItems(FXCollections.observableArrayList(ImageSort.values()));
+        imageSort.setValue(ImageSort.NAME);
+        imageSort.getSelectionModel().selectedItemProperty().addListener(
+                (observable, oldValue, newValue) -> sortImages());
+        sortDescending.selectedProperty().addListener((observable, oldValue, newValue) -> sortImages());
+        tagsInput.textProperty().addListener((observable, oldValue, newValue) -> showTagCompletions(newValue));
+        tagsInput.focusedProperty().addListener((observable, oldValue, newValue) -> {
+            if (newValue && tagsInput.getText().trim().isEmpty()) {
+                commandBus.submit("suggestTags", monitor -> {
+                    ArrayList<Tag> suggestions = generalManager.suggestTags(TAG_COMPLETIONS);
+                    int[] counts = imageCounts(suggestions);
+                    uiUpdates.post("tagCompletions", () -> {
+                        if (tagsInput.isFocused() && tagsInput.getText().trim().isEmpty()) {
+                            showTags(suggestions, counts);
+                        }
+                    });
+                });
+            }
+        });
 
-        if (new File("tags.ser").exists() && new File("directories.ser").exists() && new File("images.ser").exists()) {
-            generalManager.deserialize();
-            selectedDirectory = generalManager.getRootDirectory();
-        } else {
+        tagTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        tagColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
+        imageTable.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
+        // Sorted by the model instead, from keys it keeps up to date
+        imageColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getName()));
+        imageColumn.setSortable(false);
+
+        //Code adapted from:
+        //http://blog.ngopal.com.np/2014/02/14/tableview-data-selection-mouse/
+        imageTable.setOnMouseClicked(new EventHandler<javafx.scene.input.MouseEvent>() {
+            @Override
+            public void handle(javafx.scene.input.MouseEvent event) {
+                updateImage();
+            }
+        });
+
+        // Opening window for user to select initial "currentDirectory"
+        File selectedDirectory = null;
+        boolean savedState = generalManager.hasSavedState();
+        while (!savedState && selectedDirectory == null) {
             final DirectoryChooser directoryChooser = new DirectoryChooser();
             displayWarning("Note: this will permanently be your root directory. See help.txt for more details.");
             directoryChooser.setTitle("CHOOSE YOUR STARTING DIRECTORY!");
             selectedDirectory = directoryChooser.showDialog(primaryStage);
-            generalManager.initialize(selectedDirectory.getAbsolutePath());
         }
 
-        while (stop) {
-
-            if (selectedDirectory != null){
-                stop = false;
-
-                // Updating the Model
-                generalManager.setCurrentDirectory(selectedDirectory.getAbsolutePath());
-
-                // Updating the View
-                generalManager.getCurrentDirectory().getName();
-                currDirectory.setText(generalManager.getCurrentDirectory().getName());
-                updateDirectoryBox(generalManager.getSubDirectories());
-                updateNameHistoryBox(generalManager.getImageRenameLogs());
-
-                tagTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
-                tagTable.getItems().addAll(generalManager.getAllTags());
-                tagColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-                tagsInput.clear();
-
-                imageTable.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
-                imageTable.getItems().addAll(generalManager.getSomeImages());
-                imageColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-
-                //Code adapted from:
-                //http://blog.ngopal.com.np/2014/02/14/tableview-data-selection-mouse/
-                imageTable.setOnMouseClicked(new EventHandler<javafx.scene.input.MouseEvent>() {
-                    @Override
-                    public void handle(javafx.scene.input.MouseEvent event) {
-                        updateImage();
-                    }
-                });
-                saveCurrentState();
+        File rootDirectory = selectedDirectory;
+        commandBus.submit("startup", monitor -> {
+            // Updating the Model
+            if (savedState) {
+                generalManager.deserialize();
+            } else {
+                generalManager.initialize(rootDirectory.getAbsolutePath());
             }
-        }
-
+            generalManager.setCurrentDirectory(generalManager.getRootDirectory().getAbsolutePath());
 
+            // Updating the View
+            String name = generalManager.getCurrentDirectory().getName();
+            ArrayList<Directory> subDirectories = generalManager.getSubDirectories();
+            ArrayList<String> renameLogs = generalManager.getImageRenameLogs();
+            ArrayList<Tag> tags = new ArrayList<>(generalManager.getAllTags());
+            ArrayList<Image> images = generalManager.getDisplayedImages();
+            listingShown = true;
+            uiUpdates.post("currentDirectory", () -> {
+                currDirectory.setText(name);
+                updateDirectoryBox(subDirectories);
+            });
+            uiUpdates.post("nameHistory", () -> updateNameHistoryBox(renameLogs));
+            uiUpdates.post("tagTable", () -> {
+                tagTable.getItems().setAll(tags);
+                tagsInput.clear();
+            });
+            uiUpdates.post("imageTable", () -> updateImageBox(images));
+        });
+        saveCurrentState();
     }
 
     /**
@@ -151,53 +245,271 @@ public class TagsController implements Observer {
         isAllImages.selectedProperty().addListener(new ChangeListener<Boolean>() {
             @Override
             public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue) {
-                if (isAllImages.isSelected()){
-                    updateImageBox(generalManager.getAllImages());
-                }
-                else {
-                    updateImageBox(generalManager.getSomeImages());
-                }
-                generalManager.toggleShowAllImages();
+                boolean showAll = isAllImages.isSelected();
+                commandBus.submit("toggleShowAllImages", monitor -> {
+                    if (generalManager.isShowingAllImages() != showAll) {
+                        generalManager.toggleShowAllImages();
+                    }
+                    ArrayList<Image> images = generalManager.getDisplayedImages();
+                    listingShown = true;
+                    uiUpdates.post("imageTable", () -> updateImageBox(images));
+                });
             }
         });
     }
 
+    /**
+     * This method is called when the user picks an order in imageSort or toggles sortDescending.
+     * Lists the displayed images again in that order, sorted by the model rather than by the table.
+     */
+    private void sortImages() {
+        UserActionEvent action = UserActionEvent.start("sortImages");
+        ImageSort sort = imageSort.getValue() == null ? ImageSort.NAME : imageSort.getValue();
+        boolean descending = sortDescending.isSelected();
+        commandBus.submit("sortImages", monitor -> {
+            generalManager.setImageSort(sort, descending);
+            ArrayList<Image> images = generalManager.getDisplayedImages();
+            listingShown = true;
+            uiUpdates.post("imageTable", () -> updateImageBox(images));
+            finishAction(action, images.size(), 0);
+        });
+    }
+
+    /**
+     * This method is called whenever the text in tagsInput changes.
+     * Suggests the most used tags starting with the text. If a lookup is still queued, it looks up this text
+     * instead of queuing another.
+     *
+     * @param text  the text the user has typed so far
+     */
+    private void showTagCompletions(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            tagCompletions.hide();
+            return;
+        }
+        if (pendingCompletion.getAndSet(text) != null) {
+            return;
+        }
+        commandBus.submit("completeTag", monitor -> {
+            String latest = pendingCompletion.getAndSet(null);
+            ArrayList<Tag> completions = generalManager.completeTag(latest.trim(), TAG_COMPLETIONS);
+            int[] counts = imageCounts(completions);
+            uiUpdates.post("tagCompletions", () -> {
+                // Typing goes on while completions are found; only show those for what is typed now
+                if (latest.equals(tagsInput.getText())) {
+                    showTags(completions, counts);
+                }
+            });
+        });
+    }
+
+    /**
+     * Helper function.
+     * Runs on the model worker thread.
+     *
+     * @param tags  the tags to count the images of
+     * @return      the number of images with each tag, in every shard whether or not it is loaded
+     */
+    private int[] imageCounts(ArrayList<Tag> tags) {
+        int[] counts = new int[tags.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = generalManager.getImageCount(tags.get(i));
+        }
+        return counts;
+    }
+
+    /**
+     * Helper function.
+     * Lists the given tags under tagsInput; choosing one selects it in tagTable.
+     * Used both for completions of what the user typed and for suggestions for the current image.
+     *
+     * @param completions   the tags to list, best first
+     * @param counts        the number of images with each tag
+     */
+    private void showTags(ArrayList<Tag> completions, int[] counts) {
+        tagCompletions.getItems().clear();
+        for (int i = 0; i < completions.size(); i++) {
+            Tag tag = completions.get(i);
+            MenuItem item = new MenuItem(tag.getName() + " (" + counts[i] + ")");
+            item.setOnAction(event -> {
+                tagsInput.clear();
+                tagTable.getSelectionModel().select(tag);
+                tagTable.scrollTo(tag);
+            });
+            tagCompletions.getItems().add(item);
+        }
+        if (completions.isEmpty()) {
+            tagCompletions.hide();
+        } else if (!tagCompletions.isShowing()) {
+            tagCompletions.show(tagsInput, Side.BOTTOM, 0, 0);
+        }
+    }
+
     /**
      * This method is called by GeneralManager and TagManager when the directory, image, or list of tags has changed.
-     * This method makes the necessary updates to elements of the GUI
+     * It may be called from the model worker thread: it reads what it needs from the model right away,
+     * then posts the necessary updates to elements of the GUI to run on the JavaFX thread.
      *
      * @param tempManager   the Manager which called this method (either GeneralManager or TagManager)
      * @param obj           the object which is being observed (image, directory, or list of tags)
      */
     public void update(Observable tempManager, Object obj) {
-        if (obj instanceof Image){
+        if (obj instanceof ModelChange){
+            queueChange((ModelChange) obj);
+        } else if (obj instanceof Image){
+            updateCurrentImage((Image) obj);
+        } else if (obj instanceof Directory){
             GeneralManager manager = (GeneralManager) tempManager;
-            Image image = (Image) obj;
+            String name = manager.getCurrentDirectory().getName();
+            ArrayList<Directory> subDirectories = manager.getSubDirectories();
+            ArrayList<Image> images = manager.getDisplayedImages();
+            listingShown = true;
 
-            currImageText.setText(image.getName());
-            currImagePath.setText(image.getPath());
-            File file = new File(image.getPath());
-            currImageVisual.setImage(new javafx.scene.image.Image(file.toURI().toString()));
-            updateNameHistoryBox(manager.getImageRenameLogs());
+            uiUpdates.post("currentDirectory", () -> {
+                currDirectory.setText(name);
+                updateDirectoryBox(subDirectories);
+            });
+            uiUpdates.post("imageTable", () -> updateImageBox(images));
+        } else if (obj instanceof ArrayList){
+            ArrayList<Tag> tags = new ArrayList<>(generalManager.getAllTags());
+            uiUpdates.post("tagTable", () -> {
+                tagTable.getItems().clear();
+                tagTable.getItems().addAll(tags);
+                tagColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
+                tagsInput.clear();
+            });
+        }
+    }
 
-            ArrayList<Image> images;
-            if (isAllImages.isSelected()){
-                images = generalManager.getAllImages();
-            } else {
-                images = generalManager.getSomeImages();
+    /**
+     * Helper function.
+     * Reads the details of the given image and posts them to the current image pane.
+     *
+     * @param image     the image the user most recently selected
+     */
+    private void updateCurrentImage(Image image) {
+        String name = image.getName();
+        String path = image.getPath();
+        ArrayList<String> nameHistory = generalManager.getImageRenameLogs();
+
+        uiUpdates.post("currentImage", () -> {
+            currImageText.setText(name);
+            currImagePath.setText(path);
+            File file = new File(path);
+            currImageVisual.setImage(new javafx.scene.image.Image(file.toURI().toString(), true));
+            updateNameHistoryBox(nameHistory);
+        });
+    }
+
+    /**
+     * Helper function.
+     * Queues a single model change to be applied to the tables in the next GUI batch.
+     * A change to an image in the displayed directories lists them again instead, so that the table keeps the
+     * order and filter the model applies. Search results are not searched again: images removed from them or
+     * renamed are shown as such, and added images are left out.
+     *
+     * @param change    the change published by GeneralManager or TagManager
+     */
+    private void queueChange(ModelChange change) {
+        Image image = change.getImage();
+        if (image == null) {
+            pendingChanges.add(change);
+        } else if (listingShown) {
+            if (generalManager.isDisplayed(change.getDirectory())) {
+                listImages();
             }
-            updateImageBox(images);
-        } else if (obj instanceof Directory){
-            GeneralManager manager = (GeneralManager) tempManager;
+        } else if (change.getKind() != ModelChange.Kind.IMAGE_ADDED) {
+            pendingChanges.add(change);
+        }
+        if (image != null && image == generalManager.getCurrentImage()) {
+            updateCurrentImage(image);
+        }
+        uiUpdates.post("modelChanges", this::applyPendingChanges);
+    }
 
-            currDirectory.setText(manager.getCurrentDirectory().getName());
-            updateDirectoryBox(manager.getSubDirectories());
-            updateImageBox(manager.getSomeImages());
-        } else if (obj instanceof ArrayList){
-            tagTable.getItems().clear();
-            tagTable.getItems().addAll(generalManager.getAllTags());
-            tagColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-            tagsInput.clear();
+    /**
+     * Helper function.
+     * Queues a listing of the displayed images after every operation submitted so far; if one is already
+     * waiting, no other is queued.
+     */
+    private void listImages() {
+        if (listingPending.compareAndSet(false, true)) {
+            commandBus.submit("listImages", monitor -> {
+                listingPending.set(false);
+                ArrayList<Image> images = generalManager.getDisplayedImages();
+                listingShown = true;
+                uiUpdates.post("imageTable", () -> updateImageBox(images));
+            });
+        }
+    }
+
+    /**
+     * Helper function.
+     * Applies every queued model change to imageTable and tagTable, combining them so that each table
+     * is changed at most once per kind of change. Runs on the JavaFX thread.
+     */
+    private void applyPendingChanges() {
+        LinkedHashSet<Image> addedImages = new LinkedHashSet<>();
+        HashSet<Image> removedImages = new HashSet<>();
+        LinkedHashSet<Tag> addedTags = new LinkedHashSet<>();
+        HashSet<Tag> removedTags = new HashSet<>();
+        boolean refreshImages = false;
+        boolean refreshTags = false;
+
+        ModelChange change;
+        while ((change = pendingChanges.poll()) != null) {
+            switch (change.getKind()) {
+                case IMAGE_ADDED:
+                    removedImages.remove(change.getImage());
+                    addedImages.add(change.getImage());
+                    break;
+                case IMAGE_REMOVED:
+                    addedImages.remove(change.getImage());
+                    removedImages.add(change.getImage());
+                    break;
+                case IMAGE_UPDATED:
+                    refreshImages = true;
+                    break;
+                case TAG_ADDED:
+                    removedTags.remove(change.getTag());
+                    addedTags.add(change.getTag());
+                    break;
+                case TAG_REMOVED:
+                    addedTags.remove(change.getTag());
+                    removedTags.add(change.getTag());
+                    break;
+                case TAG_UPDATED:
+                    refreshTags = true;
+                    break;
+            }
+        }
+
+        applyToTable(imageTable, addedImages, removedImages, refreshImages);
+        applyToTable(tagTable, addedTags, removedTags, refreshTags);
+    }
+
+    /**
+     * Helper function.
+     * Adds and removes the given items from the given table, and redraws its rows if asked to.
+     *
+     * @param table     the table to change
+     * @param added     the items to add, if they are not already in the table
+     * @param removed   the items to remove
+     * @param refresh   true if the displayed values of some items have changed
+     * @param <T>       the type of the items in the table
+     */
+    private <T> void applyToTable(TableView<T> table, LinkedHashSet<T> added, HashSet<T> removed, boolean refresh) {
+        ObservableList<T> items = table.getItems();
+        if (!removed.isEmpty()) {
+            items.removeAll(removed);
+        }
+        if (!added.isEmpty()) {
+            // Any added item already listed is moved to the end rather than listed twice
+            items.removeAll(added);
+            items.addAll(added);
+        }
+        if (refresh) {
+            table.refresh();
         }
     }
 
@@ -237,7 +549,6 @@ public class TagsController implements Observer {
     private void updateImageBox(ArrayList<Image> arr){
         ObservableList<Image> updateList = FXCollections.observableList(arr);
         imageTable.setItems(updateList);
-        imageColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
     }
 
     /**
@@ -261,11 +572,14 @@ public class TagsController implements Observer {
      */
     @FXML
     public void goToParentDirectory(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("goToParentDirectory");
         // Updating the Model
-        if (!generalManager.goToParentDirectory()) {
-            displayError("You are already in your root directory!");
-        }
-        generalManager.goToParentDirectory();
+        commandBus.submit("goToParentDirectory", monitor -> {
+            if (!generalManager.goToParentDirectory()) {
+                uiUpdates.post("error", () -> displayError("You are already in your root directory!"));
+            }
+            finishAction(action, 0, 0);
+        });
         isAllImages.setSelected(false);
     }
 
@@ -276,7 +590,33 @@ public class TagsController implements Observer {
      */
     @FXML
     public void openDirectoryInFileViewer(ActionEvent event){
-        generalManager.openDirectory();
+        UserActionEvent action = UserActionEvent.start("openDirectoryInFileViewer");
+        commandBus.submit("openDirectory", monitor -> {
+            generalManager.openDirectory();
+            finishAction(action, 0, 0);
+        });
+    }
+
+    /**
+     * Lists the images best matching the selected tags, triggered by user clicking "Find"
+     * Images carrying more of the tags, rarer tags, or tagged more recently come first
+     *
+     * @param event Mouse click which calls the method
+     */
+    @FXML
+    public void findImagesWithTags(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("findImagesWithTags");
+        ArrayList<Tag> tags = new ArrayList<>(tagTable.getSelectionModel().getSelectedItems());
+        if (tags.isEmpty()) {
+            displayError("Select the tags to search for!");
+            return;
+        }
+        commandBus.submit("searchByTags", monitor -> {
+            ArrayList<Image> images = generalManager.searchByTags(tags, SEARCH_RESULTS, true, TAG_SEARCH_RECENCY);
+            listingShown = false;
+            uiUpdates.post("imageTable", () -> updateImageBox(images));
+            finishAction(action, images.size(), tags.size());
+        });
     }
 
     /**
@@ -287,8 +627,12 @@ public class TagsController implements Observer {
      */
     @FXML
     public void makeImageDirectory(ActionEvent event) throws IOException{
+        UserActionEvent action = UserActionEvent.start("makeImageDirectory");
         Tag selectedTag = tagTable.getSelectionModel().getSelectedItem();
-        generalManager.openRelatedImages(selectedTag);
+        commandBus.submit("openRelatedImages", monitor -> {
+            generalManager.openRelatedImages(selectedTag);
+            finishAction(action, selectedTag == null ? 0 : selectedTag.getImages().size(), 1);
+        });
     }
 
     /**
@@ -299,11 +643,15 @@ public class TagsController implements Observer {
      */
     @FXML
     public void updateDirectory(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("updateDirectory");
 
         // Updating the Model
         if (chooseDirectory.getSelectionModel().getSelectedItem() != null) {
-            generalManager.setCurrentDirectory(chooseDirectory.getValue());
-
+            Directory directory = chooseDirectory.getValue();
+            commandBus.submit("setCurrentDirectory", monitor -> {
+                generalManager.setCurrentDirectory(directory);
+                finishAction(action, 0, 0);
+            });
         }
     }
 
@@ -312,11 +660,15 @@ public class TagsController implements Observer {
      */
     @FXML
     private void updateImage(){
+        UserActionEvent action = UserActionEvent.start("updateImage");
         if (imageTable.getSelectionModel().getSelectedItem() != null) {
             // Updating the Model
             Image currImage = imageTable.getSelectionModel().getSelectedItem();
-            generalManager.setCurrentImage(currImage);
-            generalManager.setCurrentDirectory(currImage.getParentDirectory());
+            commandBus.submit("setCurrentImage", monitor -> {
+                generalManager.setCurrentImage(currImage);
+                generalManager.setCurrentDirectory(currImage.getParentDirectory());
+                finishAction(action, 1, 0);
+            });
             isAllImages.setSelected(false);
         }
     }
@@ -328,6 +680,7 @@ public class TagsController implements Observer {
      */
     @FXML
     public void moveImage(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("moveImage");
         // Opening window for user to select target Directory for selected Image
         if (generalManager.getCurrentImage() != null) {
 
@@ -337,15 +690,99 @@ public class TagsController implements Observer {
                     directoryChooser.showDialog(primaryStage);
             if (selectedDirectory != null) {
                 // Updating the Model
-                generalManager.moveImage(selectedDirectory.getAbsolutePath());
+                commandBus.submit("moveImage", monitor -> {
+                    generalManager.moveImage(selectedDirectory.getAbsolutePath());
+                    finishAction(action, 1, 0);
+                });
             }
-            allOrSomeImages();
         } else {
             displayError("You must select an image first!");
         }
         saveCurrentState();
     }
 
+    /**
+     * When the user wishes to move the current directory, and everything in it, into another directory;
+     * trigger by mouse click on "Move Directory"
+     *
+     * @param event Mouse click which calls the method
+     */
+    @FXML
+    public void moveDirectory(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("moveDirectory");
+        // Opening window for user to select the Directory to move the current Directory into
+        final DirectoryChooser directoryChooser =
+                new DirectoryChooser();
+        final File selectedDirectory =
+                directoryChooser.showDialog(primaryStage);
+        if (selectedDirectory != null) {
+            // Updating the Model
+            commandBus.submit("moveDirectory", monitor -> {
+                if (!generalManager.moveDirectory(selectedDirectory.getAbsolutePath())) {
+                    uiUpdates.post("error", () -> displayError("The directory cannot be moved there!"));
+                }
+                finishAction(action, 0, 0);
+            });
+        }
+        saveCurrentState();
+    }
+
+    /**
+     * When the user wishes to save every tag and image, with their histories, to a file other programs can read;
+     * trigger by mouse click on "Export"
+     *
+     * @param event Mouse click which calls the method
+     */
+    @FXML
+    public void exportTags(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("exportTags");
+        final File selectedFile = exchangeFileChooser().showSaveDialog(primaryStage);
+        if (selectedFile != null) {
+            commandBus.submit("exportTags", monitor -> {
+                long exported = generalManager.exportTags(selectedFile, monitor);
+                if (exported < 0) {
+                    uiUpdates.post("error", () -> displayError("The tags could not be exported there!"));
+                }
+                finishAction(action, (int) Math.max(exported, 0), 0);
+            });
+        }
+    }
+
+    /**
+     * When the user wishes to tag the images in the current library as in a file written by "Export";
+     * trigger by mouse click on "Import"
+     *
+     * @param event Mouse click which calls the method
+     */
+    @FXML
+    public void importTags(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("importTags");
+        final File selectedFile = exchangeFileChooser().showOpenDialog(primaryStage);
+        if (selectedFile != null) {
+            commandBus.submit("importTags", monitor -> {
+                long imported = generalManager.importTags(selectedFile, monitor);
+                if (imported < 0) {
+                    uiUpdates.post("error", () -> displayError("The tags could not be imported from that file!"));
+                }
+                finishAction(action, (int) Math.max(imported, 0), 0);
+            });
+            saveCurrentState();
+        }
+    }
+
+    /**
+     * Helper function.
+     *
+     * @return      a file chooser for the files tags are exported to and imported from
+     */
+    private FileChooser exchangeFileChooser() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Choose a tag export file");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON lines", "*.ndjson", "*.jsonl"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV", "*.csv"));
+        return fileChooser;
+    }
+
     /**
      * When the user wishes to revert the image name to a previous version; trigger by mouse click on "Revert Name"
      *
@@ -353,12 +790,16 @@ public class TagsController implements Observer {
      */
     @FXML
     public void revertName(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("revertName");
 
         if (generalManager.getCurrentImage() != null) {
             // Updating the Model
             if (imageNameHistory.getSelectionModel().getSelectedItem() != null) {
-                generalManager.revertImageName(imageNameHistory.getSelectionModel().getSelectedItem());
-                allOrSomeImages();
+                String previousName = imageNameHistory.getSelectionModel().getSelectedItem();
+                commandBus.submit("revertImageName", monitor -> {
+                    generalManager.revertImageName(previousName);
+                    finishAction(action, 1, 0);
+                });
             }
         }
         saveCurrentState();
@@ -372,6 +813,7 @@ public class TagsController implements Observer {
      */
     @FXML
     public void addTagsToImage(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("addTagsToImage");
         if (generalManager.getCurrentImage() != null){
             // Updating the model
             ArrayList<Tag> newTags = new ArrayList<>();
@@ -379,9 +821,10 @@ public class TagsController implements Observer {
             ObservableList<Tag> selectedTags = tagTable.getSelectionModel().getSelectedItems();
             newTags.addAll(selectedTags);
 
-            generalManager.addTagsToImage(newTags);
-            allOrSomeImages();
-
+            commandBus.submit("addTagsToImage", monitor -> {
+                generalManager.addTagsToImage(newTags);
+                finishAction(action, 1, newTags.size());
+            });
         }
         saveCurrentState();
     }
@@ -394,6 +837,7 @@ public class TagsController implements Observer {
      */
     @FXML
     public void removeTagsFromImage(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("removeTagsFromImage");
         if (generalManager.getCurrentImage() != null){
             // Updating the model
             ArrayList<Tag> newTags = new ArrayList<>();
@@ -401,9 +845,10 @@ public class TagsController implements Observer {
             ObservableList<Tag> selectedTags = tagTable.getSelectionModel().getSelectedItems();
             newTags.addAll(selectedTags);
 
-            generalManager.removeTagsFromImage(newTags);
-            allOrSomeImages();
-
+            commandBus.submit("removeTagsFromImage", monitor -> {
+                generalManager.removeTagsFromImage(newTags);
+                finishAction(action, 1, newTags.size());
+            });
         }
         saveCurrentState();
     }
@@ -416,21 +861,73 @@ public class TagsController implements Observer {
      */
     @FXML
     public void deleteTags(ActionEvent event) throws IOException {
+        UserActionEvent action = UserActionEvent.start("deleteTags");
         // Calculations
         ArrayList<Tag> tagsToDelete = new ArrayList<>();
         tagTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
-        ObservableList<Tag> selectedTags, allTags;
-        allTags = tagTable.getItems();
+        ObservableList<Tag> selectedTags;
 
         selectedTags = tagTable.getSelectionModel().getSelectedItems();
         tagsToDelete.addAll(selectedTags);
-        allTags.removeAll(selectedTags);
 
-        // Updating the Model
-        generalManager.deleteTags(tagsToDelete);
+        // Updating the Model; the tags leave the table once the renames finish, and stay if they are cancelled
+        commandBus.submit("deleteTags", monitor -> {
+            generalManager.deleteTags(tagsToDelete, monitor);
+            finishAction(action, 0, tagsToDelete.size());
+        });
 
         saveCurrentState();
+    }
 
+    /**
+     * When the user has selected tags and entered a name, renames the selected tag to it, or merges the
+     * selected tags into the tag with that name. Every image carrying them is renamed to match.
+     * Triggered by mouse click on "Rename/Merge Tags"
+     *
+     * @param event Mouse click which calls the method
+     */
+    @FXML
+    public void renameTags(ActionEvent event) {
+        UserActionEvent action = UserActionEvent.start("renameTags");
+        ArrayList<Tag> selectedTags = new ArrayList<>(tagTable.getSelectionModel().getSelectedItems());
+        String name = tagsInput.getText().trim();
+        if (selectedTags.isEmpty() || name.isEmpty()) {
+            displayError("Select the tags to rename and enter their new name!");
+            return;
+        }
+
+        commandBus.submit("renameTags", monitor -> {
+            if (selectedTags.size() == 1) {
+                if (!generalManager.renameTag(selectedTags.get(0), name, monitor)) {
+                    uiUpdates.post("error", () -> displayError("A tag nested under it already has that name!"));
+                }
+            } else {
+                generalManager.mergeTags(selectedTags, name, monitor);
+            }
+            finishAction(action, 0, selectedTags.size());
+        });
+
+        saveCurrentState();
+    }
+
+    /**
+     * When the user presses enter in the search box, lists the images in the library matching the search
+     * by current or past name. An empty search goes back to the images of the current directory, sorted and
+     * filtered as before.
+     *
+     * @param event Enter key which calls the method
+     */
+    @FXML
+    public void searchImages(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("searchImages");
+        String query = imageSearch.getText().trim();
+        commandBus.submit("searchImages", monitor -> {
+            ArrayList<Image> images = query.isEmpty() ? generalManager.getDisplayedImages()
+                    : generalManager.searchImages(query, true, SEARCH_RESULTS);
+            listingShown = query.isEmpty();
+            uiUpdates.post("imageTable", () -> updateImageBox(images));
+            finishAction(action, images.size(), 0);
+        });
     }
 
     /**
@@ -441,11 +938,16 @@ public class TagsController implements Observer {
      */
     @FXML
     public void createTags(ActionEvent event) throws IOException {
+        UserActionEvent action = UserActionEvent.start("createTags");
         // Updating the Model
-        Tag newTag = generalManager.createTag(tagsInput.getText());
-        if (newTag == null) {
-            displayError("That tag already exists!");
-        }
+        String name = tagsInput.getText();
+        commandBus.submit("createTag", monitor -> {
+            Tag newTag = generalManager.createTag(name);
+            if (newTag == null) {
+                uiUpdates.post("error", () -> displayError("That tag already exists!"));
+            }
+            finishAction(action, 0, 1);
+        });
 
         saveCurrentState();
     }
@@ -458,14 +960,94 @@ public class TagsController implements Observer {
      */
     @FXML
     public void getRenameHistory(ActionEvent event){
-        generalManager.getAllRenameLogs();
+        UserActionEvent action = UserActionEvent.start("getRenameHistory");
+        commandBus.submit("getAllRenameLogs", monitor -> {
+            generalManager.getAllRenameLogs();
+            finishAction(action, 0, 0);
+        });
     }
 
     /**
-     * Serializes tags, and tree file structure created by GeneralManager
+     * When the user wishes to undo the most recent change to tags, image names or image locations
+     * Triggered by mouse click on "Undo"
+     *
+     * @param event Mouse click which calls the method
+     */
+    @FXML
+    public void undo(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("undo");
+        commandBus.submit("undo", monitor -> {
+            if (generalManager.undo(monitor) == null) {
+                uiUpdates.post("error", () -> displayError("There is nothing to undo!"));
+            }
+            finishAction(action, 0, 0);
+        });
+        saveCurrentState();
+    }
+
+    /**
+     * When the user wishes to redo the most recently undone change
+     * Triggered by mouse click on "Redo"
+     *
+     * @param event Mouse click which calls the method
+     */
+    @FXML
+    public void redo(ActionEvent event){
+        UserActionEvent action = UserActionEvent.start("redo");
+        commandBus.submit("redo", monitor -> {
+            if (generalManager.redo(monitor) == null) {
+                uiUpdates.post("error", () -> displayError("There is nothing to redo!"));
+            }
+            finishAction(action, 0, 0);
+        });
+        saveCurrentState();
+    }
+
+    /**
+     * When the user wishes to stop a long running operation; triggered by mouse click on "Cancel"
+     *
+     * @param event Mouse click which calls the method
+     */
+    @FXML
+    public void cancelOperation(ActionEvent event){
+        commandBus.cancelCurrent();
+    }
+
+    /**
+     * Shows the progress of the running model operation. Called on the JavaFX thread.
+     *
+     * @param handle    the operation whose progress changed
+     */
+    private void showProgress(CommandHandle handle) {
+        if (operationProgress != null) {
+            operationProgress.setProgress(handle.isFinished() ? 0 : handle.getProgress());
+        }
+    }
+
+    /**
+     * Commits the Flight Recorder event of a user action whose model work has just finished.
+     * Called on the model worker thread.
+     *
+     * @param action        the event started when the handler was called
+     * @param imageCount    the number of images the handler acted on
+     * @param tagCount      the number of tags the handler acted on
+     */
+    private void finishAction(UserActionEvent action, int imageCount, int tagCount) {
+        Directory directory = generalManager.getCurrentDirectory();
+        action.finish(imageCount, tagCount, directory == null ? -1 : directory.getDepth());
+    }
+
+    /**
+     * Serializes tags, and tree file structure created by GeneralManager.
+     * The save is queued after every operation submitted so far; if a save is already waiting, no other is queued.
      */
     private void saveCurrentState() {
-        generalManager.serialize();
+        if (savePending.compareAndSet(false, true)) {
+            commandBus.submit("serialize", monitor -> {
+                savePending.set(false);
+                generalManager.serialize();
+            });
+        }
     }
 
     /**Displays given message when an error occurs
@@ -0,0 +1,58 @@
+package Controller;
+
+import javafx.application.Platform;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Collects GUI updates posted from any thread and applies them on the JavaFX thread in one batch.
+ * Updates are posted under a key; while a batch is pending, a newer update replaces an older one with the
+ * same key, so a burst of model notifications costs one GUI refresh per frame instead of one per notification.
+ */
+class UiUpdateBatcher {
+
+    /**
+     * The updates waiting to be applied, in the order they were last posted.
+     */
+    private final LinkedHashMap<String, Runnable> pending = new LinkedHashMap<>();
+
+    /**
+     * Whether or not a batch has been scheduled on the JavaFX thread.
+     */
+    private boolean scheduled = false;
+
+    /**
+     * Posts a GUI update, replacing any pending update with the same key.
+     *
+     * @param key       the kind of update, e.g. "imageTable"
+     * @param update    the update to run on the JavaFX thread
+     */
+    void post(String key, Runnable update) {
+        synchronized (pending) {
+            pending.remove(key);
+            pending.put(key, update);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        Platform.runLater(this::drain);
+    }
+
+    /**
+     * Helper function.
+     * Applies every pending update. Runs on the JavaFX thread.
+     */
+    private void drain() {
+        ArrayList<Runnable> updates;
+        synchronized (pending) {
+            updates = new ArrayList<>(pending.values());
+            pending.clear();
+            scheduled = false;
+        }
+        for (Runnable update : updates) {
+            update.run();
+        }
+    }
+}
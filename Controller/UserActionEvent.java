@@ -0,0 +1,72 @@
+package Controller;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event emitted by every TagsController handler, spanning the whole user action:
+ * from the click, through waiting in the ModelCommandBus queue, until the model work it caused has finished.
+ */
+@Name("Controller.UserAction")
+@Label("User Action")
+@Category({"Image Tagger", "Controller"})
+@Description("A user action handled by TagsController")
+public class UserActionEvent extends Event {
+
+    /**
+     * The name of the TagsController handler.
+     */
+    @Label("Action")
+    String action;
+
+    /**
+     * The number of images involved.
+     */
+    @Label("Images")
+    int imageCount;
+
+    /**
+     * The number of tags involved.
+     */
+    @Label("Tags")
+    int tagCount;
+
+    /**
+     * The depth of the current directory, with the root directory at depth 0.
+     */
+    @Label("Directory Depth")
+    int directoryDepth;
+
+    /**
+     * Creates and begins timing an event for the given action.
+     *
+     * @param action    the name of the TagsController handler
+     * @return          the started event
+     */
+    static UserActionEvent start(String action) {
+        UserActionEvent event = new UserActionEvent();
+        event.action = action;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Stops timing this event and commits it, if recording is enabled.
+     *
+     * @param imageCount        the number of images involved
+     * @param tagCount          the number of tags involved
+     * @param directoryDepth    the depth of the current directory
+     */
+    void finish(int imageCount, int tagCount, int directoryDepth) {
+        end();
+        if (shouldCommit()) {
+            this.imageCount = imageCount;
+            this.tagCount = tagCount;
+            this.directoryDepth = directoryDepth;
+            commit();
+        }
+    }
+}
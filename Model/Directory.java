@@ -1,5 +1,7 @@
 package Model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.io.File;
@@ -7,9 +9,18 @@ import java.io.File;
 /**
  * Represents a directory in the user's computer, which contains images and other directories
  * Its methods are called by DirectoryManager
+ *
+ * A directory only stores its own name and its parent; its path is built from its ancestors the first time
+ * it is needed, and rebuilt after any directory is moved. Moving a directory therefore only changes the
+ * directory itself, not anything under it.
  */
 public class Directory implements Serializable {
 
+    /**
+     * Incremented whenever a directory is moved, which makes every cached path out of date.
+     */
+    private static volatile int pathGeneration = 0;
+
     /**
      * Stores the directory this Directory is located under, if one exists.
      */
@@ -21,9 +32,21 @@ public class Directory implements Serializable {
     private ArrayList<Object> contents = new ArrayList<>();
 
     /**
-     * Stores this Directory's file representation.
+     * The name of this directory, or its whole path if it has no parent. Interned, since the same names
+     * recur throughout a tree.
+     */
+    private String name;
+
+    /**
+     * The path of this directory, as of the value of pathGeneration in cachedGeneration.
      */
-    private File file;
+    private transient String cachedPath;
+    private transient int cachedGeneration;
+
+    /**
+     * The modification time of this directory on disk when its contents were last listed, in milliseconds.
+     */
+    private long lastModified;
 
     /**
      * Creates a Directory instance based on the given path.
@@ -32,7 +55,7 @@ public class Directory implements Serializable {
      * @param path              the path where this directory is located
      */
     public Directory(String path, Directory parentDirectory) {
-        this.file = new File(path);
+        this.name = (parentDirectory == null ? path : new File(path).getName()).intern();
         this.parentDirectory = parentDirectory;
     }
 
@@ -42,7 +65,7 @@ public class Directory implements Serializable {
      * @return      the name of this directory.
      */
     public String getName() {
-        return this.file.getName();
+        return this.parentDirectory == null ? new File(this.name).getName() : this.name;
     }
 
     /**
@@ -54,6 +77,29 @@ public class Directory implements Serializable {
         return this.parentDirectory;
     }
 
+    /**
+     * Moves this directory under the given directory. The paths of everything under this directory follow.
+     *
+     * @param parentDirectory   the new parent directory of this directory
+     */
+    void setParentDirectory(Directory parentDirectory) {
+        this.parentDirectory = parentDirectory;
+        pathGeneration++;
+    }
+
+    /**
+     * Returns how deep this directory is in the tree, with a directory without a parent at depth 0.
+     *
+     * @return      the number of ancestors of this directory
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (Directory parent = this.parentDirectory; parent != null; parent = parent.parentDirectory) {
+            depth++;
+        }
+        return depth;
+    }
+
     /**
      * Returns the contents of this directory
      *
@@ -87,7 +133,46 @@ public class Directory implements Serializable {
      * @return      returns the path of this directory
      */
     String getPath() {
-        return this.file.getPath();
+        int generation = pathGeneration;
+        String path = this.cachedPath;
+        if (path == null || this.cachedGeneration != generation) {
+            path = this.parentDirectory == null
+                    ? this.name : this.parentDirectory.getPath() + File.separator + this.name;
+            this.cachedPath = path;
+            this.cachedGeneration = generation;
+        }
+        return path;
+    }
+
+    /**
+     * Returns the modification time of this directory when its contents were last listed.
+     *
+     * @return      the modification time in milliseconds since the epoch, or 0 if it was never recorded
+     */
+    long getLastModified() {
+        return this.lastModified;
+    }
+
+    /**
+     * Records the modification time of this directory at the time its contents were listed.
+     *
+     * @param lastModified      the modification time in milliseconds since the epoch
+     */
+    void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Records the modification time of this directory after the program itself changed its contents, so that
+     * the next reconciliation does not list it again. Does nothing if it had already changed since its contents
+     * were last listed, so that the reconciliation still finds that change.
+     *
+     * @param before    the modification time of this directory just before the program changed it
+     */
+    synchronized void contentsChanged(long before) {
+        if (this.lastModified == before) {
+            this.lastModified = getFile().lastModified();
+        }
     }
 
     /**
@@ -110,6 +195,11 @@ public class Directory implements Serializable {
      * @return this directory's associated file.
      */
     public File getFile() {
-        return this.file;
+        return new File(getPath());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.name = this.name.intern();
     }
 }
@@ -2,7 +2,10 @@ package Model;
 
 import java.awt.Desktop;
 import java.io.*;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 
 /**
  * Takes method calls from GeneralManager and manipulates Directories in the system accordingly
@@ -13,11 +16,37 @@ class DirectoryManager implements Serializable {
      */
     private ArrayList<Directory> allDirectories = new ArrayList<>();
 
+    /**
+     * Loads the subtree shard of a directory before its contents are read, if one has been set.
+     */
+    private transient ShardStore shardStore;
+
     /**
      * Creates file if one does not exist, else reads allDirectories from when program was most recently run
      */
     DirectoryManager() {}
 
+    /**
+     * Sets the store that loads the contents of directories on demand.
+     *
+     * @param shardStore the store of saved directories and images
+     */
+    void setShardStore(ShardStore shardStore) {
+        this.shardStore = shardStore;
+    }
+
+    /**
+     * Helper function.
+     * Makes sure the contents of the given directory are in memory.
+     *
+     * @param directory the directory about to be read
+     */
+    private void ensureLoaded(Directory directory) {
+        if (shardStore != null) {
+            shardStore.ensureLoaded(directory);
+        }
+    }
+
     /**
      * Returns all the images under the current directory, including its sub-directories.
      *
@@ -27,6 +56,7 @@ class DirectoryManager implements Serializable {
     ArrayList<Image> getAllImages(Directory currentDirectory) {
 
         ArrayList<Image> allImages = new ArrayList<>();
+        ensureLoaded(currentDirectory);
 
         if (!currentDirectory.containsDirectories()) {
             // Base case: if this directory does not contain any other directories
@@ -51,6 +81,7 @@ class DirectoryManager implements Serializable {
      */
     ArrayList<Image> getImages(Directory currentDirectory) {
         ArrayList<Image> images = new ArrayList<>();
+        ensureLoaded(currentDirectory);
         for (Object obj : currentDirectory.getContents()) {
             if (obj instanceof Image) {
                 images.add((Image) obj);
@@ -66,6 +97,7 @@ class DirectoryManager implements Serializable {
      * @param targetDirectory the directory to be added to
      */
     void addContents(Image currentImage, Directory targetDirectory) {
+        ensureLoaded(targetDirectory);
         targetDirectory.addContents(currentImage);
     }
 
@@ -79,6 +111,42 @@ class DirectoryManager implements Serializable {
         targetDirectory.removeContents(currentImage);
     }
 
+    /**
+     * Moves the given directory, with everything under it, into the target directory on disk and in the tree.
+     * Only the directory itself changes: the paths of its contents are built from its path.
+     *
+     * @param directory         the directory to move
+     * @param targetDirectory   the directory to move it into
+     * @return true iff the directory was moved, i.e. the target is not inside it and has nothing of the same name
+     */
+    boolean moveDirectory(Directory directory, Directory targetDirectory) {
+        for (Directory d = targetDirectory; d != null; d = d.getParentDirectory()) {
+            if (d == directory) {
+                return false;
+            }
+        }
+        File dest = new File(targetDirectory.getPath() + File.separator + directory.getName());
+        if (dest.exists()) {
+            return false;
+        }
+        Directory source = directory.getParentDirectory();
+        long sourceBefore = source.getFile().lastModified();
+        long targetBefore = targetDirectory.getFile().lastModified();
+        try {
+            Files.move(directory.getFile().toPath(), dest.toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        source.contentsChanged(sourceBefore);
+        targetDirectory.contentsChanged(targetBefore);
+        ensureLoaded(targetDirectory);
+        directory.getParentDirectory().removeContents(directory);
+        targetDirectory.addContents(directory);
+        directory.setParentDirectory(targetDirectory);
+        return true;
+    }
+
     /**
      * Initializes a directory which is located in the parent directory.
      * Only called when initializing the program and since the system checks for
@@ -105,6 +173,7 @@ class DirectoryManager implements Serializable {
      */
     ArrayList<Directory> getDirectories(Directory currentDirectory) {
         ArrayList<Directory> directories = new ArrayList<>();
+        ensureLoaded(currentDirectory);
         for (Object obj : currentDirectory.getContents()) {
             if (obj instanceof Directory) {
                 directories.add((Directory) obj);
@@ -139,43 +208,53 @@ class DirectoryManager implements Serializable {
      * @return the directory given from path
      */
     Directory getDirectoryFromPath(String path) {
+        long start = OperationMetrics.start();
+        if (shardStore != null) {
+            shardStore.ensureLoaded(path);
+        }
         ArrayList<Directory> directories = allDirectories;
         for (Directory directory : directories) {
             if (directory.getPath().equals(path)) {
+                OperationMetrics.record(Operation.LOOKUP, start);
                 return directory;
             }
         }
+        OperationMetrics.record(Operation.LOOKUP, start);
         return null;
     }
 
     /**
-     * Saves the current state of all directories.
+     * Adds a directory read from a shard to the list of loaded directories.
+     *
+     * @param directory the directory that was loaded
      */
-    void serialize() {
-        try {
-            FileOutputStream fos = new FileOutputStream("directories.ser");
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(allDirectories);
-            oos.close();
-            fos.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    void addDirectory(Directory directory) {
+        allDirectories.add(directory);
     }
 
     /**
-     * Loads the past state of all directories.
+     * Adds directories read from a shard to the list of loaded directories.
+     *
+     * @param directories the directories that were loaded
      */
-    void deserialize() {
-        try {
-            FileInputStream fis = new FileInputStream("directories.ser");
-            ObjectInputStream ois = new ObjectInputStream(fis);
-            allDirectories = (ArrayList<Directory>) ois.readObject();
-            ois.close();
-            fis.close();
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
-        }
+    void addDirectories(ArrayList<Directory> directories) {
+        allDirectories.addAll(directories);
+    }
+
+    /**
+     * Removes directories of an unloaded shard from the list of loaded directories.
+     *
+     * @param directories the directories that were unloaded
+     */
+    void removeDirectories(Collection<Directory> directories) {
+        allDirectories.removeAll(new HashSet<>(directories));
+    }
+
+    /**
+     * Forgets every loaded directory, before the saved state of the program is loaded.
+     */
+    void clearDirectories() {
+        allDirectories.clear();
     }
 
     /**
@@ -3,14 +3,18 @@ package Model;
 import Controller.TagsController;
 
 import java.awt.*;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 
@@ -40,33 +44,86 @@ public class GeneralManager extends Observable {
      */
     private TagManager tagManager;
 
+    /**
+     * Saves directories and images as one shard per subtree and loads them back on demand
+     */
+    private ShardStore shardStore;
+
+    /**
+     * Scans files and directories on disk into Images and Directories
+     */
+    private TreeScanner treeScanner;
+
+    /**
+     * The operations the user can undo and redo
+     */
+    private UndoStack undoStack;
+
+    /**
+     * The directory the state of the program is saved in: the tag dictionary, the shards, the undo stack and
+     * the rename log
+     */
+    private File stateDirectory;
+
+    /**
+     * Exports tags and images to files other programs can read, and imports them back
+     */
+    private TagExchange tagExchange;
+
     /**
      * Keeps track of the current selected directory.
      */
-    private Directory currentDirectory;
+    private volatile Directory currentDirectory;
 
     /**
      * Keeps track of the current selected image.
      */
-    private Image currentImage;
+    private volatile Image currentImage;
 
     /**
      * Keeps track of whether or not to show all images under the current directory.
      */
-    private boolean showAllImages = false;
+    private volatile boolean showAllImages = false;
 
     /**
-     * The array of all image extensions supported by this program.
+     * The order the displayed images are listed in, and the filter they must match.
      */
-    private static final String[] EXTENSIONS = new String[]{"gif", "png", "bmp", "jpeg", "tif", "raw", "jpg"};
+    private volatile ImageSort imageSort = ImageSort.NAME;
+    private volatile boolean sortDescending = false;
+    private volatile ImageFilter imageFilter = new ImageFilter();
 
     /**
-     * Initializes an instance of GeneralManager.
+     * Keeps the displayed images sorted between listings, so listing them again only sorts what changed.
+     */
+    private ImageSorter imageSorter = new ImageSorter();
+
+    /**
+     * Initializes an instance of GeneralManager that saves its state in the working directory.
      */
     public GeneralManager() {
-        this.imageManager = new ImageManager();
+        this(new File("."));
+    }
+
+    /**
+     * Initializes an instance of GeneralManager that saves its state in the given directory.
+     *
+     * @param stateDirectory    the directory to save the state of the program in
+     */
+    public GeneralManager(File stateDirectory) {
+        this.stateDirectory = stateDirectory;
+        this.imageManager = new ImageManager(new File(stateDirectory, "renameLogs"));
         this.tagManager = new TagManager();
         this.directoryManager = new DirectoryManager();
+        this.shardStore = new ShardStore(new File(stateDirectory, "shards"), imageManager, directoryManager,
+                tagManager);
+        this.directoryManager.setShardStore(shardStore);
+        this.treeScanner = new TreeScanner(imageManager, directoryManager, tagManager);
+        MetadataExtractor metadataExtractor = new MetadataExtractor(imageManager);
+        this.treeScanner.setMetadataExtractor(metadataExtractor);
+        this.undoStack = new UndoStack(new File(stateDirectory, "undo"));
+        this.tagExchange = new TagExchange(imageManager, directoryManager, tagManager);
+        this.shardStore.setLoadListener(new Reconciler(imageManager, directoryManager, tagManager, shardStore,
+                treeScanner::scan, metadataExtractor)::reconcile);
     }
 
     /**
@@ -100,23 +157,164 @@ public class GeneralManager extends Observable {
     }
 
     /**
-     * Removes the selected tags from existence.
+     * Notifies observers of a single change to an image, so they can update only that image
+     *
+     * @param kind          the kind of change
+     * @param image         the image that changed
+     * @param directory     the directory the image was added to or removed from, or is in
+     */
+    private void notifyObservers(ModelChange.Kind kind, Image image, Directory directory){
+        ModelChange change = new ModelChange(kind, image, directory);
+        for (Observer o : observers){
+            o.update(this, change);
+        }
+    }
+
+    /**
+     * Removes the selected tags, and every tag nested under them, from existence.
      * Called when the user wants to delete a Tag completely.
      *
      * Must complete the following:
-     * i) Remove the deleted tags from all the images
-     * ii) Delete the tags from existence
+     * i) Find the images carrying the deleted tags from the tags' lists of images, loading the shards holding them
+     * ii) Remove the deleted tags from those images and rename them, in a parallel batch
+     * iii) Delete the tags from existence
      *
-     * i) Remove the tag from allTags
+     * If the batch is cancelled, the tags are kept on the images not renamed yet, and are not deleted.
      *
      * @param tags      the list of tags to delete
+     * @param monitor   receives progress of the renames and tells them whether to stop early
      */
-    public void deleteTags(ArrayList<Tag> tags) {
-        //imageManager.removeDeletedTags(tags, getAllImages());
-        tagManager.deleteTags(tags);
-        if (currentImage != null) {
-            notifyObservers(currentImage);
+    public void deleteTags(ArrayList<Tag> tags, ProgressMonitor monitor) {
+        ModelOperationEvent event = ModelOperationEvent.start("deleteTags", Operation.TAG_MUTATION);
+        long start = OperationMetrics.start();
+        //i)
+        tags = tagManager.getDescendants(tags);
+        loadShardsWith(tags);
+        LinkedHashSet<Image> carrying = new LinkedHashSet<>();
+        for (Tag tag: tags) {
+            carrying.addAll(tag.getImages());
+        }
+        HashMap<Image, ArrayList<Tag>> tagsBefore = getTagsOf(carrying);
+        //ii)
+        ArrayList<Image> renamed = imageManager.removeDeletedTags(tags, carrying, monitor);
+        UndoDelta delta = new UndoDelta("deleteTags");
+        recordRetags(delta, renamed, tagsBefore);
+        //iii)
+        if (renamed.size() == carrying.size()) {
+            for (Tag tag: tags) {
+                delta.deletedTag(tag);
+            }
+            tagManager.deleteTags(tags);
+        } else {
+            HashSet<Image> untagged = new HashSet<>(renamed);
+            for (Tag tag: tags) {
+                tag.getImages().removeIf(untagged::contains);
+            }
+        }
+        undoStack.push(delta);
+        shardStore.evictColdShards(currentDirectory, currentImage, showAllImages);
+        OperationMetrics.record(Operation.TAG_MUTATION, start);
+        notifyObservers(currentDirectory);
+        event.finish(renamed.size(), tags.size(), currentDirectory);
+    }
+
+    /**
+     * Renames the given tag across the whole library, or merges it into the tag that already has the new name.
+     * Tags nested under it are renamed with it, e.g. "loc/paris" to "place/paris" when "loc" is renamed to
+     * "place". Every image carrying one of them is renamed in one parallel batch, with one write to the rename
+     * log and one refresh of the displayed images. Runs to the end even if cancelled, since stopping halfway
+     * would leave some file names with the old name.
+     *
+     * @param tag       the tag to rename
+     * @param newName   the new name of the tag
+     * @param monitor   receives progress of the renames
+     * @return          false, changing nothing, if a tag nested under it would take the name of another tag
+     */
+    public boolean renameTag(Tag tag, String newName, ProgressMonitor monitor) {
+        newName = Tag.normalizeName(newName);
+        if (newName.isEmpty() || tag.getName().equals(newName)) {
+            return true;
+        }
+        if (tagManager.getTag(newName) != null) {
+            ArrayList<Tag> tags = new ArrayList<>();
+            tags.add(tag);
+            mergeTags(tags, newName, monitor);
+            return true;
+        }
+        ModelOperationEvent event = ModelOperationEvent.start("renameTag", Operation.TAG_MUTATION);
+        long start = OperationMetrics.start();
+        loadShardsWith(tagManager.getDescendants(tag));
+        ArrayList<Image> images = tagManager.getImagesUnder(tag);
+        UndoDelta delta = new UndoDelta("renameTag");
+        delta.renamedTag(tag, tag.getName(), newName);
+        ArrayList<String> ancestors = getMissingTags(newName);
+        ancestors.remove(newName);
+        if (!tagManager.renameTag(tag, newName)) {
+            event.finish(0, 1, currentDirectory);
+            return false;
         }
+        recordCreatedTags(delta, ancestors);
+        ArrayList<Image> renamed = imageManager.renameTagInImages(images, monitor.uncancellable());
+        undoStack.push(delta);
+        shardStore.evictColdShards(currentDirectory, currentImage, showAllImages);
+        OperationMetrics.record(Operation.TAG_MUTATION, start);
+        notifyObservers(currentDirectory);
+        event.finish(renamed.size(), 1, currentDirectory);
+        return true;
+    }
+
+    /**
+     * Merges the given tags into the tag with the given name, creating it if there is none.
+     * Every image carrying one of the tags is retagged with the target instead and renamed in one parallel
+     * batch, with one write to the rename log and one refresh of the displayed images. The merged tags are
+     * then deleted. Runs to the end even if cancelled, like renameTag.
+     *
+     * @param tags          the tags to merge
+     * @param targetName    the name of the tag to merge them into, which may be one of them
+     * @param monitor       receives progress of the renames
+     */
+    public void mergeTags(ArrayList<Tag> tags, String targetName, ProgressMonitor monitor) {
+        ModelOperationEvent event = ModelOperationEvent.start("mergeTags", Operation.TAG_MUTATION);
+        long start = OperationMetrics.start();
+        loadShardsWith(tags);
+        UndoDelta delta = new UndoDelta("mergeTags");
+        targetName = Tag.normalizeName(targetName);
+        Tag target = tagManager.getTag(targetName);
+        if (target == null) {
+            ArrayList<String> created = getMissingTags(targetName);
+            target = tagManager.createTag(targetName);
+            recordCreatedTags(delta, created);
+        }
+        LinkedHashSet<Image> carrying = new LinkedHashSet<>();
+        for (Tag tag: tags) {
+            if (tag != target) {
+                carrying.addAll(tag.getImages());
+                delta.deletedTag(tag);
+            }
+        }
+        HashMap<Image, ArrayList<Tag>> tagsBefore = getTagsOf(carrying);
+        ArrayList<Image> renamed = imageManager.mergeTagsInImages(tags, target, carrying, monitor.uncancellable());
+        recordRetags(delta, renamed, tagsBefore);
+        tagManager.mergeTags(tags, target);
+        undoStack.push(delta);
+        shardStore.evictColdShards(currentDirectory, currentImage, showAllImages);
+        OperationMetrics.record(Operation.TAG_MUTATION, start);
+        notifyObservers(currentDirectory);
+        event.finish(renamed.size(), tags.size(), currentDirectory);
+    }
+
+    /**
+     * Helper function.
+     * Loads the shards whose summary lists one of the given tags, so that every image carrying them is loaded.
+     *
+     * @param tags      the tags whose images are needed
+     */
+    private void loadShardsWith(ArrayList<Tag> tags) {
+        BitSet tagIds = new BitSet();
+        for (Tag tag: tags) {
+            tagIds.set(tag.getId());
+        }
+        shardStore.loadShardsWithTags(tagIds);
     }
 
     /**
@@ -131,10 +329,14 @@ public class GeneralManager extends Observable {
      * @param tags      the list of tags to update the current image with
      */
     private void updateImageTags(ArrayList<Tag> tags) {
+        long start = OperationMetrics.start();
+        ArrayList<Tag> before = currentImage.getTags();
         tagManager.removeImageFromTags(currentImage, currentImage.getTags());
         tagManager.addImageToTags(currentImage, tags);
         imageManager.updateImageTags(currentImage, tags);
-        notifyObservers(currentImage);
+        recordRetag("revertImageName", currentImage, before);
+        OperationMetrics.record(Operation.TAG_MUTATION, start);
+        notifyObservers(ModelChange.Kind.IMAGE_UPDATED, currentImage, currentImage.getParentDirectory());
     }
 
     /**
@@ -143,11 +345,17 @@ public class GeneralManager extends Observable {
      * @param tags      the list of tags to add to the current image
      */
     public void addTagsToImage(ArrayList<Tag> tags) {
+        ModelOperationEvent event = ModelOperationEvent.start("addTagsToImage", Operation.TAG_MUTATION);
         if (!getNewTags(tags).isEmpty()) {
+            long start = OperationMetrics.start();
+            ArrayList<Tag> before = currentImage.getTags();
             tagManager.addImageToTags(currentImage, getNewTags(tags));
             imageManager.addTagsToImage(currentImage, getNewTags(tags));
-            notifyObservers(currentImage);
+            recordRetag("addTagsToImage", currentImage, before);
+            OperationMetrics.record(Operation.TAG_MUTATION, start);
+            notifyObservers(ModelChange.Kind.IMAGE_UPDATED, currentImage, currentImage.getParentDirectory());
         }
+        event.finish(1, tags.size(), currentDirectory);
     }
 
     /**
@@ -173,11 +381,17 @@ public class GeneralManager extends Observable {
      * @param tags      the list of tags to remove from the current image
      */
     public void removeTagsFromImage(ArrayList<Tag> tags) {
+        ModelOperationEvent event = ModelOperationEvent.start("removeTagsFromImage", Operation.TAG_MUTATION);
         if (!getOldTags(tags).isEmpty()) {
+            long start = OperationMetrics.start();
+            ArrayList<Tag> before = currentImage.getTags();
             tagManager.removeImageFromTags(currentImage, getOldTags(tags));
             imageManager.removeTagsFromImage(currentImage, getOldTags(tags));
-            notifyObservers(currentImage);
+            recordRetag("removeTagsFromImage", currentImage, before);
+            OperationMetrics.record(Operation.TAG_MUTATION, start);
+            notifyObservers(ModelChange.Kind.IMAGE_UPDATED, currentImage, currentImage.getParentDirectory());
         }
+        event.finish(1, tags.size(), currentDirectory);
     }
 
     /**
@@ -203,7 +417,18 @@ public class GeneralManager extends Observable {
      * @param name      the name of the tag the user wishes to create
      */
     public Tag createTag(String name) {
-        return tagManager.createTag(name);
+        ModelOperationEvent event = ModelOperationEvent.start("createTag", Operation.TAG_MUTATION);
+        long start = OperationMetrics.start();
+        ArrayList<String> created = getMissingTags(Tag.normalizeName(name));
+        Tag tag = tagManager.createTag(name);
+        if (tag != null) {
+            UndoDelta delta = new UndoDelta("createTag");
+            recordCreatedTags(delta, created);
+            undoStack.push(delta);
+        }
+        OperationMetrics.record(Operation.TAG_MUTATION, start);
+        event.finish(0, 1, currentDirectory);
+        return tag;
     }
 
     /**
@@ -215,6 +440,17 @@ public class GeneralManager extends Observable {
         return tagManager.getAllTags();
     }
 
+    /**
+     * Returns the most used tags whose names start with the given prefix, ignoring case.
+     *
+     * @param prefix    the start of a tag name
+     * @param limit     the maximum number of tags to return
+     * @return          at most limit tags, ranked by the number of images tagged with them
+     */
+    public ArrayList<Tag> completeTag(String prefix, int limit) {
+        return tagManager.completeTag(prefix, limit);
+    }
+
     /**
      * Moves the current Image to the target directory.
      *
@@ -222,27 +458,99 @@ public class GeneralManager extends Observable {
      * i) Add the image to the new directory's contents
      * ii) Remove the image from the old directory's contents
      * iii) Move the image to the new directory and update it's parentDirectory
-     * iv) Update currentDirectory to new directory
-     * v) Call controller.update(currentImage) to make sure the displayed image path is updated
+     * iv) Tell observers the image left its old directory and arrived in the new one, so the displayed path is updated
+     * v) Update currentDirectory to new directory
      *
      * @param path      the path of the directory the user wishes to move the current image to
      */
     public void moveImage(String path) {
+        ModelOperationEvent event = ModelOperationEvent.start("moveImage", Operation.MOVE);
         Directory target = directoryManager.getDirectoryFromPath(path);
 
-        //If file does not exist in the target directory
-        if (!new File(target.getPath() + File.separator + currentImage.getName()).exists()) {
-            //i)
-            directoryManager.addContents(currentImage, target);
-            //ii)
-            directoryManager.removeContents(currentImage, currentDirectory);
-            //iii)
-            imageManager.moveOrRenameImage(currentImage, target, currentImage.getName());
-            //iv)
-            setCurrentDirectory(target);
+        Directory source = currentDirectory;
+        if (moveImage(currentImage, source, target)) {
+            UndoDelta delta = new UndoDelta("moveImage");
+            delta.moved(currentImage, source, target);
+            undoStack.push(delta);
             //v)
-            notifyObservers(currentImage);
+            setCurrentDirectory(target);
+        }
+        event.finish(1, currentImage.getTags().size(), currentDirectory);
+    }
+
+    /**
+     * Moves the current directory, with everything under it, into the target directory.
+     * Only the current directory itself is updated; the paths of the directories and images under it follow.
+     *
+     * @param path      the path of the directory the user wishes to move the current directory into
+     * @return          true iff the directory was moved
+     */
+    public boolean moveDirectory(String path) {
+        ModelOperationEvent event = ModelOperationEvent.start("moveDirectory", Operation.MOVE);
+        Directory directory = currentDirectory;
+        Directory target = directoryManager.getDirectoryFromPath(path);
+
+        String from = directory.getPath();
+        boolean moved = target != null && moveDirectory(directory, target);
+        if (moved) {
+            UndoDelta delta = new UndoDelta("moveDirectory");
+            delta.movedDirectory(from, directory.getPath());
+            undoStack.push(delta);
+            notifyObservers(currentDirectory);
         }
+        event.finish(0, 0, currentDirectory);
+        return moved;
+    }
+
+    /**
+     * Helper function.
+     * Moves the given directory into the target directory, and keeps the shards of the tree in step:
+     * a directory moved out of the root directory becomes part of the shard it is moved into, and a
+     * directory moved into the root directory becomes a shard of its own.
+     *
+     * @param directory     the directory to move, which must not be the root directory
+     * @param target        the directory to move it into
+     * @return              true iff the directory was moved
+     */
+    private boolean moveDirectory(Directory directory, Directory target) {
+        Directory root = directoryManager.getRootDirectory();
+        Directory source = directory.getParentDirectory();
+        if (source == null || !directoryManager.moveDirectory(directory, target)) {
+            return false;
+        }
+        if (source == root) {
+            shardStore.removeShard(directory);
+        }
+        if (target == root) {
+            shardStore.addShard(directory);
+        }
+        return true;
+    }
+
+    /**
+     * Helper function.
+     * Does steps i) to iv) of moveImage for the given image, unless a file with its name is already in the target.
+     *
+     * @param image     the image to move
+     * @param source    the directory the image is in
+     * @param target    the directory to move it to
+     * @return          true iff the image was moved
+     */
+    private boolean moveImage(Image image, Directory source, Directory target) {
+        //If file does not exist in the target directory
+        if (new File(target.getPath() + File.separator + image.getName()).exists()) {
+            return false;
+        }
+        //i)
+        directoryManager.addContents(image, target);
+        //ii)
+        directoryManager.removeContents(image, source);
+        //iii)
+        imageManager.moveOrRenameImage(image, target, image.getName());
+        //iv)
+        notifyObservers(ModelChange.Kind.IMAGE_REMOVED, image, source);
+        notifyObservers(ModelChange.Kind.IMAGE_ADDED, image, target);
+        return true;
     }
 
     /**
@@ -256,16 +564,234 @@ public class GeneralManager extends Observable {
      * @param previousName      the previous name of the current image the user wishes to revert to
      */
     public void revertImageName(String previousName){
+        ModelOperationEvent event = ModelOperationEvent.start("revertImageName", Operation.RENAME);
         ArrayList<Tag> newTags = imageManager.getRevertTags(currentImage, previousName);
         if (newTags != null) {
             updateImageTags(newTags);
+            for (Tag tag: newTags) {
+                if (tagManager.getTag(tag.getName()) == null) {
+                    tagManager.addToAllTags(tag);
+                }
+            }
+        }
+        event.finish(1, newTags == null ? 0 : newTags.size(), currentDirectory);
+    }
+
+    /**
+     * Undoes the most recent operation that changed tags, image names or image locations.
+     * Batches are undone the same way they were done, renaming every affected image in parallel.
+     *
+     * @param monitor   receives progress of the renames
+     * @return          the name of the operation that was undone, or null if there was nothing to undo
+     */
+    public String undo(ProgressMonitor monitor) {
+        long start = OperationMetrics.start();
+        UndoDelta delta = undoStack.popUndo();
+        Operation operation = delta == null ? Operation.TAG_MUTATION : delta.getOperation();
+        ModelOperationEvent event = ModelOperationEvent.start("undo", operation);
+        if (delta != null) {
+            apply(delta, true, monitor);
+        }
+        OperationMetrics.record(operation, start);
+        event.finish(0, 0, currentDirectory);
+        return delta == null ? null : delta.getName();
+    }
+
+    /**
+     * Does the most recently undone operation again.
+     *
+     * @param monitor   receives progress of the renames
+     * @return          the name of the operation that was redone, or null if there was nothing to redo
+     */
+    public String redo(ProgressMonitor monitor) {
+        long start = OperationMetrics.start();
+        UndoDelta delta = undoStack.popRedo();
+        Operation operation = delta == null ? Operation.TAG_MUTATION : delta.getOperation();
+        ModelOperationEvent event = ModelOperationEvent.start("redo", operation);
+        if (delta != null) {
+            apply(delta, false, monitor);
+        }
+        OperationMetrics.record(operation, start);
+        event.finish(0, 0, currentDirectory);
+        return delta == null ? null : delta.getName();
+    }
+
+    /**
+     * Helper function.
+     * Undoes or redoes the given operation.
+     *
+     * Must complete the following:
+     * i) Bring back the tags the operation deleted (or, when redoing, created)
+     * ii) Rename the renamed tag back (or again), and every image carrying it
+     * iii) Move the moved directory and images back (or again)
+     * iv) Give each retagged image its tags from before (or after) the operation, renaming them in one batch
+     * v) Delete the tags the operation created (or, when redoing, deleted)
+     *
+     * @param delta     what the operation changed
+     * @param undo      true to undo the operation, false to redo it
+     * @param monitor   receives progress of the renames
+     */
+    private void apply(UndoDelta delta, boolean undo, ProgressMonitor monitor) {
+        if (delta.touchesImages()) {
+            shardStore.loadAll();
+        }
+        //i)
+        for (int id: undo ? delta.getDeletedTags() : delta.getCreatedTags()) {
+            getOrRestoreTag(delta, id);
         }
-        for (Tag tag: newTags) {
-            if (!imageManager.tagInTags(tag, tagManager.getAllTags())) {
-                tagManager.addToAllTags(tag);
+        //ii)
+        String renamedFrom = undo ? delta.getRenamedTo() : delta.getRenamedFrom();
+        String renamedTo = undo ? delta.getRenamedFrom() : delta.getRenamedTo();
+        Tag renamedTag = tagManager.getTagById(delta.getRenamedTag());
+        if (renamedTag != null && renamedTag.getName().equals(renamedFrom) && tagManager.getTag(renamedTo) == null) {
+            loadShardsWith(tagManager.getDescendants(renamedTag));
+            ArrayList<Image> images = tagManager.getImagesUnder(renamedTag);
+            if (tagManager.renameTag(renamedTag, renamedTo)) {
+                imageManager.renameTagInImages(images, monitor.uncancellable());
             }
         }
-        notifyObservers(currentImage);
+        //iii)
+        String directoryFrom = undo ? delta.getDirectoryMovedTo() : delta.getDirectoryMovedFrom();
+        String directoryTo = undo ? delta.getDirectoryMovedFrom() : delta.getDirectoryMovedTo();
+        if (directoryFrom != null) {
+            Directory directory = directoryManager.getDirectoryFromPath(directoryFrom);
+            Directory target = directoryManager.getDirectoryFromPath(new File(directoryTo).getParent());
+            if (directory != null && target != null) {
+                moveDirectory(directory, target);
+            }
+        }
+        ArrayList<Integer> movedIds = delta.getMovedIds();
+        for (int i = 0; i < movedIds.size(); i++) {
+            int index = undo ? movedIds.size() - 1 - i : i;
+            Image image = imageManager.getImage(movedIds.get(index));
+            String path = undo ? delta.getMovedFrom().get(index) : delta.getMovedTo().get(index);
+            Directory target = directoryManager.getDirectoryFromPath(path);
+            if (image != null && target != null && image.getParentDirectory() != target) {
+                moveImage(image, image.getParentDirectory(), target);
+            }
+        }
+        //iv)
+        HashMap<Image, ArrayList<Tag>> newTags = new HashMap<>();
+        for (UndoDelta.RetagGroup group: delta.getRetagGroups()) {
+            ArrayList<Tag> tags = new ArrayList<>();
+            for (int id: undo ? group.getBefore() : group.getAfter()) {
+                tags.add(getOrRestoreTag(delta, id));
+            }
+            for (int id: group.getIds()) {
+                Image image = imageManager.getImage(id);
+                if (image != null) {
+                    newTags.put(image, tags);
+                }
+            }
+        }
+        for (Map.Entry<Image, ArrayList<Tag>> entry: newTags.entrySet()) {
+            tagManager.imageRetagged(entry.getKey().getTags(), entry.getValue());
+        }
+        tagManager.retagImages(newTags);
+        imageManager.retagImages(newTags, monitor.uncancellable());
+        //v)
+        ArrayList<Tag> deleted = new ArrayList<>();
+        for (int id: undo ? delta.getCreatedTags() : delta.getDeletedTags()) {
+            Tag tag = tagManager.getTagById(id);
+            if (tag != null) {
+                deleted.add(tag);
+            }
+        }
+        tagManager.deleteTags(deleted);
+
+        notifyObservers(currentDirectory);
+        if (currentImage != null) {
+            notifyObservers(currentImage);
+        }
+    }
+
+    /**
+     * Helper function.
+     * Creating a tag nested in namespaces creates its missing ancestors too, so they are undone with it.
+     *
+     * @param name      the name of a tag
+     * @return          the given name and the names of its ancestors that are not tags yet, outermost first
+     */
+    private ArrayList<String> getMissingTags(String name) {
+        ArrayList<String> missing = new ArrayList<>();
+        for (String ancestor: Tag.getAncestorNames(name)) {
+            if (tagManager.getTag(ancestor) == null) {
+                missing.add(ancestor);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param delta     an operation
+     * @param id        the id of a tag the operation refers to
+     * @return          the tag with the given id, created again with the name the operation knew it by if it was
+     *                  deleted
+     */
+    private Tag getOrRestoreTag(UndoDelta delta, int id) {
+        Tag tag = tagManager.getTagById(id);
+        return tag != null ? tag : tagManager.restoreTag(id, delta.getTagName(id));
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param delta     the delta of an operation
+     * @param names     the names of the tags the operation created, outermost first
+     */
+    private void recordCreatedTags(UndoDelta delta, ArrayList<String> names) {
+        for (String name: names) {
+            Tag tag = tagManager.getTag(name);
+            if (tag != null) {
+                delta.createdTag(tag);
+            }
+        }
+    }
+
+    /**
+     * Helper function.
+     * Records the tags the given image had before an operation and has now, as a new undoable operation.
+     *
+     * @param name      the name of the operation
+     * @param image     the image that was retagged
+     * @param before    the tags of the image before the operation
+     */
+    private void recordRetag(String name, Image image, ArrayList<Tag> before) {
+        UndoDelta delta = new UndoDelta(name);
+        delta.retagged(image, before, image.getTags());
+        tagManager.imageRetagged(before, image.getTags());
+        undoStack.push(delta);
+    }
+
+    /**
+     * Helper function.
+     * Records the tags each of the given images had before a batch operation and has now.
+     *
+     * @param delta     the delta of the batch operation
+     * @param images    the images the batch renamed
+     * @param before    the tags each image had before the batch
+     */
+    private void recordRetags(UndoDelta delta, ArrayList<Image> images, HashMap<Image, ArrayList<Tag>> before) {
+        for (Image image: images) {
+            delta.retagged(image, before.get(image), image.getTags());
+            tagManager.imageRetagged(before.get(image), image.getTags());
+        }
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param images    some images
+     * @return          the current tags of each image
+     */
+    private HashMap<Image, ArrayList<Tag>> getTagsOf(Collection<Image> images) {
+        HashMap<Image, ArrayList<Tag>> tags = new HashMap<>();
+        for (Image image: images) {
+            tags.put(image, image.getTags());
+        }
+        return tags;
     }
 
     /**
@@ -274,8 +800,10 @@ public class GeneralManager extends Observable {
      * @param image        the image to set as the current image
      */
     public void setCurrentImage(Image image){
+        ModelOperationEvent event = ModelOperationEvent.start("setCurrentImage", Operation.LOOKUP);
         this.currentImage = image;
         notifyObservers(currentImage);
+        event.finish(1, image == null ? 0 : image.getTags().size(), currentDirectory);
     }
 
     /**
@@ -284,7 +812,12 @@ public class GeneralManager extends Observable {
      * @return      a list of images under the current directory, including its sub-directories
      */
     public ArrayList<Image> getAllImages() {
-        return directoryManager.getAllImages(currentDirectory);
+        ModelOperationEvent event = ModelOperationEvent.start("getAllImages", Operation.LOOKUP);
+        long start = OperationMetrics.start();
+        ArrayList<Image> images = directoryManager.getAllImages(currentDirectory);
+        OperationMetrics.record(Operation.LOOKUP, start);
+        event.finish(images.size(), 0, currentDirectory);
+        return images;
     }
 
     /**
@@ -293,7 +826,219 @@ public class GeneralManager extends Observable {
      * @return      a list of the images under the current directory, not including its sub-directories.
      */
     public ArrayList<Image> getSomeImages() {
-        return directoryManager.getImages(currentDirectory);
+        ModelOperationEvent event = ModelOperationEvent.start("getSomeImages", Operation.LOOKUP);
+        long start = OperationMetrics.start();
+        ArrayList<Image> images = directoryManager.getImages(currentDirectory);
+        OperationMetrics.record(Operation.LOOKUP, start);
+        event.finish(images.size(), 0, currentDirectory);
+        return images;
+    }
+
+    /**
+     * Sets the order getDisplayedImages lists images in.
+     *
+     * @param sort          the order to list them in
+     * @param descending    whether or not to reverse the order
+     */
+    public void setImageSort(ImageSort sort, boolean descending) {
+        this.imageSort = sort;
+        this.sortDescending = descending;
+    }
+
+    /**
+     * Sets the filter the images listed by getDisplayedImages must match.
+     *
+     * @param filter    the ranges of capture time, file size and pixel count they must fall in
+     */
+    public void setImageFilter(ImageFilter filter) {
+        this.imageFilter = filter;
+    }
+
+    /**
+     * Returns the images under the current directory, or only directly in it unless all images are shown,
+     * that match the filter set by setImageFilter, sorted by precomputed keys in the order set by setImageSort.
+     *
+     * @return      the displayed images, in the order they are listed
+     */
+    public ArrayList<Image> getDisplayedImages() {
+        ModelOperationEvent event = ModelOperationEvent.start("getDisplayedImages", Operation.LOOKUP);
+        long start = OperationMetrics.start();
+        ArrayList<Image> images = showAllImages ? directoryManager.getAllImages(currentDirectory)
+                : directoryManager.getImages(currentDirectory);
+        ImageFilter filter = imageFilter;
+        if (!filter.isEmpty()) {
+            ArrayList<ArrayList<Image>> lists = new ArrayList<>();
+            lists.add(images);
+            images = imageManager.filterImages(lists, filter).get(0);
+        }
+        images = imageSorter.sort(images, imageSort, sortDescending);
+        OperationMetrics.record(Operation.LOOKUP, start);
+        event.finish(images.size(), 0, currentDirectory);
+        return images;
+    }
+
+    /**
+     * Searches the names of every image in the library. The index of names only covers loaded shards, so
+     * every shard that is not loaded yet is loaded first, and each search costs as much as loading the whole
+     * library the first time. A query containing "*" or "?" is a glob matched against the whole name, a query
+     * starting with "~" tolerates typos, and any other query is found anywhere in a name. Case is ignored.
+     *
+     * @param query             the text, glob or "~text" to search for
+     * @param includePastNames  whether or not to also search the names each image had before
+     * @param limit             the maximum number of images to return
+     * @return                  at most limit matching images
+     */
+    public ArrayList<Image> searchImages(String query, boolean includePastNames, int limit) {
+        ModelOperationEvent event = ModelOperationEvent.start("searchImages", Operation.LOOKUP);
+        shardStore.loadAll();
+        ArrayList<Image> images = imageManager.searchImages(query, includePastNames, limit);
+        event.finish(images.size(), 0, currentDirectory);
+        return images;
+    }
+
+    /**
+     * Ranks every image carrying any of the given tags by how many of them it carries, loading the shards that
+     * hold such images, and returns the best matches. An image carries a tag if it has the tag or any tag
+     * nested under it.
+     *
+     * @param tags              the tags to search for
+     * @param limit             the maximum number of images to return
+     * @param weightByRarity    whether or not a tag on fewer images counts for more
+     * @param recencyWeight     how much being tagged just now counts, relative to carrying one more tag,
+     *                          or 0 to ignore when images were tagged
+     * @return                  at most limit images, best match first
+     */
+    public ArrayList<Image> searchByTags(ArrayList<Tag> tags, int limit, boolean weightByRarity,
+                                         double recencyWeight) {
+        return searchByTags(tags, new ImageFilter(), limit, weightByRarity, recencyWeight);
+    }
+
+    /**
+     * Ranks every image carrying any of the given tags and matching the given filter, e.g. taken in 2018 with
+     * at least 12 megapixels, and returns the best matches. The filter is answered from range indexes over the
+     * metadata of the images, and intersected with the images of the tags before they are ranked. With no tags,
+     * returns the images matching the filter, in the order they were created.
+     *
+     * Only the shards whose summary lists one of the tags, or a tag nested under one, are loaded. The range
+     * indexes only cover loaded images, so a search with no tags loads every shard.
+     *
+     * @param tags              the tags to search for, or none to only filter
+     * @param filter            the ranges of capture time, file size and pixel count the images must fall in
+     * @param limit             the maximum number of images to return
+     * @param weightByRarity    whether or not a tag on fewer images counts for more
+     * @param recencyWeight     how much being tagged just now counts, relative to carrying one more tag,
+     *                          or 0 to ignore when images were tagged
+     * @return                  at most limit images, best match first
+     */
+    public ArrayList<Image> searchByTags(ArrayList<Tag> tags, ImageFilter filter, int limit, boolean weightByRarity,
+                                         double recencyWeight) {
+        ModelOperationEvent event = ModelOperationEvent.start("searchByTags", Operation.LOOKUP);
+        if (tags.isEmpty()) {
+            shardStore.loadAll();
+        } else {
+            BitSet tagIds = new BitSet();
+            for (Tag tag: tags) {
+                for (Tag nested: tagManager.getDescendants(tag)) {
+                    tagIds.set(nested.getId());
+                }
+            }
+            shardStore.loadShardsWithTags(tagIds);
+        }
+        ArrayList<Image> images;
+        if (tags.isEmpty()) {
+            images = filter.isEmpty() ? new ArrayList<>() : imageManager.filterImages(filter, limit);
+        } else {
+            ArrayList<ArrayList<Image>> tagged = new ArrayList<>();
+            LinkedHashSet<Tag> distinct = new LinkedHashSet<>(tags);
+            int[] taggedCounts = new int[distinct.size()];
+            for (Tag tag: distinct) {
+                taggedCounts[tagged.size()] = tagManager.getImageCountUnder(tag);
+                tagged.add(tagManager.getImagesUnder(tag));
+            }
+            if (!filter.isEmpty()) {
+                tagged = imageManager.filterImages(tagged, filter);
+            }
+            images = TagRanker.topImages(tagged, taggedCounts, limit, shardStore.getImageCount(),
+                    imageManager.getNextImageId(), weightByRarity, recencyWeight, System.currentTimeMillis());
+        }
+        event.finish(images.size(), tags.size(), currentDirectory);
+        return images;
+    }
+
+    /**
+     * @param tag   a tag
+     * @return      the number of images with the tag, in every shard whether or not it is loaded
+     */
+    public int getImageCount(Tag tag) {
+        return tagManager.getImageCount(tag);
+    }
+
+    /**
+     * Suggests tags for the user's most recently selected image: those most often found with the tags it has.
+     *
+     * @param limit     the maximum number of tags to suggest
+     * @return          at most limit tags the image does not have, best first, or none if no image is selected
+     */
+    public ArrayList<Tag> suggestTags(int limit) {
+        if (currentImage == null) {
+            return new ArrayList<>();
+        }
+        return tagManager.suggestTags(currentImage.getTags(), limit);
+    }
+
+    /**
+     * Exports every tag, and every image with its tag and name history, to the given file, one record at a time.
+     * Loads every shard first.
+     *
+     * @param file      the file to write: CSV if its name ends in ".csv", newline-delimited JSON otherwise
+     * @param monitor   receives progress of the export and tells it whether to stop early
+     * @return          the number of images exported, or -1 if the file could not be written
+     */
+    public long exportTags(File file, ProgressMonitor monitor) {
+        ModelOperationEvent event = ModelOperationEvent.start("exportTags", Operation.SERIALIZE);
+        long start = OperationMetrics.start();
+        shardStore.loadAll();
+        long exported;
+        try {
+            exported = tagExchange.export(file, monitor);
+        } catch (IOException e) {
+            e.printStackTrace();
+            exported = -1;
+        }
+        OperationMetrics.record(Operation.SERIALIZE, start);
+        event.finish((int) Math.max(exported, 0), tagManager.getAllTags().size(), currentDirectory);
+        return exported;
+    }
+
+    /**
+     * Imports the tags, images and histories in a file written by exportTags, one record at a time. Images found
+     * at the same path from the root directory are retagged to match and renamed, in parallel batches.
+     * An import cannot be undone, so the operations before it are forgotten too.
+     *
+     * @param file      the file to read: CSV if its name ends in ".csv", newline-delimited JSON otherwise
+     * @param monitor   receives progress of the import and tells it whether to stop early
+     * @return          the number of images retagged, or -1 if the file could not be read
+     */
+    public long importTags(File file, ProgressMonitor monitor) {
+        ModelOperationEvent event = ModelOperationEvent.start("importTags", Operation.TAG_MUTATION);
+        long start = OperationMetrics.start();
+        long imported;
+        try {
+            imported = tagExchange.importFrom(file, monitor);
+        } catch (IOException e) {
+            e.printStackTrace();
+            imported = -1;
+        }
+        if (imported > 0) {
+            undoStack.clear();
+        }
+        OperationMetrics.record(Operation.TAG_MUTATION, start);
+        notifyObservers(currentDirectory);
+        if (currentImage != null) {
+            notifyObservers(currentImage);
+        }
+        event.finish((int) Math.max(imported, 0), tagManager.getAllTags().size(), currentDirectory);
+        return imported;
     }
 
     /**
@@ -324,9 +1069,14 @@ public class GeneralManager extends Observable {
      * @param directory     the user's most recently selected image
      */
     public void setCurrentDirectory(Directory directory){
+        ModelOperationEvent event = ModelOperationEvent.start("setCurrentDirectory", Operation.NAVIGATION);
+        long start = OperationMetrics.start();
         this.currentDirectory = directory;
         this.addMissingTags();
+        shardStore.evictColdShards(currentDirectory, currentImage, showAllImages);
+        OperationMetrics.record(Operation.NAVIGATION, start);
         notifyObservers(currentDirectory);
+        event.finish(0, tagManager.getAllTags().size(), currentDirectory);
     }
 
     /**
@@ -361,6 +1111,34 @@ public class GeneralManager extends Observable {
         this.showAllImages = !this.showAllImages;
     }
 
+    /**
+     * Returns whether or not all the images under the current directory are being displayed.
+     *
+     * @return      true iff images from sub-directories of the current directory are displayed too
+     */
+    public boolean isShowingAllImages() {
+        return this.showAllImages;
+    }
+
+    /**
+     * Returns whether or not images in the given directory are part of the list currently displayed.
+     *
+     * @param directory     the directory to check
+     * @return              true iff the directory is the current directory, or is under it while all images are shown
+     */
+    public boolean isDisplayed(Directory directory) {
+        Directory current = this.currentDirectory;
+        if (!this.showAllImages) {
+            return directory == current;
+        }
+        for (Directory d = directory; d != null; d = d.getParentDirectory()) {
+            if (d == current) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Notifies observers of changes in currentImage
      *
@@ -385,7 +1163,9 @@ public class GeneralManager extends Observable {
      * Opens the most recently selected Directory in user's OS's file viewer.
      */
     public void openDirectory(){
+        ModelOperationEvent event = ModelOperationEvent.start("openDirectory", Operation.NAVIGATION);
         directoryManager.openDirectory(currentDirectory.getFile());
+        event.finish(0, 0, currentDirectory);
     }
 
     /**
@@ -399,23 +1179,21 @@ public class GeneralManager extends Observable {
 
     /**
      * Opens a file containing a log of all renaming ever done for all images.
+     * The file is written by streaming the on-disk rename log, without loading it into memory.
      **/
     public void getAllRenameLogs(){
-        ArrayList<String[]> logs = new ArrayList<>();
-
-        for (Model.Image image : getAllImages()){
-            logs.addAll(image.getFullNameHistory());
-        }
-
+        ModelOperationEvent event = ModelOperationEvent.start("getAllRenameLogs", Operation.LOOKUP);
         //Save to file
-        saveLogs(logs);
+        File renameLogs = new File(stateDirectory, "renameLogs.txt");
+        imageManager.writeRenameLogs(renameLogs);
+        event.finish(0, 0, currentDirectory);
 
         //Then open file
         //Code used from:
         //https://stackoverflow.com/questions/23176624/javafx-freeze-on-desktop-openfile-desktop-browseuri
         if (Desktop.isDesktopSupported()){ new Thread (() -> {
             try {
-                Desktop.getDesktop().open(new File("renameLogs.txt"));
+                Desktop.getDesktop().open(renameLogs);
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -423,47 +1201,33 @@ public class GeneralManager extends Observable {
         }
     }
 
-    /**
-     * Saves the logs to renameLogs.txt
-     *
-     * @param logs list of all logs to save
-     */
-    private void saveLogs(ArrayList<String[]> logs) {
-
-        try {
-            BufferedWriter bw = new BufferedWriter(new FileWriter("renameLogs.txt", false));
-            for (String[] log: logs) {
-                String line = "Image \"" + log[0]
-                        + "\" has been renamed to \"" + log[1]
-                        + "\" with timestamp " +log[2]
-                        + "."
-                        + System.lineSeparator();
-                bw.write(line);
-            }
-            bw.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
     /**
      * Returns list of all renaming done for current image
      *
      * @return   a list of all the renaming ever done for the current image
      */
     public ArrayList<String> getImageRenameLogs(){
-        return imageManager.getPastNames(currentImage);
+        ModelOperationEvent event = ModelOperationEvent.start("getImageRenameLogs", Operation.LOOKUP);
+        ArrayList<String> pastNames = imageManager.getPastNames(currentImage);
+        event.finish(currentImage == null ? 0 : 1, 0, currentDirectory);
+        return pastNames;
     }
 
     /**
      * Creates the entire data structure of Images and Directories.
-     * Called when program opens.
+     * Called when program opens with no saved state; the rename log of any previous library is discarded.
      *
      * @param pathname      the path of the user selected root directory
      */
     public void initialize(String pathname) {
+        ModelOperationEvent event = ModelOperationEvent.start("initialize", Operation.SCAN);
+        long start = OperationMetrics.start();
+        imageManager.clearRenameLog();
         createRootDirectory(pathname);
+        shardStore.attach(directoryManager.getRootDirectory());
+        OperationMetrics.record(Operation.SCAN, start);
         setCurrentDirectory(pathname);
+        event.finish(0, tagManager.getAllTags().size(), currentDirectory);
     }
 
     /**
@@ -482,84 +1246,64 @@ public class GeneralManager extends Observable {
      * @param rootPath      the path of the user selected root directory
      */
     private void createRootDirectory(String rootPath) {
-        createTreeStructure(rootPath, null);
-    }
-
-    /**
-     * Helper function.
-     * Actually creates the tree.
-     *
-     * @param currentFilePath       the path of the current file
-     * @param parent                the parent directory of the current file
-     */
-    private void createTreeStructure(String currentFilePath, Directory parent) {
-        File currentFile = new File(currentFilePath);
-
-        // Base cases: image, or empty directory
-        if (!currentFile.isDirectory() && isImage(currentFile)) {
-            if (nameHasTags(currentFile.getName())) {
-                ArrayList<Tag> tags = tagManager.stringToNewTags(currentFile.getName());
-                Image image = imageManager.createImageWithTags(currentFilePath, parent, tags);
-                tagManager.addImageToTags(image, tags);
-            } else {
-                imageManager.createImage(currentFilePath, parent);
-            }
-        } else if (currentFile.isDirectory() && currentFile.list() == null) {
-            directoryManager.createDirectory(currentFilePath, parent);
-        }
-
-        //current file(dir) contains more directories; next else if rules out e.g. .app files which are
-        //for some reason considered directories by java File (WHY?)
-        else if (currentFile.isDirectory() &&
-                !currentFile.getAbsolutePath().substring(currentFilePath.length()-4,
-                        currentFilePath.length()-3).equals(".")) {
-            Directory currentDirectory = directoryManager.createDirectory(currentFilePath, parent);//create current dir
-            for (String childFileName: currentFile.list()) {
-                String childFilePath = currentFilePath + File.separator + childFileName;
-                createTreeStructure(childFilePath, currentDirectory);
-            }
-        }
+        treeScanner.scan(rootPath, null);
     }
 
     /**
-     * Helper function.
+     * Sets the rules deciding which files and directories are scanned, e.g. globs to exclude or a maximum depth.
+     * Applies to the initial scan and to directories found later when the saved state is reconciled with the disk.
      *
-     * @param name      the name of the image
-     * @return          true iff name contains at least one tag
+     * @param rules     the rules to scan with
      */
-    private boolean nameHasTags(String name) {
-        return name.contains(" @");
+    public void setScanRules(ScanRules rules) {
+        treeScanner.setRules(rules);
     }
 
     /**
-     * @param file      file to check
-     * @return          true iff the given file is an image
+     * Returns whether or not a previous state of the program has been saved.
+     *
+     * @return      true iff the tag dictionary and the root shard exist on disk
      */
-    private boolean isImage(File file){
-        for (String ext : EXTENSIONS){
-            if (file.getName().toLowerCase().endsWith(ext)) {
-                return true;
-            }
-        }
-        return false;
+    public boolean hasSavedState() {
+        return tagsFile().exists() && shardStore.exists();
     }
 
     /**
      * Save the current state of the program.
+     * The tag dictionary, the root shard, every loaded subtree shard and the index of the rename log are
+     * written; unloaded shards are already on disk.
      */
     public void serialize() {
-        imageManager.serialize();
-        directoryManager.serialize();
-        tagManager.serialize();
+        ModelOperationEvent event = ModelOperationEvent.start("serialize", Operation.SERIALIZE);
+        long start = OperationMetrics.start();
+        stateDirectory.mkdirs();
+        tagManager.serialize(tagsFile());
+        shardStore.save();
+        imageManager.saveRenameLog();
+        OperationMetrics.record(Operation.SERIALIZE, start);
+        event.finish(0, tagManager.getAllTags().size(), currentDirectory);
     }
 
     /**
      * Load the previously saved state of the program.
+     * Only the names, the tag dictionary and the root shard are read; the other shards are read as they are needed.
+     * As each shard is read, directories that changed on disk since the save are listed again and patched.
      */
     public void deserialize() {
-        imageManager.deserialize();
-        directoryManager.deserialize();
-        tagManager.deserialize();
+        ModelOperationEvent event = ModelOperationEvent.start("deserialize", Operation.DESERIALIZE);
+        long start = OperationMetrics.start();
+        shardStore.loadNames();
+        tagManager.deserialize(tagsFile());
+        shardStore.loadRoot();
+        OperationMetrics.record(Operation.DESERIALIZE, start);
+        event.finish(0, tagManager.getAllTags().size(), currentDirectory);
+    }
+
+    /**
+     * @return      the file the tag dictionary is saved in
+     */
+    private File tagsFile() {
+        return new File(stateDirectory, "tags.ser");
     }
 
     /**
@@ -572,13 +1316,16 @@ public class GeneralManager extends Observable {
     }
 
     /**
-     * Create and open a directory containing all images associated with the given tag
+     * Create and open a directory containing all images associated with the given tag or any tag nested under it
      *
      * @param selectedTag the tag selected by a user
      * @throws IOException when attempt to open image fails
      */
     public void openRelatedImages(Tag selectedTag) throws IOException{
-        String dirPath = System.getProperty("user.home")+File.separator+selectedTag.getName();
+        ModelOperationEvent event = ModelOperationEvent.start("openRelatedImages", Operation.LOOKUP);
+        shardStore.loadAll();
+        String dirPath = System.getProperty("user.home")+File.separator+selectedTag.getFileName();
+        ArrayList<Image> images = tagManager.getImagesUnder(selectedTag);
         //create the new directory
         Path dir = Paths.get(dirPath);
         if (Files.notExists(dir)) {
@@ -586,7 +1333,7 @@ public class GeneralManager extends Observable {
 
             tagDirectory.getFile().mkdir();
 
-            for (Image image : selectedTag.getImages()) {
+            for (Image image : images) {
                 //copy image into new directory
                 Path newDirPath = Paths.get(tagDirectory.getPath() + File.separator + image.getName());
                 Path imgPath = Paths.get(image.getPath());
@@ -597,7 +1344,7 @@ public class GeneralManager extends Observable {
             directoryManager.openDirectory(tagDirectory.getFile());
         }
         File tagDir = new File(dirPath);
-        for (Image image: selectedTag.getImages()){
+        for (Image image: images){
             Path newDirPath = Paths.get(tagDir.getPath() + File.separator + image.getName());
             Path imgPath = Paths.get(image.getPath());
             if (Files.notExists(newDirPath)) {
@@ -605,7 +1352,7 @@ public class GeneralManager extends Observable {
             }
         }
         directoryManager.openDirectory(tagDir);
-
+        event.finish(images.size(), 1, currentDirectory);
     }
 
 
@@ -5,23 +5,34 @@ import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
+import java.util.HashMap;
 import java.io.File;
 
 /**
  * Represents an image in the user's computer
  * Each image has current name, past names, associated tags, directory which it belongs to
+ * Its path is built from the path of its directory when it is needed, rather than stored, and its names are
+ * kept in the NameDictionary and referred to by handle.
  */
 public class Image implements Serializable {
 
     /**
-     * Stores the name history of this Image with format [oldName, newName, timestamp].
+     * Reused by each thread to build paths, so that building one only allocates the resulting string.
      */
-    private ArrayList<String[]> nameHistory = new ArrayList<>();
+    private static final ThreadLocal<StringBuilder> PATH_BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+
+    /**
+     * Stores the name history of this Image, one entry per rename.
+     */
+    private ArrayList<NameHistoryEntry> nameHistory = new ArrayList<>();
+
+    /**
+     * Maps each name this image has had to the index in tagHistory of the tags it had under that name, or -1
+     * for no tags. Built from nameHistory the first time an image is reverted.
+     */
+    private transient HashMap<String, Integer> tagVersionsByName;
 
     /**
      * Stores the tag history of this Image.
@@ -34,14 +45,29 @@ public class Image implements Serializable {
     private Directory parentDirectory;
 
     /**
-     * Stores this Image's file representation.
+     * Name of this image in the user's computer, as the handles of its parts returned by
+     * NameDictionary.internName, or null if it has no name.
+     */
+    private int[] name;
+
+    /**
+     * The id of this image, unique among all images in the program.
+     */
+    private int id;
+
+    /**
+     * What the header of the file of this image says about it, or null if it has not been read yet.
      */
-    private File file;
+    private volatile ImageMetadata metadata;
 
     /**
-     * Name of this image in the user's computer
+     * The first sixteen characters of the name of this image packed into two numbers, so that images are sorted
+     * by name by comparing numbers, and the handles of the name they were packed from, or null if it has not
+     * been packed yet.
      */
-    private String name;
+    private transient long nameKey;
+    private transient long nameKeyRest;
+    private transient int[] nameKeyName;
 
     /**
      * Creates an instance of Image.
@@ -50,8 +76,7 @@ public class Image implements Serializable {
      * @param parentDirectory   the parent directory of this image
      */
     public Image(String path, Directory parentDirectory) {
-        this.file = new File(path);
-        this.name = file.getName();
+        this.setName(new File(path).getName());
         this.setParentDirectory(parentDirectory);
     }
 
@@ -67,7 +92,7 @@ public class Image implements Serializable {
      * @param parentDirectory   the parent directory of this image
      */
     public Image(String path, Directory parentDirectory, ArrayList<Tag> tags) {
-        this.file = new File(path);
+        this.setName(new File(path).getName());
         this.setParentDirectory(parentDirectory);
         Tag[] tagHistoryEntry = new Tag[tags.size()];
         for (int i = 0; i < tags.size(); i++) {
@@ -82,7 +107,52 @@ public class Image implements Serializable {
      * @return      the current name of this Image file
      */
     public String getName() {
-        return this.file.getName();
+        return this.name == null ? null : NameDictionary.NAMES.getName(this.name);
+    }
+
+    /**
+     * Returns the handles of the parts of the name of this image, which are replaced whenever it is renamed.
+     *
+     * @return      the handles of the name of this image in NameDictionary.NAMES
+     */
+    int[] getNameHandles() {
+        return this.name;
+    }
+
+    /**
+     * Returns the id of this image
+     *
+     * @return      the id of this image
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Sets the id of this image.
+     *
+     * @param id    the id of this image
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the dimensions, capture time and camera of this image, as read from the header of its file
+     *
+     * @return      the metadata of this image, or null if it has not been read yet
+     */
+    public ImageMetadata getMetadata() {
+        return this.metadata;
+    }
+
+    /**
+     * Sets the metadata of this image.
+     *
+     * @param metadata  the metadata read from the file of this image
+     */
+    void setMetadata(ImageMetadata metadata) {
+        this.metadata = metadata;
     }
 
     /**
@@ -92,9 +162,9 @@ public class Image implements Serializable {
      */
     private String getOriginalName() {
         if (this.nameHistory.size() == 0) {
-            return this.file.getName();
+            return this.getName();
         } else {
-            return this.nameHistory.get(0)[0];
+            return this.nameHistory.get(0).getOldName();
         }
     }
 
@@ -138,6 +208,30 @@ public class Image implements Serializable {
         }
     }
 
+    /**
+     * @return      the number of tags this image has, without copying them
+     */
+    int getTagCount() {
+        return this.tagHistory.isEmpty() ? 0 : this.tagHistory.get(this.tagHistory.size() - 1).length;
+    }
+
+    /**
+     * Returns the sort key of the name of this image, packed again only after the image is renamed.
+     *
+     * @param rest  whether to return the key of the next eight characters, rather than of the first eight
+     * @return      eight characters of the name of this image, as packed by ImageSorter.nameKey
+     */
+    long getNameKey(boolean rest) {
+        int[] handles = this.name;
+        if (this.nameKeyName != handles) {
+            String name = getName();
+            this.nameKey = ImageSorter.nameKey(name, 0);
+            this.nameKeyRest = ImageSorter.nameKey(name, ImageSorter.NAME_KEY_LENGTH);
+            this.nameKeyName = handles;
+        }
+        return rest ? this.nameKeyRest : this.nameKey;
+    }
+
     /**
      * Updates this Image's tags with the given tags.
      *
@@ -171,6 +265,15 @@ public class Image implements Serializable {
         this.tagHistory.add(tagHistoryEntry.toArray(new Tag[tagHistoryEntry.size()]));
     }
 
+    /**
+     * Returns when this image was last renamed, which is when its tags last changed.
+     *
+     * @return      the time of the last rename in milliseconds since the epoch, or 0 if it was never renamed
+     */
+    long getLastRenamed() {
+        return this.nameHistory.isEmpty() ? 0 : this.nameHistory.get(this.nameHistory.size() - 1).getTimestamp();
+    }
+
     /**
      * Returns a log of all names ever associated with this Image.
      * Example as follows: [startingName, name1, name2, ...].
@@ -183,43 +286,62 @@ public class Image implements Serializable {
             nameHistory.add(getName());
         } else {
             nameHistory.add(getOriginalName());
-            for (String[] nameHistoryEntry: this.nameHistory) {
-                nameHistory.add(nameHistoryEntry[1]);
+            for (NameHistoryEntry nameHistoryEntry: this.nameHistory) {
+                nameHistory.add(nameHistoryEntry.getNewName());
             }
         }
         return nameHistory;
     }
 
     /**
-     * Example as follows: [[startingName, name1, time], [name1, name2, time], ...].
+     * Example as follows: [startingName -> name1, name1 -> name2, ...].
      *
      * @return      a log of all names ever associated with this image
      */
-    ArrayList<String[]> getFullNameHistory() {
+    ArrayList<NameHistoryEntry> getFullNameHistory() {
         return this.nameHistory;
     }
 
     /**
-     * Returns string representation of file path to this image
+     * Example as follows: [[tag1], [tag1, tag2], ...], oldest first.
      *
-     * @return       the path of this image
+     * @return      every list of tags this image has had
      */
-    public String getPath() {
-        return this.file.getPath();
+    ArrayList<Tag[]> getTagHistory() {
+        return this.tagHistory;
     }
 
     /**
-     * Returns the current system time in yyyy/MM/dd HH:mm:ss format
+     * Replaces the tag and name history of this image, e.g. with those imported from another copy of it.
+     * Each name history entry must refer to an index of the new tag history, and the last tags must be the
+     * ones it has now.
      *
-     * @return   the current system time in a yyyy/MM/dd HH:mm:ss format
+     * @param tagHistory    every list of tags this image has had, oldest first
+     * @param nameHistory   every rename of this image, oldest first
      */
-    String getCurrentDate() {
-        DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
-        return dateFormat.format(new Date());
+    void restoreHistory(ArrayList<Tag[]> tagHistory, ArrayList<NameHistoryEntry> nameHistory) {
+        this.tagHistory = tagHistory;
+        this.nameHistory = nameHistory;
+        this.tagVersionsByName = null;
     }
 
     /**
-     * Example as follows: [tag1, tag2], turns into "@tag1 @tag2".
+     * Returns string representation of file path to this image
+     *
+     * @return       the path of this image
+     */
+    public String getPath() {
+        if (this.parentDirectory == null) {
+            return this.getName();
+        }
+        StringBuilder path = PATH_BUFFER.get();
+        path.setLength(0);
+        path.append(this.parentDirectory.getPath()).append(File.separator).append(this.getName());
+        return path.toString();
+    }
+
+    /**
+     * Example as follows: [tag1, loc/paris], turns into "@tag1 @loc~paris".
      *
      * @return      a string representation of the current tags associated with this image
      */
@@ -231,7 +353,7 @@ public class Image implements Serializable {
         StringBuilder tagString = new StringBuilder();
         for (Tag tag: tags) {
             tagString.append("@");
-            tagString.append(tag.getName());
+            tagString.append(tag.getFileName());
             tagString.append(" ");
         }
         tagString.deleteCharAt(tagString.length() - 1);
@@ -244,8 +366,7 @@ public class Image implements Serializable {
      * @return      the file extension of this image
      */
     String getExtension() {
-        String fileName = file.getName();
-        return fileName.substring(fileName.lastIndexOf("."));
+        return NameDictionary.NAMES.get(this.name[1]);
     }
 
     /**
@@ -254,16 +375,16 @@ public class Image implements Serializable {
      * @return       the file this image is associated with
      */
     public File getFile() {
-        return this.file;
+        return new File(getPath());
     }
 
     /**
-     * Sets a file object to associate the image with
+     * Sets the name of this image in its parent directory.
      *
-     * @param path       the file this image is associated with
+     * @param name       the new name of this image
      */
-    void setFile(String path) {
-        this.file = new File(path);
+    void setName(String name) {
+        this.name = NameDictionary.NAMES.internName(name);
     }
 
     /**
@@ -283,18 +404,26 @@ public class Image implements Serializable {
     }
 
     /**
-     * Adds the new entry to this image's name history.
+     * Adds a rename to this image's name history. Must be called after the tags of this image are updated,
+     * so the entry refers to the tags it has under its new name.
      *
-     * @param entry     the entry to be added
+     * @param oldName       the name of this image before the rename
+     * @param newName       the name of this image after the rename
+     * @param timestamp     the time of the rename, in milliseconds since the epoch
      */
-    void addNameHistoryEntry(String[] entry) {
+    void addNameHistoryEntry(String oldName, String newName, long timestamp) {
+        NameHistoryEntry entry = new NameHistoryEntry(oldName, newName, timestamp, this.tagHistory.size() - 1);
         this.nameHistory.add(entry);
+        if (this.tagVersionsByName != null) {
+            this.tagVersionsByName.put(newName, entry.getTagVersion());
+        }
     }
 
     /**
      * Renames the image based on most recent set of tags
      */
     void renameImage() {
+        long start = OperationMetrics.start();
 
         String oldName = this.getName();
         String newName = this.getNewName();
@@ -308,57 +437,39 @@ public class Image implements Serializable {
             ex.printStackTrace();
         }
 
-        String[] nameHistoryEntry = {oldName, newName, this.getCurrentDate()};
-        this.addNameHistoryEntry(nameHistoryEntry);
-        this.setFile(this.getParentDirectory().getPath() + File.separator + newName);
+        this.addNameHistoryEntry(oldName, newName, System.currentTimeMillis());
+        this.setName(newName);
+        OperationMetrics.record(Operation.RENAME, start);
     }
 
     /**
-     * Returns the new name of the image, based on most recently added tags
+     * Returns the tags this image had when it had the given name, looked up through the tag history entry
+     * each name history entry refers to.
      *
-     * @return new name of image, based on most recently added tags
+     * @param previousName  one of the names this image has had
+     * @return              the tags this image had under that name, or null if it never had that name
      */
-    //correct entry if: #tags in previousname == #tags in taghistory entry, and all the tags are the same.
-    ArrayList<Tag> getRevertTags(String previousName) {
-        for (Tag[] tagHistoryEntry: this.tagHistory) {//[t1],[t1t2],[t1t2t3]
-
-            if (tagHistoryEntry.length != stringToTagNames(previousName).size()) {
-                continue;
-            }
-
-            boolean valid = true;
-            for (Tag tag: tagHistoryEntry) {
-
-                if (!stringToTagNames(previousName).contains(tag.getName())) {
-                    valid = false;
-                    break;
-                }
-
-            }
-            if (!valid) {
-                continue;
+    public ArrayList<Tag> getRevertTags(String previousName) {
+        if (this.nameHistory.isEmpty()) {
+            return previousName.equals(getName()) ? getTags() : null;
+        }
+        if (this.tagVersionsByName == null) {
+            this.tagVersionsByName = new HashMap<>();
+            // Every rename follows exactly one change of tags, so the original name goes with the version
+            // before the one of the first rename
+            NameHistoryEntry first = this.nameHistory.get(0);
+            this.tagVersionsByName.put(first.getOldName(), first.getTagVersion() - 1);
+            for (NameHistoryEntry entry: this.nameHistory) {
+                this.tagVersionsByName.put(entry.getNewName(), entry.getTagVersion());
             }
-            return new ArrayList<>(Arrays.asList(tagHistoryEntry));
-
         }
-        return new ArrayList<>();
-    }
-
-    /**
-     * Takes a string, and returns list of tag names derived from splitting the string by @ character
-     *
-     * @param name the string to be split
-     * @return the result of splitting the string
-     */
-    private ArrayList<String> stringToTagNames(String name) {
-        ArrayList<String> tagNames = new ArrayList<>();
-        String[] tags = name.split("[@.]"); // "name @tag1 @tag2.png" -> [name /tag1 /tag2/png]
-
-        for (int i = 1; i < tags.length - 1; i++) {
-            tagNames.add(tags[i].trim());
+        Integer version = this.tagVersionsByName.get(previousName);
+        if (version == null) {
+            return null;
+        } else if (version < 0) {
+            return new ArrayList<>();
         }
-
-        return tagNames;
+        return new ArrayList<>(Arrays.asList(this.tagHistory.get(version)));
     }
 
     /**
@@ -378,4 +489,49 @@ public class Image implements Serializable {
         return newName.toString();
     }
 
+    /**
+     * One rename of an image: the handles of the parts of its old and new name, when it happened, and the tags
+     * it had after it.
+     */
+    static class NameHistoryEntry implements Serializable {
+        private int[] oldName;
+        private int[] newName;
+        private long timestamp;
+        private int tagVersion;
+
+        NameHistoryEntry(String oldName, String newName, long timestamp, int tagVersion) {
+            this.oldName = NameDictionary.NAMES.internName(oldName);
+            this.newName = NameDictionary.NAMES.internName(newName);
+            this.timestamp = timestamp;
+            this.tagVersion = tagVersion;
+        }
+
+        /**
+         * @return      the name of the image before the rename
+         */
+        String getOldName() {
+            return NameDictionary.NAMES.getName(oldName);
+        }
+
+        /**
+         * @return      the name of the image after the rename
+         */
+        String getNewName() {
+            return NameDictionary.NAMES.getName(newName);
+        }
+
+        /**
+         * @return      the time of the rename, in milliseconds since the epoch
+         */
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return      the index in the image's tag history of its tags after the rename, or -1 for no tags
+         */
+        int getTagVersion() {
+            return tagVersion;
+        }
+    }
 }
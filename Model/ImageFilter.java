@@ -0,0 +1,119 @@
+package Model;
+
+/**
+ * Ranges of capture time, file size and pixel count that images must fall in, combined with a tag search
+ * in GeneralManager. Each range is inclusive, and unset ranges match every image. An image whose metadata
+ * has not been read, or does not give the value a range is on, never matches that range.
+ */
+public class ImageFilter {
+
+    /**
+     * The ranges of capture time, in milliseconds since the epoch; of file size, in bytes; and of pixel count.
+     * A range whose minimum is greater than its maximum is unset.
+     */
+    private long minCaptureTime = Long.MAX_VALUE;
+    private long maxCaptureTime = Long.MIN_VALUE;
+    private long minFileSize = Long.MAX_VALUE;
+    private long maxFileSize = Long.MIN_VALUE;
+    private long minPixelCount = Long.MAX_VALUE;
+    private long maxPixelCount = Long.MIN_VALUE;
+
+    /**
+     * Creates a filter that matches every image.
+     */
+    public ImageFilter() {}
+
+    /**
+     * Only matches images taken between the given times.
+     *
+     * @param from      the earliest capture time, in milliseconds since the epoch
+     * @param to        the latest capture time, in milliseconds since the epoch
+     */
+    public void setCaptureTime(long from, long to) {
+        minCaptureTime = from;
+        maxCaptureTime = to;
+    }
+
+    /**
+     * Only matches images whose files are between the given sizes.
+     *
+     * @param min       the smallest file size, in bytes
+     * @param max       the largest file size, in bytes
+     */
+    public void setFileSize(long min, long max) {
+        minFileSize = min;
+        maxFileSize = max;
+    }
+
+    /**
+     * Only matches images with between the given numbers of pixels, e.g. at least 12000000 for 12 megapixels.
+     *
+     * @param min       the fewest pixels
+     * @param max       the most pixels
+     */
+    public void setPixelCount(long min, long max) {
+        minPixelCount = min;
+        maxPixelCount = max;
+    }
+
+    /**
+     * @return  true iff no range is set, so the filter matches every image
+     */
+    public boolean isEmpty() {
+        return !hasCaptureTime() && !hasFileSize() && !hasPixelCount();
+    }
+
+    /**
+     * @param metadata  the metadata of an image, or null if it has not been read
+     * @return          true iff the image falls in every range that is set
+     */
+    boolean matches(ImageMetadata metadata) {
+        if (isEmpty()) {
+            return true;
+        } else if (metadata == null) {
+            return false;
+        }
+        return (!hasCaptureTime() || (metadata.getCaptureTime() != 0
+                && metadata.getCaptureTime() >= minCaptureTime && metadata.getCaptureTime() <= maxCaptureTime))
+                && (!hasFileSize()
+                || (metadata.getFileSize() >= minFileSize && metadata.getFileSize() <= maxFileSize))
+                && (!hasPixelCount() || (metadata.getPixelCount() != 0
+                && metadata.getPixelCount() >= minPixelCount && metadata.getPixelCount() <= maxPixelCount));
+    }
+
+    boolean hasCaptureTime() {
+        return minCaptureTime <= maxCaptureTime;
+    }
+
+    boolean hasFileSize() {
+        return minFileSize <= maxFileSize;
+    }
+
+    boolean hasPixelCount() {
+        return minPixelCount <= maxPixelCount;
+    }
+
+    long getMinCaptureTime() {
+        return minCaptureTime;
+    }
+
+    long getMaxCaptureTime() {
+        return maxCaptureTime;
+    }
+
+    long getMinFileSize() {
+        return minFileSize;
+    }
+
+    long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    long getMinPixelCount() {
+        return minPixelCount;
+    }
+
+    long getMaxPixelCount() {
+        return maxPixelCount;
+    }
+}
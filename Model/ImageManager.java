@@ -5,22 +5,68 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * Takes method calls from GeneralManager and manipulates the image objects accordingly
  */
 public class ImageManager implements Serializable {
 
+    /**
+     * The most images renamed at once by a batch rename, so a large batch does not flood the disk with moves.
+     */
+    private static final int MAX_PARALLEL_RENAMES = 4;
+
     /**
      * List of all images in the root directory.
      */
     private ArrayList<Model.Image> allImages = new ArrayList<>();
 
     /**
-     * Initializes an instance of ImageManager
+     * The id that will be given to the next image created.
+     */
+    private int nextImageId = 0;
+
+    /**
+     * The on-disk log that every rename is appended to as it happens, or null if renames are only kept in the
+     * name history of each image.
+     */
+    private transient RenameLog renameLog;
+
+    /**
+     * The trigram index over the current and past names of every loaded image.
+     */
+    private transient NameIndex nameIndex = new NameIndex();
+
+    /**
+     * The range indexes over the metadata of every loaded image.
+     */
+    private transient MetadataIndex metadataIndex = new MetadataIndex();
+
+    /**
+     * Initializes an instance of ImageManager that keeps no rename log on disk.
      */
     public ImageManager(){}
 
+    /**
+     * Initializes an instance of ImageManager that appends every rename to a log in the given directory.
+     *
+     * @param renameLogDirectory    the directory to keep the rename log in
+     */
+    public ImageManager(File renameLogDirectory) {
+        this.renameLog = new RenameLog(renameLogDirectory);
+    }
+
     /**
      * Updates and renames the image with the given tags.
      *
@@ -49,8 +95,12 @@ public class ImageManager implements Serializable {
      * @param tags      the list of tags to add to the given image
      */
     public void addTagsToImage(Image image, ArrayList<Tag> tags) {
+        long before = image.getParentDirectory().getFile().lastModified();
         image.addTags(tags);
         image.renameImage();
+        image.getParentDirectory().contentsChanged(before);
+        logLastRename(image);
+        nameIndex.rename(image);
     }
 
     /**
@@ -61,8 +111,173 @@ public class ImageManager implements Serializable {
      * @param tags      the list of tags to remove from the given image
      */
     public void removeTagsFromImage(Image image, ArrayList<Tag> tags) {
+        long before = image.getParentDirectory().getFile().lastModified();
         image.removeTags(tags);
         image.renameImage();
+        image.getParentDirectory().contentsChanged(before);
+        logLastRename(image);
+        nameIndex.rename(image);
+    }
+
+    /**
+     * Removes the given deleted tags from each of the given images and renames them, several images at a time.
+     * Each image only loses the deleted tags it carries. Progress is reported after every image, and images
+     * not renamed yet are skipped once the monitor is cancelled.
+     *
+     * @param tags      the tags being deleted
+     * @param images    the images carrying at least one of the tags
+     * @param monitor   receives progress and tells the batch whether to stop early
+     * @return          the images that were renamed
+     */
+    ArrayList<Image> removeDeletedTags(ArrayList<Tag> tags, Collection<Image> images, ProgressMonitor monitor) {
+        HashSet<Tag> deleted = new HashSet<>(tags);
+        return retagAll(images, image -> {
+            ArrayList<Tag> kept = image.getTags();
+            return kept.removeIf(deleted::contains) ? kept : null;
+        }, monitor);
+    }
+
+    /**
+     * Renames each of the given images after one of its tags was renamed, several images at a time.
+     * Their tags are unchanged, but a new tag history entry is recorded so the rename shows up in it.
+     *
+     * @param images    the images carrying the renamed tag
+     * @param monitor   receives progress and tells the batch whether to stop early
+     * @return          the images that were renamed
+     */
+    ArrayList<Image> renameTagInImages(Collection<Image> images, ProgressMonitor monitor) {
+        return retagAll(images, Image::getTags, monitor);
+    }
+
+    /**
+     * Replaces the given merged tags with the target tag in each of the given images and renames them,
+     * several images at a time. An image already carrying the target keeps it once, in its old place.
+     *
+     * @param tags      the tags merged into the target
+     * @param target    the tag they are merged into
+     * @param images    the images carrying at least one of the merged tags
+     * @param monitor   receives progress and tells the batch whether to stop early
+     * @return          the images that were renamed
+     */
+    ArrayList<Image> mergeTagsInImages(ArrayList<Tag> tags, Tag target, Collection<Image> images,
+                                       ProgressMonitor monitor) {
+        HashSet<Tag> merged = new HashSet<>(tags);
+        merged.remove(target);
+        return retagAll(images, image -> {
+            ArrayList<Tag> newTags = new ArrayList<>();
+            boolean changed = false;
+            for (Tag tag: image.getTags()) {
+                if (merged.contains(tag)) {
+                    changed = true;
+                    tag = target;
+                }
+                if (!newTags.contains(tag)) {
+                    newTags.add(tag);
+                }
+            }
+            return changed ? newTags : null;
+        }, monitor);
+    }
+
+    /**
+     * Gives each of the given images the tags it is mapped to and renames it to match, several images at a time.
+     *
+     * @param newTags   the new tags of each image
+     * @param monitor   receives progress and tells the batch whether to stop early
+     * @return          the images that were renamed
+     */
+    ArrayList<Image> retagImages(HashMap<Image, ArrayList<Tag>> newTags, ProgressMonitor monitor) {
+        return retagAll(newTags.keySet(), newTags::get, monitor);
+    }
+
+    /**
+     * Helper function.
+     * Gives each of the given images the tags computed for it and renames it to match, on a pool of at most
+     * MAX_PARALLEL_RENAMES threads. The renames are then logged and indexed together, with a single write to
+     * the rename log. Progress is reported after every image, and images not renamed yet are skipped once
+     * the monitor is cancelled.
+     *
+     * @param images    the images to retag
+     * @param retag     returns the new tags of an image, or null to leave it as it is
+     * @param monitor   receives progress and tells the batch whether to stop early
+     * @return          the images that were renamed
+     */
+    private ArrayList<Image> retagAll(Collection<Image> images, Function<Image, ArrayList<Tag>> retag,
+                                      ProgressMonitor monitor) {
+        ConcurrentLinkedQueue<Image> renamed = new ConcurrentLinkedQueue<>();
+        AtomicLong done = new AtomicLong();
+        long total = images.size();
+        monitor.worked(0, total);
+        // Renames in the same directory run at once, so each directory is brought up to date once, after all of them
+        HashMap<Directory, Long> before = new HashMap<>();
+        for (Image image: images) {
+            before.computeIfAbsent(image.getParentDirectory(), directory -> directory.getFile().lastModified());
+        }
+
+        ExecutorService renamers = Executors.newFixedThreadPool(Math.min(MAX_PARALLEL_RENAMES,
+                Runtime.getRuntime().availableProcessors()));
+        for (Image image: images) {
+            renamers.execute(() -> {
+                if (monitor.isCancelled()) {
+                    return;
+                }
+                ArrayList<Tag> newTags = retag.apply(image);
+                if (newTags != null) {
+                    image.updateTags(newTags);
+                    image.renameImage();
+                    renamed.add(image);
+                }
+                monitor.worked(done.incrementAndGet(), total);
+            });
+        }
+        renamers.shutdown();
+        try {
+            renamers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            renamers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        for (Map.Entry<Directory, Long> entry: before.entrySet()) {
+            entry.getKey().contentsChanged(entry.getValue());
+        }
+
+        ArrayList<Integer> imageIds = new ArrayList<>();
+        ArrayList<String[]> renames = new ArrayList<>();
+        for (Image image: renamed) {
+            ArrayList<Image.NameHistoryEntry> nameHistory = image.getFullNameHistory();
+            Image.NameHistoryEntry entry = nameHistory.get(nameHistory.size() - 1);
+            imageIds.add(image.getId());
+            renames.add(new String[]{entry.getOldName(), entry.getNewName()});
+            nameIndex.rename(image);
+        }
+        if (renameLog != null) {
+            renameLog.appendAll(imageIds, renames, System.currentTimeMillis());
+        }
+        return new ArrayList<>(renamed);
+    }
+
+    /**
+     * Indexes the past names of the given image after its name history was replaced by an import.
+     *
+     * @param image     the image whose history was replaced
+     */
+    void historyRestored(Image image) {
+        nameIndex.historyRestored(image);
+    }
+
+    /**
+     * Helper function.
+     * Appends the most recent entry of the given image's name history to the rename log.
+     *
+     * @param image     the image that was just renamed
+     */
+    private void logLastRename(Image image) {
+        ArrayList<Image.NameHistoryEntry> nameHistory = image.getFullNameHistory();
+        Image.NameHistoryEntry entry = nameHistory.get(nameHistory.size() - 1);
+        if (renameLog != null) {
+            renameLog.append(image.getId(), entry.getOldName(), entry.getNewName(), entry.getTimestamp());
+        }
     }
 
     /**
@@ -75,7 +290,7 @@ public class ImageManager implements Serializable {
      */
     boolean tagInTags(Tag thisTag, ArrayList<Tag> tags) {
         for (Tag tag: tags) {
-            if (thisTag.getName().equals(tag.getName())) {
+            if (thisTag.getNameHandle() == tag.getNameHandle()) {
                 return true;
             }
         }
@@ -90,11 +305,120 @@ public class ImageManager implements Serializable {
      * @return list of names for the given image
      */
     public ArrayList<String> getPastNames(Model.Image currentImage) {
-        if (currentImage != null) {
+        if (currentImage == null) {
+            return new ArrayList<>();
+        } else if (renameLog == null || !renameLog.hasRecords(currentImage.getId())) {
             return currentImage.getNameHistory();
+        }
+        ArrayList<String[]> records = renameLog.getRecords(currentImage.getId());
+        ArrayList<String> pastNames = new ArrayList<>();
+        pastNames.add(records.get(0)[0]);
+        for (String[] record: records) {
+            pastNames.add(record[1]);
+        }
+        return pastNames;
+    }
+
+    /**
+     * Writes a log of all renaming ever done for all images to the given text file.
+     * The log is streamed from disk, so it is never loaded into memory as a whole.
+     *
+     * @param target the text file to write the log to
+     */
+    void writeRenameLogs(File target) {
+        if (renameLog != null) {
+            renameLog.writeText(target);
+        }
+    }
+
+    /**
+     * @param id    the id of an image
+     * @return      the loaded image with the given id, or null if it is not loaded
+     */
+    Image getImage(int id) {
+        return nameIndex.get(id);
+    }
+
+    /**
+     * Indexes the metadata just read for the given image. Called from the threads reading metadata.
+     *
+     * @param image     the image whose metadata was read
+     */
+    void metadataRead(Image image) {
+        metadataIndex.metadataRead(image);
+    }
+
+    /**
+     * Returns every loaded image matching the given filter, found through the index of its most selective range.
+     *
+     * @param filter    a filter with at least one range set
+     * @param limit     the maximum number of images to return
+     * @return          at most limit matching images, in the order they were created
+     */
+    ArrayList<Image> filterImages(ImageFilter filter, int limit) {
+        ArrayList<Image> matches = new ArrayList<>();
+        BitSet candidates = metadataIndex.candidates(filter);
+        for (int id = candidates.nextSetBit(0); id >= 0 && matches.size() < limit; id = candidates.nextSetBit(id + 1)) {
+            Image image = nameIndex.get(id);
+            if (image != null && filter.matches(image.getMetadata())) {
+                matches.add(image);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Keeps only the images matching the given filter in each of the given lists. When the most selective range
+     * of the filter matches fewer images than the lists hold, the images are first looked up among those;
+     * otherwise each image is checked against the filter directly.
+     *
+     * @param lists     lists of images, e.g. the images of each tag searched for
+     * @param filter    a filter with at least one range set
+     * @return          the lists, in the same order, with only their matching images
+     */
+    ArrayList<ArrayList<Image>> filterImages(ArrayList<ArrayList<Image>> lists, ImageFilter filter) {
+        long total = 0;
+        for (ArrayList<Image> images: lists) {
+            total += images.size();
+        }
+        BitSet candidates = metadataIndex.estimate(filter) < total ? metadataIndex.candidates(filter) : null;
+        ArrayList<ArrayList<Image>> filtered = new ArrayList<>();
+        for (ArrayList<Image> images: lists) {
+            ArrayList<Image> matches = new ArrayList<>();
+            for (Image image: images) {
+                if ((candidates == null || candidates.get(image.getId())) && filter.matches(image.getMetadata())) {
+                    matches.add(image);
+                }
+            }
+            filtered.add(matches);
+        }
+        return filtered;
+    }
+
+    /**
+     * Searches the names of every loaded image.
+     * A query containing "*" or "?" is a glob matched against the whole name, a query starting with "~"
+     * tolerates one typo from 7 characters and two from 10, and any other query is found anywhere in a name.
+     * Case is ignored.
+     *
+     * @param query             the text, glob or "~text" to search for
+     * @param includePastNames  whether or not to also search the names each image had before
+     * @param limit             the maximum number of images to return
+     * @return                  at most limit matching images
+     */
+    public ArrayList<Image> searchImages(String query, boolean includePastNames, int limit) {
+        long start = OperationMetrics.start();
+        ArrayList<Image> matches;
+        if (query.startsWith("~")) {
+            String text = query.substring(1);
+            matches = nameIndex.fuzzy(text, Math.max(0, Math.min(2, (text.length() - 4) / 3)), includePastNames, limit);
+        } else if (query.contains("*") || query.contains("?")) {
+            matches = nameIndex.glob(query, includePastNames, limit);
         } else {
-            return new ArrayList<>();
+            matches = nameIndex.substring(query, includePastNames, limit);
         }
+        OperationMetrics.record(Operation.LOOKUP, start);
+        return matches;
     }
 
     /**
@@ -107,15 +431,21 @@ public class ImageManager implements Serializable {
      * @param newName new name for the image
      */
     void moveOrRenameImage(Model.Image currentImage, Directory target, String newName){
+        long start = OperationMetrics.start();
 
-        String oldParent = currentImage.getParentDirectory().getPath();
+        Directory source = currentImage.getParentDirectory();
+        String oldParent = source.getPath();
         String oldName = currentImage.getName();
 
         Path src = Paths.get(currentImage.getPath());
         Path dest = Paths.get(target.getPath() + File.separator + newName);
 
+        long sourceBefore = source.getFile().lastModified();
+        long targetBefore = target.getFile().lastModified();
         try {
             Files.move(src, dest);
+            source.contentsChanged(sourceBefore);
+            target.contentsChanged(targetBefore);
         } catch (IOException ex) {
             ex.printStackTrace();
         }
@@ -123,14 +453,20 @@ public class ImageManager implements Serializable {
         //Change internal references for file name
         if (target.getPath().equals(oldParent)) {
             //rename
-            String[] nameHistoryEntry = {oldName, newName, currentImage.getCurrentDate()};
-            currentImage.addNameHistoryEntry(nameHistoryEntry);
+            long timestamp = System.currentTimeMillis();
+            currentImage.addNameHistoryEntry(oldName, newName, timestamp);
+            if (renameLog != null) {
+                renameLog.append(currentImage.getId(), oldName, newName, timestamp);
+            }
             currentImage.setParentDirectory(target);
-            currentImage.setFile(target.getPath() + File.separator + newName);
+            currentImage.setName(newName);
+            nameIndex.rename(currentImage);
+            OperationMetrics.record(Operation.RENAME, start);
         } else {
             //move
             currentImage.setParentDirectory(target);
-            currentImage.setFile(target.getPath() + File.separator + newName);
+            currentImage.setName(newName);
+            OperationMetrics.record(Operation.MOVE, start);
         }
 
     }
@@ -145,7 +481,10 @@ public class ImageManager implements Serializable {
      */
     public Image createImage(String path, Directory parentDirectory) {
         Model.Image image = new Model.Image(path, parentDirectory);
+        image.setId(nextImageId++);
         allImages.add(image);
+        nameIndex.add(image);
+        metadataIndex.add(image);
         image.addToParentDirectory();
         return image;
     }
@@ -160,49 +499,98 @@ public class ImageManager implements Serializable {
      */
     public Image createImageWithTags(String path, Directory parentDirectory, ArrayList<Tag> tags) {
         Model.Image image = new Model.Image(path, parentDirectory, tags);
+        image.setId(nextImageId++);
         allImages.add(image);
+        nameIndex.add(image);
+        metadataIndex.add(image);
         image.addToParentDirectory();
         return image;
     }
 
     /**
-     * Returns the new name of the image, based on most recently added tags
+     * Returns the tags the image had when it had the given name
      *
      * @param previousName the previous name of this image
-     * @return the new name of this image
+     * @return the tags of the image under that name, or null if it never had that name
      */
     ArrayList<Tag> getRevertTags(Image image, String previousName) {
         return image.getRevertTags(previousName);
     }
 
     /**
-     * Saves the current state of all images.
+     * Adds images read from a shard to the list of loaded images.
+     *
+     * @param images the images that were loaded
      */
-    void serialize() {
-        try {
-            FileOutputStream fos = new FileOutputStream("images.ser");
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(allImages);
-            oos.close();
-            fos.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+    void addImages(ArrayList<Image> images) {
+        allImages.addAll(images);
+        for (Image image: images) {
+            nextImageId = Math.max(nextImageId, image.getId() + 1);
+            nameIndex.add(image);
+            metadataIndex.add(image);
         }
     }
 
     /**
-     * Loads the past state of all images.
+     * Removes images of an unloaded shard from the list of loaded images.
+     *
+     * @param images the images that were unloaded
      */
-    void deserialize() {
-        try {
-            FileInputStream fis = new FileInputStream("images.ser");
-            ObjectInputStream ois = new ObjectInputStream(fis);
-            allImages = (ArrayList<Image>) ois.readObject();
-            ois.close();
-            fis.close();
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
+    void removeImages(Collection<Image> images) {
+        allImages.removeAll(new HashSet<>(images));
+        for (Image image: images) {
+            nameIndex.remove(image);
+            metadataIndex.remove(image);
+        }
+    }
+
+    /**
+     * Forgets every loaded image, before the saved state of the program is loaded.
+     * Keeps appending to the rename log of the previous session.
+     */
+    void clearImages() {
+        allImages.clear();
+        nameIndex.clear();
+        metadataIndex.clear();
+    }
+
+    /**
+     * Discards the rename log of any previous library, before a new one is scanned.
+     */
+    void clearRenameLog() {
+        if (renameLog != null) {
+            renameLog.clear();
         }
     }
 
+    /**
+     * Saves the index of the rename log, so that the next session does not read the whole log to rebuild it.
+     */
+    void saveRenameLog() {
+        if (renameLog != null) {
+            renameLog.saveIndex();
+        }
+    }
+
+    /**
+     * @return the number of images in memory
+     */
+    int getImageCount() {
+        return allImages.size();
+    }
+
+    /**
+     * @return the id that will be given to the next image created
+     */
+    int getNextImageId() {
+        return nextImageId;
+    }
+
+    /**
+     * @param nextImageId the id that will be given to the next image created
+     */
+    void setNextImageId(int nextImageId) {
+        this.nextImageId = nextImageId;
+    }
+
 }
@@ -0,0 +1,110 @@
+package Model;
+
+import java.io.Serializable;
+
+/**
+ * What the header of an image file says about the image: its dimensions, when it was taken and with which camera.
+ * Also records the size and modification time of the file it was read from, so that it is only read again once
+ * the file changes.
+ */
+public class ImageMetadata implements Serializable {
+
+    /**
+     * The dimensions of the image in pixels, or 0 if they are unknown.
+     */
+    private int width;
+    private int height;
+
+    /**
+     * When the image was taken, in milliseconds since the epoch, or 0 if it is unknown.
+     */
+    private long captureTime;
+
+    /**
+     * The handle in the NameDictionary of the camera the image was taken with, or -1 if it is unknown.
+     */
+    private int camera;
+
+    /**
+     * The size and modification time of the file when it was read.
+     */
+    private long fileSize;
+    private long fileModified;
+
+    /**
+     * Creates the metadata read from a file.
+     *
+     * @param width         the width of the image in pixels, or 0 if it is unknown
+     * @param height        the height of the image in pixels, or 0 if it is unknown
+     * @param captureTime   when the image was taken, in milliseconds since the epoch, or 0 if it is unknown
+     * @param camera        the make and model of the camera, or null if they are unknown
+     * @param fileSize      the size of the file, in bytes
+     * @param fileModified  the modification time of the file, in milliseconds since the epoch
+     */
+    ImageMetadata(int width, int height, long captureTime, String camera, long fileSize, long fileModified) {
+        this.width = width;
+        this.height = height;
+        this.captureTime = captureTime;
+        this.camera = camera == null ? -1 : NameDictionary.NAMES.intern(camera);
+        this.fileSize = fileSize;
+        this.fileModified = fileModified;
+    }
+
+    /**
+     * @return the width of the image in pixels, or 0 if it is unknown
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the image in pixels, or 0 if it is unknown
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return when the image was taken, in milliseconds since the epoch, or 0 if it is unknown
+     */
+    public long getCaptureTime() {
+        return captureTime;
+    }
+
+    /**
+     * @return the number of pixels in the image, or 0 if its dimensions are unknown
+     */
+    public long getPixelCount() {
+        return (long) width * height;
+    }
+
+    /**
+     * @return the size of the file of the image when it was read, in bytes
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * @return the modification time of the file of the image when it was read, in milliseconds since the epoch
+     */
+    long getFileModified() {
+        return fileModified;
+    }
+
+    /**
+     * @return the make and model of the camera the image was taken with, or null if they are unknown
+     */
+    public String getCamera() {
+        return camera < 0 ? null : NameDictionary.NAMES.get(camera);
+    }
+
+    /**
+     * @param fileSize      the size of the file now, in bytes
+     * @param fileModified  the modification time of the file now, in milliseconds since the epoch
+     * @return              true iff this metadata was read from the file as it is now
+     */
+    boolean isCurrent(long fileSize, long fileModified) {
+        return this.fileSize == fileSize && this.fileModified == fileModified;
+    }
+}
@@ -0,0 +1,29 @@
+package Model;
+
+/**
+ * The orders the images of the current directory can be listed in.
+ */
+public enum ImageSort {
+    /** By name, ignoring case. */
+    NAME("Name"),
+    /** By capture date, or by modification date for images without one. */
+    DATE("Date"),
+    /** By file size. */
+    SIZE("Size"),
+    /** By number of tags. */
+    TAG_COUNT("Tags");
+
+    /**
+     * The name of the order shown to the user.
+     */
+    private final String label;
+
+    ImageSort(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
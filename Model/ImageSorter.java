@@ -0,0 +1,392 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+
+/**
+ * Sorts lists of images by precomputed keys, without going through the reflection of the table showing them.
+ *
+ * The key of each image is read into an array of longs, and positions in the list are merge sorted by those
+ * keys. Names are sorted by their first sixteen characters, folded to lower case and packed into two longs
+ * that each image keeps until it is renamed, so that names are only compared as strings when they start alike.
+ * Images with equal keys are ordered by name, then by the order they were created.
+ *
+ * The last list sorted in each order is kept sorted, along with the key each image had. Sorting a list again
+ * in that order only sorts the images that were added, renamed or whose key changed since, and merges them
+ * into the images that were not, so listing the same images again costs a pass over them rather than a sort.
+ * A descending order is the ascending one with each run of equal keys reversed, so it is never sorted apart.
+ * At most one list is kept per order, and sorting a list unlike the last one drops the lists kept in every order.
+ */
+class ImageSorter {
+
+    /**
+     * The number of characters of a name packed into each of its two keys.
+     */
+    static final int NAME_KEY_LENGTH = 8;
+
+    /**
+     * The list is sorted from scratch once more than one in this many of its images changed.
+     */
+    private static final int MAX_CHANGED = 8;
+
+    /**
+     * The images last sorted in each order, in ascending order.
+     */
+    private EnumMap<ImageSort, Sorted> sorted = new EnumMap<>(ImageSort.class);
+
+    /**
+     * Returns the given images in the given order.
+     *
+     * @param images        the images to sort, which are left as they are
+     * @param sort          the order to sort them in
+     * @param descending    whether or not to reverse the order
+     * @return              the images, sorted
+     */
+    synchronized ArrayList<Image> sort(ArrayList<Image> images, ImageSort sort, boolean descending) {
+        Sorted current = sorted.get(sort);
+        current = current == null ? null : current.update(images);
+        if (current == null) {
+            // A different list: the images kept sorted in the other orders are of the old one
+            sorted.clear();
+            current = new Sorted(images.toArray(new Image[images.size()]), sort);
+            current.sort();
+        }
+        sorted.put(sort, current);
+        return descending ? current.descending() : current.ascending();
+    }
+
+    /**
+     * Packs NAME_KEY_LENGTH characters of the given name, folded to lower case, into a long that orders names
+     * as those characters do when compared unsigned. Characters past the first byte are packed as 0xFF.
+     *
+     * @param name      the name of an image
+     * @param start     the index of the first character to pack
+     * @return          the sort key of those characters of the name
+     */
+    static long nameKey(String name, int start) {
+        long key = 0;
+        for (int i = start; i < start + NAME_KEY_LENGTH; i++) {
+            int c = i < name.length() ? Math.min(Character.toLowerCase(name.charAt(i)), 0xFF) : 0;
+            key = key << 8 | c;
+        }
+        return key;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param image     an image
+     * @param sort      the order being sorted in, other than by name
+     * @return          the key of the image in that order
+     */
+    private static long key(Image image, ImageSort sort) {
+        ImageMetadata metadata = image.getMetadata();
+        switch (sort) {
+            case DATE:
+                if (metadata == null) {
+                    return 0;
+                }
+                return metadata.getCaptureTime() != 0 ? metadata.getCaptureTime() : metadata.getFileModified();
+            case SIZE:
+                return metadata == null ? 0 : metadata.getFileSize();
+            default:
+                return image.getTagCount();
+        }
+    }
+
+    /**
+     * Images in ascending order, with the keys and name each had when it was sorted.
+     */
+    private static class Sorted {
+
+        /**
+         * The order the images are sorted in.
+         */
+        private ImageSort sort;
+
+        /**
+         * The images, and for each its id, its key, its two name keys and the handles of the name it was sorted by.
+         */
+        private Image[] images;
+        private int[] ids;
+        private long[] keys;
+        private long[] nameKeys;
+        private int[][] nameHandles;
+
+        /**
+         * The name of each image, decoded the first time it is compared as a string.
+         */
+        private String[] names;
+
+        /**
+         * Reads the keys of the given images, in the order they are given.
+         *
+         * @param images    the images
+         * @param sort      the order they are to be sorted in
+         */
+        Sorted(Image[] images, ImageSort sort) {
+            int size = images.length;
+            this.sort = sort;
+            this.images = images;
+            this.ids = new int[size];
+            this.keys = new long[size];
+            this.nameKeys = new long[2 * size];
+            this.nameHandles = new int[size][];
+            this.names = new String[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = images[i].getId();
+                nameHandles[i] = images[i].getNameHandles();
+                // Name keys compare unsigned; flipping the sign bit makes them compare as signed longs instead
+                nameKeys[2 * i] = images[i].getNameKey(false) ^ Long.MIN_VALUE;
+                nameKeys[2 * i + 1] = images[i].getNameKey(true) ^ Long.MIN_VALUE;
+                keys[i] = sort == ImageSort.NAME ? nameKeys[2 * i] : key(images[i], sort);
+            }
+        }
+
+        /**
+         * Returns the given images sorted, reusing the order of those whose key and name did not change.
+         *
+         * @param list      the images to sort
+         * @return          the images sorted, or null if too many of them changed to be worth merging
+         */
+        Sorted update(ArrayList<Image> list) {
+            int[] positions = positions();
+            BitSet kept = new BitSet(images.length);
+            ArrayList<Image> changedImages = new ArrayList<>();
+            // Images are checked in the order they are listed, which is close to the order they sit in memory
+            for (Image image : list) {
+                int id = image.getId();
+                int i = id < positions.length ? positions[id] : -1;
+                // Loading a shard again creates new images with the ids of the old ones, so images are matched
+                // as objects
+                if (i >= 0 && images[i] == image && image.getNameHandles() == nameHandles[i]
+                        && (sort == ImageSort.NAME || key(image, sort) == keys[i])) {
+                    kept.set(i);
+                } else if (changedImages.size() < list.size() / MAX_CHANGED) {
+                    changedImages.add(image);
+                } else {
+                    return null;
+                }
+            }
+            if (changedImages.isEmpty() && kept.cardinality() == images.length) {
+                return this;
+            }
+            Sorted changed = new Sorted(changedImages.toArray(new Image[changedImages.size()]), sort);
+            changed.sort();
+            return merge(kept, changed);
+        }
+
+        /**
+         * Sorts the images in ascending order.
+         */
+        void sort() {
+            int size = images.length;
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            int[] buffer = new int[size];
+            for (int width = 1; width < size; width *= 2) {
+                for (int left = 0; left < size; left += 2 * width) {
+                    int middle = Math.min(left + width, size);
+                    int right = Math.min(left + 2 * width, size);
+                    int i = left;
+                    int j = middle;
+                    for (int k = left; k < right; k++) {
+                        if (j >= right || (i < middle && compare(this, order[i], this, order[j]) <= 0)) {
+                            buffer[k] = order[i++];
+                        } else {
+                            buffer[k] = order[j++];
+                        }
+                    }
+                }
+                int[] swap = order;
+                order = buffer;
+                buffer = swap;
+            }
+            permute(order);
+        }
+
+        /**
+         * @return      the images, in ascending order
+         */
+        ArrayList<Image> ascending() {
+            ArrayList<Image> list = new ArrayList<>(images.length);
+            for (Image image : images) {
+                list.add(image);
+            }
+            return list;
+        }
+
+        /**
+         * @return      the images in descending order of key, and images with equal keys still in ascending order
+         *              of name and then of creation
+         */
+        ArrayList<Image> descending() {
+            ArrayList<Image> list = new ArrayList<>(images.length);
+            int end = images.length;
+            while (end > 0) {
+                int start = end - 1;
+                while (start > 0 && sameKey(start - 1, start)) {
+                    start--;
+                }
+                for (int i = start; i < end; i++) {
+                    list.add(images[i]);
+                }
+                end = start;
+            }
+            return list;
+        }
+
+        /**
+         * Helper function.
+         * Merges the kept images of this list, which are still in order, with the sorted changed images.
+         *
+         * @param kept      the positions in this list of the images kept
+         * @param changed   the images that were added or changed, sorted
+         * @return          every image, sorted
+         */
+        private Sorted merge(BitSet kept, Sorted changed) {
+            int size = kept.cardinality() + changed.images.length;
+            Sorted merged = new Sorted(sort, size);
+            int i = kept.nextSetBit(0);
+            int j = 0;
+            for (int k = 0; k < size; k++) {
+                if (j >= changed.images.length || (i >= 0 && compare(this, i, changed, j) <= 0)) {
+                    merged.copy(k, this, i);
+                    i = kept.nextSetBit(i + 1);
+                } else {
+                    merged.copy(k, changed, j++);
+                }
+            }
+            return merged;
+        }
+
+        /**
+         * Creates an empty list, to be filled by copying images into it.
+         *
+         * @param sort  the order the images are to be sorted in
+         * @param size  the number of images
+         */
+        private Sorted(ImageSort sort, int size) {
+            this.sort = sort;
+            this.images = new Image[size];
+            this.ids = new int[size];
+            this.keys = new long[size];
+            this.nameKeys = new long[2 * size];
+            this.nameHandles = new int[size][];
+            this.names = new String[size];
+        }
+
+        /**
+         * Helper function.
+         *
+         * @param to        the position to copy to
+         * @param from      the list to copy from
+         * @param position  the position to copy from
+         */
+        private void copy(int to, Sorted from, int position) {
+            images[to] = from.images[position];
+            ids[to] = from.ids[position];
+            keys[to] = from.keys[position];
+            nameKeys[2 * to] = from.nameKeys[2 * position];
+            nameKeys[2 * to + 1] = from.nameKeys[2 * position + 1];
+            nameHandles[to] = from.nameHandles[position];
+            names[to] = from.names[position];
+        }
+
+        /**
+         * Helper function.
+         * Puts the images in the given order.
+         *
+         * @param order     the position of the image to put at each position
+         */
+        private void permute(int[] order) {
+            Sorted sorted = new Sorted(sort, order.length);
+            for (int i = 0; i < order.length; i++) {
+                sorted.copy(i, this, order[i]);
+            }
+            images = sorted.images;
+            ids = sorted.ids;
+            keys = sorted.keys;
+            nameKeys = sorted.nameKeys;
+            nameHandles = sorted.nameHandles;
+            names = sorted.names;
+        }
+
+        /**
+         * Helper function.
+         *
+         * @return      the position of each image in this list by its id, or -1 for ids not in it
+         */
+        private int[] positions() {
+            int maxId = -1;
+            for (int id : ids) {
+                maxId = Math.max(maxId, id);
+            }
+            int[] positions = new int[maxId + 1];
+            Arrays.fill(positions, -1);
+            for (int i = 0; i < ids.length; i++) {
+                positions[ids[i]] = i;
+            }
+            return positions;
+        }
+
+        /**
+         * Helper function.
+         *
+         * @param a     the position of an image
+         * @param b     the position of the image after it
+         * @return      true iff the two images have equal keys, so keep their order when the list is reversed
+         */
+        private boolean sameKey(int a, int b) {
+            return keys[a] == keys[b] && (sort != ImageSort.NAME || compareNames(this, a, this, b) == 0);
+        }
+
+        /**
+         * Helper function.
+         *
+         * @param x     the list of an image
+         * @param a     the position of the image in its list
+         * @param y     the list of another image, sorted in the same order
+         * @param b     the position of the other image in its list
+         * @return      a negative number if image a comes first, a positive one if image b does, or 0 if
+         *              they are the same image
+         */
+        private static int compare(Sorted x, int a, Sorted y, int b) {
+            int result = Long.compare(x.keys[a], y.keys[b]);
+            if (result == 0 && x.sort != ImageSort.NAME) {
+                result = Long.compare(x.nameKeys[2 * a], y.nameKeys[2 * b]);
+            }
+            if (result == 0) {
+                result = compareNames(x, a, y, b);
+            }
+            return result != 0 ? result : Integer.compare(x.ids[a], y.ids[b]);
+        }
+
+        /**
+         * Helper function.
+         *
+         * @param x     the list of an image
+         * @param a     the position of the image in its list
+         * @param y     the list of another image whose first name key is the same as the first's
+         * @param b     the position of the other image in its list
+         * @return      the order of their whole names, ignoring case
+         */
+        private static int compareNames(Sorted x, int a, Sorted y, int b) {
+            int result = Long.compare(x.nameKeys[2 * a + 1], y.nameKeys[2 * b + 1]);
+            if (result != 0) {
+                return result;
+            }
+            if (x.names[a] == null) {
+                x.names[a] = x.images[a].getName();
+            }
+            if (y.names[b] == null) {
+                y.names[b] = y.images[b].getName();
+            }
+            return x.names[a].compareToIgnoreCase(y.names[b]);
+        }
+    }
+}
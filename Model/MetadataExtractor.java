@@ -0,0 +1,140 @@
+package Model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads the metadata of images in the background, on a pool of one thread per core, so that scanning and
+ * reconciling never wait on it. The metadata of an image is kept with the image, along with the size and
+ * modification time of the file it was read from, so a file is only read again once it changes.
+ */
+class MetadataExtractor {
+
+    /**
+     * The threads reading headers. They are daemons, so a pending read never keeps the program running.
+     */
+    private ExecutorService readers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "metadata-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * The number of images submitted and not read yet.
+     */
+    private AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * The manager whose index is told about the metadata read.
+     */
+    private ImageManager imageManager;
+
+    /**
+     * Creates an extractor that indexes the metadata it reads in the given manager.
+     *
+     * @param imageManager  the manager keeping the index of the metadata of loaded images
+     */
+    MetadataExtractor(ImageManager imageManager) {
+        this.imageManager = imageManager;
+    }
+
+    /**
+     * Reads the metadata of the given image, unless it was already read from the file as it is now.
+     *
+     * @param image         the image
+     * @param fileSize      the size of its file, in bytes
+     * @param fileModified  the modification time of its file, in milliseconds since the epoch
+     */
+    void submit(Image image, long fileSize, long fileModified) {
+        if (isCurrent(image, fileSize, fileModified)) {
+            return;
+        }
+        execute(() -> read(image, image.getFile().toPath(), fileSize, fileModified));
+    }
+
+    /**
+     * Reads the metadata of each of the given images whose file changed since it was last read, or that was
+     * never read. Each file is checked on the pool, so this returns at once.
+     *
+     * @param images    the images to check
+     */
+    void refresh(Collection<Image> images) {
+        for (Image image : images) {
+            execute(() -> {
+                Path path = image.getFile().toPath();
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    long fileModified = attrs.lastModifiedTime().toMillis();
+                    if (!isCurrent(image, attrs.size(), fileModified)) {
+                        read(image, path, attrs.size(), fileModified);
+                    }
+                } catch (NoSuchFileException e) {
+                    // Removed or renamed since; the next reconciliation deals with it
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return  the number of images submitted whose metadata has not been read yet
+     */
+    int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param task  the task to run on the pool, counted as pending until it is done
+     */
+    private void execute(Runnable task) {
+        pending.incrementAndGet();
+        readers.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param image         the image to read the metadata of
+     * @param path          the path of its file
+     * @param fileSize      the size of the file, in bytes
+     * @param fileModified  the modification time of the file, in milliseconds since the epoch
+     */
+    private void read(Image image, Path path, long fileSize, long fileModified) {
+        try {
+            image.setMetadata(MetadataReader.read(path, fileSize, fileModified));
+            imageManager.metadataRead(image);
+        } catch (NoSuchFileException e) {
+            // Removed or renamed since; the next reconciliation deals with it
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param image         an image
+     * @param fileSize      the size of its file now, in bytes
+     * @param fileModified  the modification time of its file now, in milliseconds since the epoch
+     * @return              true iff the metadata of the image was read from its file as it is now
+     */
+    private static boolean isCurrent(Image image, long fileSize, long fileModified) {
+        ImageMetadata metadata = image.getMetadata();
+        return metadata != null && metadata.isCurrent(fileSize, fileModified);
+    }
+}
@@ -0,0 +1,162 @@
+package Model;
+
+import java.util.BitSet;
+
+/**
+ * Range indexes over the capture time, file size and pixel count of every loaded image whose metadata has
+ * been read. Images are added as they are created or loaded, and their values are indexed once their metadata
+ * is read, which happens on the threads of the MetadataExtractor; so every method is synchronized.
+ *
+ * A filter is answered from the index of its most selective range, and the other ranges are checked against
+ * the metadata of each image found, so no filter ever looks at every image.
+ */
+class MetadataIndex {
+
+    /**
+     * The indexes of each value. Images whose capture time or dimensions are unknown are left out of the
+     * index of that value.
+     */
+    private RangeIndex captureTimes = new RangeIndex();
+    private RangeIndex fileSizes = new RangeIndex();
+    private RangeIndex pixelCounts = new RangeIndex();
+
+    /**
+     * The ids of the loaded images, so that metadata read for an image after it was removed is ignored.
+     */
+    private BitSet loaded = new BitSet();
+
+    /**
+     * Indexes a loaded image, with its metadata if it has been read.
+     *
+     * @param image     the image that was created or loaded
+     */
+    synchronized void add(Image image) {
+        loaded.set(image.getId());
+        index(image);
+    }
+
+    /**
+     * Indexes the metadata just read for the given image, if it is still loaded.
+     *
+     * @param image     the image whose metadata was read
+     */
+    synchronized void metadataRead(Image image) {
+        if (loaded.get(image.getId())) {
+            index(image);
+        }
+    }
+
+    /**
+     * @param image     the image that was removed or unloaded
+     */
+    synchronized void remove(Image image) {
+        int id = image.getId();
+        loaded.clear(id);
+        captureTimes.remove(id);
+        fileSizes.remove(id);
+        pixelCounts.remove(id);
+    }
+
+    /**
+     * Forgets every image.
+     */
+    synchronized void clear() {
+        loaded.clear();
+        captureTimes.clear();
+        fileSizes.clear();
+        pixelCounts.clear();
+    }
+
+    /**
+     * @param filter    a filter with at least one range set
+     * @return          about the number of images matching the most selective range of the filter, never fewer
+     */
+    synchronized int estimate(ImageFilter filter) {
+        return estimate(mostSelective(filter), filter);
+    }
+
+    /**
+     * @param filter    a filter with at least one range set
+     * @return          the ids of the images in the most selective range of the filter, a superset of the
+     *                  images matching the whole filter
+     */
+    synchronized BitSet candidates(ImageFilter filter) {
+        RangeIndex index = mostSelective(filter);
+        long[] bounds = bounds(index, filter);
+        return index.range(bounds[0], bounds[1]);
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param image     the image whose values to index
+     */
+    private void index(Image image) {
+        int id = image.getId();
+        ImageMetadata metadata = image.getMetadata();
+        if (metadata == null) {
+            return;
+        }
+        if (metadata.getCaptureTime() != 0) {
+            captureTimes.put(id, metadata.getCaptureTime());
+        } else {
+            captureTimes.remove(id);
+        }
+        fileSizes.put(id, metadata.getFileSize());
+        if (metadata.getPixelCount() != 0) {
+            pixelCounts.put(id, metadata.getPixelCount());
+        } else {
+            pixelCounts.remove(id);
+        }
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param filter    a filter with at least one range set
+     * @return          the index of the range of the filter matching the fewest images
+     */
+    private RangeIndex mostSelective(ImageFilter filter) {
+        RangeIndex best = null;
+        for (RangeIndex index : new RangeIndex[]{captureTimes, fileSizes, pixelCounts}) {
+            if (isSet(index, filter) && (best == null || estimate(index, filter) < estimate(best, filter))) {
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param index     one of the indexes
+     * @param filter    a filter
+     * @return          true iff the filter sets the range of the value of the index
+     */
+    private boolean isSet(RangeIndex index, ImageFilter filter) {
+        return index == captureTimes ? filter.hasCaptureTime()
+                : index == fileSizes ? filter.hasFileSize() : filter.hasPixelCount();
+    }
+
+    /**
+     * @param index     one of the indexes
+     * @param filter    a filter setting the range of the value of the index
+     * @return          about the number of images in that range
+     */
+    private int estimate(RangeIndex index, ImageFilter filter) {
+        long[] bounds = bounds(index, filter);
+        return index.estimate(bounds[0], bounds[1]);
+    }
+
+    /**
+     * @param index     one of the indexes
+     * @param filter    a filter
+     * @return          the smallest and largest value of the filter's range of the value of the index
+     */
+    private long[] bounds(RangeIndex index, ImageFilter filter) {
+        if (index == captureTimes) {
+            return new long[]{filter.getMinCaptureTime(), filter.getMaxCaptureTime()};
+        } else if (index == fileSizes) {
+            return new long[]{filter.getMinFileSize(), filter.getMaxFileSize()};
+        }
+        return new long[]{filter.getMinPixelCount(), filter.getMaxPixelCount()};
+    }
+}
@@ -0,0 +1,404 @@
+package Model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads the dimensions, capture time and camera of an image from the header of its file, without decoding it.
+ * JPEG, PNG, GIF, BMP and TIFF files are recognized by their first bytes, whatever their extension, so raw
+ * formats built on TIFF are read too. Only the few bytes each field is in are read: JPEG segments and PNG chunks
+ * are skipped by their length, and stop at the image data.
+ *
+ * Capture times and cameras come from EXIF: the APP1 segment of a JPEG, the eXIf chunk of a PNG, or the IFDs of
+ * a TIFF. EXIF times have no time zone, so they are read in the default one.
+ */
+class MetadataReader {
+
+    /**
+     * The TIFF tags read, and the tag of the EXIF IFD holding the rest.
+     */
+    private static final int IMAGE_WIDTH = 0x0100;
+    private static final int IMAGE_HEIGHT = 0x0101;
+    private static final int MAKE = 0x010F;
+    private static final int MODEL = 0x0110;
+    private static final int DATE_TIME = 0x0132;
+    private static final int EXIF_IFD = 0x8769;
+    private static final int DATE_TIME_ORIGINAL = 0x9003;
+    private static final int PIXEL_X_DIMENSION = 0xA002;
+    private static final int PIXEL_Y_DIMENSION = 0xA003;
+
+    /**
+     * The most JPEG segments or PNG chunks looked at before giving up on a file.
+     */
+    private static final int MAX_BLOCKS = 256;
+
+    /**
+     * The format of EXIF dates, e.g. "2019:07:04 12:34:56".
+     */
+    private static final DateTimeFormatter EXIF_DATE = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    /**
+     * Reads the metadata of the given file.
+     *
+     * @param path          the path of the file
+     * @param fileSize      the size of the file, in bytes
+     * @param fileModified  the modification time of the file, in milliseconds since the epoch
+     * @return              what the header says about the image, with every field unknown if it is not an image
+     *                      this can read
+     * @throws IOException  if the file cannot be read
+     */
+    static ImageMetadata read(Path path, long fileSize, long fileModified) throws IOException {
+        Fields fields = new Fields();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer start = read(channel, 0, 30, ByteOrder.BIG_ENDIAN);
+            if (start.limit() >= 4 && (start.getShort(0) & 0xffff) == 0xFFD8) {
+                readJpeg(channel, fields);
+            } else if (start.limit() >= 24 && start.getLong(0) == 0x89504E470D0A1A0AL) {
+                readPng(channel, fields);
+            } else if (start.limit() >= 10 && start.get(0) == 'G' && start.get(1) == 'I' && start.get(2) == 'F') {
+                start.order(ByteOrder.LITTLE_ENDIAN);
+                fields.width = start.getShort(6) & 0xffff;
+                fields.height = start.getShort(8) & 0xffff;
+            } else if (start.limit() >= 26 && start.get(0) == 'B' && start.get(1) == 'M') {
+                start.order(ByteOrder.LITTLE_ENDIAN);
+                if (start.getInt(14) == 12) {
+                    // The old OS/2 header, with 16 bit dimensions
+                    fields.width = start.getShort(18) & 0xffff;
+                    fields.height = start.getShort(20) & 0xffff;
+                } else {
+                    fields.width = Math.abs(start.getInt(18));
+                    fields.height = Math.abs(start.getInt(22));
+                }
+            } else if (start.limit() >= 8 && isTiff(start, 0)) {
+                readTiff((offset, length) -> read(channel, offset, length, ByteOrder.BIG_ENDIAN), fields, true);
+            }
+        }
+        return new ImageMetadata(fields.width, fields.height, fields.captureTime, fields.camera(), fileSize,
+                fileModified);
+    }
+
+    /**
+     * Helper function.
+     * Walks the segments of a JPEG up to the image data, reading EXIF from APP1 and the dimensions from the
+     * start of frame.
+     *
+     * @param channel   the file
+     * @param fields    the fields read so far
+     * @throws IOException  if the file cannot be read
+     */
+    private static void readJpeg(FileChannel channel, Fields fields) throws IOException {
+        long position = 2;
+        for (int i = 0; i < MAX_BLOCKS; i++) {
+            ByteBuffer header = read(channel, position, 4, ByteOrder.BIG_ENDIAN);
+            if (header.limit() < 4 || (header.get(0) & 0xff) != 0xFF) {
+                return;
+            }
+            int marker = header.get(1) & 0xff;
+            if (marker == 0xFF) {
+                // Fill byte before a marker
+                position++;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // End of image, or start of the compressed data
+                return;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                position += 2;
+                continue;
+            }
+            int length = header.getShort(2) & 0xffff;
+            if (marker == 0xE1 && length > 8) {
+                ByteBuffer segment = read(channel, position + 4, length - 2, ByteOrder.BIG_ENDIAN);
+                if (segment.limit() > 6 && segment.getInt(0) == 0x45786966 && segment.getShort(4) == 0) {
+                    // "Exif\0\0", followed by a TIFF structure whose offsets start after it
+                    ByteBuffer tiff = slice(segment, 6);
+                    readTiff((offset, size) -> slice(tiff, offset, size), fields, false);
+                }
+            } else if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                ByteBuffer frame = read(channel, position + 4, 5, ByteOrder.BIG_ENDIAN);
+                if (frame.limit() == 5) {
+                    fields.height = frame.getShort(1) & 0xffff;
+                    fields.width = frame.getShort(3) & 0xffff;
+                }
+                return;
+            }
+            position += 2 + length;
+        }
+    }
+
+    /**
+     * Helper function.
+     * Walks the chunks of a PNG up to the image data, reading the dimensions from IHDR and EXIF from eXIf.
+     *
+     * @param channel   the file
+     * @param fields    the fields read so far
+     * @throws IOException  if the file cannot be read
+     */
+    private static void readPng(FileChannel channel, Fields fields) throws IOException {
+        long position = 8;
+        for (int i = 0; i < MAX_BLOCKS; i++) {
+            ByteBuffer header = read(channel, position, 8, ByteOrder.BIG_ENDIAN);
+            if (header.limit() < 8) {
+                return;
+            }
+            long length = header.getInt(0) & 0xffffffffL;
+            String type = new String(new byte[]{header.get(4), header.get(5), header.get(6), header.get(7)},
+                    StandardCharsets.US_ASCII);
+            if (type.equals("IHDR")) {
+                ByteBuffer size = read(channel, position + 8, 8, ByteOrder.BIG_ENDIAN);
+                if (size.limit() == 8) {
+                    fields.width = size.getInt(0);
+                    fields.height = size.getInt(4);
+                }
+            } else if (type.equals("eXIf") && length <= Integer.MAX_VALUE) {
+                ByteBuffer tiff = read(channel, position + 8, (int) length, ByteOrder.BIG_ENDIAN);
+                readTiff((offset, size) -> slice(tiff, offset, size), fields, false);
+            } else if (type.equals("IDAT") || type.equals("IEND")) {
+                return;
+            }
+            // Length, type, data and CRC
+            position += 12 + length;
+        }
+    }
+
+    /**
+     * Helper function.
+     * Reads the first IFD of a TIFF structure, and the EXIF IFD it points to.
+     *
+     * @param source        the bytes of the TIFF structure, by offset from its start
+     * @param fields        the fields read so far
+     * @param dimensions    whether or not the dimensions in the IFDs are those of the image, as in a TIFF file,
+     *                      rather than those of a thumbnail or a hint, as in a JPEG
+     * @throws IOException  if the bytes cannot be read
+     */
+    private static void readTiff(Source source, Fields fields, boolean dimensions) throws IOException {
+        ByteBuffer header = source.get(0, 8);
+        if (header.limit() < 8 || !isTiff(header, 0)) {
+            return;
+        }
+        ByteOrder order = header.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        header.order(order);
+        long exif = readIfd(source, order, header.getInt(4) & 0xffffffffL, fields, dimensions);
+        if (exif > 0) {
+            readIfd(source, order, exif, fields, dimensions);
+        }
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param source        the bytes of the TIFF structure, by offset from its start
+     * @param order         the byte order of the structure
+     * @param offset        the offset of the IFD
+     * @param fields        the fields read so far, which the fields found in the IFD are put in
+     * @param dimensions    whether or not to read the dimensions in the IFD
+     * @return              the offset of the EXIF IFD if this IFD points to one, or 0
+     * @throws IOException  if the bytes cannot be read
+     */
+    private static long readIfd(Source source, ByteOrder order, long offset, Fields fields, boolean dimensions)
+            throws IOException {
+        ByteBuffer count = source.get(offset, 2).order(order);
+        if (count.limit() < 2) {
+            return 0;
+        }
+        int entries = count.getShort(0) & 0xffff;
+        ByteBuffer ifd = source.get(offset + 2, entries * 12).order(order);
+        long exif = 0;
+        for (int i = 0; i + 12 <= ifd.limit(); i += 12) {
+            int tag = ifd.getShort(i) & 0xffff;
+            int type = ifd.getShort(i + 2) & 0xffff;
+            long values = ifd.getInt(i + 4) & 0xffffffffL;
+            switch (tag) {
+                case IMAGE_WIDTH:
+                case PIXEL_X_DIMENSION:
+                    if (dimensions || fields.width == 0) {
+                        fields.width = number(ifd, i, type);
+                    }
+                    break;
+                case IMAGE_HEIGHT:
+                case PIXEL_Y_DIMENSION:
+                    if (dimensions || fields.height == 0) {
+                        fields.height = number(ifd, i, type);
+                    }
+                    break;
+                case MAKE:
+                    fields.make = text(source, ifd, i, values, order);
+                    break;
+                case MODEL:
+                    fields.model = text(source, ifd, i, values, order);
+                    break;
+                case DATE_TIME:
+                    if (fields.captureTime == 0) {
+                        fields.captureTime = date(text(source, ifd, i, values, order));
+                    }
+                    break;
+                case DATE_TIME_ORIGINAL:
+                    long taken = date(text(source, ifd, i, values, order));
+                    if (taken != 0) {
+                        fields.captureTime = taken;
+                    }
+                    break;
+                case EXIF_IFD:
+                    exif = ifd.getInt(i + 8) & 0xffffffffL;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return exif == offset ? 0 : exif;
+    }
+
+    /**
+     * @param ifd       an IFD
+     * @param entry     the offset of an entry in the IFD
+     * @param type      the type of the entry, SHORT (3) or LONG (4)
+     * @return          the first value of the entry
+     */
+    private static int number(ByteBuffer ifd, int entry, int type) {
+        return type == 3 ? ifd.getShort(entry + 8) & 0xffff : ifd.getInt(entry + 8);
+    }
+
+    /**
+     * @param source    the bytes of the TIFF structure
+     * @param ifd       an IFD
+     * @param entry     the offset of an ASCII entry in the IFD
+     * @param length    the number of bytes of the entry
+     * @param order     the byte order of the structure
+     * @return          the text of the entry, without trailing NULs and spaces
+     * @throws IOException  if the bytes cannot be read
+     */
+    private static String text(Source source, ByteBuffer ifd, int entry, long length, ByteOrder order)
+            throws IOException {
+        if (length > 256) {
+            return null;
+        }
+        ByteBuffer bytes = length <= 4 ? slice(ifd, entry + 8, (int) length)
+                : source.get(ifd.getInt(entry + 8) & 0xffffffffL, (int) length);
+        byte[] text = new byte[bytes.limit()];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = bytes.get(i);
+        }
+        String value = new String(text, StandardCharsets.UTF_8);
+        int end = value.indexOf('\0');
+        return (end < 0 ? value : value.substring(0, end)).trim();
+    }
+
+    /**
+     * @param text  an EXIF date, e.g. "2019:07:04 12:34:56", or null
+     * @return      the date in the default time zone, in milliseconds since the epoch, or 0 if it is not a date
+     */
+    private static long date(String text) {
+        if (text == null || text.length() < 19) {
+            return 0;
+        }
+        try {
+            return LocalDateTime.parse(text.substring(0, 19), EXIF_DATE).atZone(ZoneId.systemDefault())
+                    .toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @param bytes     some bytes
+     * @param offset    the offset to look at
+     * @return          true iff a TIFF header, "II*\0" or "MM\0*", starts at the offset
+     */
+    private static boolean isTiff(ByteBuffer bytes, int offset) {
+        int order = bytes.getShort(offset) & 0xffff;
+        int magic = bytes.getShort(offset + 2) & 0xffff;
+        return (order == 0x4949 && magic == 0x2A00) || (order == 0x4D4D && magic == 0x002A);
+    }
+
+    /**
+     * Reads at most length bytes of a file, without moving its position.
+     *
+     * @param channel   the file
+     * @param offset    where to start reading
+     * @param length    the number of bytes to read
+     * @param order     the byte order of the bytes
+     * @return          the bytes, fewer than length if the file ends first
+     * @throws IOException  if the file cannot be read
+     */
+    private static ByteBuffer read(FileChannel channel, long offset, int length, ByteOrder order) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, (int) Math.min(length, channel.size() - offset)));
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+            // Keep reading until the buffer is full
+        }
+        buffer.flip();
+        return buffer.order(order);
+    }
+
+    /**
+     * @param buffer    some bytes
+     * @param offset    the offset to start at
+     * @return          the bytes from the offset on, sharing the buffer
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int offset) {
+        ByteBuffer copy = buffer.duplicate();
+        copy.position(Math.min(offset, copy.limit()));
+        return copy.slice().order(buffer.order());
+    }
+
+    /**
+     * @param buffer    some bytes
+     * @param offset    the offset to start at
+     * @param length    the number of bytes to take
+     * @return          at most length bytes from the offset on, sharing the buffer
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, long offset, int length) {
+        if (offset >= buffer.limit()) {
+            return ByteBuffer.allocate(0);
+        }
+        ByteBuffer copy = slice(buffer, (int) offset);
+        copy.limit(Math.min(length, copy.limit()));
+        return copy;
+    }
+
+    /**
+     * Where the bytes of a TIFF structure come from: a segment already read, or the file itself.
+     */
+    private interface Source {
+
+        /**
+         * @param offset    the offset of the bytes from the start of the TIFF structure
+         * @param length    the number of bytes
+         * @return          at most length bytes, fewer if the structure ends first
+         * @throws IOException  if the bytes cannot be read
+         */
+        ByteBuffer get(long offset, int length) throws IOException;
+    }
+
+    /**
+     * The fields read from a file so far.
+     */
+    private static class Fields {
+        private int width;
+        private int height;
+        private long captureTime;
+        private String make;
+        private String model;
+
+        /**
+         * @return  the make and model of the camera, without repeating the make if the model starts with it
+         */
+        String camera() {
+            if (model == null || model.isEmpty()) {
+                return make == null || make.isEmpty() ? null : make;
+            } else if (make == null || make.isEmpty() || model.toLowerCase().startsWith(make.toLowerCase())) {
+                return model;
+            }
+            return make + " " + model;
+        }
+    }
+}
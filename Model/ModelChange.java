@@ -0,0 +1,90 @@
+package Model;
+
+/**
+ * Describes one fine-grained change to the model, published to observers of GeneralManager and TagManager
+ * so that views can update only what changed instead of rebuilding whole lists.
+ */
+public class ModelChange {
+
+    /**
+     * The kinds of changes that can be published.
+     */
+    public enum Kind {
+        IMAGE_ADDED, IMAGE_REMOVED, IMAGE_UPDATED, TAG_ADDED, TAG_REMOVED, TAG_UPDATED
+    }
+
+    /**
+     * The kind of this change.
+     */
+    private final Kind kind;
+
+    /**
+     * The image that changed, or null if a tag changed.
+     */
+    private final Image image;
+
+    /**
+     * The tag that changed, or null if an image changed.
+     */
+    private final Tag tag;
+
+    /**
+     * The directory the image was added to or removed from, or its current directory if it was updated.
+     */
+    private final Directory directory;
+
+    /**
+     * Creates a change to the given image.
+     *
+     * @param kind          one of IMAGE_ADDED, IMAGE_REMOVED or IMAGE_UPDATED
+     * @param image         the image that changed
+     * @param directory     the directory the image was added to or removed from
+     */
+    ModelChange(Kind kind, Image image, Directory directory) {
+        this.kind = kind;
+        this.image = image;
+        this.tag = null;
+        this.directory = directory;
+    }
+
+    /**
+     * Creates a change to the given tag.
+     *
+     * @param kind          one of TAG_ADDED, TAG_REMOVED or TAG_UPDATED
+     * @param tag           the tag that changed
+     */
+    ModelChange(Kind kind, Tag tag) {
+        this.kind = kind;
+        this.image = null;
+        this.tag = tag;
+        this.directory = null;
+    }
+
+    /**
+     * @return      the kind of this change
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return      the image that changed, or null if a tag changed
+     */
+    public Image getImage() {
+        return image;
+    }
+
+    /**
+     * @return      the tag that changed, or null if an image changed
+     */
+    public Tag getTag() {
+        return tag;
+    }
+
+    /**
+     * @return      the directory the image was added to or removed from, or null if a tag changed
+     */
+    public Directory getDirectory() {
+        return directory;
+    }
+}
@@ -0,0 +1,83 @@
+package Model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event emitted by every GeneralManager operation that a user action can trigger.
+ * Together with the event's duration, the fields show how much work the operation did and where in the tree.
+ *
+ * Usage: ModelOperationEvent event = ModelOperationEvent.start("moveImage", Operation.MOVE);
+ *        ... event.finish(imageCount, tagCount, currentDirectory);
+ */
+@Name("Model.Operation")
+@Label("Model Operation")
+@Category({"Image Tagger", "Model"})
+@Description("A GeneralManager operation triggered by the user")
+public class ModelOperationEvent extends Event {
+
+    /**
+     * The name of the GeneralManager method.
+     */
+    @Label("Operation")
+    String operation;
+
+    /**
+     * The kind of operation, as used by OperationMetrics.
+     */
+    @Label("Kind")
+    String kind;
+
+    /**
+     * The number of images involved.
+     */
+    @Label("Images")
+    int imageCount;
+
+    /**
+     * The number of tags involved.
+     */
+    @Label("Tags")
+    int tagCount;
+
+    /**
+     * The depth of the directory the operation ran in, with the root directory at depth 0.
+     */
+    @Label("Directory Depth")
+    int directoryDepth;
+
+    /**
+     * Creates and begins timing an event for the given operation.
+     *
+     * @param operation     the name of the GeneralManager method
+     * @param kind          the kind of operation
+     * @return              the started event
+     */
+    static ModelOperationEvent start(String operation, Operation kind) {
+        ModelOperationEvent event = new ModelOperationEvent();
+        event.operation = operation;
+        event.kind = kind.name();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Stops timing this event and commits it, if recording is enabled.
+     *
+     * @param imageCount    the number of images involved
+     * @param tagCount      the number of tags involved
+     * @param directory     the directory the operation ran in, or null if there is none
+     */
+    void finish(int imageCount, int tagCount, Directory directory) {
+        end();
+        if (shouldCommit()) {
+            this.imageCount = imageCount;
+            this.tagCount = tagCount;
+            this.directoryDepth = directory == null ? -1 : directory.getDepth();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package Model;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A dictionary of the names of images and tags, stored outside the heap. Each distinct name is stored once,
+ * encoded as UTF-8, in a direct buffer, and is referred to by an integer handle: the offset of its record.
+ * Since every name is stored once, two handles are equal iff their names are.
+ *
+ * Names are only ever added, so handles stay valid for as long as the dictionary is saved with the shards
+ * that refer to them. Each record is its hash, its length and its bytes. So that the dictionary does not grow
+ * with every rename, the names of images are stored in parts that are shared between images and between the
+ * names one image has had: the name without its tags, each of its tags and its extension. Since handles are
+ * offsets, the dictionary holds at most MAX_CAPACITY bytes of names.
+ */
+class NameDictionary {
+
+    /**
+     * The dictionary shared by every image and tag in the program.
+     */
+    static final NameDictionary NAMES = new NameDictionary();
+
+    /**
+     * The size of the hash and length stored before the bytes of each name.
+     */
+    private static final int HEADER = 8;
+
+    /**
+     * The most bytes of records the dictionary can hold, since handles are int offsets into them.
+     */
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE;
+
+    /**
+     * What separates the name of an image without its tags from each of its tags, e.g. "a @x @y.jpg".
+     */
+    private static final String TAG_SEPARATOR = " @";
+
+    /**
+     * The records of every name. Replaced by a larger copy when full, so readers holding the old buffer
+     * still see every name that was in it. Written again after each record is added, so that a reader
+     * who reads it sees every record added before.
+     */
+    private volatile ByteBuffer data = ByteBuffer.allocateDirect(64 * 1024);
+
+    /**
+     * The number of bytes of data in use.
+     */
+    private int size = 0;
+
+    /**
+     * An open addressing table of the handle of each name plus one, with 0 marking an empty slot.
+     */
+    private int[] table = new int[1024];
+
+    /**
+     * The number of names in the dictionary.
+     */
+    private int count = 0;
+
+    /**
+     * The number of bytes of data that are in the file the dictionary was last saved to.
+     */
+    private int saved = 0;
+
+    /**
+     * Returns the handle of the given name, adding it to the dictionary if it is not already there.
+     *
+     * @param name      a name
+     * @return          the handle of the name
+     */
+    synchronized int intern(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        int slot = find(bytes, hash);
+        if (table[slot] != 0) {
+            return table[slot] - 1;
+        }
+        ensureCapacity(HEADER + bytes.length);
+        int handle = size;
+        ByteBuffer buffer = data;
+        buffer.putInt(handle, hash);
+        buffer.putInt(handle + 4, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(handle + HEADER + i, bytes[i]);
+        }
+        size = handle + HEADER + bytes.length;
+        data = buffer;
+        table[slot] = handle + 1;
+        if (++count * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return handle;
+    }
+
+    /**
+     * Interns the name of an image in parts: the part before its first TAG_SEPARATOR, the part after each
+     * TAG_SEPARATOR, and its extension. Renaming an image to another combination of tags then only adds the
+     * tags that were never in a name before. Any name is split this way, tagged or not, and is rebuilt exactly.
+     *
+     * @param name      the name of an image
+     * @return          the handles of its untagged name, its extension, then each of its tags in order
+     */
+    synchronized int[] internName(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot == -1) {
+            dot = name.length();
+        }
+        int parts = 2;
+        for (int i = name.indexOf(TAG_SEPARATOR); i != -1 && i < dot; i = name.indexOf(TAG_SEPARATOR, i + 1)) {
+            parts++;
+        }
+        int[] handles = new int[parts];
+        handles[1] = intern(name.substring(dot));
+        int start = 0;
+        for (int part = 0; part < parts - 1; part++) {
+            int end = part == parts - 2 ? dot : name.indexOf(TAG_SEPARATOR, start);
+            handles[part == 0 ? 0 : part + 1] = intern(name.substring(start, end));
+            start = end + TAG_SEPARATOR.length();
+        }
+        return handles;
+    }
+
+    /**
+     * Returns the handle of the given name without adding it, e.g. to look up a name typed by the user.
+     *
+     * @param name      a name
+     * @return          the handle of the name, or -1 if it is not in the dictionary
+     */
+    synchronized int lookup(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        return table[find(bytes, hash(bytes))] - 1;
+    }
+
+    /**
+     * @param handle    the handle of a name
+     * @return          the name
+     */
+    String get(int handle) {
+        ByteBuffer buffer = data;
+        byte[] bytes = new byte[buffer.getInt(handle + 4)];
+        copy(buffer, handle, bytes, 0);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes the name of an image from its parts.
+     *
+     * @param handles   the handles returned by internName
+     * @return          the name of the image
+     */
+    String getName(int[] handles) {
+        ByteBuffer buffer = data;
+        int length = buffer.getInt(handles[0] + 4) + buffer.getInt(handles[1] + 4);
+        for (int part = 2; part < handles.length; part++) {
+            length += TAG_SEPARATOR.length() + buffer.getInt(handles[part] + 4);
+        }
+        byte[] bytes = new byte[length];
+        int position = copy(buffer, handles[0], bytes, 0);
+        for (int part = 2; part < handles.length; part++) {
+            for (int i = 0; i < TAG_SEPARATOR.length(); i++) {
+                bytes[position++] = (byte) TAG_SEPARATOR.charAt(i);
+            }
+            position = copy(buffer, handles[part], bytes, position);
+        }
+        copy(buffer, handles[1], bytes, position);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return      the number of bytes of names stored outside the heap
+     */
+    synchronized long offHeapBytes() {
+        return size;
+    }
+
+    /**
+     * Writes the names added since the dictionary was last saved to the given file. The whole dictionary is
+     * written if the file is not the one it was last saved to, e.g. because it was deleted.
+     *
+     * @param file      the file to save to
+     */
+    synchronized void save(File file) {
+        boolean append = file.exists() && file.length() == saved;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer records = data.duplicate();
+            records.limit(size);
+            records.position(append ? saved : 0);
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+            saved = size;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Replaces the contents of the dictionary with those saved in the given file, so that the handles in
+     * the shards saved with it are valid again.
+     *
+     * @param file      a file written by save()
+     */
+    synchronized void load(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            int length = (int) channel.size();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(capacity(length, 0));
+            while (buffer.position() < length && channel.read(buffer) >= 0) {
+                // Keep reading until the whole file is in the buffer
+            }
+            table = new int[Integer.highestOneBit(Math.max(length / 8, 512)) * 4];
+            count = 0;
+            for (int handle = 0; handle < length; handle += HEADER + buffer.getInt(handle + 4)) {
+                insert(table, buffer, handle);
+                count++;
+            }
+            size = length;
+            saved = length;
+            data = buffer;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param bytes     the bytes of a name
+     * @param hash      the hash of the bytes
+     * @return          the slot of the table holding the name, or the empty slot it would go in
+     */
+    private int find(byte[] bytes, int hash) {
+        ByteBuffer buffer = data;
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int handle = table[slot] - 1;
+            if (handle < 0) {
+                return slot;
+            }
+            if (buffer.getInt(handle) == hash && buffer.getInt(handle + 4) == bytes.length
+                    && equals(buffer, handle + HEADER, bytes)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Helper function.
+     * Makes room for the given number of bytes at the end of data.
+     *
+     * @param bytes     the number of bytes about to be added
+     * @throws IllegalStateException    if the dictionary would hold more than MAX_CAPACITY bytes
+     */
+    private void ensureCapacity(int bytes) {
+        ByteBuffer buffer = data;
+        if ((long) size + bytes <= buffer.capacity()) {
+            return;
+        }
+        if ((long) size + bytes > MAX_CAPACITY) {
+            throw new IllegalStateException("The name dictionary is full");
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect(capacity(buffer.capacity(), size + bytes));
+        ByteBuffer records = buffer.duplicate();
+        records.limit(size);
+        records.position(0);
+        larger.put(records);
+        data = larger;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param current   the capacity of the buffer now, or the number of bytes about to be loaded into a new one
+     * @param required  the fewest bytes the new buffer must hold
+     * @return          twice the current capacity, at least required and 64 KB, and at most MAX_CAPACITY
+     */
+    private static int capacity(int current, int required) {
+        return (int) Math.min(MAX_CAPACITY, Math.max(Math.max(2L * current, required), 64 * 1024));
+    }
+
+    /**
+     * Helper function.
+     * Replaces the table with one of the given capacity holding every name.
+     *
+     * @param capacity  the capacity of the new table, a power of two
+     */
+    private void rehash(int capacity) {
+        int[] larger = new int[capacity];
+        for (int handle : table) {
+            if (handle != 0) {
+                insert(larger, data, handle - 1);
+            }
+        }
+        table = larger;
+    }
+
+    /**
+     * Helper function.
+     * Puts a handle in the first free slot for its hash, without checking for duplicates.
+     *
+     * @param table     the table to insert into
+     * @param buffer    the buffer holding the record of the handle
+     * @param handle    the handle to insert
+     */
+    private static void insert(int[] table, ByteBuffer buffer, int handle) {
+        int mask = table.length - 1;
+        int slot = buffer.getInt(handle) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = handle + 1;
+    }
+
+    /**
+     * @param bytes     the bytes of a name
+     * @return          the FNV-1a hash of the bytes
+     */
+    private static int hash(byte[] bytes) {
+        int hash = 0x811c9dc5;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xff)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    /**
+     * @param buffer    a buffer of records
+     * @param offset    the offset of the bytes of a name in the buffer
+     * @param bytes     the bytes of another name of the same length
+     * @return          true iff the names have the same bytes
+     */
+    private static boolean equals(ByteBuffer buffer, int offset, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the bytes of a name out of a buffer without moving its position, so that other threads can read
+     * it at once.
+     *
+     * @param buffer    a buffer of records
+     * @param handle    the handle of the name
+     * @param bytes     the array to copy into
+     * @param start     the index in the array to copy the first byte to
+     * @return          the index in the array after the last byte copied
+     */
+    private static int copy(ByteBuffer buffer, int handle, byte[] bytes, int start) {
+        int length = buffer.getInt(handle + 4);
+        for (int i = 0; i < length; i++) {
+            bytes[start + i] = buffer.get(handle + HEADER + i);
+        }
+        return start + length;
+    }
+}
@@ -0,0 +1,475 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.regex.Pattern;
+
+/**
+ * A trigram index over the names of loaded images, kept up to date by ImageManager as images are created,
+ * loaded, renamed and unloaded. Every name an image has had is indexed, so searches can include past names.
+ *
+ * Each lower case trigram of a name maps to the ids of the images whose names contain it. A search only
+ * checks the images listed under the rarest trigram of the query, or under enough of its trigrams for a
+ * typo-tolerant search. Ids are never removed from a list, so every candidate is checked against the
+ * image's actual names, and the index is rebuilt once as many images were renamed or removed as are loaded.
+ */
+class NameIndex {
+
+    /**
+     * The number of images renamed or removed since the last rebuild below which the index is never rebuilt.
+     */
+    private static final int MIN_REBUILD = 1024;
+
+    /**
+     * Every indexed image, by id.
+     */
+    private HashMap<Integer, Image> images = new HashMap<>();
+
+    /**
+     * The ids of the images whose names contain each trigram, in the order they were added.
+     */
+    private HashMap<Long, Postings> postings = new HashMap<>();
+
+    /**
+     * The number of images renamed or removed since the index was last rebuilt.
+     */
+    private int staleUpdates = 0;
+
+    /**
+     * The largest id ever added to the index.
+     */
+    private int maxId = 0;
+
+    /**
+     * Adds the given image to the index, with its current and past names.
+     *
+     * @param image     the image to add
+     */
+    synchronized void add(Image image) {
+        images.put(image.getId(), image);
+        maxId = Math.max(maxId, image.getId());
+        for (String name : image.getNameHistory()) {
+            addName(image.getId(), name);
+        }
+    }
+
+    /**
+     * Indexes the current name of the given image after a rename. Its old names stay indexed as past names.
+     *
+     * @param image     the image that was renamed
+     */
+    synchronized void rename(Image image) {
+        if (images.containsKey(image.getId())) {
+            addName(image.getId(), image.getName());
+            staleUpdates++;
+            rebuildIfStale();
+        }
+    }
+
+    /**
+     * Indexes the past names of the given image after its name history was replaced.
+     *
+     * @param image     the image whose history was replaced
+     */
+    synchronized void historyRestored(Image image) {
+        if (images.containsKey(image.getId())) {
+            for (String name : image.getNameHistory()) {
+                addName(image.getId(), name);
+            }
+            staleUpdates++;
+            rebuildIfStale();
+        }
+    }
+
+    /**
+     * Removes the given image from the index.
+     *
+     * @param image     the image to remove
+     */
+    synchronized void remove(Image image) {
+        if (images.remove(image.getId()) != null) {
+            staleUpdates++;
+            rebuildIfStale();
+        }
+    }
+
+    /**
+     * Removes every image from the index.
+     */
+    synchronized void clear() {
+        images.clear();
+        postings.clear();
+        staleUpdates = 0;
+    }
+
+    /**
+     * @param id        the id of an image
+     * @return          the indexed image with the given id, or null if it is not loaded
+     */
+    synchronized Image get(int id) {
+        return images.get(id);
+    }
+
+    /**
+     * Returns images whose name contains the given text, ignoring case.
+     *
+     * @param text              the text to look for
+     * @param includePastNames  whether or not to also match the past names of each image
+     * @param limit             the maximum number of images to return
+     * @return                  at most limit matching images
+     */
+    synchronized ArrayList<Image> substring(String text, boolean includePastNames, int limit) {
+        String query = text.toLowerCase();
+        ArrayList<Image> matches = new ArrayList<>();
+        for (Image image : candidates(query)) {
+            for (String name : names(image, includePastNames)) {
+                if (name.toLowerCase().contains(query)) {
+                    matches.add(image);
+                    break;
+                }
+            }
+            if (matches.size() == limit) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns images whose whole name matches the given glob, ignoring case.
+     * A "*" matches any run of characters and a "?" matches any one character.
+     *
+     * @param glob              the glob to match, e.g. "IMG_20??*@beach*"
+     * @param includePastNames  whether or not to also match the past names of each image
+     * @param limit             the maximum number of images to return
+     * @return                  at most limit matching images
+     */
+    synchronized ArrayList<Image> glob(String glob, boolean includePastNames, int limit) {
+        String query = glob.toLowerCase();
+        StringBuilder regex = new StringBuilder();
+        String longestLiteral = "";
+        int literalStart = 0;
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : '*';
+            if (c == '*' || c == '?') {
+                String literal = query.substring(literalStart, i);
+                if (literal.length() > longestLiteral.length()) {
+                    longestLiteral = literal;
+                }
+                if (!literal.isEmpty()) {
+                    regex.append(Pattern.quote(literal));
+                }
+                if (i < query.length()) {
+                    regex.append(c == '*' ? ".*" : ".");
+                }
+                literalStart = i + 1;
+            }
+        }
+        Pattern pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+
+        ArrayList<Image> matches = new ArrayList<>();
+        for (Image image : candidates(longestLiteral)) {
+            for (String name : names(image, includePastNames)) {
+                if (pattern.matcher(name.toLowerCase()).matches()) {
+                    matches.add(image);
+                    break;
+                }
+            }
+            if (matches.size() == limit) {
+                break;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns images whose name contains the given text with at most the given number of typos,
+     * where a typo is a missing, extra or different character. Closest matches come first.
+     *
+     * @param text              the text to look for
+     * @param maxTypos          the maximum number of typos
+     * @param includePastNames  whether or not to also match the past names of each image
+     * @param limit             the maximum number of images to return
+     * @return                  at most limit matching images
+     */
+    synchronized ArrayList<Image> fuzzy(String text, int maxTypos, boolean includePastNames, int limit) {
+        String query = text.toLowerCase();
+        long[] masks = query.length() <= 64 ? charMasks(query) : null;
+        // byDistance.get(d) holds the matches with d typos; once limit exact matches are found no other can come first
+        ArrayList<ArrayList<Image>> byDistance = new ArrayList<>();
+        for (int d = 0; d <= maxTypos; d++) {
+            byDistance.add(new ArrayList<>());
+        }
+        for (Image image : fuzzyCandidates(query, maxTypos)) {
+            int best = Integer.MAX_VALUE;
+            for (String name : names(image, includePastNames)) {
+                best = Math.min(best, masks != null ? substringDistance(query, masks, name) : substringDistance(query, name));
+            }
+            if (best <= maxTypos) {
+                byDistance.get(best).add(image);
+                if (byDistance.get(0).size() == limit) {
+                    break;
+                }
+            }
+        }
+        ArrayList<Image> matches = new ArrayList<>();
+        for (ArrayList<Image> sameDistance : byDistance) {
+            sameDistance.sort(Comparator.comparing(Image::getName));
+            for (Image image : sameDistance) {
+                if (matches.size() == limit) {
+                    return matches;
+                }
+                matches.add(image);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Helper function.
+     * Returns every image that may contain the given lower case text: the images listed under its rarest
+     * trigram, or every image if the text is shorter than a trigram.
+     *
+     * @param query     the lower case text every match must contain
+     * @return          the candidate images, each once
+     */
+    private ArrayList<Image> candidates(String query) {
+        if (query.length() < 3) {
+            return new ArrayList<>(images.values());
+        }
+        Postings rarest = null;
+        for (long trigram : trigrams(query)) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                return new ArrayList<>();
+            }
+            if (rarest == null || list.size < rarest.size) {
+                rarest = list;
+            }
+        }
+        ArrayList<Image> candidates = new ArrayList<>();
+        BitSet seen = new BitSet();
+        for (int i = 0; i < rarest.size; i++) {
+            int id = rarest.ids[i];
+            Image image = images.get(id);
+            if (image != null && !seen.get(id)) {
+                seen.set(id);
+                candidates.add(image);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Helper function.
+     * Returns every image that may contain the given lower case text with at most maxTypos typos.
+     * Since one typo changes at most three trigrams, a match shares at least (trigrams of the text - 3 * maxTypos)
+     * trigrams with the text; if that is not positive, every image is a candidate.
+     *
+     * @param query     the lower case text to look for
+     * @param maxTypos  the maximum number of typos
+     * @return          the candidate images, each once
+     */
+    private ArrayList<Image> fuzzyCandidates(String query, int maxTypos) {
+        HashSet<Long> queryTrigrams = trigrams(query);
+        int threshold = query.length() - 2 - 3 * maxTypos;
+        if (threshold <= 0) {
+            return new ArrayList<>(images.values());
+        }
+        // shared[id] is the number of the query's trigrams seen so far for the image, and
+        // lastTrigram[id] the number of the last trigram it was counted for, so duplicate ids count once
+        int[] shared = new int[maxId + 1];
+        int[] lastTrigram = new int[maxId + 1];
+        ArrayList<Image> candidates = new ArrayList<>();
+        int number = 0;
+        for (long trigram : queryTrigrams) {
+            number++;
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                continue;
+            }
+            for (int i = 0; i < list.size; i++) {
+                int id = list.ids[i];
+                if (lastTrigram[id] != number) {
+                    lastTrigram[id] = number;
+                    if (++shared[id] == threshold && images.containsKey(id)) {
+                        candidates.add(images.get(id));
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param image             an indexed image
+     * @param includePastNames  whether or not to include past names
+     * @return                  the names of the image to match against
+     */
+    private ArrayList<String> names(Image image, boolean includePastNames) {
+        ArrayList<String> names = new ArrayList<>(1);
+        if (includePastNames) {
+            names.addAll(image.getNameHistory());
+        } else {
+            names.add(image.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Helper function.
+     * Adds the id of an image to the postings of every trigram in the given name.
+     *
+     * @param id        the id of the image
+     * @param name      one of the image's names
+     */
+    private void addName(int id, String name) {
+        for (long trigram : trigrams(name.toLowerCase())) {
+            postings.computeIfAbsent(trigram, t -> new Postings()).add(id);
+        }
+    }
+
+    /**
+     * Helper function.
+     * Re-indexes every image from its names once enough renames and removals have left stale ids behind.
+     */
+    private void rebuildIfStale() {
+        if (staleUpdates < MIN_REBUILD || staleUpdates < images.size()) {
+            return;
+        }
+        ArrayList<Image> all = new ArrayList<>(images.values());
+        clear();
+        for (Image image : all) {
+            add(image);
+        }
+    }
+
+    /**
+     * @param text      lower case text
+     * @return          the distinct trigrams of the text, each packed into a long
+     */
+    private static HashSet<Long> trigrams(String text) {
+        HashSet<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Returns the smallest number of typos between the pattern and any part of the text, ignoring the case of the text.
+     *
+     * @param pattern   the lower case text being looked for
+     * @param text      the text to look in
+     * @return          the smallest edit distance between the pattern and a substring of the text
+     */
+    static int substringDistance(String pattern, String text) {
+        int m = pattern.length();
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int i = 0; i <= m; i++) {
+            previous[i] = i;
+        }
+        int best = previous[m];
+        for (int j = 0; j < text.length(); j++) {
+            current[0] = 0;
+            for (int i = 1; i <= m; i++) {
+                int cost = pattern.charAt(i - 1) == Character.toLowerCase(text.charAt(j)) ? 0 : 1;
+                current[i] = Math.min(previous[i - 1] + cost, Math.min(previous[i] + 1, current[i - 1] + 1));
+            }
+            best = Math.min(best, current[m]);
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return best;
+    }
+
+    /**
+     * @param pattern   lower case text of at most 64 characters
+     * @return          for each character below 128, the bits of the positions in pattern where it occurs
+     */
+    static long[] charMasks(String pattern) {
+        long[] masks = new long[128];
+        for (int i = 0; i < pattern.length(); i++) {
+            if (pattern.charAt(i) < 128) {
+                masks[pattern.charAt(i)] |= 1L << i;
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Returns the same as substringDistance(pattern, text) for a pattern of at most 64 characters, updating a
+     * whole column of the distance table at a time with Myers' bit-parallel algorithm.
+     *
+     * @param pattern   the text being looked for
+     * @param masks     the character masks of the pattern
+     * @param text      the text to look in
+     * @return          the smallest edit distance between the pattern and a substring of the text
+     */
+    static int substringDistance(String pattern, long[] masks, String text) {
+        int m = pattern.length();
+        if (m == 0) {
+            return 0;
+        }
+        long last = 1L << (m - 1);
+        long plusVertical = -1L;
+        long minusVertical = 0L;
+        int score = m;
+        int best = m;
+        for (int j = 0; j < text.length(); j++) {
+            char c = Character.toLowerCase(text.charAt(j));
+            long equal = 0L;
+            if (c < 128) {
+                equal = masks[c];
+            } else {
+                for (int i = 0; i < m; i++) {
+                    if (pattern.charAt(i) == c) {
+                        equal |= 1L << i;
+                    }
+                }
+            }
+            long xVertical = equal | minusVertical;
+            long xHorizontal = (((equal & plusVertical) + plusVertical) ^ plusVertical) | equal;
+            long plusHorizontal = minusVertical | ~(xHorizontal | plusVertical);
+            long minusHorizontal = plusVertical & xHorizontal;
+            if ((plusHorizontal & last) != 0) {
+                score++;
+            } else if ((minusHorizontal & last) != 0) {
+                score--;
+            }
+            // The first row stays 0, since a match may start anywhere in the text
+            plusHorizontal <<= 1;
+            minusHorizontal <<= 1;
+            plusVertical = minusHorizontal | ~(xVertical | plusHorizontal);
+            minusVertical = plusHorizontal & xVertical;
+            best = Math.min(best, score);
+        }
+        return best;
+    }
+
+    /**
+     * A growable list of image ids.
+     */
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
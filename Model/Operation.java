@@ -0,0 +1,23 @@
+package Model;
+
+/**
+ * The kinds of model operations whose timings are recorded by OperationMetrics.
+ */
+public enum Operation {
+    /** Building the directory tree from the file system. */
+    SCAN,
+    /** Renaming an image on disk. */
+    RENAME,
+    /** Moving an image to another directory. */
+    MOVE,
+    /** Creating, deleting, adding or removing tags. */
+    TAG_MUTATION,
+    /** Changing the current directory. */
+    NAVIGATION,
+    /** Finding directories and collecting images. */
+    LOOKUP,
+    /** Saving the state of the program. */
+    SERIALIZE,
+    /** Loading the previously saved state of the program. */
+    DESERIALIZE
+}
@@ -0,0 +1,71 @@
+package Model;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+
+/**
+ * Records counts and latencies of model operations and publishes them as MBeans named
+ * "Model:type=OperationStats,name=OPERATION", so they can be watched from JConsole or jcmd.
+ *
+ * Usage: long start = OperationMetrics.start(); ... OperationMetrics.record(Operation.RENAME, start);
+ */
+public class OperationMetrics {
+
+    /**
+     * The statistics of every kind of operation.
+     */
+    private static final EnumMap<Operation, OperationStats> STATS = new EnumMap<>(Operation.class);
+
+    static {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Operation operation : Operation.values()) {
+            OperationStats stats = new OperationStats();
+            STATS.put(operation, stats);
+            try {
+                ObjectName name = new ObjectName("Model:type=OperationStats,name=" + operation.name());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(stats, name);
+                }
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * This class is not meant to be instantiated.
+     */
+    private OperationMetrics() {}
+
+    /**
+     * Returns the time to pass to record() once the operation is done.
+     *
+     * @return      the current time, in nanoseconds
+     */
+    static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records one occurrence of the given operation which started at the given time.
+     *
+     * @param operation     the kind of operation that was done
+     * @param startNanos    the time returned by start() when the operation began
+     */
+    static void record(Operation operation, long startNanos) {
+        STATS.get(operation).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the statistics recorded for the given operation.
+     *
+     * @param operation     the kind of operation
+     * @return              the statistics of that operation
+     */
+    public static OperationStats getStats(Operation operation) {
+        return STATS.get(operation);
+    }
+}
@@ -0,0 +1,127 @@
+package Model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the count and latency histogram of one kind of operation.
+ * Recording only increments a few counters; percentiles are computed when they are read.
+ */
+public class OperationStats implements OperationStatsMBean {
+
+    /**
+     * The number of histogram buckets. Bucket i counts durations in [2^i, 2^(i+1)) nanoseconds.
+     */
+    private static final int BUCKETS = 64;
+
+    /**
+     * The number of times the operation has been recorded.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The total time spent in the operation, in nanoseconds.
+     */
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * The longest time the operation has taken, in nanoseconds.
+     */
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    /**
+     * The latency histogram, with power of two bucket widths.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Records one occurrence of the operation.
+     *
+     * @param nanos     the time the operation took, in nanoseconds
+     */
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getTotalTimeMillis() {
+        return totalNanos.sum() / 1_000_000;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return maxNanos.get() / 1000;
+    }
+
+    @Override
+    public long getP50Micros() {
+        return percentileMicros(0.50);
+    }
+
+    @Override
+    public long getP90Micros() {
+        return percentileMicros(0.90);
+    }
+
+    @Override
+    public long getP99Micros() {
+        return percentileMicros(0.99);
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+    }
+
+    /**
+     * Helper function.
+     * Returns the upper bound of the histogram bucket containing the given percentile.
+     *
+     * @param percentile    the percentile to find, between 0 and 1
+     * @return              an upper bound on the given percentile, in microseconds
+     */
+    private long percentileMicros(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                long upperNanos = i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                return Math.min(upperNanos, maxNanos.get()) / 1000;
+            }
+        }
+        return getMaxMicros();
+    }
+}
@@ -0,0 +1,48 @@
+package Model;
+
+/**
+ * The management interface through which the statistics of one kind of operation are published over JMX.
+ * All times are in microseconds unless stated otherwise.
+ */
+public interface OperationStatsMBean {
+
+    /**
+     * @return      the number of times the operation has been recorded
+     */
+    long getCount();
+
+    /**
+     * @return      the total time spent in the operation, in milliseconds
+     */
+    long getTotalTimeMillis();
+
+    /**
+     * @return      the mean time of the operation
+     */
+    double getMeanMicros();
+
+    /**
+     * @return      the longest time the operation has taken
+     */
+    long getMaxMicros();
+
+    /**
+     * @return      the median time of the operation
+     */
+    long getP50Micros();
+
+    /**
+     * @return      the 90th percentile time of the operation
+     */
+    long getP90Micros();
+
+    /**
+     * @return      the 99th percentile time of the operation
+     */
+    long getP99Micros();
+
+    /**
+     * Clears all statistics recorded so far.
+     */
+    void reset();
+}
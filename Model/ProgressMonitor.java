@@ -0,0 +1,54 @@
+package Model;
+
+/**
+ * Receives progress reports from long running model operations, and lets the caller cancel them.
+ * Operations call worked() as they go and stop early once isCancelled() returns true.
+ */
+public interface ProgressMonitor {
+
+    /**
+     * A monitor that ignores progress and never cancels.
+     */
+    ProgressMonitor NONE = new ProgressMonitor() {
+        @Override
+        public void worked(long done, long total) {}
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    /**
+     * Reports how much of the operation is done.
+     *
+     * @param done      the number of units of work done so far
+     * @param total     the total number of units of work
+     */
+    void worked(long done, long total);
+
+    /**
+     * @return      true iff the operation should stop as soon as possible
+     */
+    boolean isCancelled();
+
+    /**
+     * Returns a monitor passing progress on to this one that never cancels, for work that must not stop halfway.
+     *
+     * @return      a monitor reporting to this one that never cancels
+     */
+    default ProgressMonitor uncancellable() {
+        ProgressMonitor monitor = this;
+        return new ProgressMonitor() {
+            @Override
+            public void worked(long done, long total) {
+                monitor.worked(done, total);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+    }
+}
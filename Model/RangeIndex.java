@@ -0,0 +1,192 @@
+package Model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A sorted index of one numeric value of each image, by image id, answering which images have a value in a
+ * range with two binary searches instead of a pass over every image.
+ *
+ * Values are kept sorted in two parallel arrays, of values and of ids. Setting or removing a value does not
+ * touch them: the id is marked stale instead, its entry in the sorted arrays is skipped, and its current value
+ * is checked directly. Once stale ids make up more than an eighth of the index, the arrays are sorted again
+ * from the current values, so a long run of changes, such as a scan, costs a single sort.
+ */
+class RangeIndex {
+
+    /**
+     * The fewest stale ids that trigger a sort, so that small indexes are not sorted after every change.
+     */
+    private static final int MIN_STALE = 1024;
+
+    /**
+     * The current value of each image, by id, and which ids have one.
+     */
+    private long[] values = new long[1024];
+    private BitSet present = new BitSet();
+
+    /**
+     * The values and ids as they were at the last sort, in order of value, then of id.
+     */
+    private long[] sortedValues = new long[0];
+    private int[] sortedIds = new int[0];
+
+    /**
+     * The ids whose value was set or removed since the last sort.
+     */
+    private BitSet stale = new BitSet();
+    private int staleCount = 0;
+
+    /**
+     * @param id        the id of an image
+     * @param value     its value
+     */
+    void put(int id, long value) {
+        if (id >= values.length) {
+            values = Arrays.copyOf(values, Math.max(id + 1, values.length * 2));
+        }
+        values[id] = value;
+        present.set(id);
+        markStale(id);
+    }
+
+    /**
+     * @param id    the id of an image that no longer has a value
+     */
+    void remove(int id) {
+        if (present.get(id)) {
+            present.clear(id);
+            markStale(id);
+        }
+    }
+
+    /**
+     * Forgets every value.
+     */
+    void clear() {
+        present.clear();
+        stale.clear();
+        staleCount = 0;
+        sortedValues = new long[0];
+        sortedIds = new int[0];
+    }
+
+    /**
+     * @param id    the id of an image
+     * @return      true iff the image has a value
+     */
+    boolean contains(int id) {
+        return present.get(id);
+    }
+
+    /**
+     * @param from  the smallest value
+     * @param to    the largest value
+     * @return      about the number of images with a value in the range, never fewer
+     */
+    int estimate(long from, long to) {
+        sortIfStale();
+        return bound(to, true) - bound(from, false) + staleCount;
+    }
+
+    /**
+     * @param from  the smallest value
+     * @param to    the largest value
+     * @return      the ids of the images with a value in the range
+     */
+    BitSet range(long from, long to) {
+        sortIfStale();
+        BitSet ids = new BitSet();
+        int end = bound(to, true);
+        for (int i = bound(from, false); i < end; i++) {
+            if (!stale.get(sortedIds[i])) {
+                ids.set(sortedIds[i]);
+            }
+        }
+        for (int id = stale.nextSetBit(0); id >= 0; id = stale.nextSetBit(id + 1)) {
+            if (present.get(id) && values[id] >= from && values[id] <= to) {
+                ids.set(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param id    the id whose value changed
+     */
+    private void markStale(int id) {
+        if (!stale.get(id)) {
+            stale.set(id);
+            staleCount++;
+        }
+    }
+
+    /**
+     * Helper function.
+     * Sorts the arrays again once too many ids are stale.
+     */
+    private void sortIfStale() {
+        if (staleCount > Math.max(MIN_STALE, sortedIds.length / 8)) {
+            sort();
+        }
+    }
+
+    /**
+     * Helper function.
+     * Sorts the current value of every image into the sorted arrays.
+     */
+    private void sort() {
+        int[] ids = new int[present.cardinality()];
+        int size = 0;
+        for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+            ids[size++] = id;
+        }
+        // Merge sort by value; ids start in order, and the sort is stable, so equal values stay in id order
+        int[] buffer = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int left = 0; left < size; left += 2 * width) {
+                int middle = Math.min(left + width, size);
+                int right = Math.min(left + 2 * width, size);
+                int i = left;
+                int j = middle;
+                for (int k = left; k < right; k++) {
+                    buffer[k] = j >= right || (i < middle && values[ids[i]] <= values[ids[j]]) ? ids[i++] : ids[j++];
+                }
+            }
+            int[] swap = ids;
+            ids = buffer;
+            buffer = swap;
+        }
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = values[ids[i]];
+        }
+        sortedIds = ids;
+        sortedValues = sorted;
+        stale.clear();
+        staleCount = 0;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param value     a value
+     * @param after     whether to find the first entry after the value, rather than the first one with it
+     * @return          the index of the first sorted entry with, or after, the value
+     */
+    private int bound(long value, boolean after) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedValues[middle] < value || (after && sortedValues[middle] == value)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,199 @@
+package Model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Brings loaded Directories up to date with the files on disk, after they are read back from a save.
+ * The modification time of every directory is checked in parallel, and only directories whose modification
+ * time changed since their contents were last listed are listed again. Images and sub-directories that
+ * disappeared are removed from the model, and new ones are scanned into it.
+ */
+class Reconciler {
+
+    /**
+     * The managers whose images, directories and tags are patched.
+     */
+    private ImageManager imageManager;
+    private DirectoryManager directoryManager;
+    private TagManager tagManager;
+
+    /**
+     * Scans a new file or directory into the model, given its path and the directory it is in.
+     */
+    private BiConsumer<String, Directory> scanner;
+
+    /**
+     * The store told about directories directly under the root that appear or disappear.
+     */
+    private ShardStore shardStore;
+
+    /**
+     * Reads the metadata of images whose files changed since it was last read.
+     */
+    private MetadataExtractor metadataExtractor;
+
+    /**
+     * Creates a reconciler that patches the given managers.
+     *
+     * @param imageManager      the manager keeping the list of loaded images
+     * @param directoryManager  the manager keeping the list of loaded directories
+     * @param tagManager        the manager keeping the images of each tag
+     * @param shardStore        the store of saved directories and images
+     * @param scanner           scans a new file or directory into the model
+     * @param metadataExtractor reads the metadata of images whose files changed
+     */
+    Reconciler(ImageManager imageManager, DirectoryManager directoryManager, TagManager tagManager,
+               ShardStore shardStore, BiConsumer<String, Directory> scanner, MetadataExtractor metadataExtractor) {
+        this.imageManager = imageManager;
+        this.directoryManager = directoryManager;
+        this.tagManager = tagManager;
+        this.shardStore = shardStore;
+        this.scanner = scanner;
+        this.metadataExtractor = metadataExtractor;
+    }
+
+    /**
+     * Patches the given directories whose modification time changed since they were last listed, and reads
+     * again the metadata of their images whose files changed. New images are read as they are scanned in.
+     *
+     * @param directories   the directories that were just loaded
+     */
+    void reconcile(ArrayList<Directory> directories) {
+        long start = OperationMetrics.start();
+        ArrayList<Image> images = new ArrayList<>();
+        for (Directory directory : directories) {
+            for (Object obj : directory.getContents()) {
+                if (obj instanceof Image) {
+                    images.add((Image) obj);
+                }
+            }
+        }
+        metadataExtractor.refresh(images);
+        ArrayList<Directory> changed = directories.parallelStream()
+                .filter(directory -> directory.getFile().lastModified() != directory.getLastModified())
+                .collect(Collectors.toCollection(ArrayList::new));
+        for (Directory directory : changed) {
+            if (directory.getFile().isDirectory()) {
+                patch(directory);
+            }
+        }
+        OperationMetrics.record(Operation.SCAN, start);
+    }
+
+    /**
+     * Helper function.
+     * Lists the given directory again, removing contents that are gone and scanning in contents that are new.
+     *
+     * @param directory     a directory whose modification time changed
+     */
+    private void patch(Directory directory) {
+        long lastModified = directory.getFile().lastModified();
+        HashSet<String> onDisk = new HashSet<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(Paths.get(directory.getPath()))) {
+            for (Path child : children) {
+                onDisk.add(child.getFileName().toString());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        HashSet<String> inModel = new HashSet<>();
+        ArrayList<Object> gone = new ArrayList<>();
+        for (Object obj : directory.getContents()) {
+            String name = obj instanceof Image ? ((Image) obj).getName() : ((Directory) obj).getName();
+            if (onDisk.contains(name)) {
+                inModel.add(name);
+            } else {
+                gone.add(obj);
+            }
+        }
+        remove(directory, gone);
+
+        int scanned = directory.getContents().size();
+        for (String name : onDisk) {
+            if (!inModel.contains(name)) {
+                scanner.accept(directory.getPath() + File.separator + name, directory);
+            }
+        }
+        ArrayList<Object> contents = directory.getContents();
+        for (int i = scanned; i < contents.size(); i++) {
+            if (contents.get(i) instanceof Directory && isShardRoot((Directory) contents.get(i))) {
+                shardStore.addShard((Directory) contents.get(i));
+            }
+        }
+        directory.setLastModified(lastModified);
+    }
+
+    /**
+     * Helper function.
+     * Removes images and directories that are no longer on disk from the given directory, along with
+     * everything under them, and removes the images from their tags. A subtree shard that is not loaded is
+     * read first, so that the tags of its images are counted out too.
+     *
+     * @param directory     the directory they were in
+     * @param gone          the images and directories to remove
+     */
+    private void remove(Directory directory, ArrayList<Object> gone) {
+        if (gone.isEmpty()) {
+            return;
+        }
+        ArrayList<Directory> directories = new ArrayList<>();
+        ArrayList<Image> images = new ArrayList<>();
+        for (Object obj : gone) {
+            if (obj instanceof Image) {
+                images.add((Image) obj);
+            } else {
+                if (isShardRoot((Directory) obj)) {
+                    // An unloaded shard has no contents in memory; read it so its images are untagged below
+                    shardStore.ensureLoaded((Directory) obj);
+                    shardStore.removeShard((Directory) obj);
+                }
+                collect((Directory) obj, directories, images);
+            }
+        }
+        for (Image image : images) {
+            tagManager.removeImageFromTags(image, image.getTags());
+            tagManager.imageRetagged(image.getTags(), new ArrayList<>());
+        }
+        imageManager.removeImages(images);
+        directoryManager.removeDirectories(directories);
+        directory.getContents().removeAll(new HashSet<>(gone));
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param directory     the directory to start from
+     * @param directories   the list to add every directory under the given one to, including itself
+     * @param images        the list to add every image under the given directory to
+     */
+    private void collect(Directory directory, ArrayList<Directory> directories, ArrayList<Image> images) {
+        directories.add(directory);
+        for (Object obj : directory.getContents()) {
+            if (obj instanceof Image) {
+                images.add((Image) obj);
+            } else {
+                collect((Directory) obj, directories, images);
+            }
+        }
+    }
+
+    /**
+     * @param directory     a directory in the tree
+     * @return              true iff the directory is directly under the root directory, so has a shard of its own
+     */
+    private boolean isShardRoot(Directory directory) {
+        Directory parent = directory.getParentDirectory();
+        return parent != null && parent.getParentDirectory() == null;
+    }
+}
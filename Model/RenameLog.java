@@ -0,0 +1,470 @@
+package Model;
+
+import java.io.*;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * An append-only log of every rename done to an image, stored on disk as a series of binary segment files.
+ * Records are appended as renames happen and are read back by streaming over the segments, so the log
+ * is never held in memory as a whole.
+ *
+ * Each record holds the position of the previous record of the same image, so the records of an image are
+ * found by following these positions back from its last one. Only the position of the last record of each
+ * image is kept in memory, in an array indexed by image id. The array is saved to an index file along with
+ * the segment and offset it covers up to. On opening, only the records written after that point are read.
+ */
+class RenameLog {
+
+    /**
+     * The size in bytes after which a new segment file is started.
+     */
+    private static final long SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The directory holding the segment files of this log.
+     */
+    private File directory;
+
+    /**
+     * The size in bytes of the image id, previous position and timestamp at the start of each record.
+     */
+    private static final int RECORD_HEADER = 20;
+
+    /**
+     * The position of the last record of each image plus one, by image id, or 0 if it has none.
+     * A position has the segment number in its upper 32 bits and the offset in that segment in its lower 32 bits.
+     */
+    private long[] lastRecords = new long[1024];
+
+    /**
+     * The number of the segment currently being appended to.
+     */
+    private int currentSegment = 0;
+
+    /**
+     * The size of the segment currently being appended to.
+     */
+    private long currentSize = 0;
+
+    /**
+     * The stream appending to the current segment, or null if it is not open.
+     */
+    private DataOutputStream out;
+
+    /**
+     * Whether or not the segments on disk have been read into the index yet.
+     */
+    private boolean opened = false;
+
+    /**
+     * Creates a rename log stored in the given directory, continuing from any segments already in it.
+     *
+     * @param directory     the directory to store the segment files in
+     */
+    RenameLog(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Discards every record in this log, deleting its segments and index from disk.
+     */
+    synchronized void clear() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.mkdirs();
+        lastRecords = new long[1024];
+        currentSegment = 0;
+        currentSize = 0;
+        opened = true;
+    }
+
+    /**
+     * Appends a rename record for the given image.
+     *
+     * @param imageId       the id of the renamed image
+     * @param oldName       the name of the image before the rename
+     * @param newName       the name of the image after the rename
+     * @param timestamp     the time of the rename, in milliseconds since the epoch
+     */
+    synchronized void append(int imageId, String oldName, String newName, long timestamp) {
+        try {
+            write(imageId, oldName, newName, timestamp);
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Appends a rename record for each of the given images, flushing them to disk together.
+     *
+     * @param imageIds      the ids of the renamed images
+     * @param renames       the name of each image before and after its rename, as {oldName, newName}
+     * @param timestamp     the time of the renames, in milliseconds since the epoch
+     */
+    synchronized void appendAll(ArrayList<Integer> imageIds, ArrayList<String[]> renames, long timestamp) {
+        try {
+            for (int i = 0; i < imageIds.size(); i++) {
+                write(imageIds.get(i), renames.get(i)[0], renames.get(i)[1], timestamp);
+            }
+            if (out != null) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Helper function.
+     * Writes a rename record to the current segment without flushing it, starting a new segment if it is full.
+     *
+     * @param imageId       the id of the renamed image
+     * @param oldName       the name of the image before the rename
+     * @param newName       the name of the image after the rename
+     * @param timestamp     the time of the rename, in milliseconds since the epoch
+     * @throws IOException  if the segment could not be written
+     */
+    private void write(int imageId, String oldName, String newName, long timestamp) throws IOException {
+        open();
+        if (out == null || currentSize >= SEGMENT_SIZE) {
+            startSegment(currentSize >= SEGMENT_SIZE ? currentSegment + 1 : currentSegment);
+        }
+        long position = ((long) currentSegment << 32) | currentSize;
+        out.writeInt(imageId);
+        out.writeLong(lastRecord(imageId));
+        out.writeLong(timestamp);
+        out.writeUTF(oldName);
+        out.writeUTF(newName);
+        currentSize = out.size();
+        setLastRecord(imageId, position + 1);
+    }
+
+    /**
+     * Returns whether or not any renames were logged for the given image.
+     *
+     * @param imageId       the id of the image
+     * @return              true iff the log holds at least one record for the image
+     */
+    synchronized boolean hasRecords(int imageId) {
+        open();
+        return lastRecord(imageId) != 0;
+    }
+
+    /**
+     * Reads the records of the given image back from disk.
+     * Example as follows: [[startingName, name1, time], [name1, name2, time], ...].
+     *
+     * @param imageId       the id of the image
+     * @return              the rename records of the image, oldest first
+     */
+    synchronized ArrayList<String[]> getRecords(int imageId) {
+        open();
+        ArrayList<String[]> records = new ArrayList<>();
+        DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+        RandomAccessFile segment = null;
+        int segmentNumber = -1;
+        try {
+            for (long next = lastRecord(imageId); next != 0; ) {
+                long position = next - 1;
+                int number = (int) (position >>> 32);
+                if (number != segmentNumber) {
+                    if (segment != null) {
+                        segment.close();
+                    }
+                    segment = new RandomAccessFile(segmentFile(number), "r");
+                    segmentNumber = number;
+                }
+                segment.seek(position & 0xFFFFFFFFL);
+                segment.readInt();
+                next = segment.readLong();
+                long timestamp = segment.readLong();
+                String oldName = segment.readUTF();
+                String newName = segment.readUTF();
+                records.add(new String[]{oldName, newName, dateFormat.format(new Date(timestamp))});
+            }
+            if (segment != null) {
+                segment.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // Read newest first, by following each record back to the one before it
+        Collections.reverse(records);
+        return records;
+    }
+
+    /**
+     * Writes every record in this log to the given text file, one line per rename.
+     * Records are streamed from the segments straight to the file.
+     *
+     * @param target        the text file to write
+     */
+    synchronized void writeText(File target) {
+        open();
+        DateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(target, false))) {
+            for (int number = 0; segmentFile(number).exists(); number++) {
+                try (DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(segmentFile(number))))) {
+                    while (true) {
+                        long timestamp;
+                        String oldName;
+                        String newName;
+                        try {
+                            in.readInt();
+                            in.readLong();
+                            timestamp = in.readLong();
+                            oldName = in.readUTF();
+                            newName = in.readUTF();
+                        } catch (EOFException e) {
+                            // The end of the segment, or a record cut short by a crash
+                            break;
+                        }
+                        bw.write("Image \"" + oldName
+                                + "\" has been renamed to \"" + newName
+                                + "\" with timestamp " + dateFormat.format(new Date(timestamp))
+                                + "."
+                                + System.lineSeparator());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the position of the last record of each image to the index file, so that the next session reads
+     * only the records appended after now.
+     */
+    synchronized void saveIndex() {
+        if (!opened) {
+            return;
+        }
+        File temporary = new File(directory, "index.tmp");
+        try {
+            if (out != null) {
+                out.flush();
+            }
+            try (DataOutputStream index = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                index.writeInt(currentSegment);
+                index.writeLong(currentSize);
+                index.writeInt(lastRecords.length);
+                for (long position : lastRecords) {
+                    index.writeLong(position);
+                }
+            }
+            Files.move(temporary.toPath(), indexFile().toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes the segment currently being appended to, saving the index first.
+     */
+    synchronized void close() {
+        saveIndex();
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Helper function.
+     * Prepares the log directory the first time the log is used, reading the index and the records appended
+     * after it from the existing segments.
+     */
+    private void open() {
+        if (opened) {
+            return;
+        }
+        opened = true;
+        if (!directory.exists()) {
+            directory.mkdirs();
+            return;
+        }
+        long start = readIndex();
+        int first = (int) (start >>> 32);
+        for (int number = first; segmentFile(number).exists(); number++) {
+            currentSegment = number;
+            currentSize = indexSegment(number, number == first ? start & 0xFFFFFFFFL : 0);
+        }
+    }
+
+    /**
+     * Helper function.
+     * Reads the index file, if there is one that matches the segments on disk.
+     *
+     * @return              the position up to which the index covers the segments, or 0 if there is no index
+     */
+    private long readIndex() {
+        File file = indexFile();
+        if (!file.exists()) {
+            return 0;
+        }
+        try (DataInputStream index = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int segment = index.readInt();
+            long size = index.readLong();
+            long[] positions = new long[index.readInt()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = index.readLong();
+            }
+            if (segmentFile(segment).length() < size) {
+                // The segments were replaced or cut short since, so the index does not describe them
+                return 0;
+            }
+            lastRecords = positions;
+            return ((long) segment << 32) | size;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /**
+     * Helper function.
+     * Records the position of every record in the given segment from the given offset on.
+     *
+     * @param number        the number of the segment to read
+     * @param offset        the offset of the first record to read
+     * @return              the number of bytes of complete records in the segment
+     */
+    private long indexSegment(int number, long offset) {
+        try (FileInputStream file = new FileInputStream(segmentFile(number));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            file.getChannel().position(offset);
+            while (true) {
+                int imageId;
+                try {
+                    imageId = in.readInt();
+                    in.readLong();
+                    in.readLong();
+                    long length = RECORD_HEADER + 2 + skipUTF(in) + 2 + skipUTF(in);
+                    setLastRecord(imageId, (((long) number << 32) | offset) + 1);
+                    offset += length;
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return offset;
+    }
+
+    /**
+     * @param imageId       the id of an image
+     * @return              the position of the last record of the image plus one, or 0 if it has none
+     */
+    private long lastRecord(int imageId) {
+        return imageId < lastRecords.length ? lastRecords[imageId] : 0;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param imageId       the id of an image
+     * @param position      the position of its last record plus one
+     */
+    private void setLastRecord(int imageId, long position) {
+        if (imageId >= lastRecords.length) {
+            lastRecords = Arrays.copyOf(lastRecords, Math.max(imageId + 1, lastRecords.length * 2));
+        }
+        lastRecords[imageId] = position;
+    }
+
+    /**
+     * Helper function.
+     * Skips over a string written by DataOutputStream.writeUTF.
+     *
+     * @param in            the stream to skip in
+     * @return              the number of bytes of string data skipped, not counting the length prefix
+     * @throws IOException  if the string is truncated
+     */
+    private int skipUTF(DataInputStream in) throws IOException {
+        int length = in.readUnsignedShort();
+        in.readFully(new byte[length]);
+        return length;
+    }
+
+    /**
+     * Helper function.
+     * Opens the given segment for appending, truncating any partially written record at its end.
+     *
+     * @param number        the number of the segment to append to
+     * @throws IOException  if the segment cannot be opened
+     */
+    private void startSegment(int number) throws IOException {
+        close();
+        File file = segmentFile(number);
+        long size = number == currentSegment && file.exists() ? currentSize : 0;
+        if (file.exists() && file.length() != size) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(size);
+            }
+        }
+        out = new CountingOutput(new BufferedOutputStream(new FileOutputStream(file, true)), size);
+        currentSegment = number;
+        currentSize = size;
+    }
+
+    /**
+     * @return              the file of the position of the last record of each image
+     */
+    private File indexFile() {
+        return new File(directory, "index.dat");
+    }
+
+    /**
+     * @param number        the number of a segment
+     * @return              the file of the given segment
+     */
+    private File segmentFile(int number) {
+        return new File(directory, "segment-" + number + ".log");
+    }
+
+    /**
+     * A DataOutputStream whose size starts at the number of bytes already in the segment it appends to.
+     */
+    private static class CountingOutput extends DataOutputStream {
+
+        /**
+         * Wraps the given stream, starting the byte count at the given size.
+         *
+         * @param out           the stream to wrap
+         * @param initialSize   the number of bytes already in the segment
+         */
+        CountingOutput(OutputStream out, long initialSize) {
+            super(out);
+            this.written = (int) initialSize;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package Model;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+
+/**
+ * The rules deciding which files and directories are scanned into the program.
+ * Globs without a "/" are matched against the name of a file or directory; globs with a "/" are matched
+ * against its path relative to the root directory, or to the directory of the ignore file they came from.
+ * Excluded directories are pruned before they are listed.
+ */
+public class ScanRules {
+
+    /**
+     * The globs an image must match to be scanned, if there are any.
+     */
+    private ArrayList<PathMatcher> includes = new ArrayList<>();
+
+    /**
+     * The globs excluding files and whole directories from the scan.
+     */
+    private ArrayList<PathMatcher> excludes = new ArrayList<>();
+
+    /**
+     * Whether or not each of the globs in includes and excludes contains a "/".
+     */
+    private ArrayList<Boolean> includeIsPath = new ArrayList<>();
+    private ArrayList<Boolean> excludeIsPath = new ArrayList<>();
+
+    /**
+     * The name of the files listing more exclude globs for the directory they are in and everything under it,
+     * or null if ignore files are not read.
+     */
+    private String ignoreFileName = ".taggerignore";
+
+    /**
+     * The number of levels of directories below the root directory that are scanned.
+     */
+    private int maxDepth = Integer.MAX_VALUE;
+
+    /**
+     * Creates scan rules that include every image and exclude nothing.
+     */
+    public ScanRules() {}
+
+    /**
+     * Returns the rules used unless others are set: application bundles such as "Photos.app" are skipped,
+     * and ".taggerignore" files are read.
+     *
+     * @return      the default scan rules
+     */
+    public static ScanRules defaults() {
+        ScanRules rules = new ScanRules();
+        rules.addExclude("*.app");
+        return rules;
+    }
+
+    /**
+     * Only scans images matching the given glob, or any of the other included globs.
+     *
+     * @param glob      a glob such as "*.jpg" or "camera/**"
+     */
+    public void addInclude(String glob) {
+        includes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        includeIsPath.add(glob.contains("/"));
+    }
+
+    /**
+     * Skips files and directories matching the given glob.
+     *
+     * @param glob      a glob such as "*.tmp" or "exports/thumbnails"
+     */
+    public void addExclude(String glob) {
+        excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        excludeIsPath.add(glob.contains("/"));
+    }
+
+    /**
+     * @param ignoreFileName    the name of ignore files to read, or null to not read them
+     */
+    public void setIgnoreFileName(String ignoreFileName) {
+        this.ignoreFileName = ignoreFileName;
+    }
+
+    /**
+     * @return      the name of ignore files to read, or null if they are not read
+     */
+    String getIgnoreFileName() {
+        return this.ignoreFileName;
+    }
+
+    /**
+     * @param maxDepth      the number of levels of directories below the root directory to scan,
+     *                      where 0 scans only the images directly in the root directory
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @return      the number of levels of directories below the root directory that are scanned
+     */
+    int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * @param relativePath  the path of an image relative to the root directory
+     * @return              true iff there are no include globs or the image matches one of them
+     */
+    boolean isIncluded(Path relativePath) {
+        return includes.isEmpty() || matches(includes, includeIsPath, relativePath);
+    }
+
+    /**
+     * @param relativePath  the path of a file or directory relative to the root directory
+     * @return              true iff the file or directory matches one of the exclude globs
+     */
+    boolean isExcluded(Path relativePath) {
+        return matches(excludes, excludeIsPath, relativePath);
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param matchers      the globs to match against
+     * @param isPath        whether or not each glob is matched against the whole relative path
+     * @param relativePath  the path to match
+     * @return              true iff the path matches one of the globs
+     */
+    static boolean matches(ArrayList<PathMatcher> matchers, ArrayList<Boolean> isPath, Path relativePath) {
+        Path name = relativePath.getFileName();
+        for (int i = 0; i < matchers.size(); i++) {
+            Path target = isPath.get(i) ? relativePath : name;
+            if (target != null && matchers.get(i).matches(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
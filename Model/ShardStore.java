@@ -0,0 +1,623 @@
+package Model;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Saves the Directories and Images of the program as one shard per directory subtree.
+ * The root shard holds the root directory and the images directly in it, and every directory directly under
+ * the root directory has a shard of its own. Only the root shard is read at startup; every other shard is read
+ * the first time one of its directories is navigated to or queried, and the least recently used shards are
+ * written back and unloaded when too many are loaded or the heap is running low.
+ *
+ * Each shard file starts with a summary of the shard: the ids of the tags its images carry and the number of
+ * its images. Searches by tag read the summaries of unloaded shards and only load those holding a tag
+ * searched for.
+ */
+class ShardStore {
+
+    /**
+     * The number of subtree shards kept in memory before the least recently used ones are unloaded.
+     */
+    private static final int MAX_LOADED_SHARDS = 64;
+
+    /**
+     * The fraction of the maximum heap above which cold shards are unloaded regardless of their number.
+     */
+    private static final double MEMORY_PRESSURE = 0.75;
+
+    /**
+     * The directory holding the shard files.
+     */
+    private File directory;
+
+    /**
+     * The managers whose lists of images, directories and tags the shards are read into.
+     */
+    private ImageManager imageManager;
+    private DirectoryManager directoryManager;
+    private TagManager tagManager;
+
+    /**
+     * The root directory of the program, or null if nothing has been scanned or loaded yet.
+     */
+    private Directory root;
+
+    /**
+     * The roots of the subtree shards that are in memory, least recently used first.
+     */
+    private LinkedHashMap<Directory, Boolean> loaded = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The roots of the subtree shards that are only on disk. Their contents are empty until they are loaded.
+     */
+    private HashSet<Directory> unloaded = new HashSet<>();
+
+    /**
+     * Tags referenced by a loaded image that are no longer in the list of all tags, by the handle of their name.
+     */
+    private HashMap<Integer, Tag> orphanTags = new HashMap<>();
+
+    /**
+     * The summary of each subtree shard, as last written or read. Read from the shard file when first needed.
+     */
+    private HashMap<Directory, ShardSummary> summaries = new HashMap<>();
+
+    /**
+     * Called with the directories of each shard as it is read, so they can be checked against the disk.
+     */
+    private Consumer<ArrayList<Directory>> loadListener;
+
+    /**
+     * Creates a shard store that saves into the given directory.
+     *
+     * @param directory         the directory to store the shard files in
+     * @param imageManager      the manager keeping the list of loaded images
+     * @param directoryManager  the manager keeping the list of loaded directories
+     * @param tagManager        the manager keeping the tag dictionary
+     */
+    ShardStore(File directory, ImageManager imageManager, DirectoryManager directoryManager, TagManager tagManager) {
+        this.directory = directory;
+        this.imageManager = imageManager;
+        this.directoryManager = directoryManager;
+        this.tagManager = tagManager;
+    }
+
+    /**
+     * Sets the function called with the directories of each shard as it is read.
+     *
+     * @param loadListener      the function to call
+     */
+    void setLoadListener(Consumer<ArrayList<Directory>> loadListener) {
+        this.loadListener = loadListener;
+    }
+
+    /**
+     * Starts tracking a new directory directly under the root directory, which has been scanned into memory.
+     *
+     * @param shard     the new directory
+     */
+    synchronized void addShard(Directory shard) {
+        loaded.put(shard, true);
+    }
+
+    /**
+     * Stops tracking a directory directly under the root directory that no longer exists, and deletes its shard.
+     *
+     * @param shard     the directory that was removed
+     */
+    synchronized void removeShard(Directory shard) {
+        loaded.remove(shard);
+        unloaded.remove(shard);
+        summaries.remove(shard);
+        shardFile(shard).delete();
+    }
+
+    /**
+     * @return      true iff a root shard has been saved, along with the names it refers to
+     */
+    boolean exists() {
+        return rootFile().exists() && namesFile().exists();
+    }
+
+    /**
+     * Reads the names saved with the shards into the NameDictionary. Must be done before anything saved
+     * with them is read, since images and tags are saved with the handles of their names.
+     */
+    void loadNames() {
+        NameDictionary.NAMES.load(namesFile());
+    }
+
+    /**
+     * Starts tracking a tree that was just scanned into memory, discarding any previously saved shards.
+     *
+     * @param root      the root directory of the scanned tree
+     */
+    synchronized void attach(Directory root) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.root = root;
+        loaded.clear();
+        unloaded.clear();
+        orphanTags.clear();
+        summaries.clear();
+        for (Object obj : root.getContents()) {
+            if (obj instanceof Directory) {
+                loaded.put((Directory) obj, true);
+            }
+        }
+    }
+
+    /**
+     * Reads the root shard, replacing every image and directory in memory.
+     * The directories directly under the root directory are left unloaded.
+     *
+     * @return      the root directory, or null if the root shard could not be read
+     */
+    synchronized Directory loadRoot() {
+        loaded.clear();
+        unloaded.clear();
+        orphanTags.clear();
+        summaries.clear();
+        imageManager.clearImages();
+        directoryManager.clearDirectories();
+        try (DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(rootFile())))) {
+            root = new Directory(header.readUTF(), null);
+            imageManager.setNextImageId(header.readInt());
+            directoryManager.addDirectory(root);
+            readContents(header, root);
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+            root = null;
+        }
+        return root;
+    }
+
+    /**
+     * Makes sure the contents of the given directory are in memory, loading its shard if needed.
+     *
+     * @param directory     the directory about to be navigated to or queried
+     */
+    synchronized void ensureLoaded(Directory directory) {
+        Directory shard = shardOf(directory);
+        if (shard == null) {
+            return;
+        }
+        if (unloaded.remove(shard)) {
+            long start = OperationMetrics.start();
+            try (InputStream in = new BufferedInputStream(new FileInputStream(shardFile(shard)))) {
+                readContents(in, shard);
+            } catch (IOException | ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+            OperationMetrics.record(Operation.DESERIALIZE, start);
+        }
+        loaded.put(shard, true);
+    }
+
+    /**
+     * Makes sure the directory with the given path is in memory, loading the shard it is in if needed.
+     *
+     * @param path      the path of a directory
+     */
+    synchronized void ensureLoaded(String path) {
+        if (root == null) {
+            return;
+        }
+        for (Object obj : root.getContents()) {
+            if (obj instanceof Directory) {
+                Directory shard = (Directory) obj;
+                if (path.equals(shard.getPath()) || path.startsWith(shard.getPath() + File.separator)) {
+                    ensureLoaded(shard);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads every shard holding an image that carries one of the given tags, reading only the summary of each
+     * unloaded shard to find them.
+     *
+     * @param tagIds    the ids of the tags
+     */
+    synchronized void loadShardsWithTags(BitSet tagIds) {
+        for (Directory shard : new ArrayList<>(unloaded)) {
+            ShardSummary summary = summaryOf(shard);
+            if (summary == null || summary.tags.intersects(tagIds)) {
+                ensureLoaded(shard);
+            }
+        }
+    }
+
+    /**
+     * @return      the number of images in the tree, whether or not their shard is loaded
+     */
+    synchronized int getImageCount() {
+        int count = imageManager.getImageCount();
+        for (Directory shard : unloaded) {
+            ShardSummary summary = summaryOf(shard);
+            if (summary != null) {
+                count += summary.images;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Loads every shard, for queries that span the whole tree.
+     */
+    synchronized void loadAll() {
+        for (Directory shard : new ArrayList<>(unloaded)) {
+            ensureLoaded(shard);
+        }
+    }
+
+    /**
+     * Writes back and unloads the least recently used shards if too many are loaded or the heap is running low.
+     * Shards holding the given directory or image, or displayed under the given directory, are kept.
+     *
+     * @param currentDirectory  the directory being displayed
+     * @param currentImage      the image currently selected
+     * @param showAllImages     whether or not images in sub-directories of the current directory are displayed
+     */
+    synchronized void evictColdShards(Directory currentDirectory, Image currentImage, boolean showAllImages) {
+        int target = underMemoryPressure() ? loaded.size() / 2 : MAX_LOADED_SHARDS;
+        Directory currentShard = shardOf(currentDirectory);
+        Directory imageShard = currentImage == null ? null : shardOf(currentImage.getParentDirectory());
+        boolean allDisplayed = showAllImages && currentDirectory == root;
+
+        Iterator<Directory> coldest = new ArrayList<>(loaded.keySet()).iterator();
+        while (loaded.size() > target && coldest.hasNext() && !allDisplayed) {
+            Directory shard = coldest.next();
+            if (shard != currentShard && shard != imageShard) {
+                unload(shard);
+            }
+        }
+    }
+
+    /**
+     * Writes the root shard and every loaded shard to disk. Unloaded shards are already on disk.
+     */
+    synchronized void save() {
+        if (root == null) {
+            return;
+        }
+        directory.mkdirs();
+        NameDictionary.NAMES.save(namesFile());
+        try (FileOutputStream fos = new FileOutputStream(rootFile())) {
+            DataOutputStream header = new DataOutputStream(fos);
+            header.writeUTF(root.getPath());
+            header.writeInt(imageManager.getNextImageId());
+            header.flush();
+            writeContents(fos, root);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Directory shard : loaded.keySet()) {
+            writeShard(shard);
+        }
+    }
+
+    /**
+     * Helper function.
+     * Writes the given shard to disk and drops its directories and images from memory.
+     *
+     * @param shard     the root directory of the shard to unload
+     */
+    private void unload(Directory shard) {
+        writeShard(shard);
+        ArrayList<Directory> directories = new ArrayList<>();
+        ArrayList<Image> images = new ArrayList<>();
+        collect(shard, directories, images);
+        // One pass over the images of each tag, rather than one search of them for each image it loses
+        HashSet<Image> leaving = new HashSet<>(images);
+        HashSet<Tag> tags = new HashSet<>();
+        for (Image image : images) {
+            tags.addAll(image.getTags());
+        }
+        for (Tag tag : tags) {
+            tag.getImages().removeIf(leaving::contains);
+        }
+        imageManager.removeImages(images);
+        directories.remove(shard);
+        directoryManager.removeDirectories(directories);
+        shard.getContents().clear();
+        loaded.remove(shard);
+        unloaded.add(shard);
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param shard     the root directory of the shard to write
+     */
+    private void writeShard(Directory shard) {
+        NameDictionary.NAMES.save(namesFile());
+        try (FileOutputStream fos = new FileOutputStream(shardFile(shard))) {
+            writeContents(fos, shard);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Helper function.
+     * Writes the contents of the given shard, replacing tags and directories outside of it with references.
+     *
+     * @param out       the stream to write to
+     * @param shard     the root directory of the shard
+     * @throws IOException  if the shard cannot be written
+     */
+    private void writeContents(OutputStream out, Directory shard) throws IOException {
+        ArrayList<Image> images = new ArrayList<>();
+        collect(shard, new ArrayList<>(), images);
+        ShardSummary summary = new ShardSummary(images);
+        if (shard != root) {
+            summaries.put(shard, summary);
+        }
+        ShardOutput oos = new ShardOutput(new BufferedOutputStream(out), shard);
+        oos.writeLong(shard.getLastModified());
+        oos.writeObject(summary);
+        oos.writeObject(shard.getContents());
+        oos.flush();
+    }
+
+    /**
+     * Helper function.
+     * Reads the contents of the given shard into it, and registers its directories and images with the managers.
+     *
+     * @param in        the stream to read from
+     * @param shard     the root directory of the shard
+     * @throws IOException              if the shard cannot be read
+     * @throws ClassNotFoundException   if the shard was written by an incompatible version of the program
+     */
+    private void readContents(InputStream in, Directory shard) throws IOException, ClassNotFoundException {
+        ShardInput ois = new ShardInput(in, shard);
+        shard.setLastModified(ois.readLong());
+        ShardSummary summary = (ShardSummary) ois.readObject();
+        if (shard != root) {
+            summaries.put(shard, summary);
+        }
+        ArrayList<?> contents = (ArrayList<?>) ois.readObject();
+        shard.getContents().addAll(contents);
+
+        ArrayList<Directory> directories = new ArrayList<>();
+        ArrayList<Image> images = new ArrayList<>();
+        collect(shard, directories, images);
+        directories.remove(shard);
+        directoryManager.addDirectories(directories);
+        imageManager.addImages(images);
+        for (Image image : images) {
+            for (Tag tag : image.getTags()) {
+                tag.addImage(image);
+            }
+        }
+        if (loadListener != null) {
+            directories.add(shard);
+            loadListener.accept(directories);
+        }
+    }
+
+    /**
+     * Helper function.
+     * Gathers every directory and image in the given shard, stopping at unloaded shards.
+     *
+     * @param directory     the directory to start from
+     * @param directories   the list to add directories to
+     * @param images        the list to add images to
+     */
+    private void collect(Directory directory, ArrayList<Directory> directories, ArrayList<Image> images) {
+        directories.add(directory);
+        for (Object obj : directory.getContents()) {
+            if (obj instanceof Image) {
+                images.add((Image) obj);
+            } else if (!unloaded.contains(obj) && (directory != root || !loaded.containsKey(obj))) {
+                collect((Directory) obj, directories, images);
+            }
+        }
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param directory     a directory in the tree
+     * @return              the root directory of the subtree shard the given directory is in,
+     *                      or null if it is in the root shard or not in the tree
+     */
+    private Directory shardOf(Directory directory) {
+        if (root == null) {
+            return null;
+        }
+        for (Directory d = directory; d != null; d = d.getParentDirectory()) {
+            if (d.getParentDirectory() == root) {
+                return d;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param name      the handle of the name of a tag referenced by a shard
+     * @return          the tag of that name in the tag dictionary, or the same orphaned tag for every reference
+     *                  if it has been deleted
+     */
+    private Tag resolveTag(int name) {
+        Tag tag = tagManager.getTag(name);
+        if (tag != null) {
+            return tag;
+        }
+        return orphanTags.computeIfAbsent(name, handle -> new Tag(NameDictionary.NAMES.get(handle)));
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param shard     the root directory of a subtree shard
+     * @return          the summary of the shard, read from the start of its file if it is not known yet,
+     *                  or null if it cannot be read
+     */
+    private ShardSummary summaryOf(Directory shard) {
+        ShardSummary summary = summaries.get(shard);
+        if (summary == null) {
+            try (ShardInput ois = new ShardInput(new BufferedInputStream(new FileInputStream(shardFile(shard))),
+                    shard)) {
+                ois.readLong();
+                summary = (ShardSummary) ois.readObject();
+                summaries.put(shard, summary);
+            } catch (IOException | ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * @return      true iff more than MEMORY_PRESSURE of the maximum heap is in use
+     */
+    private static boolean underMemoryPressure() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > runtime.maxMemory() * MEMORY_PRESSURE;
+    }
+
+    /**
+     * @return      the file of the names the shards refer to
+     */
+    private File namesFile() {
+        return new File(directory, "names.dict");
+    }
+
+    /**
+     * @return      the file of the root shard
+     */
+    private File rootFile() {
+        return new File(directory, "root.ser");
+    }
+
+    /**
+     * @param shard     the root directory of a subtree shard
+     * @return          the file of the given shard
+     */
+    private File shardFile(Directory shard) {
+        return new File(directory, "subtree-" + shard.getName() + ".ser");
+    }
+
+    /**
+     * What a shard holds, written before its contents: the ids of the tags its images carry and their number.
+     */
+    private static class ShardSummary implements Serializable {
+        private BitSet tags = new BitSet();
+        private int images;
+
+        ShardSummary(ArrayList<Image> images) {
+            this.images = images.size();
+            for (Image image : images) {
+                for (Tag tag : image.getTags()) {
+                    // Orphaned tags have no id, and cannot be searched for
+                    if (tag.getId() != 0) {
+                        tags.set(tag.getId());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stands in for a tag in a shard file, so that shards do not contain the images of other shards.
+     */
+    private static class TagReference implements Serializable {
+        private int name;
+
+        TagReference(int name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Stands in for a directory outside of the shard being written, or for the root of an unloaded subtree shard.
+     */
+    private static class DirectoryReference implements Serializable {
+        private String path;
+        private boolean subtree;
+
+        DirectoryReference(String path, boolean subtree) {
+            this.path = path;
+            this.subtree = subtree;
+        }
+    }
+
+    /**
+     * Writes a shard, replacing references to anything outside of it.
+     */
+    private class ShardOutput extends ObjectOutputStream {
+
+        /**
+         * The root directory of the shard being written.
+         */
+        private Directory shard;
+
+        ShardOutput(OutputStream out, Directory shard) throws IOException {
+            super(out);
+            this.shard = shard;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            if (obj instanceof Tag) {
+                return new TagReference(((Tag) obj).getNameHandle());
+            } else if (obj == shard || obj == root) {
+                return new DirectoryReference(((Directory) obj).getPath(), false);
+            } else if (obj instanceof Directory && shard == root && ((Directory) obj).getParentDirectory() == root) {
+                return new DirectoryReference(((Directory) obj).getPath(), true);
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Reads a shard, resolving the references written by ShardOutput.
+     */
+    private class ShardInput extends ObjectInputStream {
+
+        /**
+         * The root directory of the shard being read.
+         */
+        private Directory shard;
+
+        ShardInput(InputStream in, Directory shard) throws IOException {
+            super(in);
+            this.shard = shard;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) {
+            if (obj instanceof TagReference) {
+                return resolveTag(((TagReference) obj).name);
+            } else if (obj instanceof DirectoryReference) {
+                DirectoryReference reference = (DirectoryReference) obj;
+                if (reference.subtree) {
+                    Directory subtree = new Directory(reference.path, root);
+                    directoryManager.addDirectory(subtree);
+                    unloaded.add(subtree);
+                    return subtree;
+                }
+                return reference.path.equals(shard.getPath()) ? shard : root;
+            }
+            return obj;
+        }
+    }
+}
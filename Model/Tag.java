@@ -1,20 +1,45 @@
 package Model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 
 /**
  * A class representation of the user created Tags
+ *
+ * Tags may be nested in namespaces by separating the parts of their name with SEPARATOR, as in
+ * "loc/france/paris", which is a descendant of "loc/france" and "loc". Since file names cannot hold
+ * SEPARATOR, the parts are separated by FILE_SEPARATOR in the names of images instead.
  */
 
 public class Tag implements Serializable {
 
     /**
-     * The name of this Tag which has the format "tagName".
+     * Separates the parent of a tag from the rest of its name.
      */
-    private String name;
+    public static final char SEPARATOR = '/';
 
-    private ArrayList<Image> images;
+    /**
+     * Stands in for SEPARATOR in the names of image files.
+     */
+    public static final char FILE_SEPARATOR = '~';
+
+    /**
+     * The handle in the NameDictionary of the name of this Tag, which has the format "tagName".
+     */
+    private int name;
+
+    /**
+     * The id of this tag, unique among all tags in the program, or 0 if it was never added to the list of all tags.
+     */
+    private int id;
+
+    /**
+     * The images currently tagged with this Tag. Not saved with the tag, since the images are saved in the
+     * shard of their directory and are added back as their shard is loaded.
+     */
+    private transient ArrayList<Image> images;
 
     /**
      * Creates the Tag object using the given name and initial image. Also instantiated the list containing all the
@@ -23,7 +48,7 @@ public class Tag implements Serializable {
      * @param name      the name of the tag
      */
     public Tag(String name) {
-        this.name = name;
+        this.name = NameDictionary.NAMES.intern(name);
         this.setImages(new ArrayList<>());
     }
 
@@ -31,9 +56,95 @@ public class Tag implements Serializable {
      * @return the name of this tag
      */
     public String getName() {
+        return NameDictionary.NAMES.get(this.name);
+    }
+
+    /**
+     * @return the name of this tag as it appears in the names of image files
+     */
+    public String getFileName() {
+        return getName().replace(SEPARATOR, FILE_SEPARATOR);
+    }
+
+    /**
+     * @return the name of the parent of this tag, or null if it is not in a namespace
+     */
+    public String getParentName() {
+        String name = getName();
+        int separator = name.lastIndexOf(SEPARATOR);
+        return separator < 0 ? null : name.substring(0, separator);
+    }
+
+    /**
+     * Returns the given name and the names of each of its ancestors, e.g. for "loc/france/paris":
+     * ["loc", "loc/france", "loc/france/paris"].
+     *
+     * @param name      the name of a tag
+     * @return          the names, outermost first
+     */
+    static ArrayList<String> getAncestorNames(String name) {
+        ArrayList<String> names = new ArrayList<>();
+        int separator = name.indexOf(SEPARATOR);
+        while (separator >= 0) {
+            names.add(name.substring(0, separator));
+            separator = name.indexOf(SEPARATOR, separator + 1);
+        }
+        names.add(name);
+        return names;
+    }
+
+    /**
+     * Puts the name of a tag, as typed by the user or found in the name of an image, in the form tags are stored in:
+     * either separator may be used between the parts, and blank parts and the spaces around parts are dropped.
+     * "loc / france~paris/" --> "loc/france/paris"
+     *
+     * @param name      the name of a tag
+     * @return          the name with its parts separated by SEPARATOR, or "" if it has no parts
+     */
+    public static String normalizeName(String name) {
+        StringBuilder normalized = new StringBuilder();
+        for (String part : name.replace(FILE_SEPARATOR, SEPARATOR).split(String.valueOf(SEPARATOR))) {
+            part = part.trim();
+            if (!part.isEmpty()) {
+                if (normalized.length() > 0) {
+                    normalized.append(SEPARATOR);
+                }
+                normalized.append(part);
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * @return the handle of the name of this tag, equal for two tags iff their names are
+     */
+    int getNameHandle() {
         return this.name;
     }
 
+    /**
+     * @return the id of this tag, or 0 if it has none
+     */
+    int getId() {
+        return this.id;
+    }
+
+    /**
+     * @param id the id of this tag
+     */
+    void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Renames this tag. Its images keep it, but their file names still hold the old name until they are renamed.
+     *
+     * @param name      the new name of this tag
+     */
+    void setName(String name) {
+        this.name = NameDictionary.NAMES.intern(name);
+    }
+
     /**
      * Add an image to the list of associated images
      *
@@ -70,4 +181,16 @@ public class Tag implements Serializable {
     public void setImages(ArrayList<Image> images) {
         this.images = images;
     }
+
+    /**
+     * Reads this tag without any images; they are added back as the shards holding them are loaded.
+     *
+     * @param in    the stream to read from
+     * @throws IOException              if the tag cannot be read
+     * @throws ClassNotFoundException   if the tag was saved by an incompatible version of the program
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.images = new ArrayList<>();
+    }
 }
@@ -0,0 +1,299 @@
+package Model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+
+/**
+ * Counts how many images carry each tag, and each pair of tags together, as a sparse matrix keyed by the ids of
+ * the two tags. It is updated as images are tagged and untagged, and saved with the tags, so it is only ever
+ * built from scratch when a directory is first scanned. Images count whether or not their shard is loaded.
+ *
+ * Suggestions for an image are the tags most often found with the tags it already has: each candidate scores,
+ * for each of the image's tags, the fraction of the images with that tag that also carry the candidate.
+ */
+class TagCooccurrence implements Serializable {
+
+    /**
+     * The number of images carrying each tag, by tag id.
+     */
+    private Counts tagCounts = new Counts();
+
+    /**
+     * The rows of the matrix: for each tag id, the number of images carrying it and each other tag, by the id of
+     * the other tag. Each pair is stored in the rows of both of its tags.
+     */
+    private HashMap<Integer, Counts> rows = new HashMap<>();
+
+    /**
+     * Records that an image carrying the tags before now carries the tags after. Tags without an id are ignored.
+     *
+     * @param before    the tags of the image before, or an empty list for a new image
+     * @param after     the tags of the image after, or an empty list for a removed image
+     */
+    synchronized void retagged(ArrayList<Tag> before, ArrayList<Tag> after) {
+        int[] oldIds = ids(before);
+        int[] newIds = ids(after);
+        HashSet<Integer> oldSet = set(oldIds);
+        HashSet<Integer> newSet = set(newIds);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (!newSet.contains(oldIds[i])) {
+                tagCounts.add(oldIds[i], -1);
+            }
+            for (int j = i + 1; j < oldIds.length; j++) {
+                if (!newSet.contains(oldIds[i]) || !newSet.contains(oldIds[j])) {
+                    addPair(oldIds[i], oldIds[j], -1);
+                }
+            }
+        }
+        for (int i = 0; i < newIds.length; i++) {
+            if (!oldSet.contains(newIds[i])) {
+                tagCounts.add(newIds[i], 1);
+            }
+            for (int j = i + 1; j < newIds.length; j++) {
+                if (!oldSet.contains(newIds[i]) || !oldSet.contains(newIds[j])) {
+                    addPair(newIds[i], newIds[j], 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets every count involving the given tag, e.g. once it is deleted.
+     *
+     * @param id    the id of the tag
+     */
+    synchronized void removeTag(int id) {
+        Counts row = rows.remove(id);
+        if (row != null) {
+            for (int i = 0; i < row.keys.length; i++) {
+                if (row.keys[i] != 0) {
+                    Counts other = rows.get(row.keys[i]);
+                    if (other == null) {
+                        continue;
+                    }
+                    other.add(id, -other.get(id));
+                    if (other.size == 0) {
+                        rows.remove(row.keys[i]);
+                    }
+                }
+            }
+        }
+        tagCounts.add(id, -tagCounts.get(id));
+    }
+
+    /**
+     * @param id    the id of a tag
+     * @return      the number of images carrying the tag
+     */
+    synchronized int count(int id) {
+        return tagCounts.get(id);
+    }
+
+    /**
+     * @param a     the id of a tag
+     * @param b     the id of another tag
+     * @return      the number of images carrying both tags
+     */
+    synchronized int count(int a, int b) {
+        Counts row = rows.get(a);
+        return row == null ? 0 : row.get(b);
+    }
+
+    /**
+     * Returns the tags most often found with all of the given tags, leaving out the given tags themselves.
+     *
+     * @param ids       the ids of the tags an image has
+     * @param limit     the maximum number of tags to suggest
+     * @return          the ids of at most limit tags, best first
+     */
+    synchronized int[] suggest(int[] ids, int limit) {
+        HashSet<Integer> given = set(ids);
+        HashMap<Integer, Double> scores = new HashMap<>();
+        for (int id : given) {
+            Counts row = rows.get(id);
+            int count = tagCounts.get(id);
+            if (row == null || count == 0) {
+                continue;
+            }
+            for (int i = 0; i < row.keys.length; i++) {
+                if (row.keys[i] != 0 && !given.contains(row.keys[i])) {
+                    scores.merge(row.keys[i], (double) row.values[i] / count, Double::sum);
+                }
+            }
+        }
+        // Orders candidates from best to worst: highest score, then most used, then oldest tag
+        Comparator<Integer> best = Comparator.comparingDouble((Integer id) -> -scores.get(id))
+                .thenComparingInt(id -> -tagCounts.get(id))
+                .thenComparingInt(id -> id);
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, limit + 1), best.reversed());
+        for (int id : scores.keySet()) {
+            top.add(id);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        int[] suggestions = new int[top.size()];
+        for (int i = suggestions.length - 1; i >= 0; i--) {
+            suggestions[i] = top.poll();
+        }
+        return suggestions;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param a         the id of a tag
+     * @param b         the id of another tag
+     * @param delta     the change in the number of images carrying both
+     */
+    private void addPair(int a, int b, int delta) {
+        if (a == b) {
+            return;
+        }
+        addToRow(a, b, delta);
+        addToRow(b, a, delta);
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param row       the id of the tag whose row to change
+     * @param column    the id of the other tag
+     * @param delta     the change in the number of images carrying both
+     */
+    private void addToRow(int row, int column, int delta) {
+        Counts counts = rows.get(row);
+        if (counts == null) {
+            if (delta <= 0) {
+                return;
+            }
+            counts = new Counts();
+            rows.put(row, counts);
+        }
+        counts.add(column, delta);
+        if (counts.size == 0) {
+            rows.remove(row);
+        }
+    }
+
+    /**
+     * @param tags      some tags
+     * @return          the ids of the tags that have one, each once
+     */
+    private static int[] ids(ArrayList<Tag> tags) {
+        int[] ids = new int[tags.size()];
+        HashSet<Integer> seen = new HashSet<>();
+        int size = 0;
+        for (Tag tag : tags) {
+            if (tag.getId() != 0 && seen.add(tag.getId())) {
+                ids[size++] = tag.getId();
+            }
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * @param ids       some ids
+     * @return          the ids as a set
+     */
+    private static HashSet<Integer> set(int[] ids) {
+        HashSet<Integer> set = new HashSet<>();
+        for (int id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    /**
+     * A map from tag id to a positive count, stored in two arrays with linear probing. Ids are never 0, so 0
+     * marks an empty slot, and counts that drop to 0 are removed.
+     */
+    static class Counts implements Serializable {
+        private int[] keys = new int[4];
+        private int[] values = new int[4];
+        private int size = 0;
+
+        /**
+         * @param key   a tag id
+         * @return      the count of the id, or 0 if it has none
+         */
+        int get(int key) {
+            int slot = find(key);
+            return keys[slot] == key ? values[slot] : 0;
+        }
+
+        /**
+         * @param key       a tag id
+         * @param delta     the change in its count
+         */
+        void add(int key, int delta) {
+            int slot = find(key);
+            if (keys[slot] != key) {
+                if (delta <= 0) {
+                    return;
+                }
+                keys[slot] = key;
+                values[slot] = delta;
+                if (++size * 2 > keys.length) {
+                    resize(keys.length * 2);
+                }
+            } else if ((values[slot] += delta) <= 0) {
+                remove(slot);
+            }
+        }
+
+        /**
+         * @param key   a tag id
+         * @return      the slot holding the id, or the empty slot it would go in
+         */
+        private int find(int key) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B9) >>> 1 & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Empties the given slot, moving back any later entry that probed past it.
+         *
+         * @param slot  the slot to empty
+         */
+        private void remove(int slot) {
+            int mask = keys.length - 1;
+            keys[slot] = 0;
+            size--;
+            for (int next = (slot + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+                int key = keys[next];
+                int value = values[next];
+                keys[next] = 0;
+                int home = find(key);
+                keys[home] = key;
+                values[home] = value;
+            }
+        }
+
+        /**
+         * @param capacity  the new number of slots, a power of two
+         */
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[capacity];
+            values = new int[capacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
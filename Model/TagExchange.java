@@ -0,0 +1,835 @@
+package Model;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Exports the tag database to, and imports it from, files that other programs can read: newline-delimited JSON,
+ * or CSV for files whose name ends in ".csv". Both are written and read one record at a time, so they take the
+ * same memory however many images they hold.
+ *
+ * Each record has one of these types:
+ * - "tag": a tag, by name
+ * - "tags": one entry of the tag history of an image, by version
+ * - "rename": one entry of the name history of an image: its previous and new name, when, and the version of
+ *   its tags after the rename
+ * - "image": an image, its name and the tags it has now, following the history records of the image
+ * Images are identified by the path of their name without tags from the root directory, with "/" between
+ * directories, e.g. "trips/IMG_01.jpg" for "trips/IMG_01 @beach.jpg", so that a file exported on one machine
+ * can be imported on another whether or not its images are tagged there yet. Images whose names without tags are
+ * the same in one directory, e.g. "IMG_01 @beach.jpg" and "IMG_01 @city.jpg", are identified by their full names
+ * instead. In CSV files, lists of tags are written as in the names of images,
+ * "@tag1 @tag2", and the columns are COLUMNS.
+ *
+ * Importing creates the tags that are missing, and retags each image found at an exported path to its exported
+ * tags, in parallel batches of IMPORT_BATCH images. The exported history of an image replaces its own only if it
+ * was never renamed here and has the exported name and tags, i.e. it is a copy of the exported image.
+ */
+class TagExchange {
+
+    /**
+     * The number of images retagged at a time by an import.
+     */
+    static final int IMPORT_BATCH = 10000;
+
+    /**
+     * The columns of a CSV file, in order.
+     */
+    private static final String[] COLUMNS = {"type", "image", "version", "time", "previous", "name", "tags"};
+
+    /**
+     * The managers whose images and tags are exported and imported.
+     */
+    private ImageManager imageManager;
+    private DirectoryManager directoryManager;
+    private TagManager tagManager;
+
+    /**
+     * The path of the directory whose images were last looked up by an import, and those images by full name
+     * and by name without tags, where no other image there has the same name without tags.
+     * Images are exported one directory at a time, so each directory is only listed once.
+     */
+    private String cachedDirectory;
+    private HashMap<String, Image> cachedImages = new HashMap<>();
+
+    /**
+     * Creates an exchange for the images and tags of the given managers.
+     *
+     * @param imageManager      the manager of the images
+     * @param directoryManager  the manager of the directories, whose root the paths of images are relative to
+     * @param tagManager        the manager of the tags
+     */
+    TagExchange(ImageManager imageManager, DirectoryManager directoryManager, TagManager tagManager) {
+        this.imageManager = imageManager;
+        this.directoryManager = directoryManager;
+        this.tagManager = tagManager;
+    }
+
+    /**
+     * Writes every tag, and every image under the root directory with its histories, to the given file.
+     * Every shard must be loaded.
+     *
+     * @param file      the file to write, CSV if its name ends in ".csv" and newline-delimited JSON otherwise
+     * @param monitor   receives progress by image, and tells the export whether to stop early
+     * @return          the number of images written
+     * @throws IOException  if the file cannot be written
+     */
+    long export(File file, ProgressMonitor monitor) throws IOException {
+        boolean csv = isCsv(file);
+        Directory root = directoryManager.getRootDirectory();
+        long total = imageManager.getImageCount();
+        long done = 0;
+        monitor.worked(0, total);
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            if (csv) {
+                writeCsvRow(out, COLUMNS);
+            }
+            for (Tag tag : new ArrayList<>(tagManager.getAllTags())) {
+                Record record = new Record("tag");
+                record.name = tag.getName();
+                write(out, record, csv);
+            }
+            ArrayDeque<Directory> directories = new ArrayDeque<>();
+            directories.push(root);
+            while (!directories.isEmpty() && !monitor.isCancelled()) {
+                Directory directory = directories.pop();
+                HashSet<String> ambiguous = ambiguousNames(directory);
+                for (Object obj : directory.getContents()) {
+                    if (obj instanceof Directory) {
+                        directories.push((Directory) obj);
+                    } else if (obj instanceof Image) {
+                        writeImage(out, (Image) obj, imagePath(root, (Image) obj, ambiguous), csv);
+                        monitor.worked(++done, total);
+                    }
+                }
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Reads the tags, images and histories in the given file, written by export(), into the program.
+     * Shards are loaded as the directories of the images in the file are reached.
+     *
+     * @param file      the file to read, CSV if its name ends in ".csv" and newline-delimited JSON otherwise
+     * @param monitor   receives progress by byte, and tells the import whether to stop early; the batch being
+     *                  retagged when it is cancelled is still finished
+     * @return          the number of images retagged
+     * @throws IOException  if the file cannot be read
+     */
+    long importFrom(File file, ProgressMonitor monitor) throws IOException {
+        boolean csv = isCsv(file);
+        long total = file.length();
+        long read = 0;
+        long retagged = 0;
+        HashMap<Image, ArrayList<Tag>> batch = new HashMap<>();
+        // The history records of the image whose records are being read
+        String historyOf = null;
+        ArrayList<Tag[]> versions = new ArrayList<>();
+        ArrayList<Record> renames = new ArrayList<>();
+        cachedDirectory = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            boolean header = csv;
+            while ((line = readLine(in, csv)) != null && !monitor.isCancelled()) {
+                read += line.length() + 1;
+                monitor.worked(Math.min(read, total), total);
+                if (header) {
+                    header = false;
+                    continue;
+                }
+                Record record = csv ? parseCsv(line) : parseJson(line);
+                if (record == null || record.type == null) {
+                    continue;
+                }
+                if (!record.type.equals("tag") && !record.image.equals(historyOf)) {
+                    historyOf = record.image;
+                    versions.clear();
+                    renames.clear();
+                }
+                switch (record.type) {
+                    case "tag":
+                        if (record.name != null && tagManager.getTag(Tag.normalizeName(record.name)) == null) {
+                            tagManager.createTag(record.name);
+                        }
+                        break;
+                    case "tags":
+                        versions.add(getTags(record.tags).toArray(new Tag[0]));
+                        break;
+                    case "rename":
+                        renames.add(record);
+                        break;
+                    case "image":
+                        Image image = findImage(record.image);
+                        if (image != null) {
+                            ArrayList<Tag> tags = getTags(record.tags);
+                            restoreHistory(image, record, tags, versions, renames);
+                            if (!sameTags(image.getTags(), tags)) {
+                                batch.put(image, tags);
+                            }
+                        }
+                        historyOf = null;
+                        if (batch.size() >= IMPORT_BATCH) {
+                            retagged += retag(batch);
+                            batch.clear();
+                        }
+                        break;
+                    default:
+                        // A record written by a later version of the program
+                        break;
+                }
+            }
+        }
+        retagged += retag(batch);
+        cachedDirectory = null;
+        cachedImages.clear();
+        return retagged;
+    }
+
+    /**
+     * Helper function.
+     * Writes the history records of an image, followed by the image itself.
+     *
+     * @param out       the file being written
+     * @param image     the image to write
+     * @param path      the path of the image from the root directory, as written by imagePath()
+     * @param csv       whether or not the file is CSV
+     * @throws IOException  if the file cannot be written
+     */
+    private void writeImage(Writer out, Image image, String path, boolean csv) throws IOException {
+        ArrayList<Tag[]> tagHistory = image.getTagHistory();
+        for (int version = 0; version < tagHistory.size(); version++) {
+            Record record = new Record("tags");
+            record.image = path;
+            record.version = version;
+            record.tags = names(tagHistory.get(version));
+            write(out, record, csv);
+        }
+        for (Image.NameHistoryEntry entry : image.getFullNameHistory()) {
+            Record record = new Record("rename");
+            record.image = path;
+            record.version = entry.getTagVersion();
+            record.time = entry.getTimestamp();
+            record.previous = entry.getOldName();
+            record.name = entry.getNewName();
+            write(out, record, csv);
+        }
+        Record record = new Record("image");
+        record.image = path;
+        record.name = image.getName();
+        record.tags = names(image.getTags().toArray(new Tag[0]));
+        write(out, record, csv);
+    }
+
+    /**
+     * Helper function.
+     * Replaces the history of the given image with the exported one, if the image is a copy of the exported image:
+     * it was never renamed here, and has the exported name and tags.
+     *
+     * @param image     an image
+     * @param record    the exported image record for it
+     * @param tags      the exported tags of the image
+     * @param versions  the exported tag history of the image
+     * @param renames   the exported name history of the image
+     */
+    private void restoreHistory(Image image, Record record, ArrayList<Tag> tags, ArrayList<Tag[]> versions,
+                                ArrayList<Record> renames) {
+        if (versions.isEmpty() || !image.getFullNameHistory().isEmpty() || !image.getName().equals(record.name)
+                || !sameTags(image.getTags(), tags)
+                || !sameTags(new ArrayList<>(Arrays.asList(versions.get(versions.size() - 1))), tags)) {
+            return;
+        }
+        ArrayList<Image.NameHistoryEntry> nameHistory = new ArrayList<>();
+        for (Record rename : renames) {
+            if (rename.version < -1 || rename.version >= versions.size() || rename.previous == null
+                    || rename.name == null) {
+                return;
+            }
+            nameHistory.add(new Image.NameHistoryEntry(rename.previous, rename.name, rename.time, rename.version));
+        }
+        image.restoreHistory(new ArrayList<>(versions), nameHistory);
+        imageManager.historyRestored(image);
+    }
+
+    /**
+     * Helper function.
+     * Gives each image in the batch its new tags and renames it to match, several images at a time.
+     *
+     * @param batch     the new tags of each image
+     * @return          the number of images renamed
+     */
+    private long retag(HashMap<Image, ArrayList<Tag>> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        for (Map.Entry<Image, ArrayList<Tag>> entry : batch.entrySet()) {
+            tagManager.imageRetagged(entry.getKey().getTags(), entry.getValue());
+        }
+        tagManager.retagImages(batch);
+        return imageManager.retagImages(batch, ProgressMonitor.NONE).size();
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param path      the path of the name of an image from the root directory, with "/" between directories,
+     *                  as written by imagePath()
+     * @return          the loaded image at that path, or null if there is none or its name without tags is
+     *                  ambiguous there
+     */
+    private Image findImage(String path) {
+        String root = directoryManager.getRootDirectory().getPath();
+        int slash = path.lastIndexOf('/');
+        String directoryPath = slash < 0 ? root
+                : root + File.separator + path.substring(0, slash).replace('/', File.separatorChar);
+        if (!directoryPath.equals(cachedDirectory)) {
+            cachedDirectory = directoryPath;
+            cachedImages.clear();
+            Directory directory = directoryManager.getDirectoryFromPath(directoryPath);
+            if (directory != null) {
+                HashSet<String> ambiguous = ambiguousNames(directory);
+                for (Object obj : directory.getContents()) {
+                    if (obj instanceof Image && !ambiguous.contains(untaggedName((Image) obj))) {
+                        cachedImages.put(untaggedName((Image) obj), (Image) obj);
+                    }
+                }
+                for (Object obj : directory.getContents()) {
+                    if (obj instanceof Image) {
+                        cachedImages.put(((Image) obj).getName(), (Image) obj);
+                    }
+                }
+            }
+        }
+        String name = path.substring(slash + 1);
+        Image image = cachedImages.get(name);
+        return image != null ? image : cachedImages.get(untaggedName(name));
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param directory     a directory
+     * @return              the names without tags that more than one image in the directory has
+     */
+    private static HashSet<String> ambiguousNames(Directory directory) {
+        HashSet<String> names = new HashSet<>();
+        HashSet<String> ambiguous = new HashSet<>();
+        for (Object obj : directory.getContents()) {
+            if (obj instanceof Image && !names.add(untaggedName((Image) obj))) {
+                ambiguous.add(untaggedName((Image) obj));
+            }
+        }
+        return ambiguous;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param names     the names of some tags
+     * @return          the tags with those names, created if there are none, each once
+     */
+    private ArrayList<Tag> getTags(ArrayList<String> names) {
+        ArrayList<Tag> tags = new ArrayList<>();
+        for (String name : names) {
+            Tag tag = tagManager.getTag(Tag.normalizeName(name));
+            if (tag == null) {
+                tag = tagManager.createTag(name);
+            }
+            if (tag != null && !tags.contains(tag)) {
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * @param a     some tags
+     * @param b     some other tags
+     * @return      true iff the same tags are in both lists, in any order
+     */
+    private static boolean sameTags(ArrayList<Tag> a, ArrayList<Tag> b) {
+        return a.size() == b.size() && a.containsAll(b);
+    }
+
+    /**
+     * @param tags  some tags
+     * @return      the names of the tags
+     */
+    private static ArrayList<String> names(Tag[] tags) {
+        ArrayList<String> names = new ArrayList<>(tags.length);
+        for (Tag tag : tags) {
+            names.add(tag.getName());
+        }
+        return names;
+    }
+
+    /**
+     * @param root      the root directory
+     * @param image     an image under the root directory
+     * @param ambiguous the names without tags that more than one image in the directory of the image has
+     * @return          the path of the name without tags of the image from the root directory, with "/" between
+     *                  directories, or of its full name if its name without tags is ambiguous
+     */
+    private static String imagePath(Directory root, Image image, HashSet<String> ambiguous) {
+        String name = untaggedName(image);
+        if (ambiguous.contains(name)) {
+            name = image.getName();
+        }
+        String directory = image.getParentDirectory().getPath();
+        if (directory.length() == root.getPath().length()) {
+            return name;
+        }
+        String path = directory.substring(root.getPath().length() + 1) + File.separator + name;
+        return File.separatorChar == '/' ? path : path.replace(File.separatorChar, '/');
+    }
+
+    /**
+     * @param image     an image
+     * @return          the name of the image without tags, e.g. "IMG_01.jpg" for "IMG_01 @beach.jpg"
+     */
+    private static String untaggedName(Image image) {
+        return image.getExtensionlessOriginalName() + image.getExtension();
+    }
+
+    /**
+     * @param name      the name of an image
+     * @return          the name without tags, e.g. "IMG_01.jpg" for "IMG_01 @beach.jpg"
+     */
+    private static String untaggedName(String name) {
+        int tag = name.indexOf(" @");
+        if (tag == -1) {
+            return name;
+        }
+        int extension = name.lastIndexOf('.');
+        return extension > tag ? name.substring(0, tag) + name.substring(extension) : name.substring(0, tag);
+    }
+
+    /**
+     * @param file  a file to export to or import from
+     * @return      true iff it is a CSV file
+     */
+    private static boolean isCsv(File file) {
+        return file.getName().toLowerCase().endsWith(".csv");
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param out       the file being written
+     * @param record    the record to write, as one line
+     * @param csv       whether or not the file is CSV
+     * @throws IOException  if the file cannot be written
+     */
+    private static void write(Writer out, Record record, boolean csv) throws IOException {
+        if (csv) {
+            StringBuilder tags = new StringBuilder();
+            if (record.tags != null) {
+                for (String tag : record.tags) {
+                    tags.append(tags.length() == 0 ? "@" : " @").append(tag);
+                }
+            }
+            writeCsvRow(out, new String[]{record.type, record.image, record.version < 0 ? "" : "" + record.version,
+                    record.time == 0 ? "" : "" + record.time, record.previous, record.name,
+                    record.tags == null ? null : tags.toString()});
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"type\":");
+        appendJson(json, record.type);
+        if (record.image != null) {
+            json.append(",\"image\":");
+            appendJson(json, record.image);
+        }
+        if (record.version >= 0) {
+            json.append(",\"version\":").append(record.version);
+        }
+        if (record.time != 0) {
+            json.append(",\"time\":").append(record.time);
+        }
+        if (record.previous != null) {
+            json.append(",\"previous\":");
+            appendJson(json, record.previous);
+        }
+        if (record.name != null) {
+            json.append(",\"name\":");
+            appendJson(json, record.name);
+        }
+        if (record.tags != null) {
+            json.append(",\"tags\":[");
+            for (int i = 0; i < record.tags.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                appendJson(json, record.tags.get(i));
+            }
+            json.append(']');
+        }
+        out.write(json.append("}\n").toString());
+    }
+
+    /**
+     * Helper function.
+     * Writes one row of a CSV file, quoting the fields that need it. Null fields are left empty.
+     *
+     * @param out       the file being written
+     * @param fields    the fields of the row
+     * @throws IOException  if the file cannot be written
+     */
+    private static void writeCsvRow(Writer out, String[] fields) throws IOException {
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            String field = fields[i] == null ? "" : fields[i];
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0
+                    || field.indexOf('\r') >= 0) {
+                row.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                row.append(field);
+            }
+        }
+        out.write(row.append('\n').toString());
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param json      the JSON being built
+     * @param value     a string to append to it, quoted and escaped
+     */
+    private static void appendJson(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Helper function.
+     * Reads the next record of a file. A CSV record continues onto the next line while a quoted field is open.
+     *
+     * @param in        the file being read
+     * @param csv       whether or not the file is CSV
+     * @return          the record, or null at the end of the file
+     * @throws IOException  if the file cannot be read
+     */
+    private static String readLine(BufferedReader in, boolean csv) throws IOException {
+        String line = in.readLine();
+        if (!csv || line == null) {
+            return line;
+        }
+        StringBuilder record = new StringBuilder(line);
+        while (countQuotes(record) % 2 == 1 && (line = in.readLine()) != null) {
+            record.append('\n').append(line);
+        }
+        return record.toString();
+    }
+
+    /**
+     * @param text  some text
+     * @return      the number of double quotes in it
+     */
+    private static int countQuotes(CharSequence text) {
+        int quotes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param line      one record of a CSV file
+     * @return          the record, or null if it is malformed
+     */
+    private static Record parseCsv(String line) {
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        if (fields.size() < COLUMNS.length || fields.get(0).isEmpty()) {
+            return null;
+        }
+        try {
+            Record record = new Record(fields.get(0));
+            record.image = fields.get(1);
+            record.version = fields.get(2).isEmpty() ? -1 : Integer.parseInt(fields.get(2));
+            record.time = fields.get(3).isEmpty() ? 0 : Long.parseLong(fields.get(3));
+            record.previous = fields.get(4).isEmpty() ? null : fields.get(4);
+            record.name = fields.get(5).isEmpty() ? null : fields.get(5);
+            record.tags = new ArrayList<>();
+            for (String tag : fields.get(6).split("@")) {
+                if (!tag.trim().isEmpty()) {
+                    record.tags.add(tag.trim());
+                }
+            }
+            return record;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Helper function.
+     * Reads a JSON object of strings, integers and lists of strings, which is all export() writes.
+     *
+     * @param line      one line of a newline-delimited JSON file
+     * @return          the record, or null if it is malformed
+     */
+    private static Record parseJson(String line) {
+        JsonReader reader = new JsonReader(line);
+        Record record = new Record(null);
+        record.image = "";
+        record.tags = new ArrayList<>();
+        try {
+            reader.expect('{');
+            if (reader.peek() == '}') {
+                return null;
+            }
+            do {
+                String key = reader.readString();
+                reader.expect(':');
+                switch (key) {
+                    case "type":
+                        record.type = reader.readString();
+                        break;
+                    case "image":
+                        record.image = reader.readString();
+                        break;
+                    case "version":
+                        record.version = (int) reader.readNumber();
+                        break;
+                    case "time":
+                        record.time = reader.readNumber();
+                        break;
+                    case "previous":
+                        record.previous = reader.readString();
+                        break;
+                    case "name":
+                        record.name = reader.readString();
+                        break;
+                    case "tags":
+                        reader.expect('[');
+                        if (reader.peek() != ']') {
+                            do {
+                                record.tags.add(reader.readString());
+                            } while (reader.next(','));
+                        }
+                        reader.expect(']');
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            } while (reader.next(','));
+            reader.expect('}');
+            return record;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * One record of an exported file. Fields that do not apply to its type are null, or -1 for the version
+     * and 0 for the time.
+     */
+    private static class Record {
+        private String type;
+        private String image;
+        private int version = -1;
+        private long time;
+        private String previous;
+        private String name;
+        private ArrayList<String> tags;
+
+        Record(String type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * Reads the values of one line of JSON in order, throwing IllegalArgumentException at anything unexpected.
+     */
+    private static class JsonReader {
+        private String text;
+        private int position = 0;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        /**
+         * @return      the next character that is not whitespace, without reading it
+         */
+        char peek() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            if (position == text.length()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            return text.charAt(position);
+        }
+
+        /**
+         * @param c     the character that must come next
+         */
+        void expect(char c) {
+            if (peek() != c) {
+                throw new IllegalArgumentException("Expected " + c + " at " + position);
+            }
+            position++;
+        }
+
+        /**
+         * @param c     a character
+         * @return      true iff it comes next, in which case it is read
+         */
+        boolean next(char c) {
+            if (peek() != c) {
+                return false;
+            }
+            position++;
+            return true;
+        }
+
+        /**
+         * @return      the next value, which must be a string
+         */
+        String readString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                } else if (c != '\\') {
+                    value.append(c);
+                } else if (position < text.length()) {
+                    char escaped = text.charAt(position++);
+                    switch (escaped) {
+                        case 'n':
+                            value.append('\n');
+                            break;
+                        case 'r':
+                            value.append('\r');
+                            break;
+                        case 't':
+                            value.append('\t');
+                            break;
+                        case 'b':
+                            value.append('\b');
+                            break;
+                        case 'f':
+                            value.append('\f');
+                            break;
+                        case 'u':
+                            if (position + 4 > text.length()) {
+                                throw new IllegalArgumentException("Bad escape at " + position);
+                            }
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                            position += 4;
+                            break;
+                        default:
+                            value.append(escaped);
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Unterminated string");
+        }
+
+        /**
+         * @return      the next value, which must be an integer
+         */
+        long readNumber() {
+            peek();
+            int start = position;
+            while (position < text.length() && (Character.isDigit(text.charAt(position))
+                    || text.charAt(position) == '-')) {
+                position++;
+            }
+            return Long.parseLong(text.substring(start, position));
+        }
+
+        /**
+         * Reads the next value, whatever it is, and ignores it.
+         */
+        void skipValue() {
+            char c = peek();
+            if (c == '"') {
+                readString();
+            } else if (c == '[' || c == '{') {
+                char close = c == '[' ? ']' : '}';
+                position++;
+                if (!next(close)) {
+                    do {
+                        if (close == '}') {
+                            readString();
+                            expect(':');
+                        }
+                        skipValue();
+                    } while (next(','));
+                    expect(close);
+                }
+            } else {
+                while (position < text.length() && ",}]".indexOf(text.charAt(position)) < 0) {
+                    position++;
+                }
+            }
+        }
+    }
+}
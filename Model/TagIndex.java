@@ -0,0 +1,176 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * An index over the names of all tags, kept up to date by TagManager as tags are created and deleted.
+ * Looks tags up by exact name, and completes a prefix to the most used tags starting with it.
+ * Prefix lookups are case-insensitive and only visit the tags starting with the prefix.
+ *
+ * It also holds the closure of the namespaces of tags: for each name, every tag that has it or is nested
+ * under it, so that a query for a tag covers its descendants without walking down the tree of names.
+ */
+class TagIndex {
+
+    /**
+     * Every tag, by the handle of its exact name.
+     */
+    private HashMap<Integer, Tag> byName = new HashMap<>();
+
+    /**
+     * Every tag, by its id.
+     */
+    private HashMap<Integer, Tag> byId = new HashMap<>();
+
+    /**
+     * Every tag with each name or nested under it, by the handle of the name. Names of namespaces that are not
+     * tags themselves are included too.
+     */
+    private HashMap<Integer, ArrayList<Tag>> descendants = new HashMap<>();
+
+    /**
+     * Every tag, sorted by its lower case name followed by its exact name so that no two keys are equal.
+     */
+    private TreeMap<String, Tag> sorted = new TreeMap<>();
+
+    /**
+     * Adds the given tag to the index.
+     *
+     * @param tag       the tag to add
+     */
+    synchronized void add(Tag tag) {
+        byName.put(tag.getNameHandle(), tag);
+        byId.put(tag.getId(), tag);
+        sorted.put(key(tag.getName()), tag);
+        for (String ancestor : Tag.getAncestorNames(tag.getName())) {
+            descendants.computeIfAbsent(NameDictionary.NAMES.intern(ancestor), name -> new ArrayList<>()).add(tag);
+        }
+    }
+
+    /**
+     * Removes the given tag from the index.
+     *
+     * @param tag       the tag to remove
+     */
+    synchronized void remove(Tag tag) {
+        if (byName.get(tag.getNameHandle()) == tag) {
+            byName.remove(tag.getNameHandle());
+            byId.remove(tag.getId());
+            sorted.remove(key(tag.getName()));
+            for (String ancestor : Tag.getAncestorNames(tag.getName())) {
+                int name = NameDictionary.NAMES.lookup(ancestor);
+                ArrayList<Tag> nested = descendants.get(name);
+                if (nested != null) {
+                    nested.remove(tag);
+                    if (nested.isEmpty()) {
+                        descendants.remove(name);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of the index with the given tags.
+     *
+     * @param tags      every tag in the program
+     */
+    synchronized void rebuild(ArrayList<Tag> tags) {
+        byName.clear();
+        byId.clear();
+        sorted.clear();
+        descendants.clear();
+        for (Tag tag : tags) {
+            add(tag);
+        }
+    }
+
+    /**
+     * @param name      the exact name of a tag
+     * @return          the tag with the given name, or null if there is none
+     */
+    synchronized Tag get(String name) {
+        return get(NameDictionary.NAMES.lookup(name));
+    }
+
+    /**
+     * @param name      the handle of the exact name of a tag
+     * @return          the tag with the given name, or null if there is none
+     */
+    synchronized Tag get(int name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @param id        the id of a tag
+     * @return          the tag with the given id, or null if there is none
+     */
+    synchronized Tag getById(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * @param tag       a tag in the index
+     * @return          the tag and every tag nested under it, e.g. "loc/france" and "loc/france/paris" for "loc/france"
+     */
+    synchronized ArrayList<Tag> getDescendants(Tag tag) {
+        ArrayList<Tag> nested = descendants.get(tag.getNameHandle());
+        if (nested == null) {
+            ArrayList<Tag> only = new ArrayList<>();
+            only.add(tag);
+            return only;
+        }
+        return new ArrayList<>(nested);
+    }
+
+    /**
+     * Returns the most used tags whose names start with the given prefix, ignoring case.
+     *
+     * @param prefix    the start of a tag name
+     * @param limit     the maximum number of tags to return
+     * @param usage     the number of images with each tag, in every shard whether or not it is loaded
+     * @return          at most limit tags, most used first
+     */
+    synchronized ArrayList<Tag> complete(String prefix, int limit, TagCooccurrence usage) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        String from = prefix.toLowerCase();
+        Comparator<Tag> byUsage = byUsage(usage);
+        PriorityQueue<Tag> best = new PriorityQueue<>(limit + 1, byUsage.reversed());
+        for (Tag tag : sorted.subMap(from, from + Character.MAX_VALUE).values()) {
+            if (best.size() < limit) {
+                best.add(tag);
+            } else if (usage.count(tag.getId()) > usage.count(best.peek().getId())) {
+                // Ties keep the tag already chosen, which comes first by name since sorted is visited in order
+                best.poll();
+                best.add(tag);
+            }
+        }
+        ArrayList<Tag> completions = new ArrayList<>(best);
+        Collections.sort(completions, byUsage);
+        return completions;
+    }
+
+    /**
+     * @param usage     the number of images with each tag
+     * @return          orders tags by the number of images with them, most used first, then in the order of sorted
+     */
+    private static Comparator<Tag> byUsage(TagCooccurrence usage) {
+        return Comparator.comparingInt((Tag tag) -> usage.count(tag.getId())).reversed()
+                .thenComparing(tag -> key(tag.getName()));
+    }
+
+    /**
+     * @param name      the name of a tag
+     * @return          the key of the tag in sorted
+     */
+    private static String key(String name) {
+        return name.toLowerCase() + '\0' + name;
+    }
+}
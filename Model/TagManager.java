@@ -3,6 +3,11 @@ package Model;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 
@@ -21,6 +26,21 @@ public class TagManager extends Observable implements Serializable {
      */
     private ArrayList<Tag> allTags = new ArrayList<>();
 
+    /**
+     * Index over the names of allTags, for exact and prefix lookups
+     */
+    private transient TagIndex tagIndex = new TagIndex();
+
+    /**
+     * How often each tag, and each pair of tags, is found on an image, for suggesting tags
+     */
+    private TagCooccurrence cooccurrence = new TagCooccurrence();
+
+    /**
+     * The id given to the next tag added to allTags
+     */
+    private int nextTagId = 1;
+
     /**
      * Initializes an instance of TagManager.
      */
@@ -37,7 +57,7 @@ public class TagManager extends Observable implements Serializable {
     }
 
     /**
-     * Updates the state of observers of allTags
+     * Updates the state of observers of allTags, making them reload the whole list
      */
     @Override
     public void notifyObservers(){
@@ -46,33 +66,148 @@ public class TagManager extends Observable implements Serializable {
         }
     }
 
+    /**
+     * Tells observers of allTags about a single change to it
+     *
+     * @param change    the change to allTags
+     */
+    private void notifyObservers(ModelChange change){
+        for (Observer o : observers){
+            o.update(this, change);
+        }
+    }
+
     /**
      * Creates a new tag with given name and add to the list of all the tags.
+     * If the name is nested, as in "loc/france/paris", any of its ancestors that are not tags yet are created too.
      *
      * @param name      the name of the new tag
-     * @return newTag   the new tag that has been created
+     * @return newTag   the new tag that has been created, or null if there already is one or the name is blank
      */
     public Tag createTag(String name) {
-        for (Tag tag: allTags) {
-            if (tag.getName().equals(name)) {
-                return null;
-            }
+        name = Tag.normalizeName(name);
+        if (name.isEmpty() || tagIndex.get(name) != null) {
+            return null;
         }
         Tag newTag = new Tag(name);
+        createAncestors(newTag);
+        newTag.setId(nextTagId++);
         allTags.add(newTag);
-        notifyObservers();
+        tagIndex.add(newTag);
+        notifyObservers(new ModelChange(ModelChange.Kind.TAG_ADDED, newTag));
 
         return newTag;
     }
 
     /**
-     * Delete a tag by removing it from list of all tags
+     * Creates a deleted tag again with the id it had, so that what still refers to it by id finds it.
+     * Ids are never given twice, so no other tag can have taken it.
      *
-     * @param tags the tag which is to be deleted
+     * @param id        the id the tag had
+     * @param name      the name of the tag
+     * @return          the tag, or the tag that has the name now if there is one
+     */
+    Tag restoreTag(int id, String name) {
+        Tag tag = getTag(name);
+        if (tag == null) {
+            tag = new Tag(name);
+            tag.setId(id);
+            nextTagId = Math.max(nextTagId, id + 1);
+            addToAllTags(tag);
+        }
+        return tag;
+    }
+
+    /**
+     * Returns the tag with the given id.
+     *
+     * @param id        the id of the tag
+     * @return          the tag with the given id, or null if there is none
+     */
+    Tag getTagById(int id) {
+        return tagIndex.getById(id);
+    }
+
+    /**
+     * Delete tags by removing them, and every tag nested under them, from list of all tags
+     *
+     * @param tags the tags which are to be deleted
      */
     public void deleteTags(ArrayList<Tag> tags) {
-        allTags.removeAll(tags);
-        notifyObservers();
+        removeTags(getDescendants(tags));
+    }
+
+    /**
+     * Returns the given tags and every tag nested under them, each once.
+     *
+     * @param tags      some tags
+     * @return          the tags, each followed by those nested under it that are not listed yet
+     */
+    public ArrayList<Tag> getDescendants(ArrayList<Tag> tags) {
+        LinkedHashSet<Tag> nested = new LinkedHashSet<>();
+        for (Tag tag: tags) {
+            nested.add(tag);
+            nested.addAll(tagIndex.getDescendants(tag));
+        }
+        return new ArrayList<>(nested);
+    }
+
+    /**
+     * Renames the given tag and every tag nested under it, keeping their images, e.g. "loc/paris" becomes
+     * "place/paris" when "loc" is renamed to "place". The images must be renamed to match by the caller.
+     *
+     * @param tag       the tag to rename
+     * @param newName   the new name of the tag, which no other tag has
+     * @return          false, renaming nothing, if a tag nested under it would take the name of another tag
+     */
+    public boolean renameTag(Tag tag, String newName) {
+        String oldName = tag.getName();
+        ArrayList<Tag> renamed = tagIndex.getDescendants(tag);
+        HashMap<Tag, String> newNames = new HashMap<>();
+        for (Tag nested: renamed) {
+            String name = newName + nested.getName().substring(oldName.length());
+            Tag existing = tagIndex.get(name);
+            if (existing != null && !existing.getName().startsWith(oldName + "/") && existing != tag) {
+                return false;
+            }
+            newNames.put(nested, name);
+        }
+        for (Tag nested: renamed) {
+            tagIndex.remove(nested);
+            nested.setName(newNames.get(nested));
+        }
+        // Outermost first, so that each tag finds its parent already renamed rather than creating it again
+        renamed.sort(Comparator.comparingInt(nested -> nested.getName().length()));
+        for (Tag nested: renamed) {
+            createAncestors(nested);
+            tagIndex.add(nested);
+            notifyObservers(new ModelChange(ModelChange.Kind.TAG_UPDATED, nested));
+        }
+        return true;
+    }
+
+    /**
+     * Merges the given tags into the target tag: the target gains all of their images, each once,
+     * and the merged tags are deleted. The images must be retagged to match by the caller.
+     *
+     * @param tags      the tags to merge, which may include the target
+     * @param target    the tag they are merged into
+     */
+    public void mergeTags(ArrayList<Tag> tags, Tag target) {
+        HashSet<Image> tagged = new HashSet<>(target.getImages());
+        ArrayList<Tag> merged = new ArrayList<>();
+        for (Tag tag: tags) {
+            if (tag != target) {
+                for (Image image: tag.getImages()) {
+                    if (tagged.add(image)) {
+                        target.addImage(image);
+                    }
+                }
+                merged.add(tag);
+            }
+        }
+        removeTags(merged);
+        notifyObservers(new ModelChange(ModelChange.Kind.TAG_UPDATED, target));
     }
 
     /**
@@ -99,6 +234,92 @@ public class TagManager extends Observable implements Serializable {
         }
     }
 
+    /**
+     * Moves each of the given images from the tags it has now to the tags it is mapped to.
+     * Must be called before the images themselves are retagged. The list of images of each tag is
+     * only rewritten once, however many of its images leave it.
+     *
+     * @param newTags   the new tags of each image
+     */
+    public void retagImages(HashMap<Image, ArrayList<Tag>> newTags) {
+        HashMap<Tag, HashSet<Image>> leaving = new HashMap<>();
+        for (Map.Entry<Image, ArrayList<Tag>> entry : newTags.entrySet()) {
+            Image image = entry.getKey();
+            ArrayList<Tag> oldTags = image.getTags();
+            for (Tag tag : oldTags) {
+                if (!entry.getValue().contains(tag)) {
+                    leaving.computeIfAbsent(tag, t -> new HashSet<>()).add(image);
+                }
+            }
+            for (Tag tag : entry.getValue()) {
+                if (!oldTags.contains(tag)) {
+                    tag.addImage(image);
+                }
+            }
+        }
+        for (Map.Entry<Tag, HashSet<Image>> entry : leaving.entrySet()) {
+            entry.getKey().getImages().removeIf(entry.getValue()::contains);
+        }
+    }
+
+    /**
+     * Updates the counts of tags found together after an image's tags changed, was added or was removed.
+     * Must be called for every such change, whether or not the image's shard stays loaded.
+     *
+     * @param before    the tags of the image before, or an empty list for a new image
+     * @param after     the tags of the image after, or an empty list for a removed image
+     */
+    public void imageRetagged(ArrayList<Tag> before, ArrayList<Tag> after) {
+        cooccurrence.retagged(before, after);
+    }
+
+    /**
+     * Returns the number of images with the given tag, in every shard whether or not it is loaded.
+     *
+     * @param tag       a tag
+     * @return          the number of images that have it
+     */
+    public int getImageCount(Tag tag) {
+        return cooccurrence.count(tag.getId());
+    }
+
+    /**
+     * Returns about the number of images with the given tag or a tag nested under it, in every shard whether or
+     * not it is loaded. An image with several of those tags is counted once for each.
+     *
+     * @param tag       a tag
+     * @return          the number of images with the tag, plus those with each tag nested under it
+     */
+    int getImageCountUnder(Tag tag) {
+        int count = 0;
+        for (Tag nested : tagIndex.getDescendants(tag)) {
+            count += cooccurrence.count(nested.getId());
+        }
+        return count;
+    }
+
+    /**
+     * Suggests tags for an image that has the given tags: those most often found together with them.
+     *
+     * @param tags      the tags the image has
+     * @param limit     the maximum number of tags to suggest
+     * @return          at most limit tags the image does not have, best first
+     */
+    public ArrayList<Tag> suggestTags(ArrayList<Tag> tags, int limit) {
+        int[] ids = new int[tags.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = tags.get(i).getId();
+        }
+        ArrayList<Tag> suggestions = new ArrayList<>();
+        for (int id : cooccurrence.suggest(ids, limit)) {
+            Tag tag = tagIndex.getById(id);
+            if (tag != null) {
+                suggestions.add(tag);
+            }
+        }
+        return suggestions;
+    }
+
     /**
      * @return returns a list of tags currently in the system.
      */
@@ -106,6 +327,66 @@ public class TagManager extends Observable implements Serializable {
         return this.allTags;
     }
 
+    /**
+     * Returns the tag with the given name.
+     *
+     * @param name      the exact name of the tag
+     * @return          the tag with the given name, or null if there is none
+     */
+    public Tag getTag(String name) {
+        return tagIndex.get(name);
+    }
+
+    /**
+     * Returns the tag with the given name, without decoding it.
+     *
+     * @param name      the handle of the exact name of the tag in the NameDictionary
+     * @return          the tag with the given name, or null if there is none
+     */
+    Tag getTag(int name) {
+        return tagIndex.get(name);
+    }
+
+    /**
+     * Returns the given tag and every tag nested under it, found in the index of namespaces.
+     *
+     * @param tag       a tag
+     * @return          the tag and its descendants
+     */
+    public ArrayList<Tag> getDescendants(Tag tag) {
+        return tagIndex.getDescendants(tag);
+    }
+
+    /**
+     * Returns every image carrying the given tag or any tag nested under it, each once.
+     *
+     * @param tag       a tag
+     * @return          the images, in the order they were tagged with each of the tags
+     */
+    public ArrayList<Image> getImagesUnder(Tag tag) {
+        ArrayList<Tag> tags = tagIndex.getDescendants(tag);
+        if (tags.size() == 1) {
+            return tags.get(0).getImages();
+        }
+        LinkedHashSet<Image> images = new LinkedHashSet<>();
+        for (Tag nested : tags) {
+            images.addAll(nested.getImages());
+        }
+        return new ArrayList<>(images);
+    }
+
+    /**
+     * Returns the most used tags whose names start with the given prefix, ignoring case.
+     * Used for type-ahead when the user is entering a tag name.
+     *
+     * @param prefix    the start of a tag name
+     * @param limit     the maximum number of tags to return
+     * @return          at most limit tags, ranked by the number of images tagged with them
+     */
+    public ArrayList<Tag> completeTag(String prefix, int limit) {
+        return tagIndex.complete(prefix, limit, cooccurrence);
+    }
+
     /**
      * Returns a list of existing Tags in the given name.
      * "initialName @tag @tag2 @tag3.png" --> [tag, tag2, tag3]
@@ -123,11 +404,10 @@ public class TagManager extends Observable implements Serializable {
             ArrayList<String> tagList = new ArrayList<>(Arrays.asList(tags));
             tagList.remove(0);
             tagList.remove(tagList.size() - 1);
-            for (String tagName: tagList) {//whitespace
-                for (Tag tag: allTags) {
-                    if (tagName.trim().equals(tag.getName())) {
-                        stringToTags.add(tag);
-                    }
+            for (String tagName: tagList) {//whitespace and separators
+                Tag tag = tagIndex.get(Tag.normalizeName(tagName));
+                if (tag != null) {
+                    stringToTags.add(tag);
                 }
             }
             // Ensure that the amount of Tags returned is valid
@@ -158,18 +438,15 @@ public class TagManager extends Observable implements Serializable {
             return new ArrayList<>();
         } else {
             for (int i = 1; i < tagsList.size() - 1; i++) {
+                //"loc~france~paris" -> "loc/france/paris"
+                String tagName = Tag.normalizeName(tagsList.get(i));
                 //check if already a tag
-                boolean exists = false;
-                for (Tag tag: allTags) {
-                    if (tag.getName().equals(tagsList.get(i))) {
-                        exists = true;
-                        newTags.add(tag);
-                        break;
-                    }
-                }
-                if (!exists) {
+                Tag existing = tagIndex.get(tagName);
+                if (existing != null) {
+                    newTags.add(existing);
+                } else if (!tagName.isEmpty()) {
                     //create the tag and add it to newTags
-                    Tag tag = createTag(tagsList.get(i));
+                    Tag tag = createTag(tagName);
                     newTags.add(tag);
                 }
             }
@@ -178,13 +455,16 @@ public class TagManager extends Observable implements Serializable {
     }
 
     /**
-     * Saves the current state of all tags.
+     * Saves the current state of all tags, and how often they are found together.
+     *
+     * @param file      the file to save them in
      */
-    void serialize() {
+    void serialize(File file) {
         try {
-            FileOutputStream fos = new FileOutputStream("tags.ser");
+            FileOutputStream fos = new FileOutputStream(file);
             ObjectOutputStream oos = new ObjectOutputStream(fos);
             oos.writeObject(allTags);
+            oos.writeObject(cooccurrence);
             oos.close();
             fos.close();
         } catch (IOException e) {
@@ -194,12 +474,19 @@ public class TagManager extends Observable implements Serializable {
 
     /**
      * Loads the past state of all tags.
+     *
+     * @param file      the file they were saved in
      */
-    void deserialize() {
+    void deserialize(File file) {
         try {
-            FileInputStream fis = new FileInputStream("tags.ser");
+            FileInputStream fis = new FileInputStream(file);
             ObjectInputStream ois = new ObjectInputStream(fis);
             allTags = (ArrayList<Tag>) ois.readObject();
+            cooccurrence = (TagCooccurrence) ois.readObject();
+            for (Tag tag: allTags) {
+                nextTagId = Math.max(nextTagId, tag.getId() + 1);
+            }
+            tagIndex.rebuild(allTags);
             ois.close();
             fis.close();
         } catch (IOException | ClassNotFoundException e) {
@@ -213,8 +500,42 @@ public class TagManager extends Observable implements Serializable {
      * @param tag       the tag to add to the list of all tags
      */
     void addToAllTags(Tag tag) {
+        if (tag.getId() == 0) {
+            tag.setId(nextTagId++);
+        }
+        createAncestors(tag);
         this.allTags.add(tag);
-        notifyObservers();
+        this.tagIndex.add(tag);
+        notifyObservers(new ModelChange(ModelChange.Kind.TAG_ADDED, tag));
+    }
+
+    /**
+     * Helper function.
+     * Removes the given tags from the list of all tags, leaving any tag nested under them.
+     *
+     * @param tags      the tags to remove
+     */
+    private void removeTags(ArrayList<Tag> tags) {
+        allTags.removeAll(new HashSet<>(tags));
+        for (Tag tag: tags) {
+            tagIndex.remove(tag);
+            cooccurrence.removeTag(tag.getId());
+            notifyObservers(new ModelChange(ModelChange.Kind.TAG_REMOVED, tag));
+        }
+    }
+
+    /**
+     * Helper function.
+     * Creates each ancestor of the given tag that is not a tag yet, so that it can be chosen to query the whole
+     * namespace.
+     *
+     * @param tag       a tag about to be added to the list of all tags
+     */
+    private void createAncestors(Tag tag) {
+        String parent = tag.getParentName();
+        if (parent != null && tagIndex.get(parent) == null) {
+            createTag(parent);
+        }
     }
 
 }
@@ -0,0 +1,155 @@
+package Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Ranks the images carrying any of a set of tags by how well they match, and returns only the best of them.
+ *
+ * An image scores the weight of each query tag it carries, directly or through a tag nested under it: 1, or
+ * with rarity weighting the inverse document
+ * frequency of the tag, so that a tag on few images counts for more than a tag on most of them. Optionally,
+ * images tagged recently score up to a further recency weight, halving every RECENCY_HALF_LIFE.
+ *
+ * The images of each tag are kept in the order they were tagged, so scores are added up one tag at a time
+ * into an array indexed by image id, and only the best limit images are kept, in a bounded heap. The array is
+ * kept per thread between queries and cleared only at the ids a query scored, so a query costs the number of
+ * matches rather than the size of the library.
+ */
+class TagRanker {
+
+    /**
+     * The age at which the recency bonus of an image halves, in milliseconds.
+     */
+    static final long RECENCY_HALF_LIFE = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Orders scored images from worst to best: lower score first, then the image added later first.
+     */
+    private static final Comparator<Scored> WORST_FIRST = Comparator
+            .comparingDouble((Scored scored) -> scored.score)
+            .thenComparing(Comparator.comparingInt((Scored scored) -> scored.image.getId()).reversed());
+
+    /**
+     * The score of each image id, all 0 between queries.
+     */
+    private static final ThreadLocal<float[]> SCORES = ThreadLocal.withInitial(() -> new float[0]);
+
+    /**
+     * Returns the best matches for the given tags, best first.
+     *
+     * @param tagged            for each distinct tag searched for, the images carrying it or a tag nested under it,
+     *                          each once
+     * @param taggedCounts      for each distinct tag searched for, the number of images in the library carrying it
+     *                          or a tag nested under it, for rarity weighting
+     * @param limit             the maximum number of images to return
+     * @param imageCount        the number of images in the library, for rarity weighting
+     * @param maxId             one more than the largest id of any image
+     * @param weightByRarity    whether or not rarer tags count for more
+     * @param recencyWeight     the score added for an image tagged just now, or 0 to ignore recency
+     * @param now               the current time, in milliseconds since the epoch
+     * @return                  at most limit images carrying at least one of the tags, best first
+     */
+    static ArrayList<Image> topImages(ArrayList<ArrayList<Image>> tagged, int[] taggedCounts, int limit,
+                                      int imageCount, int maxId, boolean weightByRarity, double recencyWeight,
+                                      long now) {
+        if (limit <= 0 || tagged.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // Every weight is positive, so a score of 0 marks an image not seen yet
+        float[] scores = SCORES.get();
+        if (scores.length < maxId) {
+            scores = new float[Math.max(maxId, scores.length * 2)];
+            SCORES.set(scores);
+        }
+        Image[] matched = new Image[16];
+        int matchedCount = 0;
+        ArrayList<Scored> ranked;
+        try {
+            for (int i = 0; i < tagged.size(); i++) {
+                float weight = weightByRarity ? idf(taggedCounts[i], imageCount) : 1;
+                for (Image image : tagged.get(i)) {
+                    int id = image.getId();
+                    if (scores[id] == 0) {
+                        if (matchedCount == matched.length) {
+                            matched = Arrays.copyOf(matched, matchedCount * 2);
+                        }
+                        matched[matchedCount++] = image;
+                    }
+                    scores[id] += weight;
+                }
+            }
+
+            PriorityQueue<Scored> best = new PriorityQueue<>(Math.min(limit, matchedCount) + 1, WORST_FIRST);
+            for (int i = 0; i < matchedCount; i++) {
+                Image image = matched[i];
+                double score = scores[image.getId()];
+                if (best.size() == limit && score + recencyWeight < best.peek().score) {
+                    // Cannot make the best limit even if it was tagged just now
+                    continue;
+                }
+                if (recencyWeight > 0) {
+                    score += recencyWeight * recency(image, now);
+                }
+                if (best.size() < limit) {
+                    best.add(new Scored(image, score));
+                } else if (score > best.peek().score
+                        || (score == best.peek().score && image.getId() < best.peek().image.getId())) {
+                    best.poll();
+                    best.add(new Scored(image, score));
+                }
+            }
+
+            ranked = new ArrayList<>(best);
+        } finally {
+            for (int i = 0; i < matchedCount; i++) {
+                scores[matched[i].getId()] = 0;
+            }
+        }
+
+        Collections.sort(ranked, WORST_FIRST.reversed());
+        ArrayList<Image> images = new ArrayList<>(ranked.size());
+        for (Scored scored : ranked) {
+            images.add(scored.image);
+        }
+        return images;
+    }
+
+    /**
+     * @param tagged        the number of images carrying a tag
+     * @param imageCount    the number of images in the library
+     * @return              the weight of the tag: higher the fewer images carry it, and always positive
+     */
+    private static float idf(int tagged, int imageCount) {
+        return (float) Math.log(1 + (double) Math.max(imageCount, tagged) / Math.max(tagged, 1));
+    }
+
+    /**
+     * @param image     an image
+     * @param now       the current time, in milliseconds since the epoch
+     * @return          1 for an image tagged just now, halving every RECENCY_HALF_LIFE, or 0 if it was never tagged
+     */
+    private static double recency(Image image, long now) {
+        long tagged = image.getLastRenamed();
+        if (tagged == 0) {
+            return 0;
+        }
+        return Math.pow(0.5, (double) Math.max(0, now - tagged) / RECENCY_HALF_LIFE);
+    }
+
+    /**
+     * An image and its score.
+     */
+    private static class Scored {
+        private Image image;
+        private double score;
+
+        Scored(Image image, double score) {
+            this.image = image;
+            this.score = score;
+        }
+    }
+}
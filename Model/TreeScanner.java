@@ -0,0 +1,286 @@
+package Model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+
+/**
+ * Scans files and directories on disk into Directories and Images.
+ * Directories are enumerated as a stream with Files.walkFileTree, so no directory listing is ever held in
+ * memory as a whole, and the attributes of every entry come with the listing instead of one stat per check.
+ * Excluded directories, and directories below the maximum depth, are pruned before they are listed.
+ */
+class TreeScanner {
+
+    /**
+     * The array of all image extensions supported by this program.
+     */
+    private static final String[] EXTENSIONS = new String[]{"gif", "png", "bmp", "jpeg", "tif", "raw", "jpg"};
+
+    /**
+     * The managers that scanned images, directories and tags are created in.
+     */
+    private ImageManager imageManager;
+    private DirectoryManager directoryManager;
+    private TagManager tagManager;
+
+    /**
+     * Reads the metadata of scanned images in the background, or null to not read it.
+     */
+    private MetadataExtractor metadataExtractor;
+
+    /**
+     * The rules deciding which files and directories are scanned.
+     */
+    private ScanRules rules = ScanRules.defaults();
+
+    /**
+     * Creates a scanner that creates images, directories and tags in the given managers.
+     *
+     * @param imageManager      the manager to create images in
+     * @param directoryManager  the manager to create directories in
+     * @param tagManager        the manager to create tags in
+     */
+    TreeScanner(ImageManager imageManager, DirectoryManager directoryManager, TagManager tagManager) {
+        this.imageManager = imageManager;
+        this.directoryManager = directoryManager;
+        this.tagManager = tagManager;
+    }
+
+    /**
+     * @param metadataExtractor     reads the metadata of scanned images in the background
+     */
+    void setMetadataExtractor(MetadataExtractor metadataExtractor) {
+        this.metadataExtractor = metadataExtractor;
+    }
+
+    /**
+     * @param rules     the rules deciding which files and directories are scanned
+     */
+    void setRules(ScanRules rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Scans the file or directory at the given path, and everything under it, into the given directory.
+     *
+     * @param path      the path of the file or directory to scan
+     * @param parent    the directory it is in, or null if it is the root directory
+     */
+    void scan(String path, Directory parent) {
+        Path start = Paths.get(path);
+        Path root = start;
+        ArrayDeque<IgnoreFile> ignoreFiles = new ArrayDeque<>();
+        // Levels of the walk still allowed below the start, where the images in a directory are one level below it
+        long walkDepth = (long) rules.getMaxDepth() + 1;
+        if (parent != null) {
+            ArrayList<Directory> ancestors = new ArrayList<>();
+            for (Directory d = parent; d != null; d = d.getParentDirectory()) {
+                ancestors.add(0, d);
+            }
+            root = Paths.get(ancestors.get(0).getPath());
+            for (Directory ancestor : ancestors) {
+                readIgnoreFile(Paths.get(ancestor.getPath()), ignoreFiles);
+            }
+            walkDepth -= ancestors.size();
+        }
+        if (walkDepth < 0) {
+            return;
+        }
+
+        try {
+            Files.walkFileTree(start, EnumSet.noneOf(FileVisitOption.class), (int) Math.min(walkDepth, Integer.MAX_VALUE),
+                    new Visitor(root, parent, ignoreFiles));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Helper function.
+     * Reads the exclude globs of the ignore file in the given directory, if there is one.
+     *
+     * @param directory     the directory to look in
+     * @param ignoreFiles   the stack of ignore files in effect, which the new one is pushed onto
+     * @return              true iff an ignore file was read
+     */
+    private boolean readIgnoreFile(Path directory, ArrayDeque<IgnoreFile> ignoreFiles) {
+        if (rules.getIgnoreFileName() == null) {
+            return false;
+        }
+        Path file = directory.resolve(rules.getIgnoreFileName());
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        ScanRules globs = new ScanRules();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    globs.addExclude(line);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        ignoreFiles.push(new IgnoreFile(directory, globs));
+        return true;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param name      the name of the image
+     * @return          true iff name contains at least one tag
+     */
+    private boolean nameHasTags(String name) {
+        return name.contains(" @");
+    }
+
+    /**
+     * @param name      name of the file to check
+     * @return          true iff the given file is an image
+     */
+    private boolean isImage(String name) {
+        String lowerCase = name.toLowerCase();
+        for (String ext : EXTENSIONS) {
+            if (lowerCase.endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The exclude globs read from an ignore file, and the directory they apply under.
+     */
+    private static class IgnoreFile {
+        private Path directory;
+        private ScanRules globs;
+
+        IgnoreFile(Path directory, ScanRules globs) {
+            this.directory = directory;
+            this.globs = globs;
+        }
+    }
+
+    /**
+     * Creates a Directory or Image for each entry as the walk reaches it.
+     */
+    private class Visitor extends SimpleFileVisitor<Path> {
+
+        /**
+         * The root directory, which globs with a "/" are relative to.
+         */
+        private Path root;
+
+        /**
+         * The directories being walked, innermost first.
+         */
+        private ArrayDeque<Directory> parents = new ArrayDeque<>();
+
+        /**
+         * The ignore files in effect, innermost first.
+         */
+        private ArrayDeque<IgnoreFile> ignoreFiles;
+
+        /**
+         * Whether or not the directory at the same position in parents had an ignore file.
+         */
+        private ArrayDeque<Boolean> hasIgnoreFile = new ArrayDeque<>();
+
+        /**
+         * The directory the walk starts in, used until the first directory is entered.
+         */
+        private Directory startParent;
+
+        Visitor(Path root, Directory startParent, ArrayDeque<IgnoreFile> ignoreFiles) {
+            this.root = root;
+            this.startParent = startParent;
+            this.ignoreFiles = ignoreFiles;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            if (!parents.isEmpty() || startParent != null) {
+                if (isExcluded(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+            }
+            Directory directory = directoryManager.createDirectory(dir.toString(), parent());
+            directory.setLastModified(attrs.lastModifiedTime().toMillis());
+            parents.push(directory);
+            hasIgnoreFile.push(readIgnoreFile(dir, ignoreFiles));
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            String name = file.getFileName().toString();
+            if (!attrs.isRegularFile() || !isImage(name) || isExcluded(file)
+                    || !rules.isIncluded(root.relativize(file))) {
+                return FileVisitResult.CONTINUE;
+            }
+            String path = file.toString();
+            Image image;
+            if (nameHasTags(name)) {
+                ArrayList<Tag> tags = tagManager.stringToNewTags(name);
+                image = imageManager.createImageWithTags(path, parent(), tags);
+                tagManager.addImageToTags(image, tags);
+                tagManager.imageRetagged(new ArrayList<>(), tags);
+            } else {
+                image = imageManager.createImage(path, parent());
+            }
+            if (metadataExtractor != null) {
+                metadataExtractor.submit(image, attrs.size(), attrs.lastModifiedTime().toMillis());
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+            e.printStackTrace();
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+            if (e != null) {
+                e.printStackTrace();
+            }
+            parents.pop();
+            if (hasIgnoreFile.pop()) {
+                ignoreFiles.pop();
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        /**
+         * @return      the directory entries are currently being created in
+         */
+        private Directory parent() {
+            return parents.isEmpty() ? startParent : parents.peek();
+        }
+
+        /**
+         * @param path  a file or directory reached by the walk
+         * @return      true iff the scan rules or an ignore file in effect exclude it
+         */
+        private boolean isExcluded(Path path) {
+            if (rules.isExcluded(root.relativize(path))) {
+                return true;
+            }
+            for (IgnoreFile ignoreFile : ignoreFiles) {
+                if (ignoreFile.globs.isExcluded(ignoreFile.directory.relativize(path))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package Model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * What one undoable operation changed, stored as the difference it made rather than as copies of the images
+ * and tags involved. Images and tags are referred to by id, so that a tag renamed after the operation is still
+ * found. The name each tag had is kept too, to create the tag again with the same id if it was deleted since.
+ *
+ * Images whose tags went from the same list to the same list share one group, so deleting a tag from
+ * 10,000 images that carried nothing else takes one group of 10,000 ids.
+ */
+class UndoDelta implements Serializable {
+
+    /**
+     * The name of the operation, e.g. "deleteTags".
+     */
+    private String name;
+
+    /**
+     * The images whose tags changed, grouped by their tags before and after.
+     */
+    private ArrayList<RetagGroup> retagGroups = new ArrayList<>();
+
+    /**
+     * The name of each tag referred to, by id.
+     */
+    private HashMap<Integer, String> tagNames = new HashMap<>();
+
+    /**
+     * The group of each list of tags before and after, while the delta is being recorded.
+     */
+    private transient HashMap<String, RetagGroup> groupsByTags = new HashMap<>();
+
+    /**
+     * The ids of the images that were moved, and the paths of the directories they were moved from and to.
+     */
+    private ArrayList<Integer> movedIds = new ArrayList<>();
+    private ArrayList<String> movedFrom = new ArrayList<>();
+    private ArrayList<String> movedTo = new ArrayList<>();
+
+    /**
+     * The paths of the directory that was moved, before and after the move, or null if none was.
+     */
+    private String directoryMovedFrom;
+    private String directoryMovedTo;
+
+    /**
+     * The id of the tag that was renamed, or 0 if none was, and its old and new name.
+     */
+    private int renamedTag;
+    private String renamedFrom;
+    private String renamedTo;
+
+    /**
+     * The ids of the tags the operation created and deleted.
+     */
+    private ArrayList<Integer> createdTags = new ArrayList<>();
+    private ArrayList<Integer> deletedTags = new ArrayList<>();
+
+    /**
+     * Starts recording the changes of the operation with the given name.
+     *
+     * @param name      the name of the operation
+     */
+    UndoDelta(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return      the name of the operation
+     */
+    String getName() {
+        return this.name;
+    }
+
+    /**
+     * Records that the given image's tags changed.
+     *
+     * @param image     the image that was retagged
+     * @param before    its tags before
+     * @param after     its tags after
+     */
+    void retagged(Image image, ArrayList<Tag> before, ArrayList<Tag> after) {
+        int[] beforeIds = ids(before);
+        int[] afterIds = ids(after);
+        String key = Arrays.toString(beforeIds) + Arrays.toString(afterIds);
+        RetagGroup group = groupsByTags.get(key);
+        if (group == null) {
+            group = new RetagGroup(beforeIds, afterIds);
+            groupsByTags.put(key, group);
+            retagGroups.add(group);
+        }
+        group.add(image.getId());
+    }
+
+    /**
+     * Records that the given image was moved.
+     *
+     * @param image     the image that was moved
+     * @param from      the directory it was in
+     * @param to        the directory it is in now
+     */
+    void moved(Image image, Directory from, Directory to) {
+        movedIds.add(image.getId());
+        movedFrom.add(from.getPath());
+        movedTo.add(to.getPath());
+    }
+
+    /**
+     * Records that a directory was moved.
+     *
+     * @param from      the path of the directory before the move
+     * @param to        the path of the directory after the move
+     */
+    void movedDirectory(String from, String to) {
+        this.directoryMovedFrom = from;
+        this.directoryMovedTo = to;
+    }
+
+    /**
+     * Records that a tag was renamed.
+     *
+     * @param tag       the tag that was renamed
+     * @param from      the old name of the tag
+     * @param to        the new name of the tag
+     */
+    void renamedTag(Tag tag, String from, String to) {
+        this.renamedTag = tag.getId();
+        this.renamedFrom = from;
+        this.renamedTo = to;
+    }
+
+    /**
+     * @param tag       a tag the operation created
+     */
+    void createdTag(Tag tag) {
+        createdTags.add(id(tag));
+    }
+
+    /**
+     * @param tag       a tag the operation deleted
+     */
+    void deletedTag(Tag tag) {
+        deletedTags.add(id(tag));
+    }
+
+    /**
+     * @return      true iff the operation changed nothing
+     */
+    boolean isEmpty() {
+        return retagGroups.isEmpty() && movedIds.isEmpty() && directoryMovedFrom == null && renamedTag == 0
+                && createdTags.isEmpty() && deletedTags.isEmpty();
+    }
+
+    /**
+     * @return      true iff undoing or redoing the operation needs images to be looked up by id
+     */
+    boolean touchesImages() {
+        return !retagGroups.isEmpty() || !movedIds.isEmpty();
+    }
+
+    /**
+     * @return      MOVE if the operation moved images or a directory, and TAG_MUTATION otherwise
+     */
+    Operation getOperation() {
+        return !movedIds.isEmpty() || directoryMovedFrom != null ? Operation.MOVE : Operation.TAG_MUTATION;
+    }
+
+    /**
+     * Trims the id arrays of every group to their size, once the operation is fully recorded.
+     */
+    void finish() {
+        for (RetagGroup group : retagGroups) {
+            group.ids = Arrays.copyOf(group.ids, group.size);
+        }
+        groupsByTags = new HashMap<>();
+    }
+
+    /**
+     * @return      a rough estimate of the number of bytes this delta takes in memory
+     */
+    long estimateSize() {
+        long size = 64 + 2L * name.length();
+        for (RetagGroup group : retagGroups) {
+            size += 80 + 4L * (group.ids.length + group.before.length + group.after.length);
+        }
+        for (int i = 0; i < movedIds.size(); i++) {
+            size += 96 + 2L * (movedFrom.get(i).length() + movedTo.get(i).length());
+        }
+        for (String tagName : tagNames.values()) {
+            size += 96 + 2L * tagName.length();
+        }
+        return size + 24L * (createdTags.size() + deletedTags.size());
+    }
+
+    /**
+     * @return      the groups of retagged images
+     */
+    ArrayList<RetagGroup> getRetagGroups() {
+        return retagGroups;
+    }
+
+    /**
+     * @return      the ids of the moved images
+     */
+    ArrayList<Integer> getMovedIds() {
+        return movedIds;
+    }
+
+    /**
+     * @return      the path of the directory each moved image was moved from
+     */
+    ArrayList<String> getMovedFrom() {
+        return movedFrom;
+    }
+
+    /**
+     * @return      the path of the directory each moved image was moved to
+     */
+    ArrayList<String> getMovedTo() {
+        return movedTo;
+    }
+
+    /**
+     * @return      the path of the moved directory before the move, or null if no directory was moved
+     */
+    String getDirectoryMovedFrom() {
+        return directoryMovedFrom;
+    }
+
+    /**
+     * @return      the path of the moved directory after the move, or null if no directory was moved
+     */
+    String getDirectoryMovedTo() {
+        return directoryMovedTo;
+    }
+
+    /**
+     * @return      the id of the renamed tag, or 0 if no tag was renamed
+     */
+    int getRenamedTag() {
+        return renamedTag;
+    }
+
+    /**
+     * @return      the old name of the renamed tag, or null if no tag was renamed
+     */
+    String getRenamedFrom() {
+        return renamedFrom;
+    }
+
+    /**
+     * @return      the new name of the renamed tag, or null if no tag was renamed
+     */
+    String getRenamedTo() {
+        return renamedTo;
+    }
+
+    /**
+     * @return      the ids of the tags the operation created
+     */
+    ArrayList<Integer> getCreatedTags() {
+        return createdTags;
+    }
+
+    /**
+     * @return      the ids of the tags the operation deleted
+     */
+    ArrayList<Integer> getDeletedTags() {
+        return deletedTags;
+    }
+
+    /**
+     * @param id    the id of a tag the operation refers to
+     * @return      the name the tag had when it was last recorded
+     */
+    String getTagName(int id) {
+        return tagNames.get(id);
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param tag   a tag
+     * @return      the id of the tag, its name remembered
+     */
+    private int id(Tag tag) {
+        tagNames.put(tag.getId(), tag.getName());
+        return tag.getId();
+    }
+
+    /**
+     * @param tags      a list of tags
+     * @return          the ids of the tags, in order
+     */
+    private int[] ids(ArrayList<Tag> tags) {
+        int[] ids = new int[tags.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = id(tags.get(i));
+        }
+        return ids;
+    }
+
+    /**
+     * The images whose tags went from the same list of tags to the same other list.
+     */
+    static class RetagGroup implements Serializable {
+        private int[] before;
+        private int[] after;
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        RetagGroup(int[] before, int[] after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        /**
+         * @return      the ids of the tags of the images before the operation
+         */
+        int[] getBefore() {
+            return before;
+        }
+
+        /**
+         * @return      the ids of the tags of the images after the operation
+         */
+        int[] getAfter() {
+            return after;
+        }
+
+        /**
+         * @return      the ids of the images
+         */
+        int[] getIds() {
+            return size == ids.length ? ids : Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package Model;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * The operations that can be undone and redone, newest first.
+ * Deltas are kept in memory up to a budget; past it, the oldest are written to a file of their own in the
+ * given directory and only read back if they are undone or redone. The history only lasts one session,
+ * so any files left by a previous session are deleted.
+ */
+class UndoStack {
+
+    /**
+     * The most operations that can be undone. Older ones are forgotten.
+     */
+    private static final int MAX_OPERATIONS = 1000;
+
+    /**
+     * The number of bytes of deltas kept in memory before the oldest are written to disk.
+     */
+    private static final long MEMORY_BUDGET = 4 * 1024 * 1024;
+
+    /**
+     * The directory deltas are written to.
+     */
+    private File directory;
+
+    /**
+     * The operations that can be undone and redone, most recent first.
+     */
+    private ArrayDeque<Entry> undoable = new ArrayDeque<>();
+    private ArrayDeque<Entry> redoable = new ArrayDeque<>();
+
+    /**
+     * The estimated number of bytes of the deltas held in memory.
+     */
+    private long memoryUsed = 0;
+
+    /**
+     * The number given to the file of the next delta written to disk.
+     */
+    private int nextFile = 0;
+
+    /**
+     * Creates an empty stack that writes deltas past its memory budget to the given directory.
+     *
+     * @param directory     the directory to write deltas to
+     */
+    UndoStack(File directory) {
+        this.directory = directory;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Adds a newly done operation. Operations that were undone can no longer be redone.
+     *
+     * @param delta     what the operation changed
+     */
+    synchronized void push(UndoDelta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        delta.finish();
+        for (Entry entry : redoable) {
+            forget(entry);
+        }
+        redoable.clear();
+        undoable.push(new Entry(delta));
+        while (undoable.size() > MAX_OPERATIONS) {
+            forget(undoable.removeLast());
+        }
+        spillOldest();
+    }
+
+    /**
+     * Takes the most recent operation off the undo stack and puts it on the redo stack.
+     *
+     * @return      what the operation changed, or null if there is nothing to undo
+     */
+    synchronized UndoDelta popUndo() {
+        return move(undoable, redoable);
+    }
+
+    /**
+     * Takes the most recently undone operation off the redo stack and puts it back on the undo stack.
+     *
+     * @return      what the operation changed, or null if there is nothing to redo
+     */
+    synchronized UndoDelta popRedo() {
+        return move(redoable, undoable);
+    }
+
+    /**
+     * @return      the name of the operation that would be undone, or null if there is none
+     */
+    synchronized String peekUndo() {
+        return undoable.isEmpty() ? null : undoable.peek().name;
+    }
+
+    /**
+     * @return      the name of the operation that would be redone, or null if there is none
+     */
+    synchronized String peekRedo() {
+        return redoable.isEmpty() ? null : redoable.peek().name;
+    }
+
+    /**
+     * Forgets every operation, e.g. after the saved state of the program is loaded.
+     */
+    synchronized void clear() {
+        for (Entry entry : undoable) {
+            forget(entry);
+        }
+        for (Entry entry : redoable) {
+            forget(entry);
+        }
+        undoable.clear();
+        redoable.clear();
+    }
+
+    /**
+     * Helper function.
+     * Moves the most recent entry of one stack onto the other, reading its delta back if it was written to disk.
+     *
+     * @param from      the stack to take the entry from
+     * @param to        the stack to put it on
+     * @return          the delta of the entry, or null if from is empty
+     */
+    private UndoDelta move(ArrayDeque<Entry> from, ArrayDeque<Entry> to) {
+        if (from.isEmpty()) {
+            return null;
+        }
+        Entry entry = from.pop();
+        if (entry.delta == null) {
+            entry.delta = read(entry.file);
+            if (entry.delta == null) {
+                // The delta could not be read back, so the operation can no longer be undone or redone
+                return null;
+            }
+            entry.file.delete();
+            entry.file = null;
+            memoryUsed += entry.size;
+        }
+        to.push(entry);
+        spillOldest();
+        return entry.delta;
+    }
+
+    /**
+     * Helper function.
+     * Writes the deltas furthest from the top of either stack to disk until the rest fit in the memory budget.
+     * The most recent operation on each stack is always kept in memory.
+     */
+    private void spillOldest() {
+        if (memoryUsed <= MEMORY_BUDGET) {
+            return;
+        }
+        ArrayList<Entry> oldestFirst = new ArrayList<>();
+        for (ArrayDeque<Entry> stack : Arrays.asList(undoable, redoable)) {
+            Iterator<Entry> entries = stack.descendingIterator();
+            for (int i = 1; i < stack.size(); i++) {
+                oldestFirst.add(entries.next());
+            }
+        }
+        for (Entry entry : oldestFirst) {
+            if (memoryUsed <= MEMORY_BUDGET) {
+                return;
+            }
+            if (entry.delta != null) {
+                write(entry);
+            }
+        }
+    }
+
+    /**
+     * Helper function.
+     * Writes the delta of the given entry to a file of its own and drops it from memory.
+     * If it cannot be written it is kept in memory.
+     *
+     * @param entry     the entry to write
+     */
+    private void write(Entry entry) {
+        directory.mkdirs();
+        File file = new File(directory, "delta-" + nextFile++ + ".ser");
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeObject(entry.delta);
+        } catch (IOException e) {
+            e.printStackTrace();
+            file.delete();
+            return;
+        }
+        entry.delta = null;
+        entry.file = file;
+        memoryUsed -= entry.size;
+    }
+
+    /**
+     * Helper function.
+     *
+     * @param file      a file written by write()
+     * @return          the delta read from the file, or null if it could not be read
+     */
+    private UndoDelta read(File file) {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return (UndoDelta) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Helper function.
+     * Drops the given entry from memory or deletes its file.
+     *
+     * @param entry     an entry that was taken off its stack
+     */
+    private void forget(Entry entry) {
+        if (entry.delta != null) {
+            memoryUsed -= entry.size;
+        } else if (entry.file != null) {
+            entry.file.delete();
+        }
+    }
+
+    /**
+     * An operation on one of the stacks. Its delta is either in memory or in a file.
+     */
+    private class Entry {
+        private String name;
+        private long size;
+        private UndoDelta delta;
+        private File file;
+
+        Entry(UndoDelta delta) {
+            this.name = delta.getName();
+            this.size = delta.estimateSize();
+            this.delta = delta;
+            memoryUsed += size;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package Tests;
+
+import Model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Observer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeneralManagerTest {
+    private GeneralManager generalManager;
+    private ArrayList<ModelChange> changes = new ArrayList<>();
+
+    private Path libraryPath;
+    private Path statePath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.libraryPath = Files.createTempDirectory("library");
+        this.statePath = Files.createTempDirectory("state");
+        Files.createFile(libraryPath.resolve("a @loc~paris.jpg"));
+        Files.createFile(libraryPath.resolve("b @loc @sea.jpg"));
+        Files.createFile(libraryPath.resolve("c @place~paris.jpg"));
+        Files.createDirectories(libraryPath.resolve("a").resolve("x"));
+        Files.createFile(libraryPath.resolve("a").resolve("a1.jpg"));
+        Files.createFile(libraryPath.resolve("a").resolve("x").resolve("x1.jpg"));
+        Files.createDirectories(libraryPath.resolve("b").resolve("y"));
+        Files.createFile(libraryPath.resolve("b").resolve("b1.jpg"));
+        Files.createFile(libraryPath.resolve("b").resolve("y").resolve("y1.jpg"));
+
+        this.generalManager = new GeneralManager(statePath.toFile());
+        generalManager.initialize(libraryPath.toString());
+        Observer recorder = (observable, obj) -> {
+            if (obj instanceof ModelChange) {
+                changes.add((ModelChange) obj);
+            }
+        };
+        generalManager.addObserver(recorder);
+        generalManager.addObserverToTagManager(recorder);
+    }
+
+    private Tag getTag(String name) {
+        for (Tag tag: generalManager.getAllTags()) {
+            if (tag.getName().equals(name)) {
+                return tag;
+            }
+        }
+        return null;
+    }
+
+    private Image getImage(String name) {
+        for (Image image: generalManager.getAllImages()) {
+            if (image.getName().equals(name)) {
+                return image;
+            }
+        }
+        return null;
+    }
+
+    private ArrayList<ModelChange.Kind> changeKinds() {
+        ArrayList<ModelChange.Kind> kinds = new ArrayList<>();
+        for (ModelChange change: changes) {
+            kinds.add(change.getKind());
+        }
+        return kinds;
+    }
+
+    /**
+     * Saves the state, and loads it into a new manager.
+     *
+     * @return      the paths of every image in the library, as loaded by the new manager
+     */
+    private HashSet<Path> saveAndReload() {
+        generalManager.serialize();
+        GeneralManager reloaded = new GeneralManager(statePath.toFile());
+        reloaded.deserialize();
+        reloaded.setCurrentDirectory(libraryPath.toString());
+        HashSet<Path> paths = new HashSet<>();
+        for (Image image: reloaded.getAllImages()) {
+            paths.add(Paths.get(image.getPath()));
+        }
+        return paths;
+    }
+
+    /**
+     * @param name  the name of a directory directly under the library
+     * @return      the file of its shard
+     */
+    private File shardFile(String name) {
+        return statePath.resolve("shards").resolve("subtree-" + name + ".ser").toFile();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Path path : new Path[]{libraryPath, statePath}) {
+            try (Stream<Path> paths = Files.walk(path)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void testRenameNestedTags() {
+        Tag loc = getTag("loc");
+        Tag paris = getTag("loc/paris");
+        generalManager.renameTag(getTag("place"), "area", ProgressMonitor.NONE);
+
+        assertTrue(generalManager.renameTag(loc, "place", ProgressMonitor.NONE));
+
+        assertEquals("place/paris", paris.getName());
+        assertNull(getTag("loc/paris"));
+        assertEquals(paris, getTag("place/paris"));
+        assertTrue(Files.exists(libraryPath.resolve("a @place~paris.jpg")));
+        assertTrue(Files.exists(libraryPath.resolve("b @place @sea.jpg")));
+        assertTrue(Files.exists(libraryPath.resolve("c @area~paris.jpg")));
+    }
+
+    @Test
+    void testRenameNestedTagsRejected() {
+        Tag loc = getTag("loc");
+        Tag paris = getTag("loc/paris");
+        ArrayList<Tag> place = new ArrayList<>();
+        place.add(getTag("place"));
+        generalManager.mergeTags(place, "sea", ProgressMonitor.NONE);
+
+        assertFalse(generalManager.renameTag(loc, "place", ProgressMonitor.NONE));
+
+        assertEquals("loc", loc.getName());
+        assertEquals("loc/paris", paris.getName());
+        assertTrue(Files.exists(libraryPath.resolve("a @loc~paris.jpg")));
+        assertTrue(Files.exists(libraryPath.resolve("b @loc @sea.jpg")));
+    }
+
+    @Test
+    void testDeleteNestedTags() {
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(getTag("loc"));
+
+        generalManager.deleteTags(tags, ProgressMonitor.NONE);
+
+        assertNull(getTag("loc"));
+        assertNull(getTag("loc/paris"));
+        assertNotNull(getTag("sea"));
+        assertTrue(Files.exists(libraryPath.resolve("a.jpg")));
+        assertTrue(Files.exists(libraryPath.resolve("b @sea.jpg")));
+    }
+
+    @Test
+    void testMoveDirectoryIntoShard() {
+        generalManager.serialize();
+        generalManager.setCurrentDirectory(libraryPath.resolve("a").resolve("x").toString());
+
+        assertTrue(generalManager.moveDirectory(libraryPath.resolve("b").toString()));
+
+        HashSet<Path> paths = saveAndReload();
+        assertTrue(paths.contains(libraryPath.resolve("b").resolve("x").resolve("x1.jpg")));
+        assertTrue(paths.contains(libraryPath.resolve("a").resolve("a1.jpg")));
+        assertFalse(paths.contains(libraryPath.resolve("a").resolve("x").resolve("x1.jpg")));
+        assertTrue(shardFile("a").exists());
+        assertTrue(shardFile("b").exists());
+        assertFalse(shardFile("x").exists());
+    }
+
+    @Test
+    void testMoveShardIntoSubtree() {
+        generalManager.serialize();
+        assertTrue(shardFile("a").exists());
+        generalManager.setCurrentDirectory(libraryPath.resolve("a").toString());
+
+        assertTrue(generalManager.moveDirectory(libraryPath.resolve("b").resolve("y").toString()));
+
+        assertFalse(shardFile("a").exists());
+        HashSet<Path> paths = saveAndReload();
+        Path moved = libraryPath.resolve("b").resolve("y").resolve("a");
+        assertTrue(paths.contains(moved.resolve("a1.jpg")));
+        assertTrue(paths.contains(moved.resolve("x").resolve("x1.jpg")));
+        assertTrue(paths.contains(libraryPath.resolve("b").resolve("y").resolve("y1.jpg")));
+        assertFalse(paths.contains(libraryPath.resolve("a").resolve("a1.jpg")));
+        assertFalse(shardFile("a").exists());
+        assertTrue(shardFile("b").exists());
+    }
+
+    @Test
+    void testMoveSubtreeToRoot() {
+        generalManager.serialize();
+        assertFalse(shardFile("y").exists());
+        generalManager.setCurrentDirectory(libraryPath.resolve("b").resolve("y").toString());
+
+        assertTrue(generalManager.moveDirectory(libraryPath.toString()));
+
+        HashSet<Path> paths = saveAndReload();
+        assertTrue(paths.contains(libraryPath.resolve("y").resolve("y1.jpg")));
+        assertTrue(paths.contains(libraryPath.resolve("b").resolve("b1.jpg")));
+        assertFalse(paths.contains(libraryPath.resolve("b").resolve("y").resolve("y1.jpg")));
+        assertTrue(shardFile("y").exists());
+        assertTrue(shardFile("b").exists());
+    }
+
+    @Test
+    void testAddChanges() {
+        Image image = getImage("c @place~paris.jpg");
+        generalManager.setCurrentImage(image);
+
+        Tag tag = generalManager.createTag("sun");
+        assertEquals(List.of(ModelChange.Kind.TAG_ADDED), changeKinds());
+        changes.clear();
+
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(tag);
+        generalManager.addTagsToImage(tags);
+        assertEquals(List.of(ModelChange.Kind.IMAGE_UPDATED), changeKinds());
+        assertEquals(image, changes.get(0).getImage());
+        assertEquals(generalManager.getCurrentDirectory(), changes.get(0).getDirectory());
+    }
+
+    @Test
+    void testRemoveChanges() {
+        Image image = getImage("b @loc @sea.jpg");
+        generalManager.setCurrentImage(image);
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(getTag("sea"));
+
+        generalManager.removeTagsFromImage(tags);
+        assertEquals(List.of(ModelChange.Kind.IMAGE_UPDATED), changeKinds());
+        changes.clear();
+
+        tags.set(0, getTag("loc"));
+        generalManager.deleteTags(tags, ProgressMonitor.NONE);
+        assertEquals(List.of(ModelChange.Kind.TAG_REMOVED, ModelChange.Kind.TAG_REMOVED), changeKinds());
+    }
+
+    @Test
+    void testRetagChanges() {
+        Tag loc = getTag("loc");
+        Tag paris = getTag("loc/paris");
+
+        generalManager.renameTag(loc, "area", ProgressMonitor.NONE);
+
+        assertEquals(List.of(ModelChange.Kind.TAG_UPDATED, ModelChange.Kind.TAG_UPDATED),
+                changeKinds());
+        assertEquals(loc, changes.get(0).getTag());
+        assertEquals(paris, changes.get(1).getTag());
+    }
+
+    @Test
+    void testMoveChanges() {
+        Image image = getImage("c @place~paris.jpg");
+        Directory root = generalManager.getCurrentDirectory();
+        generalManager.setCurrentImage(image);
+
+        generalManager.moveImage(libraryPath.resolve("a").toString());
+
+        assertEquals(List.of(ModelChange.Kind.IMAGE_REMOVED, ModelChange.Kind.IMAGE_ADDED),
+                changeKinds());
+        assertEquals(root, changes.get(0).getDirectory());
+        assertEquals(generalManager.getCurrentDirectory(), changes.get(1).getDirectory());
+        assertEquals(image, changes.get(1).getImage());
+    }
+}
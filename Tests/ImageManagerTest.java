@@ -11,6 +11,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileAttribute;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -24,12 +26,14 @@ class ImageManagerTest {
 
     private Directory directory;
     private Path directoryPath;
+    private Path renameLogPath;
 
     @BeforeEach
     void setUp() throws IOException {
-        this.imageManager = new ImageManager();
-
         FileAttribute[] fileAttributes = new FileAttribute[0];
+        this.renameLogPath = Files.createTempDirectory("renameLogs", fileAttributes);
+        this.imageManager = new ImageManager(renameLogPath.toFile());
+
         this.directoryPath = Files.createTempDirectory("directory", fileAttributes);
         this.directory = new Directory(directoryPath.toString(), null);
 
@@ -41,7 +45,13 @@ class ImageManagerTest {
     }
 
     @AfterEach
-    void tearDown() throws IOException {}
+    void tearDown() throws IOException {
+        for (Path path : new Path[]{directoryPath, renameLogPath}) {
+            try (Stream<Path> paths = Files.walk(path)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
 
     @Test
     void addTagsToImage() {
@@ -130,6 +140,28 @@ class ImageManagerTest {
 
     }
 
+    @Test
+    void getRevertTags() {
+        TagManager tagManager = new TagManager();
+        Tag tag1 = tagManager.createTag("Name1");
+        Tag tag2 = tagManager.createTag("Name2");
+
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(tag1);
+        imageManager.addTagsToImage(image1, tags);
+
+        tags.clear();
+        tags.add(tag2);
+        imageManager.addTagsToImage(image1, tags);
+
+        ArrayList<String> pastNames = imageManager.getPastNames(image1);
+
+        assertEquals(0, image1.getRevertTags(pastNames.get(0)).size());
+        assertEquals(tag1, image1.getRevertTags(pastNames.get(1)).get(0));
+        assertEquals(2, image1.getRevertTags(pastNames.get(2)).size());
+        assertNull(image1.getRevertTags("never.jpg"));
+    }
+
     @Test
     void createImageWithTags() {
         TagManager tagManager = new TagManager();
@@ -0,0 +1,77 @@
+package Model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageFilterTest {
+    private ImageManager imageManager;
+    private ArrayList<Image> images;
+
+    @BeforeEach
+    void setUp() {
+        this.imageManager = new ImageManager();
+        this.images = new ArrayList<>();
+        Directory directory = new Directory("/tmp/filtered", null);
+        Random random = new Random(5);
+        for (int i = 0; i < 3000; i++) {
+            Image image = imageManager.createImage("/tmp/filtered/i" + i + ".jpg", directory);
+            if (random.nextInt(10) > 0) {
+                long captureTime = random.nextInt(4) == 0 ? 0 : 1000L * random.nextInt(1000);
+                image.setMetadata(new ImageMetadata(random.nextInt(100), random.nextInt(100), captureTime, null,
+                        random.nextInt(1000), 0));
+                imageManager.metadataRead(image);
+            }
+            images.add(image);
+        }
+    }
+
+    @Test
+    void testMatches() {
+        ImageFilter filter = new ImageFilter();
+        assertTrue(filter.isEmpty());
+        assertTrue(filter.matches(null));
+
+        filter.setFileSize(100, 200);
+        assertFalse(filter.isEmpty());
+        assertFalse(filter.matches(null));
+        assertTrue(filter.matches(new ImageMetadata(0, 0, 0, null, 100, 0)));
+        assertTrue(filter.matches(new ImageMetadata(0, 0, 0, null, 200, 0)));
+        assertFalse(filter.matches(new ImageMetadata(0, 0, 0, null, 201, 0)));
+
+        filter.setCaptureTime(0, 1000);
+        // An unknown capture time never matches a range of capture times
+        assertFalse(filter.matches(new ImageMetadata(0, 0, 0, null, 150, 0)));
+        assertTrue(filter.matches(new ImageMetadata(0, 0, 500, null, 150, 0)));
+
+        filter.setPixelCount(100, 400);
+        assertTrue(filter.matches(new ImageMetadata(10, 20, 500, null, 150, 0)));
+        assertFalse(filter.matches(new ImageMetadata(30, 20, 500, null, 150, 0)));
+    }
+
+    @Test
+    void testFilterImages() {
+        ImageFilter selective = new ImageFilter();
+        selective.setFileSize(100, 110);
+        selective.setPixelCount(1000, 5000);
+        ImageFilter broad = new ImageFilter();
+        broad.setCaptureTime(0, 900000);
+        for (ImageFilter filter : new ImageFilter[]{selective, broad}) {
+            ArrayList<Image> expected = new ArrayList<>();
+            for (Image image : images) {
+                if (filter.matches(image.getMetadata())) {
+                    expected.add(image);
+                }
+            }
+            ArrayList<ArrayList<Image>> lists = new ArrayList<>();
+            lists.add(images);
+            assertEquals(expected, imageManager.filterImages(lists, filter).get(0));
+            assertEquals(expected, imageManager.filterImages(filter, images.size()));
+            assertEquals(expected.subList(0, 5), imageManager.filterImages(filter, 5));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package Model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageSorterTest {
+    private static final int IMAGES = 2000;
+
+    private ImageManager imageManager;
+    private TagManager tagManager;
+    private Directory directory;
+    private ArrayList<Image> images;
+    private Random random;
+
+    @BeforeEach
+    void setUp() {
+        this.imageManager = new ImageManager();
+        this.tagManager = new TagManager();
+        this.directory = new Directory("/tmp/sorted", null);
+        this.images = new ArrayList<>();
+        this.random = new Random(1);
+        for (int i = 0; i < IMAGES; i++) {
+            images.add(createImage());
+        }
+    }
+
+    @Test
+    void testSortMatchesComparator() {
+        ImageSorter sorter = new ImageSorter();
+        for (ImageSort sort : ImageSort.values()) {
+            assertEquals(expected(images, sort, false), sorter.sort(images, sort, false));
+            assertEquals(expected(images, sort, true), sorter.sort(images, sort, true));
+        }
+    }
+
+    @Test
+    void testSortAfterChanges() {
+        ImageSorter sorter = new ImageSorter();
+        for (ImageSort sort : ImageSort.values()) {
+            sorter.sort(images, sort, false);
+        }
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(tagManager.createTag("changed"));
+        for (int i = 0; i < IMAGES / 100; i++) {
+            images.get(random.nextInt(IMAGES)).setName("Renamed " + random.nextInt(100) + ".jpg");
+            images.get(random.nextInt(IMAGES)).addTags(tags);
+            images.get(random.nextInt(IMAGES)).setMetadata(metadata());
+            images.remove(random.nextInt(images.size()));
+            images.add(createImage());
+        }
+        for (ImageSort sort : ImageSort.values()) {
+            assertEquals(expected(images, sort, true), sorter.sort(images, sort, true));
+            assertEquals(expected(images, sort, false), sorter.sort(images, sort, false));
+        }
+    }
+
+    @Test
+    void testSortAnotherList() {
+        ImageSorter sorter = new ImageSorter();
+        sorter.sort(images, ImageSort.NAME, false);
+        ArrayList<Image> others = new ArrayList<>(images.subList(0, IMAGES / 10));
+        assertEquals(expected(others, ImageSort.NAME, false), sorter.sort(others, ImageSort.NAME, false));
+        assertEquals(expected(others, ImageSort.SIZE, true), sorter.sort(others, ImageSort.SIZE, true));
+        assertEquals(expected(images, ImageSort.NAME, true), sorter.sort(images, ImageSort.NAME, true));
+    }
+
+    private Image createImage() {
+        String[] prefixes = {"IMG_", "Beach ", "beach ", "holiday_photograph_"};
+        String name = prefixes[random.nextInt(prefixes.length)] + random.nextInt(IMAGES / 4)
+                + (random.nextInt(4) == 0 ? " @sea" : "") + ".jpg";
+        Image image = imageManager.createImage("/tmp/sorted/" + name, directory);
+        if (random.nextInt(5) > 0) {
+            image.setMetadata(metadata());
+        }
+        return image;
+    }
+
+    private ImageMetadata metadata() {
+        long captureTime = random.nextInt(3) == 0 ? 0 : 1500000000000L + random.nextInt(100) * 1000L;
+        return new ImageMetadata(100, 100, captureTime, null, random.nextInt(50), 1400000000000L + random.nextInt(100));
+    }
+
+    private static ArrayList<Image> expected(ArrayList<Image> images, ImageSort sort, boolean descending) {
+        Comparator<Image> byName = (a, b) -> a.getName().compareToIgnoreCase(b.getName());
+        Comparator<Image> byKey;
+        switch (sort) {
+            case NAME:
+                byKey = byName;
+                break;
+            case DATE:
+                byKey = Comparator.comparingLong(image -> image.getMetadata() == null ? 0
+                        : image.getMetadata().getCaptureTime() != 0 ? image.getMetadata().getCaptureTime()
+                        : image.getMetadata().getFileModified());
+                break;
+            case SIZE:
+                byKey = Comparator.comparingLong(image -> image.getMetadata() == null ? 0
+                        : image.getMetadata().getFileSize());
+                break;
+            default:
+                byKey = Comparator.comparingInt(Image::getTagCount);
+        }
+        if (descending) {
+            byKey = byKey.reversed();
+        }
+        if (sort != ImageSort.NAME) {
+            byKey = byKey.thenComparing(byName);
+        }
+        ArrayList<Image> sorted = new ArrayList<>(images);
+        sorted.sort(byKey.thenComparingInt(Image::getId));
+        return sorted;
+    }
+}
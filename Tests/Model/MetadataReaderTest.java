@@ -0,0 +1,134 @@
+package Model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetadataReaderTest {
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("metadata", new FileAttribute[0]);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void testJpeg() throws IOException {
+        byte[] tiff = exif();
+        ByteBuffer jpeg = ByteBuffer.allocate(2 + 4 + 6 + tiff.length + 19 + 4);
+        jpeg.putShort((short) 0xFFD8);
+        // APP1, holding "Exif\0\0" and the TIFF structure
+        jpeg.putShort((short) 0xFFE1).putShort((short) (2 + 6 + tiff.length));
+        jpeg.put("Exif".getBytes(StandardCharsets.US_ASCII)).putShort((short) 0).put(tiff);
+        // A baseline start of frame: precision, height, width and one component
+        jpeg.putShort((short) 0xFFC0).putShort((short) 17).put((byte) 8).putShort((short) 480).putShort((short) 640);
+        jpeg.put(new byte[10]);
+        jpeg.putShort((short) 0xFFDA).putShort((short) 0);
+
+        ImageMetadata metadata = read("a.jpg", jpeg.array());
+        assertEquals(640, metadata.getWidth());
+        assertEquals(480, metadata.getHeight());
+        assertEquals("Canon EOS 5D", metadata.getCamera());
+        assertEquals(LocalDateTime.of(2019, 7, 4, 12, 34, 56).atZone(ZoneId.systemDefault()).toInstant()
+                .toEpochMilli(), metadata.getCaptureTime());
+    }
+
+    @Test
+    void testPng() throws IOException {
+        ByteBuffer png = ByteBuffer.allocate(8 + 25 + 12);
+        png.putLong(0x89504E470D0A1A0AL);
+        png.putInt(13).put("IHDR".getBytes(StandardCharsets.US_ASCII)).putInt(1920).putInt(1080).put(new byte[5]);
+        png.putInt(0);
+        png.putInt(0).put("IEND".getBytes(StandardCharsets.US_ASCII)).putInt(0);
+
+        ImageMetadata metadata = read("a.png", png.array());
+        assertEquals(1920, metadata.getWidth());
+        assertEquals(1080, metadata.getHeight());
+        assertEquals(0, metadata.getCaptureTime());
+        assertNull(metadata.getCamera());
+    }
+
+    @Test
+    void testGif() throws IOException {
+        ByteBuffer gif = ByteBuffer.allocate(13).order(ByteOrder.LITTLE_ENDIAN);
+        gif.put("GIF89a".getBytes(StandardCharsets.US_ASCII)).putShort((short) 320).putShort((short) 200);
+
+        ImageMetadata metadata = read("a.gif", gif.array());
+        assertEquals(320, metadata.getWidth());
+        assertEquals(200, metadata.getHeight());
+    }
+
+    @Test
+    void testNotAnImage() throws IOException {
+        byte[] text = "not an image".getBytes(StandardCharsets.US_ASCII);
+        ImageMetadata metadata = read("a.jpg", text);
+        assertEquals(0, metadata.getWidth());
+        assertEquals(0, metadata.getHeight());
+        assertNull(metadata.getCamera());
+        assertEquals(text.length, metadata.getFileSize());
+    }
+
+    @Test
+    void testTruncatedJpeg() throws IOException {
+        ByteBuffer jpeg = ByteBuffer.allocate(8);
+        jpeg.putShort((short) 0xFFD8).putShort((short) 0xFFE1).putShort((short) 0x4000).putShort((short) 0);
+
+        ImageMetadata metadata = read("a.jpg", jpeg.array());
+        assertEquals(0, metadata.getWidth());
+        assertEquals(0, metadata.getCaptureTime());
+    }
+
+    private ImageMetadata read(String name, byte[] bytes) throws IOException {
+        Path path = Files.write(directory.resolve(name), bytes);
+        return MetadataReader.read(path, bytes.length, 0);
+    }
+
+    /**
+     * @return  a big endian TIFF structure whose first IFD holds a make, a model and the offset of an EXIF IFD
+     *          holding the capture time
+     */
+    private static byte[] exif() {
+        byte[] make = "Canon\0".getBytes(StandardCharsets.US_ASCII);
+        byte[] model = "Canon EOS 5D\0".getBytes(StandardCharsets.US_ASCII);
+        byte[] date = "2019:07:04 12:34:56\0".getBytes(StandardCharsets.US_ASCII);
+        int exifIfd = 8 + 2 + 3 * 12 + 4;
+        int makeOffset = exifIfd + 2 + 12 + 4;
+        int modelOffset = makeOffset + make.length;
+        int dateOffset = modelOffset + model.length;
+
+        ByteBuffer tiff = ByteBuffer.allocate(dateOffset + date.length);
+        tiff.put((byte) 'M').put((byte) 'M').putShort((short) 0x2A).putInt(8);
+        tiff.putShort((short) 3);
+        tiff.putShort((short) 0x010F).putShort((short) 2).putInt(make.length).putInt(makeOffset);
+        tiff.putShort((short) 0x0110).putShort((short) 2).putInt(model.length).putInt(modelOffset);
+        tiff.putShort((short) 0x8769).putShort((short) 4).putInt(1).putInt(exifIfd);
+        tiff.putInt(0);
+        tiff.putShort((short) 1);
+        tiff.putShort((short) 0x9003).putShort((short) 2).putInt(date.length).putInt(dateOffset);
+        tiff.putInt(0);
+        tiff.put(make).put(model).put(date);
+        return tiff.array();
+    }
+}
@@ -0,0 +1,84 @@
+package Model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameDictionaryTest {
+    private NameDictionary names;
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.names = new NameDictionary();
+        this.directory = Files.createTempDirectory("names", new FileAttribute[0]);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void testIntern() {
+        int a = names.intern("a");
+        int b = names.intern("b");
+        assertNotEquals(a, b);
+        assertEquals(a, names.intern("a"));
+        assertEquals("a", names.get(a));
+        assertEquals("b", names.get(b));
+        assertEquals(b, names.lookup("b"));
+        assertEquals(-1, names.lookup("c"));
+    }
+
+    @Test
+    void testInternName() {
+        String[] imageNames = {"a @x @y.jpg", "plain.png", "noextension", "a.b @x", "a @.jpg",
+                "\u00e9t\u00e9 @loc~paris.gif"};
+        for (String name : imageNames) {
+            assertEquals(name, names.getName(names.internName(name)));
+        }
+    }
+
+    @Test
+    void testRetaggingAddsNoNames() {
+        names.internName("a @x.jpg");
+        names.internName("a @y.jpg");
+        long size = names.offHeapBytes();
+        names.internName("a @x @y.jpg");
+        names.internName("a @y @x.jpg");
+        names.internName("a.jpg");
+        assertEquals(size, names.offHeapBytes());
+    }
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        File file = new File(directory.toFile(), "names.dict");
+        int a = names.intern("a");
+        int[] image = names.internName("b @x.jpg");
+        names.save(file);
+        // Only the names added since are appended
+        int c = names.intern("c");
+        names.save(file);
+
+        NameDictionary loaded = new NameDictionary();
+        loaded.load(file);
+        assertEquals("a", loaded.get(a));
+        assertEquals("c", loaded.get(c));
+        assertEquals("b @x.jpg", loaded.getName(image));
+        assertEquals(c, loaded.intern("c"));
+        assertEquals(names.offHeapBytes(), loaded.offHeapBytes());
+    }
+}
@@ -0,0 +1,118 @@
+package Model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NameIndexTest {
+    private Path directoryPath;
+    private ImageManager imageManager;
+    private NameIndex nameIndex;
+    private Image beach;
+    private Image camera;
+    private Image ball;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.directoryPath = Files.createTempDirectory("named", new FileAttribute[0]);
+        this.imageManager = new ImageManager();
+        Directory directory = new Directory(directoryPath.toString(), null);
+        this.beach = createImage(directory, "Beach sunset @sea.jpg");
+        this.camera = createImage(directory, "IMG_0001.jpg");
+        this.ball = createImage(directory, "beachball.png");
+        this.nameIndex = new NameIndex();
+        nameIndex.add(beach);
+        nameIndex.add(camera);
+        nameIndex.add(ball);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directoryPath)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void testSubstring() {
+        ArrayList<Image> matches = nameIndex.substring("BEACH", false, 10);
+        assertEquals(2, matches.size());
+        assertTrue(matches.contains(beach));
+        assertTrue(matches.contains(ball));
+        assertEquals(1, nameIndex.substring("img", false, 10).size());
+        assertEquals(1, nameIndex.substring("beach", false, 1).size());
+        assertTrue(nameIndex.substring("forest", false, 10).isEmpty());
+    }
+
+    @Test
+    void testGlob() {
+        assertEquals(camera, nameIndex.glob("img_00??.jpg", false, 10).get(0));
+        assertEquals(beach, nameIndex.glob("*@sea*", false, 10).get(0));
+        assertEquals(2, nameIndex.glob("*.jpg", false, 10).size());
+        assertTrue(nameIndex.glob("img_0?.jpg", false, 10).isEmpty());
+    }
+
+    @Test
+    void testFuzzy() {
+        ArrayList<Image> matches = nameIndex.fuzzy("sunsett", 1, false, 10);
+        assertEquals(1, matches.size());
+        assertEquals(beach, matches.get(0));
+        matches = nameIndex.fuzzy("beachbal", 3, false, 10);
+        assertEquals(2, matches.size());
+        // An exact match comes before the match with typos
+        assertEquals(ball, matches.get(0));
+        assertTrue(nameIndex.fuzzy("mountain", 1, false, 10).isEmpty());
+    }
+
+    @Test
+    void testPastNames() {
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(new TagManager().createTag("holiday"));
+        imageManager.addTagsToImage(camera, tags);
+        nameIndex.rename(camera);
+        imageManager.removeTagsFromImage(camera, tags);
+        nameIndex.rename(camera);
+        assertEquals("IMG_0001.jpg", camera.getName());
+        assertTrue(nameIndex.substring("holiday", false, 10).isEmpty());
+        assertEquals(camera, nameIndex.substring("holiday", true, 10).get(0));
+
+        nameIndex.remove(camera);
+        assertTrue(nameIndex.substring("holiday", true, 10).isEmpty());
+    }
+
+    @Test
+    void testMyersMatchesDynamicProgramming() {
+        Random random = new Random(3);
+        String alphabet = "abcAB_ @.";
+        for (int i = 0; i < 2000; i++) {
+            String pattern = randomText(random, "abc_ @.", 1 + random.nextInt(64));
+            String text = randomText(random, alphabet, random.nextInt(100));
+            assertEquals(NameIndex.substringDistance(pattern, text),
+                    NameIndex.substringDistance(pattern, NameIndex.charMasks(pattern), text), pattern + " in " + text);
+        }
+    }
+
+    private Image createImage(Directory directory, String name) throws IOException {
+        return imageManager.createImage(Files.createFile(directoryPath.resolve(name)).toString(), directory);
+    }
+
+    private static String randomText(Random random, String alphabet, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package Model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangeIndexTest {
+    private RangeIndex rangeIndex;
+    private HashMap<Integer, Long> values;
+    private Random random;
+
+    @BeforeEach
+    void setUp() {
+        this.rangeIndex = new RangeIndex();
+        this.values = new HashMap<>();
+        this.random = new Random(4);
+    }
+
+    @Test
+    void testRange() {
+        rangeIndex.put(1, 10);
+        rangeIndex.put(2, 20);
+        rangeIndex.put(3, 20);
+        rangeIndex.put(4, 30);
+        BitSet ids = rangeIndex.range(15, 30);
+        assertEquals(3, ids.cardinality());
+        assertFalse(ids.get(1));
+        assertTrue(rangeIndex.range(20, 20).get(3));
+        assertTrue(rangeIndex.range(31, 100).isEmpty());
+
+        rangeIndex.remove(2);
+        assertFalse(rangeIndex.contains(2));
+        assertFalse(rangeIndex.range(0, 100).get(2));
+        rangeIndex.clear();
+        assertTrue(rangeIndex.range(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void testRangeAcrossSorts() {
+        // Enough changes to sort the index several times, with changes left stale in between
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 500; i++) {
+                int id = random.nextInt(5000);
+                if (random.nextInt(4) == 0) {
+                    rangeIndex.remove(id);
+                    values.remove(id);
+                } else {
+                    long value = random.nextInt(1000) - 500;
+                    rangeIndex.put(id, value);
+                    values.put(id, value);
+                }
+            }
+            long from = random.nextInt(1000) - 500;
+            long to = from + random.nextInt(300);
+            BitSet expected = new BitSet();
+            for (Map.Entry<Integer, Long> entry : values.entrySet()) {
+                if (entry.getValue() >= from && entry.getValue() <= to) {
+                    expected.set(entry.getKey());
+                }
+            }
+            assertEquals(expected, rangeIndex.range(from, to));
+            assertTrue(rangeIndex.estimate(from, to) >= expected.cardinality());
+        }
+    }
+}
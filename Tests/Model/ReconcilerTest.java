@@ -0,0 +1,143 @@
+package Model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReconcilerTest {
+    private ImageManager imageManager;
+    private DirectoryManager directoryManager;
+    private TagManager tagManager;
+    private ShardStore shardStore;
+    private Reconciler reconciler;
+
+    private Path rootPath;
+    private Path subPath;
+    private Path shardsPath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileAttribute[] fileAttributes = new FileAttribute[0];
+        this.rootPath = Files.createTempDirectory("root", fileAttributes);
+        this.subPath = Files.createDirectory(rootPath.resolve("sub"));
+        Files.createFile(rootPath.resolve("keep @x.jpg"));
+        Files.createFile(subPath.resolve("a @x @y.jpg"));
+
+        this.imageManager = new ImageManager();
+        this.directoryManager = new DirectoryManager();
+        this.tagManager = new TagManager();
+        this.shardsPath = Files.createTempDirectory("shards", fileAttributes);
+        this.shardStore = new ShardStore(shardsPath.toFile(), imageManager, directoryManager, tagManager);
+        TreeScanner treeScanner = new TreeScanner(imageManager, directoryManager, tagManager);
+        this.reconciler = new Reconciler(imageManager, directoryManager, tagManager, shardStore,
+                treeScanner::scan, new MetadataExtractor(imageManager));
+
+        treeScanner.scan(rootPath.toString(), null);
+        shardStore.attach(directoryManager.getRootDirectory());
+        shardStore.save();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Path path : new Path[]{rootPath, shardsPath}) {
+            try (Stream<Path> paths = Files.walk(path)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void patchAddsAndRemovesImages() throws IOException {
+        Directory root = directoryManager.getRootDirectory();
+        Files.delete(rootPath.resolve("keep @x.jpg"));
+        Files.createFile(rootPath.resolve("new @y.jpg"));
+        root.setLastModified(0);
+
+        ArrayList<Directory> directories = new ArrayList<>();
+        directories.add(root);
+        reconciler.reconcile(directories);
+
+        ArrayList<String> names = new ArrayList<>();
+        for (Object obj : root.getContents()) {
+            if (obj instanceof Image) {
+                names.add(((Image) obj).getName());
+            }
+        }
+        assertEquals(1, names.size());
+        assertEquals("new @y.jpg", names.get(0));
+        assertEquals(1, tagManager.getImageCount(tagManager.getTag("x")));
+        assertEquals(2, tagManager.getImageCount(tagManager.getTag("y")));
+        assertEquals(root.getFile().lastModified(), root.getLastModified());
+    }
+
+    @Test
+    void removingUnloadedShardUncountsItsImages() throws IOException {
+        Tag x = tagManager.getTag("x");
+        Tag y = tagManager.getTag("y");
+        assertEquals(2, tagManager.getImageCount(x));
+        assertEquals(1, tagManager.getImageCount(y));
+
+        Directory root = shardStore.loadRoot();
+        Files.delete(subPath.resolve("a @x @y.jpg"));
+        Files.delete(subPath);
+        root.setLastModified(0);
+
+        ArrayList<Directory> directories = new ArrayList<>();
+        directories.add(root);
+        reconciler.reconcile(directories);
+
+        assertEquals(1, tagManager.getImageCount(x));
+        assertEquals(0, tagManager.getImageCount(y));
+        assertTrue(tagManager.suggestTags(new ArrayList<>(Collections.singletonList(x)), 5).isEmpty());
+        assertEquals(1, root.getContents().size());
+    }
+
+    @Test
+    void renamingKeepsDirectoryCurrent() {
+        Directory root = directoryManager.getRootDirectory();
+        Image image = null;
+        for (Object obj : root.getContents()) {
+            if (obj instanceof Image) {
+                image = (Image) obj;
+            }
+        }
+        assertTrue(root.getFile().setLastModified(1000));
+        root.setLastModified(1000);
+
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(tagManager.createTag("z"));
+        imageManager.addTagsToImage(image, tags);
+        assertNotEquals(1000, root.getLastModified());
+        assertEquals(root.getFile().lastModified(), root.getLastModified());
+    }
+
+    @Test
+    void renamingKeepsExternalChangesVisible() {
+        Directory root = directoryManager.getRootDirectory();
+        Image image = null;
+        for (Object obj : root.getContents()) {
+            if (obj instanceof Image) {
+                image = (Image) obj;
+            }
+        }
+        assertTrue(root.getFile().setLastModified(1000));
+        root.setLastModified(500);
+
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(tagManager.createTag("z"));
+        imageManager.addTagsToImage(image, tags);
+        assertEquals(500, root.getLastModified());
+    }
+}
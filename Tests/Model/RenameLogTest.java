@@ -0,0 +1,148 @@
+package Model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenameLogTest {
+    private File directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("renameLogs", new FileAttribute[0]).toFile();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void testRecordsAcrossSegments() {
+        RenameLog log = new RenameLog(directory);
+        char[] padding = new char[1000];
+        Arrays.fill(padding, 'a');
+        String name = new String(padding);
+        // Each record is over 2 KB, so 2100 of them fill more than one 4 MB segment
+        for (int i = 0; i < 2100; i++) {
+            log.append(1 + i % 2, name + i, name + (i + 2), i);
+        }
+        log.close();
+        assertTrue(new File(directory, "segment-1.log").exists());
+
+        RenameLog resumed = new RenameLog(directory);
+        ArrayList<String[]> records = resumed.getRecords(2);
+        assertEquals(1050, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(name + (2 * i + 1), records.get(i)[0]);
+            assertEquals(name + (2 * i + 3), records.get(i)[1]);
+        }
+        assertFalse(resumed.hasRecords(3));
+    }
+
+    @Test
+    void testResumeReadsRecordsAfterIndex() {
+        RenameLog log = new RenameLog(directory);
+        log.append(1, "a.jpg", "a @x.jpg", 0);
+        log.saveIndex();
+        log.append(1, "a @x.jpg", "a @x @y.jpg", 1);
+        log.append(2, "b.jpg", "b @x.jpg", 2);
+
+        RenameLog resumed = new RenameLog(directory);
+        assertEquals(2, resumed.getRecords(1).size());
+        assertEquals("a @x @y.jpg", resumed.getRecords(1).get(1)[1]);
+        assertEquals(1, resumed.getRecords(2).size());
+    }
+
+    @Test
+    void testResumeAfterCrash() throws IOException {
+        RenameLog log = new RenameLog(directory);
+        log.append(1, "a.jpg", "a @x.jpg", 0);
+        log.append(1, "a @x.jpg", "a.jpg", 1);
+        // A record cut short by a crash: its image id and half of the position of the record before it
+        File segment = new File(directory, "segment-0.log");
+        long complete = segment.length();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(segment, true))) {
+            out.writeInt(1);
+            out.writeInt(0);
+        }
+
+        RenameLog resumed = new RenameLog(directory);
+        assertEquals(2, resumed.getRecords(1).size());
+        resumed.append(1, "a.jpg", "a @y.jpg", 2);
+        ArrayList<String[]> records = resumed.getRecords(1);
+        assertEquals(3, records.size());
+        assertEquals("a @y.jpg", records.get(2)[1]);
+        assertTrue(segment.length() > complete);
+
+        RenameLog again = new RenameLog(directory);
+        assertEquals(3, again.getRecords(1).size());
+    }
+
+    @Test
+    void testWriteTextAfterCrash() throws IOException {
+        RenameLog log = new RenameLog(directory);
+        log.append(1, "a.jpg", "a @x.jpg", 0);
+        log.append(2, "b.jpg", "b @x.jpg", 1);
+        log.close();
+        // A record cut short by a crash in the middle of its old name
+        File segment = new File(directory, "segment-0.log");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(segment, true))) {
+            out.writeInt(1);
+            out.writeLong(0);
+            out.writeLong(2);
+            out.writeShort(10);
+            out.writeBytes("a @");
+        }
+        // Records written to the next segment after it
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(directory, "segment-1.log")))) {
+            out.writeInt(3);
+            out.writeLong(0);
+            out.writeLong(3);
+            out.writeUTF("c.jpg");
+            out.writeUTF("c @x.jpg");
+        }
+
+        File text = new File(directory, "renameLogs.txt");
+        new RenameLog(directory).writeText(text);
+        List<String> lines = Files.readAllLines(text.toPath());
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(1).startsWith("Image \"b.jpg\" has been renamed to \"b @x.jpg\""));
+        assertTrue(lines.get(2).startsWith("Image \"c.jpg\" has been renamed to \"c @x.jpg\""));
+    }
+
+    @Test
+    void testClearDiscardsSegments() {
+        RenameLog log = new RenameLog(directory);
+        log.append(1, "a.jpg", "a @x.jpg", 0);
+        log.close();
+
+        RenameLog resumed = new RenameLog(directory);
+        assertTrue(resumed.hasRecords(1));
+        resumed.clear();
+        assertFalse(resumed.hasRecords(1));
+        resumed.append(2, "b.jpg", "b @x.jpg", 1);
+        resumed.close();
+
+        RenameLog fresh = new RenameLog(directory);
+        assertFalse(fresh.hasRecords(1));
+        assertEquals(1, fresh.getRecords(2).size());
+    }
+}
@@ -0,0 +1,133 @@
+package Model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardStoreTest {
+    /**
+     * One more directory directly under the root than ShardStore keeps loaded.
+     */
+    private static final int SHARDS = 65;
+
+    private ImageManager imageManager;
+    private DirectoryManager directoryManager;
+    private TagManager tagManager;
+    private ShardStore shardStore;
+
+    private Path rootPath;
+    private Path shardsPath;
+    private Tag tag;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        FileAttribute[] fileAttributes = new FileAttribute[0];
+        this.rootPath = Files.createTempDirectory("root", fileAttributes);
+        for (int i = 0; i < SHARDS; i++) {
+            Path directory = Files.createDirectory(rootPath.resolve("d" + i));
+            Files.createFile(directory.resolve("i" + i + " @t.jpg"));
+        }
+
+        this.imageManager = new ImageManager();
+        this.directoryManager = new DirectoryManager();
+        this.tagManager = new TagManager();
+        this.shardsPath = Files.createTempDirectory("shards", fileAttributes);
+        this.shardStore = new ShardStore(shardsPath.toFile(), imageManager, directoryManager, tagManager);
+        new TreeScanner(imageManager, directoryManager, tagManager).scan(rootPath.toString(), null);
+        shardStore.attach(directoryManager.getRootDirectory());
+        this.tag = tagManager.getTag("t");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Path path : new Path[]{rootPath, shardsPath}) {
+            try (Stream<Path> paths = Files.walk(path)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void testUnloadAndLoad() {
+        Directory root = directoryManager.getRootDirectory();
+        assertEquals(SHARDS, tag.getImages().size());
+        shardStore.evictColdShards(root, null, false);
+
+        Directory evicted = null;
+        for (Object obj : root.getContents()) {
+            if (((Directory) obj).getContents().isEmpty()) {
+                assertNull(evicted);
+                evicted = (Directory) obj;
+            }
+        }
+        assertNotNull(evicted);
+        assertEquals(SHARDS - 1, tag.getImages().size());
+        assertEquals(SHARDS - 1, imageManager.getImageCount());
+        assertEquals(SHARDS, tagManager.getImageCount(tag));
+
+        shardStore.ensureLoaded(evicted);
+        assertEquals(1, evicted.getContents().size());
+        Image image = (Image) evicted.getContents().get(0);
+        assertEquals(evicted.getName().replace("d", "i") + " @t.jpg", image.getName());
+        assertSame(evicted, image.getParentDirectory());
+        assertSame(tag, image.getTags().get(0));
+        assertTrue(tag.getImages().contains(image));
+        assertEquals(SHARDS, imageManager.getImageCount());
+    }
+
+    @Test
+    void testSaveAndLoadRoot() {
+        shardStore.save();
+        assertTrue(shardStore.exists());
+
+        Directory root = shardStore.loadRoot();
+        assertEquals(rootPath.toString(), root.getPath());
+        assertEquals(SHARDS, root.getContents().size());
+        assertEquals(0, imageManager.getImageCount());
+
+        Directory directory = (Directory) root.getContents().get(0);
+        assertTrue(directory.getContents().isEmpty());
+        shardStore.ensureLoaded(directory);
+        assertEquals(1, directory.getContents().size());
+        Image image = (Image) directory.getContents().get(0);
+        assertEquals(directory.getName().replace("d", "i") + " @t.jpg", image.getName());
+        assertSame(tag, image.getTags().get(0));
+
+        shardStore.loadAll();
+        assertEquals(SHARDS, imageManager.getImageCount());
+    }
+
+    @Test
+    void testLoadShardsWithTags() {
+        Directory root = directoryManager.getRootDirectory();
+        Directory tagged = (Directory) root.getContents().get(0);
+        Image image = (Image) tagged.getContents().get(0);
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(tagManager.createTag("u"));
+        image.addTags(tags);
+        shardStore.save();
+
+        root = shardStore.loadRoot();
+        BitSet tagIds = new BitSet();
+        tagIds.set(tags.get(0).getId());
+        shardStore.loadShardsWithTags(tagIds);
+        for (Object obj : root.getContents()) {
+            Directory directory = (Directory) obj;
+            assertEquals(directory.getName().equals(tagged.getName()) ? 1 : 0, directory.getContents().size());
+        }
+        assertEquals(1, imageManager.getImageCount());
+        assertEquals(SHARDS, shardStore.getImageCount());
+    }
+}
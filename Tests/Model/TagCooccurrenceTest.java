@@ -0,0 +1,107 @@
+package Model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagCooccurrenceTest {
+    private TagManager tagManager;
+    private TagCooccurrence cooccurrence;
+    private Tag a;
+    private Tag b;
+    private Tag c;
+
+    @BeforeEach
+    void setUp() {
+        this.tagManager = new TagManager();
+        this.cooccurrence = new TagCooccurrence();
+        this.a = tagManager.createTag("a");
+        this.b = tagManager.createTag("b");
+        this.c = tagManager.createTag("c");
+        cooccurrence.retagged(new ArrayList<>(), tags(a, b));
+        cooccurrence.retagged(new ArrayList<>(), tags(a, c));
+        cooccurrence.retagged(new ArrayList<>(), tags(a, b, c));
+    }
+
+    @Test
+    void testCounts() {
+        assertEquals(3, cooccurrence.count(a.getId()));
+        assertEquals(2, cooccurrence.count(b.getId()));
+        assertEquals(2, cooccurrence.count(a.getId(), b.getId()));
+        assertEquals(2, cooccurrence.count(b.getId(), a.getId()));
+        assertEquals(1, cooccurrence.count(b.getId(), c.getId()));
+
+        cooccurrence.retagged(tags(a, b, c), tags(a));
+        assertEquals(3, cooccurrence.count(a.getId()));
+        assertEquals(1, cooccurrence.count(b.getId()));
+        assertEquals(1, cooccurrence.count(a.getId(), b.getId()));
+        assertEquals(0, cooccurrence.count(b.getId(), c.getId()));
+
+        cooccurrence.retagged(tags(a, c), new ArrayList<>());
+        assertEquals(2, cooccurrence.count(a.getId()));
+        assertEquals(0, cooccurrence.count(c.getId()));
+        assertEquals(0, cooccurrence.count(a.getId(), c.getId()));
+    }
+
+    @Test
+    void testManyTags() {
+        ArrayList<Tag> tags = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            tags.add(tagManager.createTag("many" + i));
+        }
+        cooccurrence.retagged(new ArrayList<>(), tags);
+        for (int i = 0; i < tags.size(); i++) {
+            assertEquals(1, cooccurrence.count(tags.get(i).getId()));
+            for (int j = 0; j < tags.size(); j++) {
+                assertEquals(i == j ? 0 : 1, cooccurrence.count(tags.get(i).getId(), tags.get(j).getId()));
+            }
+        }
+    }
+
+    @Test
+    void testSuggest() {
+        assertArrayEquals(new int[]{a.getId(), c.getId()}, cooccurrence.suggest(new int[]{b.getId()}, 5));
+        assertArrayEquals(new int[]{a.getId()}, cooccurrence.suggest(new int[]{b.getId()}, 1));
+        // b and c are each found on two of the three images carrying a, so the older tag comes first
+        assertArrayEquals(new int[]{b.getId(), c.getId()}, cooccurrence.suggest(new int[]{a.getId()}, 5));
+        assertEquals(0, cooccurrence.suggest(new int[]{a.getId(), b.getId(), c.getId()}, 5).length);
+    }
+
+    @Test
+    void testRemoveTag() {
+        cooccurrence.removeTag(a.getId());
+        assertEquals(0, cooccurrence.count(a.getId()));
+        assertEquals(0, cooccurrence.count(a.getId(), b.getId()));
+        assertEquals(0, cooccurrence.count(b.getId(), a.getId()));
+        assertEquals(2, cooccurrence.count(b.getId()));
+        assertArrayEquals(new int[]{c.getId()}, cooccurrence.suggest(new int[]{b.getId()}, 5));
+    }
+
+    @Test
+    void testSerialize() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(cooccurrence);
+        }
+        TagCooccurrence loaded;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            loaded = (TagCooccurrence) in.readObject();
+        }
+        assertEquals(3, loaded.count(a.getId()));
+        assertEquals(2, loaded.count(a.getId(), b.getId()));
+        assertEquals(1, loaded.count(b.getId(), c.getId()));
+    }
+
+    private static ArrayList<Tag> tags(Tag... tags) {
+        return new ArrayList<>(Arrays.asList(tags));
+    }
+}
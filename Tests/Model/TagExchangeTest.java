@@ -0,0 +1,126 @@
+package Model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagExchangeTest {
+    private FileAttribute[] fileAttributes = new FileAttribute[0];
+    private File exported;
+    private ArrayList<Path> roots = new ArrayList<>();
+    private Library source;
+    private Library target;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.exported = Files.createTempDirectory("exported", fileAttributes).toFile();
+        this.source = new Library("a @x @loc~paris.jpg", "b @x.jpg", "c.jpg", "d @a,b.jpg");
+        source.tagManager.createTag("unused \"quoted\"");
+        this.target = new Library("a.jpg", "b.jpg", "c.jpg", "d.jpg");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        roots.add(exported.toPath());
+        for (Path path : roots) {
+            try (Stream<Path> paths = Files.walk(path)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void testJsonRoundTrip() throws IOException {
+        roundTrip(new File(exported, "tags.ndjson"));
+    }
+
+    @Test
+    void testCsvRoundTrip() throws IOException {
+        roundTrip(new File(exported, "tags.csv"));
+    }
+
+    private void roundTrip(File file) throws IOException {
+        assertEquals(4, source.tagExchange.export(file, ProgressMonitor.NONE));
+        assertEquals(3, target.tagExchange.importFrom(file, ProgressMonitor.NONE));
+
+        assertEquals("a @x @loc~paris.jpg", target.image("a").getName());
+        assertEquals("b @x.jpg", target.image("b").getName());
+        assertEquals("c.jpg", target.image("c").getName());
+        assertEquals("d @a,b.jpg", target.image("d").getName());
+        assertTrue(Files.exists(target.rootPath.resolve("sub").resolve("b @x.jpg")));
+        assertNotNull(target.tagManager.getTag("unused \"quoted\""));
+        assertNotNull(target.tagManager.getTag("loc/paris"));
+        assertEquals(2, target.tagManager.getTag("x").getImages().size());
+
+        // Importing again changes nothing
+        assertEquals(0, target.tagExchange.importFrom(file, ProgressMonitor.NONE));
+    }
+
+    @Test
+    void testAmbiguousNames() throws IOException {
+        this.source = new Library("e @beach.jpg", "b @x.jpg", "e @city.jpg", "d.jpg");
+        this.target = new Library("e @beach.jpg", "b.jpg", "e @city.jpg", "d.jpg");
+        File file = new File(exported, "tags.ndjson");
+
+        assertEquals(4, source.tagExchange.export(file, ProgressMonitor.NONE));
+        assertEquals(1, target.tagExchange.importFrom(file, ProgressMonitor.NONE));
+
+        assertTrue(Files.exists(target.rootPath.resolve("e @beach.jpg")));
+        assertTrue(Files.exists(target.rootPath.resolve("e @city.jpg")));
+        assertTrue(Files.exists(target.rootPath.resolve("sub").resolve("b @x.jpg")));
+        assertEquals(1, target.tagManager.getTag("beach").getImages().size());
+        assertEquals(1, target.tagManager.getTag("city").getImages().size());
+    }
+
+    /**
+     * A root directory holding "a" and "c", a directory "sub" holding "b" and a directory "d" holding "d", scanned
+     * into managers of its own.
+     */
+    private class Library {
+        private Path rootPath;
+        private ImageManager imageManager = new ImageManager();
+        private DirectoryManager directoryManager = new DirectoryManager();
+        private TagManager tagManager = new TagManager();
+        private TagExchange tagExchange = new TagExchange(imageManager, directoryManager, tagManager);
+
+        Library(String a, String b, String c, String d) throws IOException {
+            this.rootPath = Files.createTempDirectory("library", fileAttributes);
+            roots.add(rootPath);
+            Files.createFile(rootPath.resolve(a));
+            Files.createFile(Files.createDirectory(rootPath.resolve("sub")).resolve(b));
+            Files.createFile(rootPath.resolve(c));
+            Files.createFile(Files.createDirectory(rootPath.resolve("d")).resolve(d));
+            new TreeScanner(imageManager, directoryManager, tagManager).scan(rootPath.toString(), null);
+        }
+
+        /**
+         * @param name  the name of an image without its tags and extension
+         * @return      the image
+         */
+        Image image(String name) {
+            ArrayList<Directory> directories = new ArrayList<>();
+            directories.add(directoryManager.getRootDirectory());
+            for (int i = 0; i < directories.size(); i++) {
+                for (Object obj : directories.get(i).getContents()) {
+                    if (obj instanceof Directory) {
+                        directories.add((Directory) obj);
+                    } else if (((Image) obj).getExtensionlessOriginalName().equals(name)) {
+                        return (Image) obj;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package Model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagRankerTest {
+    private Image[] images;
+
+    @BeforeEach
+    void setUp() {
+        this.images = new Image[6];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = new Image();
+            images[i].setId(i);
+        }
+    }
+
+    private ArrayList<Image> images(int... ids) {
+        ArrayList<Image> list = new ArrayList<>();
+        for (int id : ids) {
+            list.add(images[id]);
+        }
+        return list;
+    }
+
+    private ArrayList<Image> topImages(ArrayList<ArrayList<Image>> tagged, int[] taggedCounts, int limit,
+                                       boolean weightByRarity) {
+        return TagRanker.topImages(tagged, taggedCounts, limit, 10, images.length, weightByRarity, 0, 0);
+    }
+
+    @Test
+    void testMatchCountOrdering() {
+        ArrayList<ArrayList<Image>> tagged = new ArrayList<>(Arrays.asList(images(0, 1, 2), images(1, 2), images(2)));
+
+        assertEquals(images(2, 1, 0), topImages(tagged, new int[]{3, 2, 1}, 10, false));
+    }
+
+    @Test
+    void testRarityWeighting() {
+        ArrayList<ArrayList<Image>> tagged = new ArrayList<>(Arrays.asList(images(0), images(1, 3), images(1, 4)));
+        int[] taggedCounts = {1, 9, 9};
+
+        assertEquals(images(1, 0, 3, 4), topImages(tagged, taggedCounts, 10, false));
+        assertEquals(images(0, 1, 3, 4), topImages(tagged, taggedCounts, 10, true));
+    }
+
+    @Test
+    void testLimit() {
+        ArrayList<ArrayList<Image>> tagged = new ArrayList<>(Arrays.asList(images(4, 3, 2, 1, 0), images(3)));
+
+        assertEquals(images(3, 0), topImages(tagged, new int[]{5, 1}, 2, false));
+        assertEquals(images(3), topImages(tagged, new int[]{5, 1}, 1, false));
+        assertTrue(topImages(tagged, new int[]{5, 1}, 0, false).isEmpty());
+    }
+
+    @Test
+    void testScoresClearedBetweenQueries() {
+        ArrayList<ArrayList<Image>> tagged = new ArrayList<>(Arrays.asList(images(0, 1), images(1)));
+        topImages(tagged, new int[]{2, 1}, 10, false);
+
+        tagged = new ArrayList<>(Arrays.asList(images(0), images(0, 1)));
+        assertEquals(images(0, 1), topImages(tagged, new int[]{1, 2}, 10, false));
+    }
+}
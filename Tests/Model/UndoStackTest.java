@@ -0,0 +1,120 @@
+package Model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UndoStackTest {
+    private static final int IMAGES = 20000;
+
+    private File directory;
+    private TagManager tagManager;
+    private ArrayList<Image> images;
+    private Tag a;
+    private Tag b;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("undo", new FileAttribute[0]).toFile();
+        this.tagManager = new TagManager();
+        this.a = tagManager.createTag("a");
+        this.b = tagManager.createTag("b");
+        ImageManager imageManager = new ImageManager();
+        Directory parent = new Directory("/tmp/undone", null);
+        this.images = new ArrayList<>();
+        for (int i = 0; i < IMAGES; i++) {
+            images.add(imageManager.createImage("/tmp/undone/i" + i + " @a.jpg", parent));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void testSpillAndReadBack() {
+        UndoStack undoStack = new UndoStack(directory);
+        // Each delta is estimated at about 80 KB, so 60 of them are over the 4 MB kept in memory
+        for (int i = 0; i < 60; i++) {
+            undoStack.push(retagAll("retag" + i));
+        }
+        File[] spilled = directory.listFiles();
+        assertNotNull(spilled);
+        assertTrue(spilled.length > 0);
+
+        for (int i = 59; i >= 0; i--) {
+            assertEquals("retag" + i, undoStack.peekUndo());
+            UndoDelta delta = undoStack.popUndo();
+            assertEquals("retag" + i, delta.getName());
+            UndoDelta.RetagGroup group = delta.getRetagGroups().get(0);
+            assertEquals(IMAGES, group.getIds().length);
+            assertArrayEquals(new int[]{a.getId()}, group.getBefore());
+            assertArrayEquals(new int[]{a.getId(), b.getId()}, group.getAfter());
+            assertEquals("b", delta.getTagName(b.getId()));
+        }
+        assertNull(undoStack.popUndo());
+        assertEquals("retag0", undoStack.peekRedo());
+
+        undoStack.push(retagAll("retag"));
+        assertNull(undoStack.peekRedo());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    void testDeltaKeepsTagsById() {
+        UndoDelta delta = retagAll("retag");
+        delta.deletedTag(b);
+        tagManager.renameTag(b, "c");
+        assertSame(b, tagManager.getTagById(delta.getRetagGroups().get(0).getAfter()[1]));
+
+        ArrayList<Tag> deleted = new ArrayList<>();
+        deleted.add(b);
+        tagManager.deleteTags(deleted);
+        int id = delta.getDeletedTags().get(0);
+        assertNull(tagManager.getTagById(id));
+        Tag restored = tagManager.restoreTag(id, delta.getTagName(id));
+        assertEquals(id, restored.getId());
+        assertEquals("b", restored.getName());
+        assertSame(restored, tagManager.getTagById(id));
+        assertTrue(tagManager.createTag("d").getId() > id);
+    }
+
+    @Test
+    void testOperation() {
+        assertEquals(Operation.TAG_MUTATION, retagAll("retag").getOperation());
+
+        UndoDelta moveImage = new UndoDelta("moveImage");
+        moveImage.moved(images.get(0), images.get(0).getParentDirectory(), new Directory("/tmp/moved", null));
+        assertEquals(Operation.MOVE, moveImage.getOperation());
+
+        UndoDelta moveDirectory = new UndoDelta("moveDirectory");
+        moveDirectory.movedDirectory("/tmp/undone", "/tmp/moved/undone");
+        assertEquals(Operation.MOVE, moveDirectory.getOperation());
+    }
+
+    private UndoDelta retagAll(String name) {
+        ArrayList<Tag> before = new ArrayList<>();
+        before.add(a);
+        ArrayList<Tag> after = new ArrayList<>(before);
+        after.add(b);
+        UndoDelta delta = new UndoDelta(name);
+        for (Image image : images) {
+            delta.retagged(image, before, after);
+        }
+        return delta;
+    }
+}
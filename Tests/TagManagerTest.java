@@ -111,4 +111,102 @@ class TagManagerTest {
         assertEquals("Name2", newTags.get(1).getName());
     }
 
+    @Test
+    void testCompleteTag() {
+        TagManager tagManager = new TagManager();
+        Tag beach = tagManager.createTag("Beach");
+        Tag bear = tagManager.createTag("bear");
+        tagManager.createTag("Cat");
+        Tag deleted = tagManager.createTag("Bee");
+
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(bear);
+        tagManager.addImageToTags(new Image(), tags);
+        tagManager.imageRetagged(new ArrayList<>(), tags);
+        ArrayList<Tag> tagsToRemove = new ArrayList<>();
+        tagsToRemove.add(deleted);
+        tagManager.deleteTags(tagsToRemove);
+
+        ArrayList<Tag> completions = new ArrayList<>();
+        completions.add(bear);
+        completions.add(beach);
+        assertEquals(completions, tagManager.completeTag("BE", 5));
+        assertEquals(1, tagManager.completeTag("be", 1).size());
+        assertEquals(0, tagManager.completeTag("dog", 5).size());
+    }
+
+    @Test
+    void testRenameTag() {
+        TagManager tagManager = new TagManager();
+        Tag tag = tagManager.createTag("Name1");
+
+        tagManager.renameTag(tag, "Name2");
+
+        assertEquals("Name2", tag.getName());
+        assertEquals(tag, tagManager.getTag("Name2"));
+        assertNull(tagManager.getTag("Name1"));
+    }
+
+    @Test
+    void testMergeTags() {
+        TagManager tagManager = new TagManager();
+        Tag tag1 = tagManager.createTag("Name1");
+        Tag tag2 = tagManager.createTag("Name2");
+        Tag target = tagManager.createTag("Name3");
+        Image image1 = new Image();
+        Image image2 = new Image();
+
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(tag1);
+        tags.add(target);
+        tagManager.addImageToTags(image1, tags);
+        tags.remove(target);
+        tags.add(tag2);
+        tagManager.addImageToTags(image2, tags);
+
+        tagManager.mergeTags(tags, target);
+
+        ArrayList<Tag> tagsLeft = new ArrayList<>();
+        tagsLeft.add(target);
+        assertEquals(tagsLeft, tagManager.getAllTags());
+        assertEquals(2, target.getImages().size());
+        assertTrue(target.getImages().contains(image2));
+    }
+
+    @Test
+    void testNestedTags() {
+        TagManager tagManager = new TagManager();
+        Tag paris = tagManager.createTag("loc / france/paris");
+        Tag lyon = tagManager.createTag("loc/france/lyon");
+        Tag france = tagManager.getTag("loc/france");
+        Image image1 = new Image();
+        Image image2 = new Image();
+
+        ArrayList<Tag> tags = new ArrayList<>();
+        tags.add(paris);
+        tagManager.addImageToTags(image1, tags);
+        tags.add(lyon);
+        tagManager.addImageToTags(image2, tags);
+
+        assertEquals("loc/france/paris", paris.getName());
+        assertEquals("loc~france~paris", paris.getFileName());
+        assertEquals("loc/france", paris.getParentName());
+        assertNotNull(tagManager.getTag("loc"));
+        assertEquals(4, tagManager.getAllTags().size());
+        assertEquals(3, tagManager.getDescendants(france).size());
+        assertEquals(2, tagManager.getImagesUnder(tagManager.getTag("loc")).size());
+        assertEquals(1, tagManager.getImagesUnder(lyon).size());
+    }
+
+    @Test
+    void testStringToNestedTags() {
+        TagManager tagManager = new TagManager();
+        ArrayList<Tag> newTags = tagManager.stringToNewTags("imgName @loc~paris @Name1.jpg");
+
+        assertEquals("loc/paris", newTags.get(0).getName());
+        assertEquals("Name1", newTags.get(1).getName());
+        assertNotNull(tagManager.getTag("loc"));
+        assertEquals(newTags, tagManager.stringToTags("imgName @loc~paris @Name1.jpg"));
+    }
+
 }
\ No newline at end of file